@@ -84,6 +84,45 @@ public class ServletTestSuite extends AbstractTestSuite
         super.addTestSuite(theTestClass);
     }
     
+    /**
+     * {@inheritDoc}
+     * @see AbstractTestSuite#setThreadCount(int)
+     * 
+     * Note: This method is overriden from {@link AbstractTestSuite} because 
+     * we do not want to create a binary dependency on end user classes
+     * with {@link AbstractTestSuite}.
+     */
+    public void setThreadCount(int theThreadCount)
+    {
+        super.setThreadCount(theThreadCount);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see AbstractTestSuite#setBatchSize(int)
+     * 
+     * Note: This method is overriden from {@link AbstractTestSuite} because 
+     * we do not want to create a binary dependency on end user classes
+     * with {@link AbstractTestSuite}.
+     */
+    public void setBatchSize(int theBatchSize)
+    {
+        super.setBatchSize(theBatchSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see AbstractTestSuite#setPipelineDepth(int)
+     * 
+     * Note: This method is overriden from {@link AbstractTestSuite} because 
+     * we do not want to create a binary dependency on end user classes
+     * with {@link AbstractTestSuite}.
+     */
+    public void setPipelineDepth(int thePipelineDepth)
+    {
+        super.setPipelineDepth(thePipelineDepth);
+    }
+
     /**
      * {@inheritDoc}
      * @see AbstractTestSuite#createTestSuite(Class)
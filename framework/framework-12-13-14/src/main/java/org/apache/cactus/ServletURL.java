@@ -20,7 +20,7 @@
  */
 package org.apache.cactus;
 
-import org.apache.cactus.internal.server.ServletUtil;
+import org.apache.cactus.internal.server.QueryStringParameters;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -585,13 +585,27 @@ public class ServletURL
      */
     public static ServletURL loadFromRequest(HttpServletRequest theRequest)
     {
-        String qString = theRequest.getQueryString();
+        return loadFromRequest(
+            QueryStringParameters.parse(theRequest.getQueryString()));
+    }
+
+    /**
+     * Creates a <code>ServletURL</code> object by loading it's values from the
+     * already parsed query string of the HTTP request.
+     *
+     * @param theParameters the parsed query string of the incoming HTTP
+     *        request
+     * @return the <code>ServletURL</code> object unserialized from the HTTP
+     *         request
+     */
+    public static ServletURL loadFromRequest(
+        QueryStringParameters theParameters)
+    {
         boolean isDefined = false;
 
         ServletURL url = new ServletURL();
 
-        String protocol = ServletUtil.getQueryStringParameter(qString, 
-            URL_PROTOCOL_PARAM);
+        String protocol = theParameters.getParameter(URL_PROTOCOL_PARAM);
 
         if (protocol != null)
         {
@@ -599,8 +613,7 @@ public class ServletURL
             url.setProtocol(protocol);
         }
 
-        String serverName = ServletUtil.getQueryStringParameter(qString, 
-            URL_SERVER_NAME_PARAM);
+        String serverName = theParameters.getParameter(URL_SERVER_NAME_PARAM);
 
         if (serverName != null)
         {
@@ -608,8 +621,7 @@ public class ServletURL
             url.setServerName(serverName);
         }
 
-        String contextPath = ServletUtil.getQueryStringParameter(qString, 
-            URL_CONTEXT_PATH_PARAM);
+        String contextPath = theParameters.getParameter(URL_CONTEXT_PATH_PARAM);
 
         if (contextPath != null)
         {
@@ -617,8 +629,7 @@ public class ServletURL
             url.setContextPath(contextPath);
         }
 
-        String servletPath = ServletUtil.getQueryStringParameter(qString, 
-            URL_SERVLET_PATH_PARAM);
+        String servletPath = theParameters.getParameter(URL_SERVLET_PATH_PARAM);
 
         if (servletPath != null)
         {
@@ -626,8 +637,7 @@ public class ServletURL
             url.setServletPath(servletPath);
         }
 
-        String pathInfo = ServletUtil.getQueryStringParameter(qString, 
-            URL_PATH_INFO_PARAM);
+        String pathInfo = theParameters.getParameter(URL_PATH_INFO_PARAM);
 
         if (pathInfo != null)
         {
@@ -635,8 +645,7 @@ public class ServletURL
             url.setPathInfo(pathInfo);
         }
 
-        String queryString = ServletUtil.getQueryStringParameter(qString, 
-            URL_QUERY_STRING_PARAM);
+        String queryString = theParameters.getParameter(URL_QUERY_STRING_PARAM);
 
         if (queryString != null)
         {
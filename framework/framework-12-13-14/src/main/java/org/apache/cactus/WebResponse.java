@@ -35,7 +35,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
 import java.net.HttpURLConnection;
-import java.util.Vector;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Default web response implementation that provides a minimal
@@ -67,6 +71,34 @@ public class WebResponse
      */
     private String content;
 
+    /**
+     * The lines of the response content, or null if they have not been
+     * split yet.
+     */
+    private String[] lines;
+
+    /**
+     * The response header values, keyed by case-insensitive header name, or
+     * null if the headers have not been parsed yet.
+     */
+    private Map<String, List<String>> headers;
+
+    /**
+     * The cookies returned by the server, or null if the headers have not
+     * been parsed yet.
+     */
+    private Cookie[] cookies;
+
+    /**
+     * The first cookie of each name.
+     */
+    private Map<String, Cookie> cookiesByName;
+
+    /**
+     * The first cookie of each name, keyed by case-insensitive name.
+     */
+    private Map<String, Cookie> cookiesByNameIgnoreCase;
+
     /**
      * @param theRequest the request data that were used to open the
      *        connection to the server.
@@ -125,36 +157,33 @@ public class WebResponse
      */
     public String[] getTextAsArray()
     {
-        Vector lines = new Vector();
-
-        try
+        // Split the content only once, callers get their own copy
+        if (this.lines == null)
         {
-            // Read content first
-            if (this.content == null)
+            List<String> list = new ArrayList<String>();
+
+            try
             {
-                getText();
-            }
+                BufferedReader input = new BufferedReader(
+                    new StringReader(getText()));
+                String str;
 
-            BufferedReader input = new BufferedReader(
-                new StringReader(this.content));
-            String str;
+                while (null != (str = input.readLine()))
+                {
+                    list.add(str);
+                }
 
-            while (null != (str = input.readLine()))
+                input.close();
+            }
+            catch (IOException e)
             {
-                lines.addElement(str);
+                throw new ChainedRuntimeException(e);
             }
 
-            input.close();
-        }
-        catch (IOException e)
-        {
-            throw new ChainedRuntimeException(e);
+            this.lines = list.toArray(new String[list.size()]);
         }
 
-        // Dummy variable to explicitely tell the object type to copy.
-        String[] dummy = new String[lines.size()];
-
-        return (String[]) (lines.toArray(dummy));
+        return this.lines.clone();
     }
 
     /**
@@ -181,21 +210,8 @@ public class WebResponse
      */
     public Cookie getCookie(String theName)
     {
-        Cookie result = null;
-
-        Cookie[] cookies = getCookies();
-
-        for (int i = 0; i < cookies.length; i++)
-        {
-            if (cookies[i].getName().equals(theName))
-            {
-                result = cookies[i];
-
-                break;
-            }
-        }
-
-        return result;
+        parseHeaders();
+        return this.cookiesByName.get(theName);
     }
 
     /**
@@ -208,79 +224,90 @@ public class WebResponse
      */
     public Cookie getCookieIgnoreCase(String theName)
     {
-        Cookie result = null;
-
-        Cookie[] cookies = getCookies();
+        parseHeaders();
+        return this.cookiesByNameIgnoreCase.get(theName);
+    }
 
-        for (int i = 0; i < cookies.length; i++)
-        {
-            if (cookies[i].getName().equalsIgnoreCase(theName))
-            {
-                result = cookies[i];
+    /**
+     * @return the cookies returned by the server
+     */
+    public Cookie[] getCookies()
+    {
+        parseHeaders();
+        return this.cookies.clone();
+    }
 
-                break;
-            }
-        }
+    /**
+     * Return the first value of the specified response header or null if
+     * the server did not return it.
+     *
+     * @param theName the header name (case-insensitive)
+     * @return the first header value or null if not found
+     */
+    public String getHeader(String theName)
+    {
+        parseHeaders();
+        List<String> values = this.headers.get(theName);
+        return (values == null) ? null : values.get(0);
+    }
 
-        return result;
+    /**
+     * @param theName the header name (case-insensitive)
+     * @return the values of the specified response header, in the order
+     *         they were returned by the server (empty if not found)
+     */
+    public String[] getHeaders(String theName)
+    {
+        parseHeaders();
+        List<String> values = this.headers.get(theName);
+        return (values == null) ? new String[0]
+            : values.toArray(new String[values.size()]);
     }
 
     /**
-     * @return the cookies returned by the server
+     * Reads the response headers and parses the returned cookies. This is
+     * only done the first time headers or cookies are requested.
      */
-    public Cookie[] getCookies()
+    private void parseHeaders()
     {
-        Cookie[] returnCookies = null;
+        if (this.headers != null)
+        {
+            return;
+        }
+
+        Map<String, List<String>> headerMap =
+            new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+        List<Cookie> cookieList = new ArrayList<Cookie>();
+        CookieSpec cookieSpec = CookiePolicy.getDefaultSpec();
 
         // There can be several headers named "Set-Cookie", so loop through
         // all the headers, looking for cookies
         String headerName = this.connection.getHeaderFieldKey(0);
         String headerValue = this.connection.getHeaderField(0);
 
-        Vector cookieVector = new Vector();
-        CookieSpec cookieSpec = CookiePolicy.getDefaultSpec();
-
         for (int i = 1; (headerName != null) || (headerValue != null); i++)
         {
-            LOGGER.debug("Header name  = [" + headerName + "]");
-            LOGGER.debug("Header value = [" + headerValue + "]");
+            if (LOGGER.isDebugEnabled())
+            {
+                LOGGER.debug("Header name  = [" + headerName + "]");
+                LOGGER.debug("Header value = [" + headerValue + "]");
+            }
 
-            if ((headerName != null)
-                && (headerName.toLowerCase().equals("set-cookie") 
-                || headerName.toLowerCase().equals("set-cookie2")))
+            if (headerName != null)
             {
-                // Parse the cookie definition
-                org.apache.commons.httpclient.Cookie[] cookies;
-                try
+                List<String> values = headerMap.get(headerName);
+                if (values == null)
                 {
-                    cookies = cookieSpec.parse(
-                        CookieUtil.getCookieDomain(getWebRequest(), 
-                            getConnection().getURL().getHost()), 
-                        CookieUtil.getCookiePort(getWebRequest(), 
-                            getConnection().getURL().getPort()), 
-                        CookieUtil.getCookiePath(getWebRequest(), 
-                            getConnection().getURL().getFile()),
-                        false, new Header(headerName, headerValue));
-                }
-                catch (HttpException e)
-                {
-                    throw new ChainedRuntimeException(
-                        "Error parsing cookies", e);
+                    values = new ArrayList<String>(1);
+                    headerMap.put(headerName, values);
                 }
+                values.add(headerValue);
 
-                // Transform the HttpClient cookies into Cactus cookies and
-                // add them to the cookieVector vector
-                for (int j = 0; j < cookies.length; j++)
+                if (headerName.equalsIgnoreCase("set-cookie") 
+                    || headerName.equalsIgnoreCase("set-cookie2"))
                 {
-                    Cookie cookie = new Cookie(cookies[j].getDomain(), 
-                        cookies[j].getName(), cookies[j].getValue());
-
-                    cookie.setComment(cookies[j].getComment());
-                    cookie.setExpiryDate(cookies[j].getExpiryDate());
-                    cookie.setPath(cookies[j].getPath());
-                    cookie.setSecure(cookies[j].getSecure());
-
-                    cookieVector.addElement(cookie);
+                    parseCookies(cookieSpec, headerName, headerValue, 
+                        cookieList);
                 }
             }
 
@@ -288,10 +315,70 @@ public class WebResponse
             headerValue = this.connection.getHeaderField(i);
         }
 
-        returnCookies = new Cookie[cookieVector.size()];
-        cookieVector.copyInto(returnCookies);
+        Map<String, Cookie> byName = new HashMap<String, Cookie>();
+        Map<String, Cookie> byNameIgnoreCase =
+            new TreeMap<String, Cookie>(String.CASE_INSENSITIVE_ORDER);
+        for (Cookie cookie : cookieList)
+        {
+            if (!byName.containsKey(cookie.getName()))
+            {
+                byName.put(cookie.getName(), cookie);
+            }
+            if (!byNameIgnoreCase.containsKey(cookie.getName()))
+            {
+                byNameIgnoreCase.put(cookie.getName(), cookie);
+            }
+        }
+
+        this.cookies = cookieList.toArray(new Cookie[cookieList.size()]);
+        this.cookiesByName = byName;
+        this.cookiesByNameIgnoreCase = byNameIgnoreCase;
+        this.headers = headerMap;
+    }
 
-        return returnCookies;
+    /**
+     * Parses the cookies of a <code>Set-Cookie</code> header.
+     *
+     * @param theCookieSpec the specification used to parse the cookies
+     * @param theHeaderName the header name
+     * @param theHeaderValue the header value
+     * @param theCookies the list to which the parsed cookies are added
+     */
+    private void parseCookies(CookieSpec theCookieSpec, String theHeaderName,
+        String theHeaderValue, List<Cookie> theCookies)
+    {
+        // Parse the cookie definition
+        org.apache.commons.httpclient.Cookie[] parsedCookies;
+        try
+        {
+            parsedCookies = theCookieSpec.parse(
+                CookieUtil.getCookieDomain(getWebRequest(), 
+                    getConnection().getURL().getHost()), 
+                CookieUtil.getCookiePort(getWebRequest(), 
+                    getConnection().getURL().getPort()), 
+                CookieUtil.getCookiePath(getWebRequest(), 
+                    getConnection().getURL().getFile()),
+                false, new Header(theHeaderName, theHeaderValue));
+        }
+        catch (HttpException e)
+        {
+            throw new ChainedRuntimeException(
+                "Error parsing cookies", e);
+        }
+
+        // Transform the HttpClient cookies into Cactus cookies
+        for (int j = 0; j < parsedCookies.length; j++)
+        {
+            Cookie cookie = new Cookie(parsedCookies[j].getDomain(), 
+                parsedCookies[j].getName(), parsedCookies[j].getValue());
+
+            cookie.setComment(parsedCookies[j].getComment());
+            cookie.setExpiryDate(parsedCookies[j].getExpiryDate());
+            cookie.setPath(parsedCookies[j].getPath());
+            cookie.setSecure(parsedCookies[j].getSecure());
+
+            theCookies.add(cookie);
+        }
     }
 
     /**
@@ -34,9 +34,11 @@ import org.apache.commons.httpclient.HttpState;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Vector;
 
 /**
  * Form-based authentication implementation. An instance of this class
@@ -47,6 +49,14 @@ import java.net.URL;
  * cookie for the next request. The second time it is called, it simply
  * addes the session cookie for the next request.
  * 
+ * <p>
+ *   The session cookie is also shared, JVM-wide, with the other instances
+ *   authenticating the same user against the same security URL, so that
+ *   tests creating their own instance do not log in again. A shared session
+ *   is not checked before being used: when the server rejects it, the
+ *   request is sent again after a new login.
+ * </p>
+ * 
  * @since 1.5
  *
  * @version $Id: FormAuthentication.java 238991 2004-05-22 11:34:50Z vmassol $
@@ -86,6 +96,25 @@ public class FormAuthentication extends AbstractAuthentication
      * security URL. 
      */
     private WebRequest securityRequest = new WebRequestImpl();
+
+    /**
+     * Whether the session cookie is shared with the other instances
+     * authenticating the same user.
+     */
+    private boolean isSessionShared = true;
+
+    /**
+     * The key of the session cookie in the shared sessions, or null if the
+     * session cookie has not been shared.
+     */
+    private String sessionKey;
+
+    /**
+     * Whether the session cookie has been taken from the shared sessions
+     * rather than obtained by a login of this instance, and has not been
+     * accepted by the server yet.
+     */
+    private boolean isSessionReused;
       
     /**
      * @param theName user name of the Credential
@@ -103,6 +132,18 @@ public class FormAuthentication extends AbstractAuthentication
     public void configure(HttpState theState, HttpMethod theMethod,
         WebRequest theRequest, Configuration theConfiguration)
     {
+        // Reuse a session shared by another instance, if any
+        if ((this.jsessionCookie == null) && this.isSessionShared)
+        {
+            String key = getSessionKey(theConfiguration);
+            this.jsessionCookie = FormSessionCache.get(key);
+            if (this.jsessionCookie != null)
+            {
+                this.sessionKey = key;
+                this.isSessionReused = true;
+            }
+        }
+
         // Only authenticate the first time this instance is used.
         if (this.jsessionCookie == null)
         {
@@ -116,6 +157,134 @@ public class FormAuthentication extends AbstractAuthentication
         }
     }
 
+    /**
+     * @return true if the session cookie has been taken from the sessions
+     *         shared by other instances and has not been accepted by the
+     *         server yet, false if it has been obtained by a login of this
+     *         instance or if there is none
+     */
+    public boolean isSessionReused()
+    {
+        return this.isSessionReused;
+    }
+
+    /**
+     * Checks the response to the first request sent with a session taken
+     * from the shared sessions. If the server rejected the session, it is
+     * forgotten so that the request can be sent again after a new login.
+     * Otherwise the session is considered valid and the later responses are
+     * not checked, so that a test expecting a 401 or a new session is never
+     * run twice.
+     *
+     * @param theRequest the request that carried the session cookie
+     * @param theConnection the connection of the request
+     * @return true if the session has been rejected and forgotten
+     * @exception IOException if the response cannot be read
+     */
+    public boolean checkReusedSession(WebRequest theRequest,
+        HttpURLConnection theConnection) throws IOException
+    {
+        if (!this.isSessionReused)
+        {
+            return false;
+        }
+        if (isSessionRejected(theConnection))
+        {
+            resetSession(theRequest);
+            return true;
+        }
+        this.isSessionReused = false;
+        return false;
+    }
+
+    /**
+     * Tells whether the server rejected the session of a request, in which
+     * case the request was not processed and can be sent again after a new
+     * login. As default, the session is considered rejected if the response
+     * status code is 401 (Unauthorized), or if the response is a redirect
+     * (to the login page) that starts a new session. This is only asked for
+     * the first response to a session taken from the shared sessions (see
+     * {@link #checkReusedSession}), as the same responses are legitimate
+     * test results otherwise.
+     *
+     * @param theConnection the connection of a request authenticated with
+     *        this instance
+     * @return true if the session has been rejected
+     * @exception IOException if the response cannot be read
+     */
+    public boolean isSessionRejected(HttpURLConnection theConnection)
+        throws IOException
+    {
+        int status = theConnection.getResponseCode();
+        if (status == HttpURLConnection.HTTP_UNAUTHORIZED)
+        {
+            return true;
+        }
+        if ((status < HttpURLConnection.HTTP_MULT_CHOICE)
+            || (status >= HttpURLConnection.HTTP_BAD_REQUEST))
+        {
+            return false;
+        }
+        Cookie cookie = getCookie(theConnection, getSessionCookieName());
+        return (cookie != null) && (this.jsessionCookie != null)
+            && !cookie.getValue().equals(this.jsessionCookie.getValue());
+    }
+
+    /**
+     * Forgets the session of this instance, after it has been rejected by
+     * the server, so that the next request logs in again. The session is
+     * also removed from the shared sessions and from the given request.
+     *
+     * @param theRequest the request that carried the session cookie
+     */
+    public void resetSession(WebRequest theRequest)
+    {
+        if (this.jsessionCookie != null)
+        {
+            // Cookie#equals fails on cookies without path, such as the
+            // session cookie
+            Vector cookies = theRequest.getCookies();
+            for (int i = cookies.size() - 1; i >= 0; i--)
+            {
+                if (cookies.get(i) == this.jsessionCookie)
+                {
+                    cookies.remove(i);
+                }
+            }
+            if (this.sessionKey != null)
+            {
+                FormSessionCache.remove(this.sessionKey, this.jsessionCookie);
+            }
+        }
+        this.jsessionCookie = null;
+        this.sessionKey = null;
+        this.isSessionReused = false;
+    }
+
+    /**
+     * Sets whether the session cookie is shared, JVM-wide, with the other
+     * instances authenticating the same user against the same security URL.
+     * The default is to share it.
+     *
+     * @param isShared false to log in with this instance regardless of the
+     *        sessions of the other instances
+     */
+    public void setSessionShared(boolean isShared)
+    {
+        this.isSessionShared = isShared;
+    }
+
+    /**
+     * @param theConfiguration the Cactus configuration
+     * @return the key of the session of this instance in the shared
+     *         sessions
+     */
+    private String getSessionKey(Configuration theConfiguration)
+    {
+        return FormSessionCache.getKey(getSecurityCheckURL(theConfiguration),
+            getName(), getPassword());
+    }
+
     /**
      * @return the {@link WebRequest} that will be used to connect to the
      * security URL. It can be used to add additional HTTP parameters such
@@ -288,6 +457,7 @@ public class FormAuthentication extends AbstractAuthentication
         throws Exception
     {
         HttpURLConnection connection;
+        HttpClientConnectionHelper helper = null;
         String resource = null;
 
         try
@@ -296,8 +466,7 @@ public class FormAuthentication extends AbstractAuthentication
             WebConfiguration webConfig = (WebConfiguration) theConfiguration;
             resource = webConfig.getRedirectorURL(theRequest);
 
-            HttpClientConnectionHelper helper =
-                new HttpClientConnectionHelper(resource);
+            helper = new HttpClientConnectionHelper(resource);
 
             WebRequest request = getDummyRequest(webConfig);
             request.addCookie(this.jsessionCookie);
@@ -307,16 +476,37 @@ public class FormAuthentication extends AbstractAuthentication
         }
         catch (Throwable e)
         {
+            release(helper);
             throw new ChainedRuntimeException(
                 "Failed to connect to the secured redirector: " + resource, e);
         }
 
-        if (connection.getResponseCode() != 200)
+        try
         {
-            throw new Exception("Received a status code ["
-                + connection.getResponseCode()
-                + "] and was expecting 200");
+            if (connection.getResponseCode() != 200)
+            {
+                throw new Exception("Received a status code ["
+                    + connection.getResponseCode()
+                    + "] and was expecting 200");
+            }
+        }
+        finally
+        {
+            release(helper);
+        }
+    }
 
+    /**
+     * Releases the HTTP connection used by a helper, as the response bodies
+     * of the authentication requests are never read.
+     *
+     * @param theHelper the helper to release (can be null)
+     */
+    private void release(HttpClientConnectionHelper theHelper)
+    {
+        if (theHelper != null)
+        {
+            theHelper.release();
         }
     }
 
@@ -353,6 +543,7 @@ public class FormAuthentication extends AbstractAuthentication
         Configuration theConfiguration)
     {
         HttpURLConnection connection;
+        HttpClientConnectionHelper helper = null;
         String resource = null;
 
         try
@@ -361,8 +552,7 @@ public class FormAuthentication extends AbstractAuthentication
             WebConfiguration webConfig = (WebConfiguration) theConfiguration;
             resource = webConfig.getRedirectorURL(theRequest);
 
-            HttpClientConnectionHelper helper = 
-                new HttpClientConnectionHelper(resource);
+            helper = new HttpClientConnectionHelper(resource);
 
             WebRequest request = getDummyRequest(webConfig);
 
@@ -373,11 +563,19 @@ public class FormAuthentication extends AbstractAuthentication
         }
         catch (Throwable e)
         {
+            release(helper);
             throw new ChainedRuntimeException(
                 "Failed to connect to the secured redirector: " + resource, e);
         }
 
-        return getCookie(connection, getSessionCookieName());
+        try
+        {
+            return getCookie(connection, getSessionCookieName());
+        }
+        finally
+        {
+            release(helper);
+        }
     }
 
 
@@ -412,15 +610,16 @@ public class FormAuthentication extends AbstractAuthentication
     public void authenticate(WebRequest theRequest,
         Configuration theConfiguration)
     {
+        this.isSessionReused = false;
         this.jsessionCookie = getSecureSessionIdCookie(theRequest,
             theConfiguration);
     
+        HttpClientConnectionHelper helper = null;
         try
         {
             // Create a helper that will connect to the security check URL.
-            HttpClientConnectionHelper helper = 
-                new HttpClientConnectionHelper(
-                    getSecurityCheckURL(theConfiguration).toString());
+            helper = new HttpClientConnectionHelper(
+                getSecurityCheckURL(theConfiguration).toString());
 
             // Configure a web request with the JSESSIONID cookie,
             // the username and the password.
@@ -437,10 +636,18 @@ public class FormAuthentication extends AbstractAuthentication
                 theConfiguration);
 
             checkAuthResponse(connection);        
+            release(helper);
             checkPostAuthRequest(theRequest, theConfiguration);
+
+            if (this.isSessionShared && (this.jsessionCookie != null))
+            {
+                this.sessionKey = getSessionKey(theConfiguration);
+                FormSessionCache.put(this.sessionKey, this.jsessionCookie);
+            }
         }
         catch (Throwable e)
         {
+            release(helper);
             this.jsessionCookie = null;
             throw new ChainedRuntimeException(
                 "Failed to authenticate the principal", e);
@@ -0,0 +1,142 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.client.authentication;
+
+import org.apache.cactus.Cookie;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JVM-wide cache of the session cookies obtained by form-based
+ * authentication, so that tests using distinct {@link FormAuthentication}
+ * instances for the same user log in only once. Sessions are keyed by
+ * security check URL, user name and a hash of the password.
+ *
+ * @version $Id$
+ */
+final class FormSessionCache
+{
+    /**
+     * The session cookies, keyed by session key.
+     */
+    private static Map<String, Cookie> sessions =
+        new ConcurrentHashMap<String, Cookie>();
+
+    /**
+     * Prevent instantiation.
+     */
+    private FormSessionCache()
+    {
+    }
+
+    /**
+     * @param theKey the session key
+     * @return the cached session cookie or null if there is none
+     */
+    static Cookie get(String theKey)
+    {
+        return sessions.get(theKey);
+    }
+
+    /**
+     * @param theKey the session key
+     * @param theCookie the session cookie to cache
+     */
+    static void put(String theKey, Cookie theCookie)
+    {
+        sessions.put(theKey, theCookie);
+    }
+
+    /**
+     * Removes a session cookie, unless it has already been replaced by
+     * another login. Cookies are compared by value as {@link Cookie#equals}
+     * ignores it.
+     *
+     * @param theKey the session key
+     * @param theCookie the session cookie to remove
+     */
+    static void remove(String theKey, Cookie theCookie)
+    {
+        Cookie current = sessions.get(theKey);
+        if ((current != null)
+            && current.getValue().equals(theCookie.getValue()))
+        {
+            sessions.remove(theKey, current);
+        }
+    }
+
+    /**
+     * Removes all the session cookies.
+     */
+    static void clear()
+    {
+        sessions.clear();
+    }
+
+    /**
+     * Computes the key of a session. The password is only kept as a hash.
+     *
+     * @param theSecurityCheckURL the URL the credentials are posted to
+     * @param theName the user name
+     * @param thePassword the user password
+     * @return the session key
+     */
+    static String getKey(URL theSecurityCheckURL, String theName,
+        String thePassword)
+    {
+        return theSecurityCheckURL + "|" + theName + "|"
+            + hash(thePassword);
+    }
+
+    /**
+     * @param theValue the value to hash (can be null)
+     * @return the hexadecimal SHA-256 hash of the value
+     */
+    private static String hash(String theValue)
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = digest.digest(
+                String.valueOf(theValue).getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < bytes.length; i++)
+            {
+                hex.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(bytes[i] & 0xF, 16));
+            }
+            return hex.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException("SHA-256 is not supported");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new IllegalStateException("UTF-8 is not supported");
+        }
+    }
+}
@@ -176,7 +176,7 @@ public abstract class AbstractCactusTestCase extends TestCase
     /**
      * @return the client test case caller
      */
-    private ClientTestCaseCaller getClientCaller()
+    ClientTestCaseCaller getClientCaller()
     {
         return this.clientCaller;
     }
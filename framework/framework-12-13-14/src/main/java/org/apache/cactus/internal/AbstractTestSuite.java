@@ -23,7 +23,9 @@ package org.apache.cactus.internal;
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestResult;
+import org.apache.cactus.Isolated;
 import org.apache.cactus.ServletTestCase;
+import org.apache.cactus.internal.configuration.ConfigurationInitializer;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -32,7 +34,13 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Test Suite that wraps all the tests of the suite in Cactus Test Case 
@@ -43,11 +51,61 @@ import java.util.Vector;
  */
 public abstract class AbstractTestSuite implements Test
 {
+    /**
+     * Name of the Cactus property that defines the number of threads used to
+     * run the tests of a suite, unless it has been set on the suite itself.
+     * Tests are run one after the other if it is not defined.
+     */
+    public static final String CACTUS_SUITE_THREAD_COUNT_PROPERTY = 
+        "cactus.suite.threadCount";
+
+    /**
+     * Name of the Cactus property that defines the maximum number of tests
+     * of a suite run in a single request to the server side, unless it has
+     * been set on the suite itself. Tests are not batched if it is not
+     * defined.
+     */
+    public static final String CACTUS_SUITE_BATCH_SIZE_PROPERTY = 
+        "cactus.suite.batchSize";
+
+    /**
+     * Name of the Cactus property that defines the maximum number of tests 
+     * of a suite kept in flight when the tests are run one after the other,
+     * unless it has been set on the suite itself. Tests are not pipelined if
+     * it is not defined.
+     */
+    public static final String CACTUS_SUITE_PIPELINE_DEPTH_PROPERTY = 
+        "cactus.suite.pipelineDepth";
+
     /**
      * Lists of tests to execute (Test objects).
      */
     private Vector tests = new Vector(10);
 
+    /**
+     * Tests that must not run concurrently with other tests (see 
+     * {@link Isolated}).
+     */
+    private Vector isolatedTests = new Vector();
+
+    /**
+     * Number of threads used to run the tests (0 if it has not been set on
+     * the suite).
+     */
+    private int threadCount;
+
+    /**
+     * Maximum number of tests run in a single request to the server side
+     * (0 if it has not been set on the suite).
+     */
+    private int batchSize;
+
+    /**
+     * Maximum number of tests kept in flight (0 if it has not been set on the
+     * suite).
+     */
+    private int pipelineDepth;
+
     /**
      * Name of the current test suite.
      */
@@ -120,6 +178,106 @@ public abstract class AbstractTestSuite implements Test
     protected void addTest(Test theTest)
     {
         this.tests.addElement(theTest);
+
+        if (isIsolated(theTest))
+        {
+            this.isolatedTests.addElement(theTest);
+        }
+    }
+
+    /**
+     * Sets the number of threads used to run the tests of this suite (and of
+     * the Cactus suites it contains). Tests marked as {@link Isolated} are
+     * run one after the other once all the other tests have finished.
+     *
+     * @param theThreadCount the number of threads, 1 to run the tests one
+     *        after the other
+     */
+    protected void setThreadCount(int theThreadCount)
+    {
+        this.threadCount = theThreadCount;
+    }
+
+    /**
+     * @return the number of threads used to run the tests of this suite,
+     *         either set on the suite or defined by the 
+     *         {@link #CACTUS_SUITE_THREAD_COUNT_PROPERTY} property
+     */
+    protected int getThreadCount()
+    {
+        if (this.threadCount > 0)
+        {
+            return this.threadCount;
+        }
+
+        ConfigurationInitializer.initialize();
+        return Integer.getInteger(CACTUS_SUITE_THREAD_COUNT_PROPERTY, 1)
+            .intValue();
+    }
+
+    /**
+     * Sets the maximum number of tests of this suite (and of the Cactus
+     * suites it contains) run in a single request to the server side. Only
+     * tests without any begin or end method can be batched. Batched tests
+     * share the same request and response, thus they must neither read the
+     * request body nor write to the response.
+     *
+     * @param theBatchSize the maximum number of tests in a batch, 1 to run
+     *        each test in a request of its own
+     */
+    protected void setBatchSize(int theBatchSize)
+    {
+        this.batchSize = theBatchSize;
+    }
+
+    /**
+     * @return the maximum number of tests of this suite run in a single 
+     *         request, either set on the suite or defined by the 
+     *         {@link #CACTUS_SUITE_BATCH_SIZE_PROPERTY} property
+     */
+    protected int getBatchSize()
+    {
+        if (this.batchSize > 0)
+        {
+            return this.batchSize;
+        }
+
+        ConfigurationInitializer.initialize();
+        return Integer.getInteger(CACTUS_SUITE_BATCH_SIZE_PROPERTY, 1)
+            .intValue();
+    }
+
+    /**
+     * Sets the maximum number of tests of this suite (and of the Cactus
+     * suites it contains) kept in flight when the tests are run one after 
+     * the other: the begin methods of the next tests are executed while the
+     * current test runs on the server side. Thus the begin methods of a test 
+     * may run before the end methods of the previous tests. Pipelining does
+     * not apply when the tests are run by several threads.
+     *
+     * @param thePipelineDepth the maximum number of tests in flight, 1 to
+     *        wait for each test to finish before starting the next one
+     */
+    protected void setPipelineDepth(int thePipelineDepth)
+    {
+        this.pipelineDepth = thePipelineDepth;
+    }
+
+    /**
+     * @return the maximum number of tests of this suite kept in flight,
+     *         either set on the suite or defined by the 
+     *         {@link #CACTUS_SUITE_PIPELINE_DEPTH_PROPERTY} property
+     */
+    protected int getPipelineDepth()
+    {
+        if (this.pipelineDepth > 0)
+        {
+            return this.pipelineDepth;
+        }
+
+        ConfigurationInitializer.initialize();
+        return Integer.getInteger(CACTUS_SUITE_PIPELINE_DEPTH_PROPERTY, 1)
+            .intValue();
     }
 
     /**
@@ -165,7 +323,16 @@ public abstract class AbstractTestSuite implements Test
                     constructorInstance = theConstructor.newInstance(
                         new Object[] {name});
                 }
-                addTest(new ServletTestCase(name, (Test) constructorInstance));
+                Test test = new ServletTestCase(name, 
+                    (Test) constructorInstance);
+                addTest(test);
+
+                if (theMethod.isAnnotationPresent(Isolated.class)
+                    || theConstructor.getDeclaringClass().isAnnotationPresent(
+                        Isolated.class))
+                {
+                    this.isolatedTests.addElement(test);
+                }
             }
             catch (InstantiationException e)
             {
@@ -251,16 +418,200 @@ public abstract class AbstractTestSuite implements Test
      */
     public void run(TestResult theResult)
     {
-        for (Enumeration e = tests(); e.hasMoreElements();)
+        int threads = getThreadCount();
+        int maxBatchSize = getBatchSize();
+        int depth = getPipelineDepth();
+
+        if ((threads <= 1) && (maxBatchSize <= 1) && (depth <= 1))
+        {
+            runSequentially(tests(), theResult);
+        }
+        else
+        {
+            Vector allTests = new Vector();
+            Set<Test> isolatedTests = new HashSet<Test>();
+            collectTests(allTests, isolatedTests);
+
+            if (threads > 1)
+            {
+                // Isolated tests are deferred until all the other tests 
+                // have finished
+                Vector parallelTests = new Vector();
+                Vector sequentialTests = new Vector();
+                for (Enumeration e = allTests.elements(); e.hasMoreElements();)
+                {
+                    Test test = (Test) e.nextElement();
+                    if (isolatedTests.contains(test))
+                    {
+                        sequentialTests.addElement(test);
+                    }
+                    else
+                    {
+                        parallelTests.addElement(test);
+                    }
+                }
+
+                if (maxBatchSize > 1)
+                {
+                    parallelTests = BatchTest.createBatches(parallelTests, 
+                        maxBatchSize, isolatedTests);
+                }
+                runInParallel(parallelTests, threads, theResult);
+                runSequentially(sequentialTests.elements(), theResult);
+            }
+            else
+            {
+                // Isolated tests keep their place but are neither batched 
+                // nor pipelined so that they keep running on their own
+                if (maxBatchSize > 1)
+                {
+                    allTests = BatchTest.createBatches(allTests, 
+                        maxBatchSize, isolatedTests);
+                }
+                if (depth > 1)
+                {
+                    allTests = PipelinedTest.createPipelines(allTests, 
+                        depth, isolatedTests);
+                }
+                runSequentially(allTests.elements(), theResult);
+            }
+        }
+    }
+
+    /**
+     * Runs tests one after the other in the current thread.
+     *
+     * @param theTests the tests to run
+     * @param theResult the test result to fill
+     */
+    private void runSequentially(Enumeration theTests, TestResult theResult)
+    {
+        while (theTests.hasMoreElements())
         {
             if (theResult.shouldStop())
             {
                 break;
             }
-            Test test = (Test) e.nextElement();
+            Test test = (Test) theTests.nextElement();
             runTest(test, theResult);
         }
     }
+
+    /**
+     * Runs tests concurrently using a pool of threads and waits for all of 
+     * them to finish.
+     *
+     * @param theTests the tests to run
+     * @param theThreadCount the number of threads to use
+     * @param theResult the test result to fill
+     */
+    private void runInParallel(Vector theTests, int theThreadCount, 
+        TestResult theResult)
+    {
+        final String threadPrefix = "Cactus test runner [" + getName() + "]-";
+        ExecutorService executor = Executors.newFixedThreadPool(
+            theThreadCount, new ThreadFactory()
+            {
+                private int count;
+
+                public synchronized Thread newThread(Runnable theRunnable)
+                {
+                    Thread thread = 
+                        new Thread(theRunnable, threadPrefix + (++count));
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+        final TestResult result = new SynchronizedTestResult(theResult);
+        for (Enumeration e = theTests.elements(); e.hasMoreElements();)
+        {
+            final Test test = (Test) e.nextElement();
+            executor.execute(new Runnable()
+            {
+                public void run()
+                {
+                    if (!result.shouldStop())
+                    {
+                        runTest(test, result);
+                    }
+                }
+            });
+        }
+
+        executor.shutdown();
+        try
+        {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS))
+            {
+                // Keep waiting for the running tests
+            }
+        }
+        catch (InterruptedException e)
+        {
+            executor.shutdownNow();
+            theResult.stop();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Collects the tests of this suite and of the Cactus suites it contains,
+     * in declaration order, and the tests marked as {@link Isolated}.
+     *
+     * @param theTests the list to which all the tests are added
+     * @param theIsolatedTests the set to which the isolated tests are added
+     */
+    private void collectTests(Vector theTests, Set<Test> theIsolatedTests)
+    {
+        for (Enumeration e = tests(); e.hasMoreElements();)
+        {
+            Test test = (Test) e.nextElement();
+            if (test instanceof AbstractTestSuite)
+            {
+                ((AbstractTestSuite) test).collectTests(theTests, 
+                    theIsolatedTests);
+            }
+            else
+            {
+                if (this.isolatedTests.contains(test))
+                {
+                    theIsolatedTests.add(test);
+                }
+                theTests.addElement(test);
+            }
+        }
+    }
+
+    /**
+     * @param theTest the test to check
+     * @return true if the test class or the test method is marked as 
+     *         {@link Isolated}
+     */
+    private boolean isIsolated(Test theTest)
+    {
+        if (theTest.getClass().isAnnotationPresent(Isolated.class))
+        {
+            return true;
+        }
+
+        if ((theTest instanceof TestCase) 
+            && (((TestCase) theTest).getName() != null))
+        {
+            try
+            {
+                return theTest.getClass().getMethod(
+                    ((TestCase) theTest).getName(), new Class[0])
+                    .isAnnotationPresent(Isolated.class);
+            }
+            catch (NoSuchMethodException e)
+            {
+                return false;
+            }
+        }
+
+        return false;
+    }
     
     /**
      * {@inheritDoc}
@@ -0,0 +1,246 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.Test;
+import junit.framework.TestResult;
+import org.apache.cactus.internal.client.ClientTestCaseCaller;
+import org.apache.cactus.internal.client.connector.http.DefaultHttpClient;
+import org.apache.cactus.internal.client.connector.http.HttpProtocolHandler;
+
+import java.util.Enumeration;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * Runs several Cactus tests in a single request to the server side, using 
+ * the Batch Test service of the redirector, and reports the result of each
+ * test as if it had been run on its own.
+ *
+ * @version $Id$
+ */
+public class BatchTest implements Test
+{
+    /**
+     * The Cactus tests to run.
+     */
+    private AbstractCactusTestCase[] tests;
+
+    /**
+     * The protocol handler used to call the server side.
+     */
+    private HttpProtocolHandler protocolHandler;
+
+    /**
+     * @param theTests the Cactus tests to run, all calling the same 
+     *        redirector
+     * @param theProtocolHandler the protocol handler used to call the 
+     *        server side
+     */
+    public BatchTest(AbstractCactusTestCase[] theTests, 
+        HttpProtocolHandler theProtocolHandler)
+    {
+        this.tests = theTests;
+        this.protocolHandler = theProtocolHandler;
+    }
+
+    /**
+     * Groups the consecutive tests that can be run together in batches of 
+     * at most the given size. A batch ends when it is full, when the next
+     * test calls another redirector or when the next test cannot be batched.
+     * Tests that cannot be batched and isolated tests are left as is, so 
+     * that all the tests still run in the given order.
+     *
+     * @param theTests the tests to group
+     * @param theBatchSize the maximum number of tests in a batch
+     * @param theIsolatedTests the tests that must run on their own
+     * @return the tests that cannot be batched and the batches, in the 
+     *         order of the given tests
+     */
+    public static Vector createBatches(Vector theTests, int theBatchSize,
+        Set<Test> theIsolatedTests)
+    {
+        Vector result = new Vector();
+        Vector batch = new Vector();
+        HttpProtocolHandler batchHandler = null;
+
+        for (Enumeration e = theTests.elements(); e.hasMoreElements();)
+        {
+            Test test = (Test) e.nextElement();
+            HttpProtocolHandler handler = null;
+            if (!theIsolatedTests.contains(test))
+            {
+                handler = getBatchHandler(test);
+            }
+
+            if ((batchHandler != null) && ((handler == null)
+                || !handler.getRedirectorURL().equals(
+                    batchHandler.getRedirectorURL())))
+            {
+                addBatch(result, batch, batchHandler);
+                batchHandler = null;
+            }
+
+            if (handler == null)
+            {
+                result.addElement(test);
+                continue;
+            }
+
+            if (batchHandler == null)
+            {
+                batchHandler = handler;
+            }
+            batch.addElement(test);
+            if (batch.size() >= theBatchSize)
+            {
+                addBatch(result, batch, batchHandler);
+                batchHandler = null;
+            }
+        }
+
+        if (batchHandler != null)
+        {
+            addBatch(result, batch, batchHandler);
+        }
+
+        return result;
+    }
+
+    /**
+     * Adds a batch made of the given tests to the result and empties the
+     * list of tests.
+     *
+     * @param theResult the tests and batches created so far
+     * @param theBatch the tests of the batch, all calling the same redirector
+     * @param theHandler the protocol handler of the first test of the batch
+     */
+    private static void addBatch(Vector theResult, Vector theBatch, 
+        HttpProtocolHandler theHandler)
+    {
+        AbstractCactusTestCase[] batchTests = 
+            new AbstractCactusTestCase[theBatch.size()];
+        theBatch.copyInto(batchTests);
+        theResult.addElement(new BatchTest(batchTests, theHandler));
+        theBatch.removeAllElements();
+    }
+
+    /**
+     * @param theTest the test to check
+     * @return the HTTP protocol handler of the test if it can be run in a
+     *         batch, null otherwise
+     */
+    private static HttpProtocolHandler getBatchHandler(Test theTest)
+    {
+        if (!(theTest instanceof AbstractCactusTestCase))
+        {
+            return null;
+        }
+
+        ClientTestCaseCaller caller = 
+            ((AbstractCactusTestCase) theTest).getClientCaller();
+        if (!(caller.getProtocolHandler() instanceof HttpProtocolHandler)
+            || !caller.isBatchable())
+        {
+            return null;
+        }
+
+        return (HttpProtocolHandler) caller.getProtocolHandler();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see Test#countTestCases()
+     */
+    public int countTestCases()
+    {
+        return this.tests.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see Test#run(TestResult)
+     */
+    public void run(TestResult theResult)
+    {
+        Test[] delegatedTests = new Test[this.tests.length];
+        Test[] wrappedTests = new Test[this.tests.length];
+        for (int i = 0; i < this.tests.length; i++)
+        {
+            ClientTestCaseCaller caller = this.tests[i].getClientCaller();
+            delegatedTests[i] = caller.getDelegatedTest();
+            wrappedTests[i] = caller.getWrappedTest();
+        }
+
+        WebTestResult[] results = null;
+        Throwable batchError = null;
+        try
+        {
+            results = this.protocolHandler.runBatchTest(delegatedTests, 
+                wrappedTests);
+            if (results.length != this.tests.length)
+            {
+                throw new IllegalStateException("Got [" + results.length
+                    + "] results for a batch of [" + this.tests.length
+                    + "] tests");
+            }
+        }
+        catch (Throwable t)
+        {
+            batchError = t;
+        }
+
+        for (int i = 0; i < this.tests.length; i++)
+        {
+            theResult.startTest(this.tests[i]);
+
+            if (batchError != null)
+            {
+                theResult.addError(this.tests[i], batchError);
+            }
+            else if (results[i].hasException())
+            {
+                Throwable error = DefaultHttpClient.createException(results[i]);
+                if (error instanceof AssertionFailedError)
+                {
+                    theResult.addFailure(this.tests[i], 
+                        (AssertionFailedError) error);
+                }
+                else
+                {
+                    theResult.addError(this.tests[i], error);
+                }
+            }
+
+            theResult.endTest(this.tests[i]);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see Object#toString()
+     */
+    public String toString()
+    {
+        return "Batch of " + this.tests.length + " tests";
+    }
+}
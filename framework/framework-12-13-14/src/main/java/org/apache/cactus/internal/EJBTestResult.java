@@ -21,6 +21,7 @@
 package org.apache.cactus.internal;
 
 import java.io.PrintWriter;
+import java.io.Serializable;
 import java.io.StringWriter;
 
 /**
@@ -28,7 +29,7 @@ import java.io.StringWriter;
  * 
  * @version $Id$
  */
-public class EJBTestResult 
+public class EJBTestResult implements Serializable
 {
     /**
      * Name of the exception class if an error occurred.
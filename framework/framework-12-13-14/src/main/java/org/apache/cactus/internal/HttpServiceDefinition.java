@@ -75,4 +75,28 @@ public interface HttpServiceDefinition
      * @see ServiceEnumeration
      */
     String SERVICE_NAME_PARAM = COMMAND_PREFIX + "Service";
+
+    /**
+     * Name of the parameter in the HTTP request that asks the redirector to
+     * return the test result in the response of the Call Test service
+     * instead of keeping it for the Get Test Result service.
+     */
+    String INLINE_RESULT_PARAM = COMMAND_PREFIX + "InlineResult";
+
+    /**
+     * Name of the parameter in the HTTP request that tells the redirector
+     * which version of the compact test result format (see 
+     * {@link WebTestResultCodec}) the client side understands. Test results
+     * are returned as XML if it is missing or if the redirector does not
+     * support this version.
+     */
+    String RESULT_FORMAT_PARAM = COMMAND_PREFIX + "ResultFormat";
+
+    /**
+     * Name of the HTTP response header in which the redirector returns the
+     * URL-encoded test result when the client side has asked for it with
+     * {@link #INLINE_RESULT_PARAM}. The client side removes it from the
+     * response passed to the end methods.
+     */
+    String RESULT_HEADER = "X-Cactus-Result";
 }
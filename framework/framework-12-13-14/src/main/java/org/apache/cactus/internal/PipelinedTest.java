@@ -0,0 +1,216 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal;
+
+import junit.framework.Protectable;
+import junit.framework.Test;
+import junit.framework.TestResult;
+import org.apache.cactus.internal.client.ClientTestCaseCaller;
+import org.apache.cactus.internal.util.TestCaseImplementChecker;
+
+import java.util.Enumeration;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * Runs Cactus tests one after the other while keeping several of them in
+ * flight: the begin methods of the next tests are executed and their 
+ * requests are sent while the current test executes on the server side. 
+ * Results are still reported in order, one test at a time.
+ *
+ * @version $Id$
+ */
+public class PipelinedTest implements Test
+{
+    /**
+     * The Cactus tests to run.
+     */
+    private AbstractCactusTestCase[] tests;
+
+    /**
+     * Maximum number of tests in flight.
+     */
+    private int depth;
+
+    /**
+     * @param theTests the Cactus tests to run, all having an asynchronous 
+     *        protocol handler
+     * @param theDepth the maximum number of tests in flight
+     */
+    public PipelinedTest(AbstractCactusTestCase[] theTests, int theDepth)
+    {
+        this.tests = theTests;
+        this.depth = theDepth;
+    }
+
+    /**
+     * Groups each run of consecutive tests having an asynchronous protocol 
+     * handler in a pipeline. Other tests and isolated tests are left as is,
+     * so that no other test is in flight while they run.
+     *
+     * @param theTests the tests to group
+     * @param theDepth the maximum number of tests in flight
+     * @param theIsolatedTests the tests that must run on their own
+     * @return the tests and pipelines, in the original order
+     */
+    public static Vector createPipelines(Vector theTests, int theDepth,
+        Set<Test> theIsolatedTests)
+    {
+        Vector result = new Vector();
+        Vector pipeline = new Vector();
+
+        for (Enumeration e = theTests.elements(); e.hasMoreElements();)
+        {
+            Test test = (Test) e.nextElement();
+            if ((test instanceof AbstractCactusTestCase)
+                && !theIsolatedTests.contains(test)
+                && ((AbstractCactusTestCase) test).getClientCaller().isAsync())
+            {
+                pipeline.addElement(test);
+            }
+            else
+            {
+                addPipeline(result, pipeline, theDepth);
+                result.addElement(test);
+            }
+        }
+        addPipeline(result, pipeline, theDepth);
+
+        return result;
+    }
+
+    /**
+     * @param theTests the list to which to add the pipeline
+     * @param thePipeline the tests of the pipeline, emptied once added
+     * @param theDepth the maximum number of tests in flight
+     */
+    private static void addPipeline(Vector theTests, Vector thePipeline, 
+        int theDepth)
+    {
+        if (thePipeline.size() == 1)
+        {
+            theTests.addElement(thePipeline.elementAt(0));
+        }
+        else if (thePipeline.size() > 1)
+        {
+            AbstractCactusTestCase[] pipelineTests = 
+                new AbstractCactusTestCase[thePipeline.size()];
+            thePipeline.copyInto(pipelineTests);
+            theTests.addElement(new PipelinedTest(pipelineTests, theDepth));
+        }
+        thePipeline.removeAllElements();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see Test#countTestCases()
+     */
+    public int countTestCases()
+    {
+        return this.tests.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see Test#run(TestResult)
+     */
+    public void run(TestResult theResult)
+    {
+        Throwable[] startErrors = new Throwable[this.tests.length];
+        int started = 0;
+
+        for (int i = 0; i < this.tests.length; i++)
+        {
+            if (theResult.shouldStop())
+            {
+                // Let the tests already in flight finish
+                for (int j = i; j < started; j++)
+                {
+                    if (startErrors[j] == null)
+                    {
+                        this.tests[j].getClientCaller().abandonTest();
+                    }
+                }
+                break;
+            }
+
+            // Keep the pipeline full
+            while ((started < this.tests.length) 
+                && (started < i + this.depth))
+            {
+                startErrors[started] = start(this.tests[started]);
+                started++;
+            }
+
+            final ClientTestCaseCaller caller = 
+                this.tests[i].getClientCaller();
+            final Throwable startError = startErrors[i];
+
+            theResult.startTest(this.tests[i]);
+            theResult.runProtected(this.tests[i], new Protectable()
+            {
+                public void protect() throws Throwable
+                {
+                    if (startError != null)
+                    {
+                        throw startError;
+                    }
+                    caller.finishTest();
+                }
+            });
+            theResult.endTest(this.tests[i]);
+        }
+    }
+
+    /**
+     * Checks a test and starts it.
+     *
+     * @param theTest the test to start
+     * @return the error that prevented the test from starting or null if it
+     *         has been started
+     */
+    private Throwable start(AbstractCactusTestCase theTest)
+    {
+        ClientTestCaseCaller caller = theTest.getClientCaller();
+        try
+        {
+            TestCaseImplementChecker.checkTestName(theTest);
+            TestCaseImplementChecker.checkTestName(caller.getWrappedTest());
+
+            caller.runBareInit();
+            caller.startTest();
+            return null;
+        }
+        catch (Throwable t)
+        {
+            return t;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see Object#toString()
+     */
+    public String toString()
+    {
+        return "Pipeline of " + this.tests.length + " tests";
+    }
+}
@@ -76,6 +76,35 @@ public class RequestDirectives
             theService.toString());
     }
 
+    /**
+     * @param theId The unique id of the test, used by the redirector to
+     *              store and then return the test result.
+     */
+    public void setUniqueId(String theId)
+    {
+        addDirective(HttpServiceDefinition.TEST_ID_PARAM, theId);
+    }
+
+    /**
+     * @param isInlineResult A "boolean string" indicating
+     *                       whether or not the test result should be
+     *                       returned in the test response.
+     */
+    public void setInlineResult(String isInlineResult)
+    {
+        addDirective(HttpServiceDefinition.INLINE_RESULT_PARAM,
+            isInlineResult);
+    }
+
+    /**
+     * @param theVersion The version of the compact test result format that
+     *                   the client side understands.
+     */
+    public void setResultFormat(String theVersion)
+    {
+        addDirective(HttpServiceDefinition.RESULT_FORMAT_PARAM, theVersion);
+    }
+
     /**
      * @param isAutoSession A "boolean string" indicating
      *                       whether or not to use the 
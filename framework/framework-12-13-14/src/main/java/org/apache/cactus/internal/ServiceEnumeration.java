@@ -33,6 +33,13 @@ public final class ServiceEnumeration
     public static final ServiceEnumeration CALL_TEST_SERVICE = 
         new ServiceEnumeration("CALL_TEST");
 
+    /**
+     * Call several test methods in a row Service. The test results are
+     * returned in the HTTP response.
+     */
+    public static final ServiceEnumeration BATCH_TEST_SERVICE = 
+        new ServiceEnumeration("BATCH_TEST");
+
     /**
      * Get the previous test results Service.
      */
@@ -141,6 +148,10 @@ public final class ServiceEnumeration
         {
             return CALL_TEST_SERVICE;
         }
+        else if (BATCH_TEST_SERVICE.name.equals(theName))
+        {
+            return BATCH_TEST_SERVICE;
+        }
         else if (GET_RESULTS_SERVICE.name.equals(theName))
         {
             return GET_RESULTS_SERVICE;
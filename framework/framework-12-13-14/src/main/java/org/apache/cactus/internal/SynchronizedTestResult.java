@@ -0,0 +1,114 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.Test;
+import junit.framework.TestResult;
+
+/**
+ * Test result used to run a single test in a worker thread. All events are
+ * forwarded to the test result of the suite while holding its lock, so that
+ * the listeners registered on it are never called concurrently.
+ *
+ * @version $Id$
+ */
+public class SynchronizedTestResult extends TestResult
+{
+    /**
+     * The test result to which events are forwarded.
+     */
+    private TestResult target;
+
+    /**
+     * @param theTarget the test result to which events are forwarded
+     */
+    public SynchronizedTestResult(TestResult theTarget)
+    {
+        this.target = theTarget;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see TestResult#startTest(Test)
+     */
+    public void startTest(Test theTest)
+    {
+        synchronized (this.target)
+        {
+            this.target.startTest(theTest);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see TestResult#endTest(Test)
+     */
+    public void endTest(Test theTest)
+    {
+        synchronized (this.target)
+        {
+            this.target.endTest(theTest);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see TestResult#addError(Test, Throwable)
+     */
+    public void addError(Test theTest, Throwable theThrowable)
+    {
+        synchronized (this.target)
+        {
+            this.target.addError(theTest, theThrowable);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see TestResult#addFailure(Test, AssertionFailedError)
+     */
+    public void addFailure(Test theTest, AssertionFailedError theError)
+    {
+        synchronized (this.target)
+        {
+            this.target.addFailure(theTest, theError);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see TestResult#shouldStop()
+     */
+    public boolean shouldStop()
+    {
+        return this.target.shouldStop();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see TestResult#stop()
+     */
+    public void stop()
+    {
+        this.target.stop();
+    }
+}
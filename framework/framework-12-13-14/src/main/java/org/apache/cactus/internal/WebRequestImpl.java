@@ -217,36 +217,46 @@ public class WebRequestImpl extends BaseWebRequest
             new RequestDirectives(obtainSessionIdRequest);
         directives.setService(ServiceEnumeration.CREATE_SESSION_SERVICE);
 
-        HttpURLConnection resultConnection;
+        // Only the cookies are read, so the connection has to be released
+        // explicitly for it to be reused
+        Cookie cookie;
         try
         {
-            resultConnection =
-                helper.connect(obtainSessionIdRequest, getConfiguration());
-        }
-        catch (Throwable e)
-        {
-            throw new ChainedRuntimeException("Failed to connect to ["
-                + ((WebConfiguration) getConfiguration()).getRedirectorURL(this)
-                + "]", e);
-        }
+            HttpURLConnection resultConnection;
+            try
+            {
+                resultConnection =
+                    helper.connect(obtainSessionIdRequest, getConfiguration());
+            }
+            catch (Throwable e)
+            {
+                throw new ChainedRuntimeException("Failed to connect to ["
+                    + ((WebConfiguration) getConfiguration())
+                        .getRedirectorURL(this) + "]", e);
+            }
 
-        WebResponse response;
-        try
-        {
-            response = (WebResponse) new WebResponseObjectFactory(
-                resultConnection).getResponseObject(
-                    WebResponse.class.getName(),
-                    obtainSessionIdRequest);
+            WebResponse response;
+            try
+            {
+                response = (WebResponse) new WebResponseObjectFactory(
+                    resultConnection).getResponseObject(
+                        WebResponse.class.getName(),
+                        obtainSessionIdRequest);
+            }
+            catch (ClientException e)
+            {
+                throw new ChainedRuntimeException("Failed to connect to ["
+                    + ((WebConfiguration) getConfiguration())
+                        .getRedirectorURL(this) + "]", e);
+            }
+
+            cookie = response.getCookieIgnoreCase("jsessionid");
         }
-        catch (ClientException e)
+        finally
         {
-            throw new ChainedRuntimeException("Failed to connect to ["
-                + ((WebConfiguration) getConfiguration()).getRedirectorURL(this)
-                + "]", e);
+            helper.release();
         }
 
-        Cookie cookie = response.getCookieIgnoreCase("jsessionid");
-
         // TODO: Add a constructor to the Cookie class that takes a Cookie
         // as parameter.
 
@@ -38,6 +38,12 @@ public class WebTestResult implements Serializable
      */
     public static final String XML_ROOT_ELEMENT = "webresult";
 
+    /**
+     * Name of the XML tag enclosing the results of a batch of tests (see
+     * {@link #toXml()}).
+     */
+    public static final String XML_BATCH_ROOT_ELEMENT = "webresults";
+
     /**
      * Name of Exception XML tag (see {@link #toXml()}).
      */
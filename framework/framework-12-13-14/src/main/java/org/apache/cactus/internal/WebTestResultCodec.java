@@ -0,0 +1,210 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Compact binary representation of <code>WebTestResult</code> objects, used
+ * instead of the XML representation (see {@link WebTestResult#toXml()}) 
+ * when both the client side and the server side support it. Results are
+ * written to and read from the HTTP streams one at a time, without building
+ * an intermediate document.
+ *
+ * <p>A stream is made of a header (magic number and version) followed by
+ * any number of results, each preceded by a <code>true</code> marker, and
+ * ends with a <code>false</code> marker. Strings are written as their UTF-8
+ * bytes prefixed by their length (-1 for <code>null</code>).</p>
+ *
+ * @version $Id$
+ */
+public final class WebTestResultCodec
+{
+    /**
+     * Content type of the HTTP responses holding encoded results.
+     */
+    public static final String CONTENT_TYPE = "application/x-cactus-result";
+
+    /**
+     * Version of the format written by this codec.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Magic number starting each encoded stream.
+     */
+    private static final int MAGIC = 0xCAC7E501;
+
+    /**
+     * Prevent instantiation.
+     */
+    private WebTestResultCodec()
+    {
+    }
+
+    /**
+     * @param theContentType the content type of an HTTP response (can be
+     *        null)
+     * @return true if the HTTP response holds encoded results
+     */
+    public static boolean isEncoded(String theContentType)
+    {
+        return (theContentType != null)
+            && theContentType.startsWith(CONTENT_TYPE);
+    }
+
+    /**
+     * Writes the header of an encoded stream.
+     *
+     * @param theOutput the stream to write to
+     * @exception IOException if the header cannot be written
+     */
+    public static void writeHeader(DataOutputStream theOutput)
+        throws IOException
+    {
+        theOutput.writeInt(MAGIC);
+        theOutput.writeByte(VERSION);
+    }
+
+    /**
+     * Writes a test result.
+     *
+     * @param theOutput the stream to write to
+     * @param theResult the test result to write
+     * @exception IOException if the result cannot be written
+     */
+    public static void writeResult(DataOutputStream theOutput, 
+        WebTestResult theResult) throws IOException
+    {
+        theOutput.writeBoolean(true);
+        theOutput.writeBoolean(theResult.hasException());
+        if (theResult.hasException())
+        {
+            writeString(theOutput, theResult.getExceptionClassName());
+            writeString(theOutput, theResult.getExceptionMessage());
+            writeString(theOutput, theResult.getExceptionStackTrace());
+        }
+    }
+
+    /**
+     * Writes the end of an encoded stream.
+     *
+     * @param theOutput the stream to write to
+     * @exception IOException if the end marker cannot be written
+     */
+    public static void writeEnd(DataOutputStream theOutput) 
+        throws IOException
+    {
+        theOutput.writeBoolean(false);
+    }
+
+    /**
+     * Reads and checks the header of an encoded stream.
+     *
+     * @param theInput the stream to read from
+     * @exception IOException if the header cannot be read or if it is not
+     *            a supported header
+     */
+    public static void readHeader(DataInputStream theInput) 
+        throws IOException
+    {
+        if (theInput.readInt() != MAGIC)
+        {
+            throw new IOException("Not an encoded test result stream");
+        }
+
+        int version = theInput.readUnsignedByte();
+        if (version != VERSION)
+        {
+            throw new IOException("Unsupported test result format version ["
+                + version + "]");
+        }
+    }
+
+    /**
+     * Reads the next test result.
+     *
+     * @param theInput the stream to read from
+     * @return the test result or null if the end of the stream has been
+     *         reached
+     * @exception IOException if the result cannot be read
+     */
+    public static WebTestResult readResult(DataInputStream theInput) 
+        throws IOException
+    {
+        if (!theInput.readBoolean())
+        {
+            return null;
+        }
+
+        if (!theInput.readBoolean())
+        {
+            return new WebTestResult();
+        }
+
+        String className = readString(theInput);
+        String message = readString(theInput);
+        String stackTrace = readString(theInput);
+
+        return new WebTestResult(className, message, stackTrace);
+    }
+
+    /**
+     * @param theOutput the stream to write to
+     * @param theString the string to write (can be null)
+     * @exception IOException if the string cannot be written
+     */
+    private static void writeString(DataOutputStream theOutput, 
+        String theString) throws IOException
+    {
+        if (theString == null)
+        {
+            theOutput.writeInt(-1);
+        }
+        else
+        {
+            byte[] bytes = theString.getBytes("UTF-8");
+            theOutput.writeInt(bytes.length);
+            theOutput.write(bytes);
+        }
+    }
+
+    /**
+     * @param theInput the stream to read from
+     * @return the string read (can be null)
+     * @exception IOException if the string cannot be read
+     */
+    private static String readString(DataInputStream theInput) 
+        throws IOException
+    {
+        int length = theInput.readInt();
+        if (length < 0)
+        {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        theInput.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
@@ -24,8 +24,8 @@ import junit.framework.Assert;
 import junit.framework.Test;
 import org.apache.cactus.Request;
 import org.apache.cactus.internal.util.JUnitVersionHelper;
-import org.apache.cactus.internal.util.TestCaseImplementChecker;
 import org.apache.cactus.spi.client.ResponseObjectFactory;
+import org.apache.cactus.spi.client.connector.AsyncProtocolHandler;
 import org.apache.cactus.spi.client.connector.ProtocolHandler;
 import org.apache.cactus.spi.client.connector.ProtocolState;
 import org.apache.commons.logging.Log;
@@ -33,6 +33,8 @@ import org.apache.commons.logging.LogFactory;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Provides the ability to run common code before and after each test on the 
@@ -92,6 +94,17 @@ public class ClientTestCaseCaller extends Assert
      */
     private ProtocolHandler protocolHandler;
 
+    /**
+     * The request of the test started with {@link #startTest()} (if any).
+     */
+    private Request pendingRequest;
+
+    /**
+     * The pending state of the test started with {@link #startTest()} (if
+     * any).
+     */
+    private Future<ProtocolState> pendingState;
+
     // Constructors ---------------------------------------------------------
     
     /**
@@ -144,16 +157,123 @@ public class ClientTestCaseCaller extends Assert
         ProtocolState state = this.protocolHandler.runTest(
             getDelegatedTest(), getWrappedTest(), request);
         
-        // Call the end method
-        Object response = callEndMethod(request, 
-            this.protocolHandler.createResponseObjectFactory(state));
+        endTest(request, state);
+    }
 
-        // call the tear down method
-        callGlobalEndMethod(request, 
-            this.protocolHandler.createResponseObjectFactory(state), 
-            response);
+    /**
+     * @return true if the test can be started with {@link #startTest()}, 
+     *         that is if the protocol handler can run it without blocking
+     */
+    public boolean isAsync()
+    {
+        return this.protocolHandler instanceof AsyncProtocolHandler;
+    }
+
+    /**
+     * Executes the begin methods and starts the execution of the test on the
+     * server side without waiting for it to finish. The test must then be 
+     * completed with {@link #finishTest()} or {@link #abandonTest()}.
+     *
+     * @exception Throwable if any error happens in the begin methods
+     */
+    public void startTest() throws Throwable
+    {
+        Request request = this.protocolHandler.createRequest();
+
+        // Call the set up and begin methods to fill the request object
+        callGlobalBeginMethod(request);
+        callBeginMethod(request);
+
+        // Start the server test
+        this.pendingState = ((AsyncProtocolHandler) this.protocolHandler)
+            .runTestAsync(getDelegatedTest(), getWrappedTest(), request);
+        this.pendingRequest = request;
+    }
+
+    /**
+     * Waits for the test started with {@link #startTest()} to finish on the 
+     * server side and executes the end methods.
+     *
+     * @exception Throwable if any error happens during the execution of
+     *            the test
+     */
+    public void finishTest() throws Throwable
+    {
+        Request request = this.pendingRequest;
+        ProtocolState state = getPendingState();
 
-        this.protocolHandler.afterTest(state);
+        endTest(request, state);
+    }
+
+    /**
+     * Waits for the test started with {@link #startTest()} to finish on the 
+     * server side and cleans up after it, without executing the end 
+     * methods. Errors are ignored.
+     */
+    public void abandonTest()
+    {
+        try
+        {
+            this.protocolHandler.afterTest(getPendingState());
+        }
+        catch (Throwable t)
+        {
+            getLogger().debug("Error in abandoned test", t);
+        }
+    }
+
+    /**
+     * Tells whether the test can be run together with other tests in a single
+     * request to the server side. This is only possible if the test has no
+     * client side method (global or specific begin and end methods) as
+     * these methods need a request and a response of their own.
+     *
+     * @return true if the test has no client side method
+     */
+    public boolean isBatchable()
+    {
+        String baseMethodName;
+        try
+        {
+            baseMethodName = getBaseMethodName();
+        }
+        catch (RuntimeException e)
+        {
+            // Let the test report its bad name when run on its own
+            return false;
+        }
+
+        ClientTestMethods methods = 
+            ClientTestMethods.getInstance(getTest().getClass());
+        return !methods.hasMethod(CLIENT_GLOBAL_BEGIN_METHOD)
+            && !methods.hasMethod(CLIENT_GLOBAL_END_METHOD)
+            && !methods.hasMethod(BEGIN_METHOD_PREFIX + baseMethodName)
+            && !methods.hasMethod(END_METHOD_PREFIX + baseMethodName);
+    }
+
+    /**
+     * @return the protocol handler used to execute the test on the server
+     *         side
+     */
+    public ProtocolHandler getProtocolHandler()
+    {
+        return this.protocolHandler;
+    }
+
+    /**
+     * @return the wrapped JUnit test
+     */
+    public Test getWrappedTest()
+    {
+        return this.wrappedTest;
+    }
+
+    /**
+     * @return the test we are delegating for
+     */
+    public Test getDelegatedTest()
+    {
+        return this.delegatedTest;
     }
 
     /**
@@ -241,37 +361,71 @@ public class ClientTestCaseCaller extends Assert
     }
     
     // Private methods ------------------------------------------------------
-    
+
     /**
-     * @param theWrappedTest the pure JUnit test that we need to wrap 
+     * Executes the end methods once the test has run on the server side.
+     *
+     * @param theRequest the request used to run the test
+     * @param theState the state returned by the protocol handler
+     * @exception Throwable if any error happens in the end methods
      */
-    private void setWrappedTest(Test theWrappedTest)
+    private void endTest(Request theRequest, ProtocolState theState)
+        throws Throwable
     {
-        this.wrappedTest = theWrappedTest;
+        // Call the end method
+        Object response = callEndMethod(theRequest, 
+            this.protocolHandler.createResponseObjectFactory(theState));
+
+        // call the tear down method
+        callGlobalEndMethod(theRequest, 
+            this.protocolHandler.createResponseObjectFactory(theState), 
+            response);
+
+        this.protocolHandler.afterTest(theState);
     }
 
     /**
-     * @param theDelegatedTest the test we are delegating for
+     * Waits for the test started with {@link #startTest()} to finish on the
+     * server side.
+     *
+     * @return the state returned by the protocol handler
+     * @exception Throwable any error that occurred when executing the test
      */
-    private void setDelegatedTest(Test theDelegatedTest)
+    private ProtocolState getPendingState() throws Throwable
     {
-        this.delegatedTest = theDelegatedTest;
-    }
+        Future<ProtocolState> state = this.pendingState;
+        this.pendingState = null;
+        this.pendingRequest = null;
 
+        if (state == null)
+        {
+            throw new IllegalStateException("The test has not been started");
+        }
+
+        try
+        {
+            return state.get();
+        }
+        catch (ExecutionException e)
+        {
+            throw e.getCause();
+        }
+    }
+    
     /**
-     * @return the wrapped JUnit test
+     * @param theWrappedTest the pure JUnit test that we need to wrap 
      */
-    private Test getWrappedTest()
+    private void setWrappedTest(Test theWrappedTest)
     {
-        return this.wrappedTest;
+        this.wrappedTest = theWrappedTest;
     }
 
     /**
-     * @return the test we are delegating for
+     * @param theDelegatedTest the test we are delegating for
      */
-    private Test getDelegatedTest()
+    private void setDelegatedTest(Test theDelegatedTest)
     {
-        return this.delegatedTest;
+        this.delegatedTest = theDelegatedTest;
     }
 
     /**
@@ -345,30 +499,24 @@ public class ClientTestCaseCaller extends Assert
     {
         // First, verify if a begin method exist. If one is found, verify if
         // it has the correct signature. If not, send a warning.
-        Method[] methods = getTest().getClass().getMethods();
+        Method method = ClientTestMethods.getInstance(getTest().getClass())
+            .getBeginMethod(theMethodName);
 
-        for (int i = 0; i < methods.length; i++)
+        if (method != null)
         {
-            if (methods[i].getName().equals(theMethodName))
+            try
             {
-                TestCaseImplementChecker.checkAsBeginMethod(methods[i]);
-
-                try
-                {
-                    methods[i].invoke(getTest(), new Object[] {theRequest});
-
-                    break;
-                }
-                catch (InvocationTargetException e)
-                {
-                    e.fillInStackTrace();
-                    throw e.getTargetException();
-                }
-                catch (IllegalAccessException e)
-                {
-                    e.fillInStackTrace();
-                    throw e;
-                }
+                method.invoke(getTest(), new Object[] {theRequest});
+            }
+            catch (InvocationTargetException e)
+            {
+                e.fillInStackTrace();
+                throw e.getTargetException();
+            }
+            catch (IllegalAccessException e)
+            {
+                e.fillInStackTrace();
+                throw e;
             }
         }
     }
@@ -391,51 +539,43 @@ public class ClientTestCaseCaller extends Assert
         ResponseObjectFactory theResponseFactory, String theMethodName, 
         Object theResponse) throws Throwable
     {
+        Method[] methods = ClientTestMethods.getInstance(
+            getTest().getClass()).getEndMethods(theMethodName);
+
+        // Is there more than one method to call ?
+        if (methods.length > 1)
+        {
+            fail("There can only be one method ["
+               + theMethodName + "] per test case. "
+               + "Test case [" + this.getCurrentTestName()
+               + "] has two at least !");
+        }
+
         Method methodToCall = null;
         Object paramObject = null;
 
-        Method[] methods = getTest().getClass().getMethods();
-
-        for (int i = 0; i < methods.length; i++)
+        if (methods.length == 1)
         {
-            if (methods[i].getName().equals(theMethodName))
-            {
-                TestCaseImplementChecker.checkAsEndMethod(methods[i]);
-
-                paramObject = theResponse;
+            methodToCall = methods[0];
+            paramObject = theResponse;
 
-                if (paramObject == null)
+            if (paramObject == null)
+            {
+                Class[] parameters = methodToCall.getParameterTypes();
+                try
                 {
-                    Class[] parameters = methods[i].getParameterTypes();
-                    try
-                    {
-                        paramObject = theResponseFactory.getResponseObject(
-                            parameters[0].getName(), theRequest);
-                    }
-                    catch (ClientException e)
-                    {
-                        throw new ClientException("The method ["
-                            + methods[i].getName() 
-                            + "] has a bad parameter of type ["
-                            + parameters[0].getName() + "]", e);
-                    }
+                    paramObject = theResponseFactory.getResponseObject(
+                        parameters[0].getName(), theRequest);
                 }
-
-                // Has a method to call already been found ?
-                if (methodToCall != null)
+                catch (ClientException e)
                 {
-                    fail("There can only be one method ["
-                       + methods[i].getName() + "] per test case. "
-                       + "Test case [" + this.getCurrentTestName()
-                       + "] has two at least !");
+                    throw new ClientException("The method ["
+                        + methodToCall.getName() 
+                        + "] has a bad parameter of type ["
+                        + parameters[0].getName() + "]", e);
                 }
-
-                methodToCall = methods[i];
             }
-        }
 
-        if (methodToCall != null)
-        {
             try
             {
                 methodToCall.invoke(getTest(), new Object[] {paramObject});
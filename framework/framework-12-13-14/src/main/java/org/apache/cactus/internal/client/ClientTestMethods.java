@@ -0,0 +1,166 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.client;
+
+import org.apache.cactus.internal.util.TestCaseImplementChecker;
+import org.apache.cactus.internal.util.TestCaseImplementError;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Client side methods (begin and end methods) of a test class. The public 
+ * methods of a test class are only scanned once, and each begin or end
+ * method is only checked once, instead of for every test of the class.
+ *
+ * @version $Id$
+ */
+public final class ClientTestMethods
+{
+    /**
+     * The client side methods of the classes seen so far.
+     */
+    private static final ClassValue<ClientTestMethods> METHODS = 
+        new ClassValue<ClientTestMethods>()
+        {
+            protected ClientTestMethods computeValue(Class<?> theClass)
+            {
+                return new ClientTestMethods(theClass);
+            }
+        };
+
+    /**
+     * The public methods of the class, keyed by name.
+     */
+    private Map<String, Method[]> methodsByName = 
+        new HashMap<String, Method[]>();
+
+    /**
+     * The begin methods that have already been checked, keyed by name.
+     */
+    private Map<String, Method> beginMethods = 
+        new ConcurrentHashMap<String, Method>();
+
+    /**
+     * The end methods that have already been checked, keyed by name.
+     */
+    private Map<String, Method[]> endMethods = 
+        new ConcurrentHashMap<String, Method[]>();
+
+    /**
+     * @param theClass the test class
+     */
+    private ClientTestMethods(Class theClass)
+    {
+        Map<String, List<Method>> methods = 
+            new HashMap<String, List<Method>>();
+        Method[] publicMethods = theClass.getMethods();
+        for (int i = 0; i < publicMethods.length; i++)
+        {
+            List<Method> sameName = methods.get(publicMethods[i].getName());
+            if (sameName == null)
+            {
+                sameName = new ArrayList<Method>(1);
+                methods.put(publicMethods[i].getName(), sameName);
+            }
+            sameName.add(publicMethods[i]);
+        }
+
+        for (Map.Entry<String, List<Method>> entry : methods.entrySet())
+        {
+            this.methodsByName.put(entry.getKey(), 
+                entry.getValue().toArray(new Method[entry.getValue().size()]));
+        }
+    }
+
+    /**
+     * @param theClass the test class
+     * @return the client side methods of the test class
+     */
+    public static ClientTestMethods getInstance(Class theClass)
+    {
+        return METHODS.get(theClass);
+    }
+
+    /**
+     * @param theMethodName the name of a method
+     * @return true if the test class has a public method with this name
+     */
+    public boolean hasMethod(String theMethodName)
+    {
+        return this.methodsByName.containsKey(theMethodName);
+    }
+
+    /**
+     * @param theMethodName the name of the begin method
+     * @return the begin method or null if the test class has no such method
+     * @exception TestCaseImplementError if the method is not suitable as a
+     *            begin method
+     */
+    public Method getBeginMethod(String theMethodName)
+        throws TestCaseImplementError
+    {
+        Method method = this.beginMethods.get(theMethodName);
+        if (method == null)
+        {
+            Method[] methods = this.methodsByName.get(theMethodName);
+            if (methods == null)
+            {
+                return null;
+            }
+            method = methods[0];
+            TestCaseImplementChecker.checkAsBeginMethod(method);
+            this.beginMethods.put(theMethodName, method);
+        }
+        return method;
+    }
+
+    /**
+     * @param theMethodName the name of the end method
+     * @return the end methods with this name (an empty array if the test 
+     *         class has no such method)
+     * @exception TestCaseImplementError if one of the methods is not 
+     *            suitable as an end method
+     */
+    public Method[] getEndMethods(String theMethodName)
+        throws TestCaseImplementError
+    {
+        Method[] methods = this.endMethods.get(theMethodName);
+        if (methods == null)
+        {
+            methods = this.methodsByName.get(theMethodName);
+            if (methods == null)
+            {
+                return new Method[0];
+            }
+            for (int i = 0; i < methods.length; i++)
+            {
+                TestCaseImplementChecker.checkAsEndMethod(methods[i]);
+            }
+            this.endMethods.put(theMethodName, methods);
+        }
+        return methods;
+    }
+}
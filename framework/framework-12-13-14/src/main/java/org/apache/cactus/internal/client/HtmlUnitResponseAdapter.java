@@ -0,0 +1,95 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.client;
+
+import org.apache.cactus.Request;
+import org.apache.cactus.internal.util.IoUtil;
+import org.apache.cactus.spi.client.ResponseAdapter;
+
+import java.lang.reflect.Constructor;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Creates HtmlUnit <code>com.gargoylesoftware.htmlunit.WebResponse</code>
+ * objects by reflection (so that we don't need the HtmlUnit jar for users
+ * who are not using the HtmlUnit endXXX() signature). The constructor is
+ * only looked up once.
+ *
+ * @version $Id$
+ */
+final class HtmlUnitResponseAdapter implements ResponseAdapter
+{
+    /**
+     * The HtmlUnit <code>StringWebResponse</code> constructor, or null if it
+     * has not been looked up yet.
+     */
+    private volatile Constructor constructor;
+
+    /**
+     * {@inheritDoc}
+     * @see ResponseAdapter#getResponseClassName()
+     */
+    public String getResponseClassName()
+    {
+        return "com.gargoylesoftware.htmlunit.WebResponse";
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see ResponseAdapter#createResponse(HttpURLConnection, Request)
+     */
+    public Object createResponse(HttpURLConnection theConnection,
+        Request theRequest) throws ClientException
+    {
+        try
+        {
+            // The connection input stream reads the response buffered by
+            // the connector, up to its end whatever its size
+            String content = IoUtil.getText(theConnection.getInputStream());
+            return getConstructor().newInstance(
+                new Object[] {content, theConnection.getURL()});
+        }
+        catch (Exception e)
+        {
+            throw new ClientException("Error calling "
+                + "[public com.gargoylesoftware.htmlunit.StringWebResponse("
+                + "java.lang.String, java.net.URL)]", e);
+        }
+    }
+
+    /**
+     * @return the HtmlUnit <code>StringWebResponse</code> constructor
+     * @exception Exception if HtmlUnit is not on the classpath
+     */
+    private Constructor getConstructor() throws Exception
+    {
+        Constructor result = this.constructor;
+        if (result == null)
+        {
+            result = Class.forName(
+                "com.gargoylesoftware.htmlunit.StringWebResponse")
+                .getConstructor(new Class[] {String.class, URL.class});
+            this.constructor = result;
+        }
+        return result;
+    }
+}
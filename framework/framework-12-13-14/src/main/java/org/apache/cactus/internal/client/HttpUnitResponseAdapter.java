@@ -0,0 +1,91 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.client;
+
+import org.apache.cactus.Request;
+import org.apache.cactus.spi.client.ResponseAdapter;
+
+import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+
+/**
+ * Creates HttpUnit <code>com.meterware.httpunit.WebResponse</code> objects
+ * by reflection (so that we don't need the HttpUnit jar for users who are
+ * not using the HttpUnit endXXX() signature). The factory method is only
+ * looked up once.
+ *
+ * @version $Id$
+ */
+final class HttpUnitResponseAdapter implements ResponseAdapter
+{
+    /**
+     * The HttpUnit factory method, or null if it has not been looked up
+     * yet.
+     */
+    private volatile Method newResponse;
+
+    /**
+     * {@inheritDoc}
+     * @see ResponseAdapter#getResponseClassName()
+     */
+    public String getResponseClassName()
+    {
+        return "com.meterware.httpunit.WebResponse";
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see ResponseAdapter#createResponse(HttpURLConnection, Request)
+     */
+    public Object createResponse(HttpURLConnection theConnection,
+        Request theRequest) throws ClientException
+    {
+        try
+        {
+            return getNewResponse().invoke(null,
+                new Object[] {theConnection});
+        }
+        catch (Exception e)
+        {
+            throw new ClientException("Error calling "
+                + "[public static com.meterware.httpunit.WebResponse "
+                + "com.meterware.httpunit.WebResponse.newResponse("
+                + "java.net.URLConnection) throws java.io.IOException]", e);
+        }
+    }
+
+    /**
+     * @return the HttpUnit factory method
+     * @exception Exception if HttpUnit is not on the classpath
+     */
+    private Method getNewResponse() throws Exception
+    {
+        Method result = this.newResponse;
+        if (result == null)
+        {
+            result = Class.forName(getResponseClassName()).getMethod(
+                "newResponse", new Class[] {URLConnection.class});
+            this.newResponse = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,166 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.client;
+
+import org.apache.cactus.Request;
+import org.apache.cactus.WebRequest;
+import org.apache.cactus.WebResponse;
+import org.apache.cactus.spi.client.ResponseAdapter;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Registry of the {@link ResponseAdapter}s, keyed by the class name of the
+ * response objects they create. The registry holds the Cactus adapters and
+ * the adapters found with {@link ServiceLoader}, which are looked up once
+ * and take precedence over the Cactus ones.
+ *
+ * @version $Id$
+ */
+final class ResponseAdapterRegistry
+{
+    /**
+     * The logger.
+     */
+    private static final Log LOGGER =
+        LogFactory.getLog(ResponseAdapterRegistry.class);
+
+    /**
+     * The adapters, keyed by response class name. Read-only once built.
+     */
+    private static final Map<String, ResponseAdapter> ADAPTERS =
+        createAdapters();
+
+    /**
+     * Prevent instantiation.
+     */
+    private ResponseAdapterRegistry()
+    {
+    }
+
+    /**
+     * @param theClassName the class name of the response objects
+     * @return the adapter creating the response objects of this class or
+     *         null if there is none
+     */
+    static ResponseAdapter getAdapter(String theClassName)
+    {
+        return ADAPTERS.get(theClassName);
+    }
+
+    /**
+     * @return the Cactus adapters and the registered ones, keyed by
+     *         response class name
+     */
+    private static Map<String, ResponseAdapter> createAdapters()
+    {
+        Map<String, ResponseAdapter> adapters =
+            new HashMap<String, ResponseAdapter>();
+        register(adapters, new CactusResponseAdapter());
+        register(adapters, new ConnectionResponseAdapter());
+        register(adapters, new HttpUnitResponseAdapter());
+        register(adapters, new HtmlUnitResponseAdapter());
+
+        try
+        {
+            Iterator<ResponseAdapter> iterator =
+                ServiceLoader.load(ResponseAdapter.class).iterator();
+            while (iterator.hasNext())
+            {
+                register(adapters, iterator.next());
+            }
+        }
+        catch (ServiceConfigurationError e)
+        {
+            LOGGER.warn("Failed to load the registered response adapters",
+                e);
+        }
+        return adapters;
+    }
+
+    /**
+     * @param theAdapters the adapters, keyed by response class name
+     * @param theAdapter the adapter to add, replacing the adapter of the
+     *        same type if any
+     */
+    private static void register(Map<String, ResponseAdapter> theAdapters,
+        ResponseAdapter theAdapter)
+    {
+        theAdapters.put(theAdapter.getResponseClassName(), theAdapter);
+    }
+
+    /**
+     * Creates Cactus {@link WebResponse} objects.
+     */
+    private static class CactusResponseAdapter implements ResponseAdapter
+    {
+        /**
+         * {@inheritDoc}
+         * @see ResponseAdapter#getResponseClassName()
+         */
+        public String getResponseClassName()
+        {
+            return WebResponse.class.getName();
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see ResponseAdapter#createResponse(HttpURLConnection, Request)
+         */
+        public Object createResponse(HttpURLConnection theConnection,
+            Request theRequest)
+        {
+            return new WebResponse((WebRequest) theRequest, theConnection);
+        }
+    }
+
+    /**
+     * Passes the connection itself (deprecated).
+     */
+    private static class ConnectionResponseAdapter implements ResponseAdapter
+    {
+        /**
+         * {@inheritDoc}
+         * @see ResponseAdapter#getResponseClassName()
+         */
+        public String getResponseClassName()
+        {
+            return HttpURLConnection.class.getName();
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see ResponseAdapter#createResponse(HttpURLConnection, Request)
+         */
+        public Object createResponse(HttpURLConnection theConnection,
+            Request theRequest)
+        {
+            return theConnection;
+        }
+    }
+}
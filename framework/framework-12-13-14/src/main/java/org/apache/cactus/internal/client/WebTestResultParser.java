@@ -22,6 +22,9 @@ package org.apache.cactus.internal.client;
 
 import org.apache.cactus.internal.WebTestResult;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Parse a string representing a Test result and transform it into a
  * <code>WebTestResult</code> object.
@@ -78,6 +81,65 @@ public class WebTestResultParser
         return result;
     }
 
+    /**
+     * Parse a string holding the results of a batch of tests and transform
+     * it into <code>WebTestResult</code> objects.
+     *
+     * @param theData the string to parse
+     * @return the <code>WebTestResult</code> objects corresponding to the
+     *         data string, in the order in which they appear
+     * @throws ParsingException if an error happens during parsing
+     */
+    public WebTestResult[] parseBatch(String theData) throws ParsingException
+    {
+        String startRootString = 
+            "<" + WebTestResult.XML_BATCH_ROOT_ELEMENT + ">";
+        String endRootString = 
+            "</" + WebTestResult.XML_BATCH_ROOT_ELEMENT + ">";
+        String trimmedData = theData.trim();
+
+        if (!trimmedData.startsWith(startRootString)
+            || !trimmedData.endsWith(endRootString))
+        {
+            throw new ParsingException(formatError(theData));
+        }
+
+        String emptyResult = new WebTestResult().toXml();
+
+        // Exception messages and stack traces are enclosed in CDATA sections
+        // which cannot contain "]]>", so the end of a result holding an
+        // exception is the end of its stack trace CDATA section
+        String endExceptionResult = "]]></"
+            + WebTestResult.XML_EXCEPTION_STACKTRACE_ELEMENT + "></"
+            + WebTestResult.XML_EXCEPTION_ELEMENT + "></"
+            + WebTestResult.XML_ROOT_ELEMENT + ">";
+
+        List<WebTestResult> results = new ArrayList<WebTestResult>();
+        int pos = startRootString.length();
+        int end = trimmedData.length() - endRootString.length();
+        while (pos < end)
+        {
+            int next;
+            if (trimmedData.startsWith(emptyResult, pos))
+            {
+                next = pos + emptyResult.length();
+            }
+            else
+            {
+                next = trimmedData.indexOf(endExceptionResult, pos);
+                if (next < 0)
+                {
+                    throw new ParsingException(formatError(theData));
+                }
+                next = next + endExceptionResult.length();
+            }
+            results.add(parse(trimmedData.substring(pos, next)));
+            pos = next;
+        }
+
+        return results.toArray(new WebTestResult[results.size()]);
+    }
+
     /**
      * Read the {@link WebTestResult#XML_ROOT_ELEMENT} portion.
      *
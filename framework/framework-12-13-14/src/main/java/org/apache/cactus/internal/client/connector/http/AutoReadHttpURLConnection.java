@@ -24,8 +24,6 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -67,21 +65,97 @@ final class AutoReadHttpURLConnection extends HttpURLConnection
      */
     private HttpURLConnection delegate;
 
+    /**
+     * The helper that opened the wrapped connection, used to release it if
+     * the response cannot be fully read (can be null).
+     */
+    private HttpClientConnectionHelper helper;
+
     /**
      * The read input stream.
      */
     private InputStream streamBuffer;
 
+    /**
+     * The name of the response header hidden from the callers, or null if
+     * all headers of the wrapped connection are visible.
+     */
+    private String removedHeader;
+
     /**
      * Constructs a an <code>AutoReadHttpURLConnection</code> object from an
      * <code>HttpURLConnection</code>.
      *
      * @param theConnection the original connection to wrap
+     * @param theHelper the helper that opened the connection, to release it
+     *        if the response cannot be fully read (can be null)
      */
-    AutoReadHttpURLConnection(HttpURLConnection theConnection)
+    AutoReadHttpURLConnection(HttpURLConnection theConnection,
+        HttpClientConnectionHelper theHelper)
     {
         super(null);
         this.delegate = theConnection;
+        this.helper = theHelper;
+    }
+
+    /**
+     * Hides a Cactus internal response header from the callers of this
+     * connection, so that it does not show up in the response passed to the
+     * end methods.
+     *
+     * @param theName the name of the header to remove
+     * @return the value of the header before it was removed or null if the
+     *         response did not contain it
+     */
+    String removeHeaderField(String theName)
+    {
+        String value = this.delegate.getHeaderField(theName);
+        this.removedHeader = theName;
+        return value;
+    }
+
+    /**
+     * @param theName the name of a header of the wrapped connection
+     * @return true if the header has been removed with
+     *         {@link #removeHeaderField(String)}
+     */
+    private boolean isRemoved(String theName)
+    {
+        return (this.removedHeader != null) 
+            && this.removedHeader.equalsIgnoreCase(theName);
+    }
+
+    /**
+     * @param thePosition the position of a header as seen by the callers
+     * @return the position of the same header in the wrapped connection,
+     *         skipping the removed header
+     */
+    private int toDelegatePosition(int thePosition)
+    {
+        if ((this.removedHeader == null) || (thePosition < 0))
+        {
+            return thePosition;
+        }
+
+        int remaining = thePosition;
+        for (int i = 0;; i++)
+        {
+            String key = this.delegate.getHeaderFieldKey(i);
+
+            // Position 0 may be the status line, which has no key
+            if ((key == null) && (i > 0))
+            {
+                return i;
+            }
+            if (!isRemoved(key))
+            {
+                if (remaining == 0)
+                {
+                    return i;
+                }
+                remaining--;
+            }
+        }
     }
 
     /**
@@ -107,7 +181,17 @@ final class AutoReadHttpURLConnection extends HttpURLConnection
         }
         catch (IOException e)
         {
-            logErrorStream(this.delegate.getErrorStream());
+            try
+            {
+                logErrorStream(this.delegate.getErrorStream());
+            }
+            finally
+            {
+                if (this.helper != null)
+                {
+                    this.helper.release();
+                }
+            }
             throw e;
         }
 
@@ -148,14 +232,45 @@ final class AutoReadHttpURLConnection extends HttpURLConnection
     private InputStream getBufferedInputStream(InputStream theInputStream)
         throws IOException
     {
-        ByteArrayOutputStream os = 
-            new ByteArrayOutputStream(DEFAULT_CHUNK_SIZE);
+        ResponseBuffer buffer = new ResponseBuffer();
 
-        copy(theInputStream, os);
+        boolean isCopied = false;
+        try
+        {
+            copy(theInputStream, buffer);
+            buffer.close();
+            isCopied = true;
+        }
+        finally
+        {
+            // Drop the partial content and hand the pooled connection back,
+            // its content being unusable
+            if (!isCopied)
+            {
+                buffer.discard();
+                if (this.helper != null)
+                {
+                    this.helper.release();
+                }
+            }
+        }
 
-        ByteArrayInputStream bais = new ByteArrayInputStream(os.toByteArray());
+        // Closing the original stream hands the underlying connection back
+        // so that it can be reused for the next requests
+        if (theInputStream != null)
+        {
+            theInputStream.close();
+        }
+
+        if (buffer.isSpilled())
+        {
+            LOGGER.debug("Response of [" + buffer.size() + "] bytes spilled "
+                + "to a temporary file");
+        }
 
-        return bais;
+        // Read the buffered chunks (or temporary file) directly instead of
+        // copying them into a single array
+        return buffer.getInputStream();
     }
 
     /**
@@ -186,7 +301,10 @@ final class AutoReadHttpURLConnection extends HttpURLConnection
             while (-1 != (count = theInputStream.read(buf)))
             {
                 // log read data
-                printReadLogs(count, buf);
+                if (LOGGER.isDebugEnabled())
+                {
+                    printReadLogs(count, buf);
+                }
                 theOutputStream.write(buf, 0, count);
             }
         }
@@ -330,7 +448,7 @@ final class AutoReadHttpURLConnection extends HttpURLConnection
      */
     public String getHeaderField(int thePosition)
     {
-        return this.delegate.getHeaderField(thePosition);
+        return this.delegate.getHeaderField(toDelegatePosition(thePosition));
     }
 
     /**
@@ -339,6 +457,10 @@ final class AutoReadHttpURLConnection extends HttpURLConnection
      */
     public String getHeaderField(String theName)
     {
+        if (isRemoved(theName))
+        {
+            return null;
+        }
         return this.delegate.getHeaderField(theName);
     }
 
@@ -348,6 +470,10 @@ final class AutoReadHttpURLConnection extends HttpURLConnection
      */
     public long getHeaderFieldDate(String theName, long theDefaultValue)
     {
+        if (isRemoved(theName))
+        {
+            return theDefaultValue;
+        }
         return this.delegate.getHeaderFieldDate(theName, theDefaultValue);
     }
 
@@ -357,6 +483,10 @@ final class AutoReadHttpURLConnection extends HttpURLConnection
      */
     public int getHeaderFieldInt(String theName, int theDefaultValue)
     {
+        if (isRemoved(theName))
+        {
+            return theDefaultValue;
+        }
         return this.delegate.getHeaderFieldInt(theName, theDefaultValue);
     }
 
@@ -366,7 +496,8 @@ final class AutoReadHttpURLConnection extends HttpURLConnection
      */
     public String getHeaderFieldKey(int thePosition)
     {
-        return this.delegate.getHeaderFieldKey(thePosition);
+        return this.delegate.getHeaderFieldKey(
+            toDelegatePosition(thePosition));
     }
 
     /**
@@ -26,6 +26,7 @@ import org.apache.cactus.internal.RequestDirectives;
 import org.apache.cactus.internal.ServiceEnumeration;
 import org.apache.cactus.internal.WebRequestImpl;
 import org.apache.cactus.internal.WebTestResult;
+import org.apache.cactus.internal.WebTestResultCodec;
 import org.apache.cactus.internal.client.AssertionFailedErrorWrapper;
 import org.apache.cactus.internal.client.ParsingException;
 import org.apache.cactus.internal.client.ServletExceptionWrapper;
@@ -35,7 +36,13 @@ import org.apache.cactus.internal.util.IoUtil;
 import org.apache.cactus.internal.util.StringUtil;
 import org.apache.cactus.util.ChainedRuntimeException;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Performs the steps necessary to run a test. It involves
@@ -64,7 +71,8 @@ public class DefaultHttpClient
 
     /**
      * Calls the test method indirectly by calling the Redirector servlet and
-     * then open a second HTTP connection to retrieve the test results.
+     * then open a second HTTP connection to retrieve the test results (unless
+     * the test results have been returned in the first HTTP response).
      *
      * @param theRequest the request containing all data to pass to the
      *        redirector servlet.
@@ -79,14 +87,27 @@ public class DefaultHttpClient
     {
         // Open the first connection to the redirector to execute the test on
         // the server side
-        HttpURLConnection connection = callRunTest(theRequest);
+        AutoReadHttpURLConnection connection = callRunTest(theRequest);
 
-        // Open the second connection to get the test results
+        // Read the test results from the first response if the redirector
+        // has returned them there, otherwise open the second connection to
+        // get them. The result header is removed so that it is not seen by
+        // the end methods.
         WebTestResult result;
 
         try
         {
-            result = callGetResult(theRequest);
+            String inlineResult = connection.removeHeaderField(
+                HttpServiceDefinition.RESULT_HEADER);
+            if (inlineResult != null)
+            {
+                result = new WebTestResultParser().parse(
+                    URLDecoder.decode(inlineResult, "UTF-8"));
+            }
+            else
+            {
+                result = callGetResult(theRequest);
+            }
         }
         catch (ParsingException e)
         {
@@ -100,40 +121,102 @@ public class DefaultHttpClient
         // framework can catch it
         if (result.hasException())
         {
-            // Wrap the exception message and stack trace into a fake
-            // exception class with reconstructed <code>getStackTrace</code>
-            // method so that when JUnit calls this method it will print the
-            // stack trace that was set on the server side.
-            // If the error was an AssertionFailedError or ComparisonFailure
-            // then we use an instance of AssertionFailedErrorWrapper (so that 
-            // JUnit recognize it is an AssertionFailedError exception and 
-            // print it differently in it's runner console). Otherwise we use 
-            // an instance of ServletExceptionWrapper.
-
-            // Note: We have to test the exceptions by string name as the JUnit
-            // AssertionFailedError class is unfortunately not serializable...
-            Class<? extends Throwable> exceptionClazz;
-            if ((result.getExceptionClassName().equals(
-                "junit.framework.AssertionFailedError"))
-                || (result.getExceptionClassName().equals(
-                "junit.framework.ComparisonFailure"))
-                || (result.getExceptionClassName().equals(
-                "java.lang.AssertionError")))
-            {
-                exceptionClazz = AssertionFailedErrorWrapper.class;
-            }
-            else
+            throw createException(result);
+        }
+
+        return connection;
+    }
+
+    /**
+     * Calls several test methods in a single HTTP request to the Redirector
+     * servlet. The tests to call are passed in the request body, as expected
+     * by the Batch Test service.
+     *
+     * @param theRequest the request containing all data to pass to the
+     *        redirector servlet, including the tests to call
+     * @return the results of the tests, in the order in which the tests
+     *         were listed in the request
+     * @exception Throwable if an error occured in the redirector servlet
+     */
+    public WebTestResult[] doBatchTest(WebRequest theRequest) throws Throwable
+    {
+        // Specify the service to call on the redirector side
+        RequestDirectives directives = new RequestDirectives(theRequest);
+        directives.setService(ServiceEnumeration.BATCH_TEST_SERVICE);
+        directives.setResultFormat(
+            String.valueOf(WebTestResultCodec.VERSION));
+
+        HttpClientConnectionHelper helper = 
+            new HttpClientConnectionHelper(
+                this.configuration.getRedirectorURL(theRequest));
+
+        HttpURLConnection connection = 
+            helper.connect(theRequest, this.configuration);
+
+        try
+        {
+            if (connection.getResponseCode() != 200)
             {
-                exceptionClazz = ServletExceptionWrapper.class;
+                throw new ParsingException("Not a valid response ["
+                    + connection.getResponseCode() + " "
+                    + connection.getResponseMessage() + "]");
             }
-            throw StringUtil.stringToException(
-                    exceptionClazz,
-                    result.getExceptionClassName(),
-                    result.getExceptionMessage(),
-                    result.getExceptionStackTrace());
+
+            return readResults(connection, true);
         }
+        catch (ParsingException e)
+        {
+            String url = this.configuration.getRedirectorURL(theRequest);
+            throw new ChainedRuntimeException("Failed to get the test "
+                + "results at [" + url + "]", e);
+        }
+        finally
+        {
+            helper.release();
+        }
+    }
 
-        return connection;
+    /**
+     * Creates the exception to raise on the client side for a test result
+     * holding an error.
+     *
+     * @param theResult the test result holding the server side error
+     * @return the exception to raise so that the JUnit framework can
+     *         catch it
+     */
+    public static Throwable createException(WebTestResult theResult)
+    {
+        // Wrap the exception message and stack trace into a fake
+        // exception class with reconstructed <code>getStackTrace</code>
+        // method so that when JUnit calls this method it will print the
+        // stack trace that was set on the server side.
+        // If the error was an AssertionFailedError or ComparisonFailure
+        // then we use an instance of AssertionFailedErrorWrapper (so that 
+        // JUnit recognize it is an AssertionFailedError exception and 
+        // print it differently in it's runner console). Otherwise we use 
+        // an instance of ServletExceptionWrapper.
+
+        // Note: We have to test the exceptions by string name as the JUnit
+        // AssertionFailedError class is unfortunately not serializable...
+        Class<? extends Throwable> exceptionClazz;
+        if ((theResult.getExceptionClassName().equals(
+            "junit.framework.AssertionFailedError"))
+            || (theResult.getExceptionClassName().equals(
+            "junit.framework.ComparisonFailure"))
+            || (theResult.getExceptionClassName().equals(
+            "java.lang.AssertionError")))
+        {
+            exceptionClazz = AssertionFailedErrorWrapper.class;
+        }
+        else
+        {
+            exceptionClazz = ServletExceptionWrapper.class;
+        }
+        return StringUtil.stringToException(
+                exceptionClazz,
+                theResult.getExceptionClassName(),
+                theResult.getExceptionMessage(),
+                theResult.getExceptionStackTrace());
     }
 
     /**
@@ -147,7 +230,7 @@ public class DefaultHttpClient
      * @exception Throwable if an error occured in the test method or in the
      *            redirector servlet.
      */
-    private HttpURLConnection callRunTest(WebRequest theRequest) 
+    private AutoReadHttpURLConnection callRunTest(WebRequest theRequest) 
         throws Throwable
     {
         // Specify the service to call on the redirector side
@@ -166,12 +249,13 @@ public class DefaultHttpClient
 
         // Wrap the connection to ensure that all servlet output is read
         // before we ask for results
-        connection = new AutoReadHttpURLConnection(connection);
+        AutoReadHttpURLConnection autoReadConnection = 
+            new AutoReadHttpURLConnection(connection, helper);
 
         // Trigger the transfer of data
-        connection.getInputStream();
+        autoReadConnection.getInputStream();
 
-        return connection;
+        return autoReadConnection;
     }
 
     /**
@@ -189,6 +273,16 @@ public class DefaultHttpClient
         WebRequest resultsRequest = new WebRequestImpl(this.configuration);
         RequestDirectives directives = new RequestDirectives(resultsRequest);
         directives.setService(ServiceEnumeration.GET_RESULTS_SERVICE);
+        directives.setResultFormat(
+            String.valueOf(WebTestResultCodec.VERSION));
+
+        // Claim the result stored under the id of the original request
+        String testId = theOriginalRequest.getParameterGet(
+            HttpServiceDefinition.TEST_ID_PARAM);
+        if (testId != null)
+        {
+            directives.setUniqueId(testId);
+        }
 
         // Use the same redirector as was used by the original request
         resultsRequest.setRedirectorName(
@@ -209,16 +303,69 @@ public class DefaultHttpClient
         HttpURLConnection resultConnection = 
             helper.connect(resultsRequest, this.configuration);
 
-        if (resultConnection.getResponseCode() != 200)
+        try
+        {
+            if (resultConnection.getResponseCode() != 200)
+            {
+                throw new ParsingException("Not a valid response ["
+                    + resultConnection.getResponseCode() + " "
+                    + resultConnection.getResponseMessage() + "]");
+            }
+
+            // Read the test result
+            WebTestResult[] results = readResults(resultConnection, false);
+            if (results.length != 1)
+            {
+                throw new ParsingException("Expected one test result but "
+                    + "got [" + results.length + "]");
+            }
+            return results[0];
+        }
+        finally
         {
-            throw new ParsingException("Not a valid response ["
-                + resultConnection.getResponseCode() + " "
-                + resultConnection.getResponseMessage() + "]");
+            helper.release();
         }
+    }
 
-        // Read the test result
-        WebTestResultParser parser = new WebTestResultParser();
-        return parser.parse(
-            IoUtil.getText(resultConnection.getInputStream(), "UTF-8"));
+    /**
+     * Reads the test results returned by the redirector, either in their
+     * compact form if the redirector supports it or as XML.
+     *
+     * @param theConnection the connection to the redirector
+     * @param isBatch true if the XML results are those of a batch of tests
+     * @return the test results
+     * @exception IOException if the results cannot be read
+     * @exception ParsingException if the XML results cannot be parsed
+     */
+    private WebTestResult[] readResults(HttpURLConnection theConnection, 
+        boolean isBatch) throws IOException, ParsingException
+    {
+        if (!WebTestResultCodec.isEncoded(theConnection.getContentType()))
+        {
+            String data = 
+                IoUtil.getText(theConnection.getInputStream(), "UTF-8");
+            WebTestResultParser parser = new WebTestResultParser();
+            return isBatch ? parser.parseBatch(data) 
+                : new WebTestResult[] {parser.parse(data)};
+        }
+
+        DataInputStream input = new DataInputStream(
+            new BufferedInputStream(theConnection.getInputStream()));
+        try
+        {
+            WebTestResultCodec.readHeader(input);
+
+            List<WebTestResult> results = new ArrayList<WebTestResult>();
+            WebTestResult result;
+            while ((result = WebTestResultCodec.readResult(input)) != null)
+            {
+                results.add(result);
+            }
+            return results.toArray(new WebTestResult[results.size()]);
+        }
+        finally
+        {
+            input.close();
+        }
     }
 }
@@ -22,7 +22,9 @@ package org.apache.cactus.internal.client.connector.http;
 
 import org.apache.cactus.WebRequest;
 import org.apache.cactus.client.authentication.Authentication;
+import org.apache.cactus.client.authentication.FormAuthentication;
 import org.apache.cactus.internal.configuration.Configuration;
+import org.apache.cactus.internal.configuration.ConfigurationInitializer;
 import org.apache.cactus.internal.util.CookieUtil;
 import org.apache.cactus.internal.util.UrlUtil;
 import org.apache.commons.httpclient.HostConfiguration;
@@ -75,7 +77,28 @@ public class HttpClientConnectionHelper implements ConnectionHelper
     public HttpURLConnection connect(WebRequest theRequest, 
         Configuration theConfiguration) throws Throwable
     {
-        URL url = new URL(this.url);
+        return connect(theRequest, theConfiguration, true);
+    }
+
+    /**
+     * Connects to the HTTP server. If the request carries a form-based
+     * authentication session that the server rejects, the request can be
+     * sent once more after a new login.
+     *
+     * @param theRequest the request containing all data to pass to the
+     *        server redirector
+     * @param theConfiguration the Cactus configuration
+     * @param isRetryAllowed whether the request can be sent again when its
+     *        session has been rejected
+     * @return the HTTP Connection used to connect to the redirector
+     * @exception Throwable if an unexpected error occured
+     */
+    private HttpURLConnection connect(WebRequest theRequest,
+        Configuration theConfiguration, boolean isRetryAllowed)
+        throws Throwable
+    {
+        // The redirector URLs are only parsed once
+        URL url = ConfigurationInitializer.getSnapshot().getURL(this.url);
 
         HttpState state = new HttpState();
 
@@ -133,19 +156,50 @@ public class HttpClientConnectionHelper implements ConnectionHelper
         state.addCookies(CookieUtil.createHttpClientCookies(theRequest, 
             url));
 
-        // Open the connection and get the result
-        HttpClient client = new HttpClient();
+        // Open the connection (or reuse a pooled one) and get the result. The
+        // state is passed with the request as the client may be shared.
+        HttpClient client = HttpClientPool.getHttpClient();
         HostConfiguration hostConfiguration = new HostConfiguration();
         hostConfiguration.setHost(url.getHost(), url.getPort(),
             Protocol.getProtocol(url.getProtocol()));
-        client.setState(state);
-        client.executeMethod(hostConfiguration, this.method);
+        client.executeMethod(hostConfiguration, this.method, state);
 
         // Wrap the HttpClient method in a java.net.HttpURLConnection object
-        return new org.apache.commons.httpclient.util.HttpURLConnection(
-            this.method, url);
+        HttpURLConnection connection =
+            new org.apache.commons.httpclient.util.HttpURLConnection(
+                this.method, url);
+
+        // Log in again if a form-based authentication session taken from
+        // the shared sessions has expired. Sessions obtained by a login are
+        // never retried, and user data is a stream that cannot be sent twice.
+        if (isRetryAllowed && (theRequest.getUserData() == null)
+            && (authentication instanceof FormAuthentication))
+        {
+            if (((FormAuthentication) authentication).checkReusedSession(
+                theRequest, connection))
+            {
+                release();
+                return connect(theRequest, theConfiguration, false);
+            }
+        }
+
+        return connection;
     }
     
+    /**
+     * Releases the underlying HTTP connection so that it can be reused. Any
+     * unread part of the response body is discarded. This is only needed 
+     * when the response body is not fully read, as the connection is 
+     * otherwise released automatically.
+     */
+    public void release()
+    {
+        if (this.method != null)
+        {
+            this.method.releaseConnection();
+        }
+    }
+
     /**
      * Add the HTTP parameters that need to be passed in the request body.
      *
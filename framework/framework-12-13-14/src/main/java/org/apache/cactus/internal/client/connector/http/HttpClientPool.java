@@ -0,0 +1,189 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.client.connector.http;
+
+import org.apache.cactus.internal.configuration.ConfigurationInitializer;
+import org.apache.cactus.internal.configuration.ConfigurationSnapshot;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpConnectionManager;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
+
+/**
+ * Provides the Jakarta Commons <code>HttpClient</code> used to connect to the
+ * Cactus redirectors. By default a single client is shared by the whole JVM.
+ * It keeps the HTTP connections alive and pools them by host so that the
+ * tests do not pay for a new TCP connection (and possibly a new SSL
+ * handshake) on every request. The pool is configured with the following
+ * Cactus properties:
+ * <ul>
+ *   <li><code>cactus.http.connectionPooling</code>: set it to 
+ *       <code>false</code> to open a new connection for every request
+ *       (defaults to <code>true</code>),</li>
+ *   <li><code>cactus.http.maxConnectionsPerHost</code>: maximum number of 
+ *       connections to a single host (defaults to 20),</li>
+ *   <li><code>cactus.http.maxTotalConnections</code>: maximum number of 
+ *       connections overall (defaults to 100),</li>
+ *   <li><code>cactus.http.idleConnectionTimeout</code>: time in ms after 
+ *       which an idle connection is closed (defaults to 30000).</li>
+ * </ul>
+ *
+ * @version $Id$
+ */
+public class HttpClientPool
+{
+    /**
+     * Name of the Cactus property that enables connection pooling.
+     */
+    public static final String CACTUS_HTTP_CONNECTION_POOLING_PROPERTY = 
+        "cactus.http.connectionPooling";
+
+    /**
+     * Name of the Cactus property that defines the maximum number of 
+     * connections to a single host.
+     */
+    public static final String CACTUS_HTTP_MAX_CONNECTIONS_PER_HOST_PROPERTY =
+        "cactus.http.maxConnectionsPerHost";
+
+    /**
+     * Name of the Cactus property that defines the maximum number of 
+     * connections overall.
+     */
+    public static final String CACTUS_HTTP_MAX_TOTAL_CONNECTIONS_PROPERTY = 
+        "cactus.http.maxTotalConnections";
+
+    /**
+     * Name of the Cactus property that defines the time (in ms) after which 
+     * an idle connection is closed.
+     */
+    public static final String CACTUS_HTTP_IDLE_CONNECTION_TIMEOUT_PROPERTY =
+        "cactus.http.idleConnectionTimeout";
+
+    /**
+     * Default maximum number of connections to a single host.
+     */
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+
+    /**
+     * Default maximum number of connections overall.
+     */
+    private static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 100;
+
+    /**
+     * Default time (in ms) after which an idle connection is closed.
+     */
+    private static final long DEFAULT_IDLE_CONNECTION_TIMEOUT = 30000;
+
+    /**
+     * The client shared by the whole JVM (null until first used or if
+     * connection pooling is disabled).
+     */
+    private static HttpClient sharedClient;
+
+    /**
+     * The thread closing the idle connections of the shared client.
+     */
+    private static IdleConnectionTimeoutThread idleConnectionThread;
+
+    /**
+     * @return the client to use to execute a request, which is the shared 
+     *         pooling client unless connection pooling has been disabled
+     */
+    public static HttpClient getHttpClient()
+    {
+        if (!isConnectionPooling())
+        {
+            return new HttpClient();
+        }
+
+        synchronized (HttpClientPool.class)
+        {
+            if (sharedClient == null)
+            {
+                sharedClient = createSharedClient();
+            }
+            return sharedClient;
+        }
+    }
+
+    /**
+     * Closes all the pooled connections. A new pool will be created if a
+     * client is requested again afterwards.
+     */
+    public static synchronized void shutdown()
+    {
+        if (sharedClient != null)
+        {
+            idleConnectionThread.shutdown();
+            idleConnectionThread = null;
+
+            HttpConnectionManager manager = 
+                sharedClient.getHttpConnectionManager();
+            ((MultiThreadedHttpConnectionManager) manager).shutdown();
+            sharedClient = null;
+        }
+    }
+
+    /**
+     * @return true if connection pooling is enabled
+     */
+    private static boolean isConnectionPooling()
+    {
+        String pooling = ConfigurationInitializer.getSnapshot().getProperty(
+            CACTUS_HTTP_CONNECTION_POOLING_PROPERTY);
+        return (pooling == null) || Boolean.valueOf(pooling).booleanValue();
+    }
+
+    /**
+     * @return a new client backed by a pooling connection manager configured
+     *         from the Cactus properties
+     */
+    private static HttpClient createSharedClient()
+    {
+        MultiThreadedHttpConnectionManager manager = 
+            new MultiThreadedHttpConnectionManager();
+
+        ConfigurationSnapshot snapshot = ConfigurationInitializer.getSnapshot();
+        HttpConnectionManagerParams params = manager.getParams();
+        params.setDefaultMaxConnectionsPerHost(snapshot.getIntProperty(
+            CACTUS_HTTP_MAX_CONNECTIONS_PER_HOST_PROPERTY, 
+            DEFAULT_MAX_CONNECTIONS_PER_HOST));
+        params.setMaxTotalConnections(snapshot.getIntProperty(
+            CACTUS_HTTP_MAX_TOTAL_CONNECTIONS_PROPERTY, 
+            DEFAULT_MAX_TOTAL_CONNECTIONS));
+
+        long idleTimeout = snapshot.getLongProperty(
+            CACTUS_HTTP_IDLE_CONNECTION_TIMEOUT_PROPERTY, 
+            DEFAULT_IDLE_CONNECTION_TIMEOUT);
+
+        idleConnectionThread = new IdleConnectionTimeoutThread();
+        idleConnectionThread.setDaemon(true);
+        idleConnectionThread.setName("Cactus idle HTTP connection closer");
+        idleConnectionThread.setConnectionTimeout(idleTimeout);
+        idleConnectionThread.setTimeoutInterval(
+            Math.max(idleTimeout / 2, 1));
+        idleConnectionThread.addConnectionManager(manager);
+        idleConnectionThread.start();
+
+        return new HttpClient(manager);
+    }
+}
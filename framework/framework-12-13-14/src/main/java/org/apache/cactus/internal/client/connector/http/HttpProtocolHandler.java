@@ -21,19 +21,32 @@
 package org.apache.cactus.internal.client.connector.http;
 
 import junit.framework.Test;
+import junit.framework.TestCase;
 import org.apache.cactus.Request;
 import org.apache.cactus.WebRequest;
 import org.apache.cactus.internal.RequestDirectives;
 import org.apache.cactus.internal.WebRequestImpl;
+import org.apache.cactus.internal.WebTestResult;
 import org.apache.cactus.internal.client.WebResponseObjectFactory;
+import org.apache.cactus.internal.configuration.ConfigurationInitializer;
 import org.apache.cactus.internal.configuration.WebConfiguration;
 import org.apache.cactus.internal.util.JUnitVersionHelper;
+import org.apache.cactus.internal.util.UniqueGenerator;
 import org.apache.cactus.spi.client.ResponseObjectFactory;
+import org.apache.cactus.spi.client.connector.AsyncProtocolHandler;
 import org.apache.cactus.spi.client.connector.ProtocolHandler;
 import org.apache.cactus.spi.client.connector.ProtocolState;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Implementation for the HTTP protocol. It connects to the redirector proxy
@@ -42,8 +55,32 @@ import java.net.HttpURLConnection;
  * 
  * @version $Id: HttpProtocolHandler.java 238991 2004-05-22 11:34:50Z vmassol $
  */
-public class HttpProtocolHandler implements ProtocolHandler
+public class HttpProtocolHandler implements AsyncProtocolHandler
 {
+    /**
+     * Name of the Cactus property that defines the maximum number of threads
+     * running the tests started with {@link #runTestAsync}.
+     */
+    public static final String CACTUS_HTTP_ASYNC_THREAD_COUNT_PROPERTY = 
+        "cactus.http.asyncThreadCount";
+
+    /**
+     * Default maximum number of threads running the asynchronous tests.
+     */
+    private static final int DEFAULT_ASYNC_THREAD_COUNT = 8;
+
+    /**
+     * Time in seconds after which an idle asynchronous test thread stops.
+     */
+    private static final long ASYNC_THREAD_KEEP_ALIVE = 60;
+
+    /**
+     * Threads executing the tests started with {@link #runTestAsync}. At most
+     * <code>cactus.http.asyncThreadCount</code> tests run at the same time,
+     * the others wait in the queue of the pool.
+     */
+    private static final ExecutorService EXECUTOR = createExecutor();
+
     /**
      * Cactus configuration data to use. In particular contains useful 
      * configuration data for the HTTP connector (e.g. redirector URL).
@@ -87,6 +124,40 @@ public class HttpProtocolHandler implements ProtocolHandler
         return state;
     }
 
+    /**
+     * {@inheritDoc}
+     * @see AsyncProtocolHandler#runTestAsync(Test, Test, Request)
+     */
+    public Future<ProtocolState> runTestAsync(final Test theDelegatedTest, 
+        final Test theWrappedTest, final Request theRequest)
+    {
+        // The errors of the test are reported as is as the cause of the
+        // ExecutionException, which a Callable cannot do for a Throwable
+        FutureTask<ProtocolState> task = new FutureTask<ProtocolState>(
+            new Runnable()
+            {
+                public void run()
+                {
+                }
+            }, null)
+        {
+            public void run()
+            {
+                try
+                {
+                    set(runTest(theDelegatedTest, theWrappedTest, 
+                        theRequest));
+                }
+                catch (Throwable t)
+                {
+                    setException(t);
+                }
+            }
+        };
+        EXECUTOR.execute(task);
+        return task;
+    }
+
     /**
      * {@inheritDoc}
      * @see ProtocolHandler#createResponseObjectFactory(ProtocolState)
@@ -111,6 +182,61 @@ public class HttpProtocolHandler implements ProtocolHandler
         state.getConnection().getInputStream().close();       
     }
 
+    // Public methods -----------------------------------------------------
+
+    /**
+     * Runs several tests on the server side in a single HTTP request, using
+     * the Batch Test service of the redirector. The tests cannot have begin
+     * or end methods as they all share the same request and response.
+     *
+     * @param theDelegatedTests the Cactus tests to execute
+     * @param theWrappedTests the pure JUnit tests wrapped by the Cactus tests
+     *        (the array can contain null elements for tests that are not 
+     *        wrapping any test)
+     * @return the results of the tests, in the same order as the tests
+     * @exception Throwable if the tests could not be run on the server side
+     */
+    public WebTestResult[] runBatchTest(Test[] theDelegatedTests, 
+        Test[] theWrappedTests) throws Throwable
+    {
+        WebRequest request = (WebRequest) createRequest();
+
+        RequestDirectives directives = new RequestDirectives(request);
+        directives.setAutoSession(
+            request.getAutomaticSession() ? "true" : "false");
+
+        // One test per line: class name, method name and wrapped class name
+        StringBuffer tests = new StringBuffer();
+        for (int i = 0; i < theDelegatedTests.length; i++)
+        {
+            tests.append(theDelegatedTests[i].getClass().getName());
+            tests.append('\t');
+            tests.append(getCurrentTestName(theDelegatedTests[i]));
+            tests.append('\t');
+            if (theWrappedTests[i] != null)
+            {
+                tests.append(theWrappedTests[i].getClass().getName());
+            }
+            tests.append('\n');
+        }
+        request.setContentType("text/plain; charset=UTF-8");
+        request.setUserData(new ByteArrayInputStream(
+            tests.toString().getBytes("UTF-8")));
+
+        DefaultHttpClient client = new DefaultHttpClient(getConfiguration());
+        return client.doBatchTest(request);
+    }
+
+    /**
+     * @return the URL of the redirector called by this handler when the
+     *         tests do not select another redirector
+     */
+    public String getRedirectorURL()
+    {
+        return getConfiguration().getRedirectorURL(
+            (WebRequest) createRequest());
+    }
+
     // Private methods ----------------------------------------------------
     
     /**
@@ -145,6 +271,20 @@ public class HttpProtocolHandler implements ProtocolHandler
         directives.setAutoSession(
             theRequest.getAutomaticSession() ? "true" : "false");
 
+        // Give the test a unique id so that the redirector can keep its
+        // result apart from the results of tests running concurrently
+        if (theDelegatedTest instanceof TestCase)
+        {
+            directives.setUniqueId(
+                UniqueGenerator.generate((TestCase) theDelegatedTest));
+        }
+
+        // Ask for the test result to be returned with the test response
+        if (getConfiguration().isInlineTestResult())
+        {
+            directives.setInlineResult("true");
+        }
+
         // Add the wrapped test if it is not equal to our current instance
         if (theWrappedTest != null)
         {
@@ -175,4 +315,33 @@ public class HttpProtocolHandler implements ProtocolHandler
     {
         return JUnitVersionHelper.getTestCaseName(theDelegatedTest);        
     }
+
+    /**
+     * @return the pool of daemon threads running the asynchronous tests, 
+     *         sized from the Cactus properties
+     */
+    private static ExecutorService createExecutor()
+    {
+        int threadCount = Math.max(1, 
+            ConfigurationInitializer.getSnapshot().getIntProperty(
+                CACTUS_HTTP_ASYNC_THREAD_COUNT_PROPERTY, 
+                DEFAULT_ASYNC_THREAD_COUNT));
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, 
+            threadCount, ASYNC_THREAD_KEEP_ALIVE, TimeUnit.SECONDS, 
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+            {
+                private int count;
+
+                public synchronized Thread newThread(Runnable theRunnable)
+                {
+                    Thread thread = new Thread(theRunnable, 
+                        "Cactus HTTP test runner-" + (++count));
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
 }
@@ -21,25 +21,32 @@
 package org.apache.cactus.internal.client.connector.http;
 
 import junit.framework.Test;
+import junit.framework.TestCase;
 import org.apache.cactus.JmsRequest;
 import org.apache.cactus.Request;
 import org.apache.cactus.ServiceDefinition;
+import org.apache.cactus.internal.ServiceEnumeration;
+import org.apache.cactus.internal.WebTestResult;
 import org.apache.cactus.internal.client.jms.JmsClient;
 import org.apache.cactus.internal.client.jms.JmsClientHelper;
 import org.apache.cactus.internal.util.JUnitVersionHelper;
+import org.apache.cactus.internal.util.UniqueGenerator;
 import org.apache.cactus.spi.client.ResponseObjectFactory;
-import org.apache.cactus.spi.client.connector.ProtocolHandler;
+import org.apache.cactus.spi.client.connector.AsyncProtocolHandler;
 import org.apache.cactus.spi.client.connector.ProtocolState;
 import org.apache.cactus.util.JmsConfiguration;
 
-import javax.jms.QueueSession;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * The JMS protocol handler.
  * 
  * @version $Id$
  */
-public class JmsProtocolHandler implements ProtocolHandler
+public class JmsProtocolHandler implements AsyncProtocolHandler
 {
     /**
      * Cactus configuration data to use. In particular contains useful 
@@ -47,11 +54,6 @@ public class JmsProtocolHandler implements ProtocolHandler
      */
     private JmsConfiguration configuration;
     
-    /**
-     * The session.
-     */
-    private QueueSession session;
-
     /**
      * @param theConfiguration configuration data
      */
@@ -77,7 +79,7 @@ public class JmsProtocolHandler implements ProtocolHandler
      */
     public Request createRequest() 
     {
-        return new JmsRequest(session);
+        return new JmsRequest(JmsClientHelper.getQueueSession());
     }
 
     /**
@@ -101,24 +103,56 @@ public class JmsProtocolHandler implements ProtocolHandler
     public ProtocolState runTest(Test theDelegatedTest, Test theWrappedTest,
             Request theRequest) throws Throwable 
     {
-        // Create the JMS Request object and creates necessary JMS objects
-        // so that the user can get them in his beginXXX method, so that he
-        // can create the message to send.
-        JmsRequest request = new JmsRequest(
-            JmsClientHelper.getQueueSession());
-
-        // Add Cactus information to the JMS Message
-        request.getMessage().setStringProperty(
-            ServiceDefinition.CLASS_NAME_PARAM, theDelegatedTest.getClass().getName());
-        request.getMessage().setStringProperty(
-            ServiceDefinition.METHOD_NAME_PARAM, (getCurrentTestName(theDelegatedTest)));
-
-        // Start the test
-        new JmsClient().doTest(request);
-        
-        return new JmsProtocolState();
+        try
+        {
+            return runTestAsync(theDelegatedTest, theWrappedTest, theRequest)
+                .get();
+        }
+        catch (ExecutionException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Sends the JMS message asking for the test to run and returns without
+     * waiting for the test result.
+     * 
+     * @see AsyncProtocolHandler#runTestAsync(Test, Test, Request)
+     */
+    public Future<ProtocolState> runTestAsync(Test theDelegatedTest, 
+        Test theWrappedTest, Request theRequest)
+    {
+        try
+        {
+            // Use the message created by the user in his beginXXX method, 
+            // if any
+            JmsRequest request = (JmsRequest) theRequest;
+            if (request.getMessage() == null)
+            {
+                request.createTextMessage();
+            }
+
+            // Add Cactus information to the JMS Message
+            request.getMessage().setStringProperty(
+                ServiceDefinition.SERVICE_NAME_PARAM, 
+                ServiceEnumeration.CALL_TEST_SERVICE.toString());
+            request.getMessage().setStringProperty(
+                ServiceDefinition.CLASS_NAME_PARAM, 
+                theDelegatedTest.getClass().getName());
+            request.getMessage().setStringProperty(
+                ServiceDefinition.METHOD_NAME_PARAM, 
+                getCurrentTestName(theDelegatedTest));
+
+            // Start the test
+            return new PendingState(new JmsClient().doTest(request, 
+                UniqueGenerator.generate((TestCase) theDelegatedTest)));
+        }
+        catch (Throwable t)
+        {
+            return new PendingState(t);
+        }
     }
-    
     
     /**
      * Returns the configuration data.
@@ -139,4 +173,106 @@ public class JmsProtocolHandler implements ProtocolHandler
     {
         return JUnitVersionHelper.getTestCaseName(theDelegatedTest);        
     }
+
+    /**
+     * The state of a test sent to the redirector. <code>get()</code> waits
+     * for the test result and reports the error raised by the test on the
+     * server side, if any, as the cause of an 
+     * <code>ExecutionException</code>.
+     */
+    private static class PendingState implements Future<ProtocolState>
+    {
+        /**
+         * The pending test result, null if the test could not be sent.
+         */
+        private Future<WebTestResult> result;
+
+        /**
+         * The error that prevented the test from being sent, if any.
+         */
+        private Throwable error;
+
+        /**
+         * @param theResult the pending test result
+         */
+        public PendingState(Future<WebTestResult> theResult)
+        {
+            this.result = theResult;
+        }
+
+        /**
+         * @param theError the error that prevented the test from being sent
+         */
+        public PendingState(Throwable theError)
+        {
+            this.error = theError;
+        }
+
+        /**
+         * @see Future#cancel(boolean)
+         */
+        public boolean cancel(boolean isInterruptible)
+        {
+            return false;
+        }
+
+        /**
+         * @see Future#isCancelled()
+         */
+        public boolean isCancelled()
+        {
+            return false;
+        }
+
+        /**
+         * @see Future#isDone()
+         */
+        public boolean isDone()
+        {
+            return (this.result == null) || this.result.isDone();
+        }
+
+        /**
+         * @see Future#get()
+         */
+        public ProtocolState get() 
+            throws InterruptedException, ExecutionException
+        {
+            if (this.result == null)
+            {
+                throw new ExecutionException(this.error);
+            }
+            return toState(this.result.get());
+        }
+
+        /**
+         * @see Future#get(long, TimeUnit)
+         */
+        public ProtocolState get(long theTimeout, TimeUnit theUnit) 
+            throws InterruptedException, ExecutionException, TimeoutException
+        {
+            if (this.result == null)
+            {
+                throw new ExecutionException(this.error);
+            }
+            return toState(this.result.get(theTimeout, theUnit));
+        }
+
+        /**
+         * @param theResult the test result sent back by the redirector
+         * @return the protocol state of the test
+         * @exception ExecutionException if the test failed on the server 
+         *            side
+         */
+        private ProtocolState toState(WebTestResult theResult) 
+            throws ExecutionException
+        {
+            if (theResult.hasException())
+            {
+                throw new ExecutionException(
+                    DefaultHttpClient.createException(theResult));
+            }
+            return new JmsProtocolState();
+        }
+    }
 }
@@ -0,0 +1,438 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.client.connector.http;
+
+import org.apache.cactus.internal.configuration.ConfigurationInitializer;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the content of an HTTP response read by 
+ * {@link AutoReadHttpURLConnection}. The content is kept in memory as a list
+ * of fixed size chunks, so that it is never copied into a bigger array as it
+ * grows, and the input stream returned by {@link #getInputStream()} reads
+ * the chunks directly. Once the content grows over a threshold it is 
+ * spilled to a temporary file, which is then read through a memory mapping.
+ * The threshold (in bytes) is defined by the 
+ * <code>cactus.http.responseSpillThreshold</code> Cactus property (defaults
+ * to 4 MB, 0 to never spill).
+ *
+ * @version $Id$
+ */
+final class ResponseBuffer extends OutputStream
+{
+    /**
+     * Name of the Cactus property that defines the size (in bytes) above 
+     * which the response content is spilled to a temporary file.
+     */
+    static final String CACTUS_HTTP_RESPONSE_SPILL_THRESHOLD_PROPERTY = 
+        "cactus.http.responseSpillThreshold";
+
+    /**
+     * Default size (in bytes) above which the content is spilled to a 
+     * temporary file.
+     */
+    private static final long DEFAULT_SPILL_THRESHOLD = 4 * 1024 * 1024L;
+
+    /**
+     * Size of the in-memory chunks.
+     */
+    private static final int CHUNK_SIZE = 16384;
+
+    /**
+     * Size (in bytes) above which the content is spilled to a temporary file,
+     * 0 or less to keep it in memory.
+     */
+    private long spillThreshold;
+
+    /**
+     * The in-memory chunks (null once the content has been spilled).
+     */
+    private List<byte[]> chunks = new ArrayList<byte[]>();
+
+    /**
+     * Number of bytes used in the last chunk.
+     */
+    private int lastChunkLength = CHUNK_SIZE;
+
+    /**
+     * Total number of bytes written.
+     */
+    private long size;
+
+    /**
+     * The temporary file holding the content once it has been spilled.
+     */
+    private File spillFile;
+
+    /**
+     * The stream writing to the temporary file.
+     */
+    private OutputStream spillStream;
+
+    /**
+     * Creates a buffer using the spill threshold defined by the Cactus
+     * configuration.
+     */
+    ResponseBuffer()
+    {
+        this(ConfigurationInitializer.getSnapshot().getLongProperty(
+            CACTUS_HTTP_RESPONSE_SPILL_THRESHOLD_PROPERTY, 
+            DEFAULT_SPILL_THRESHOLD));
+    }
+
+    /**
+     * @param theSpillThreshold the size (in bytes) above which the content 
+     *        is spilled to a temporary file, 0 or less to keep it in memory
+     */
+    ResponseBuffer(long theSpillThreshold)
+    {
+        this.spillThreshold = theSpillThreshold;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see OutputStream#write(int)
+     */
+    public void write(int theByte) throws IOException
+    {
+        if ((this.spillStream == null) && (this.spillThreshold > 0)
+            && (this.size + 1 > this.spillThreshold))
+        {
+            spill();
+        }
+
+        if (this.spillStream != null)
+        {
+            this.spillStream.write(theByte);
+        }
+        else
+        {
+            if (this.lastChunkLength == CHUNK_SIZE)
+            {
+                this.chunks.add(new byte[CHUNK_SIZE]);
+                this.lastChunkLength = 0;
+            }
+            this.chunks.get(this.chunks.size() - 1)[this.lastChunkLength++] =
+                (byte) theByte;
+        }
+
+        this.size++;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see OutputStream#write(byte[], int, int)
+     */
+    public void write(byte[] theBytes, int theOffset, int theLength)
+        throws IOException
+    {
+        if ((this.spillStream == null) && (this.spillThreshold > 0)
+            && (this.size + theLength > this.spillThreshold))
+        {
+            spill();
+        }
+
+        if (this.spillStream != null)
+        {
+            this.spillStream.write(theBytes, theOffset, theLength);
+        }
+        else
+        {
+            int offset = theOffset;
+            int remaining = theLength;
+            while (remaining > 0)
+            {
+                if (this.lastChunkLength == CHUNK_SIZE)
+                {
+                    this.chunks.add(new byte[CHUNK_SIZE]);
+                    this.lastChunkLength = 0;
+                }
+                int count = Math.min(remaining, 
+                    CHUNK_SIZE - this.lastChunkLength);
+                System.arraycopy(theBytes, offset, 
+                    this.chunks.get(this.chunks.size() - 1), 
+                    this.lastChunkLength, count);
+                this.lastChunkLength += count;
+                offset += count;
+                remaining -= count;
+            }
+        }
+
+        this.size += theLength;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see OutputStream#close()
+     */
+    public void close() throws IOException
+    {
+        if (this.spillStream != null)
+        {
+            this.spillStream.close();
+        }
+    }
+
+    /**
+     * Releases the content when it cannot be used, for example because the
+     * response could not be fully read: the temporary file, if any, is
+     * closed and deleted.
+     */
+    void discard()
+    {
+        this.chunks = null;
+        if (this.spillStream != null)
+        {
+            try
+            {
+                this.spillStream.close();
+            }
+            catch (IOException e)
+            {
+                // Nothing we can do about it, the file is deleted anyway
+            }
+        }
+        if ((this.spillFile != null) && !this.spillFile.delete())
+        {
+            this.spillFile.deleteOnExit();
+        }
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    long size()
+    {
+        return this.size;
+    }
+
+    /**
+     * @return true if the content has been spilled to a temporary file
+     */
+    boolean isSpilled()
+    {
+        return this.spillFile != null;
+    }
+
+    /**
+     * Returns a stream reading the content. Must be called once the buffer
+     * has been closed.
+     *
+     * @return the input stream
+     * @exception IOException if the temporary file cannot be read
+     */
+    InputStream getInputStream() throws IOException
+    {
+        if (this.spillFile == null)
+        {
+            return new ChunkInputStream();
+        }
+
+        if (this.size > Integer.MAX_VALUE)
+        {
+            this.spillFile.deleteOnExit();
+            return new FileInputStream(this.spillFile);
+        }
+
+        RandomAccessFile file = new RandomAccessFile(this.spillFile, "r");
+        ByteBuffer buffer;
+        try
+        {
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+                this.size);
+        }
+        finally
+        {
+            file.close();
+        }
+
+        // The mapping remains valid once the file is deleted, except on 
+        // platforms which do not allow deleting a mapped file
+        if (!this.spillFile.delete())
+        {
+            this.spillFile.deleteOnExit();
+        }
+
+        return new ByteBufferInputStream(buffer);
+    }
+
+    /**
+     * Moves the content written so far to a temporary file, to which the 
+     * rest of the content will be written.
+     *
+     * @exception IOException if the temporary file cannot be written
+     */
+    private void spill() throws IOException
+    {
+        this.spillFile = File.createTempFile("cactus-response", ".tmp");
+        this.spillStream = new BufferedOutputStream(
+            new FileOutputStream(this.spillFile), CHUNK_SIZE);
+
+        for (int i = 0; i < this.chunks.size(); i++)
+        {
+            this.spillStream.write(this.chunks.get(i), 0, 
+                (i == this.chunks.size() - 1) 
+                ? this.lastChunkLength : CHUNK_SIZE);
+        }
+        this.chunks = null;
+    }
+
+    /**
+     * Stream reading the in-memory chunks.
+     */
+    private class ChunkInputStream extends InputStream
+    {
+        /**
+         * Position of the next byte to read.
+         */
+        private long position;
+
+        /**
+         * {@inheritDoc}
+         * @see InputStream#read()
+         */
+        public int read()
+        {
+            if (this.position >= size)
+            {
+                return -1;
+            }
+            byte value = chunks.get((int) (this.position / CHUNK_SIZE))
+                [(int) (this.position % CHUNK_SIZE)];
+            this.position++;
+            return value & 0xFF;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see InputStream#read(byte[], int, int)
+         */
+        public int read(byte[] theBytes, int theOffset, int theLength)
+        {
+            if (theLength == 0)
+            {
+                return 0;
+            }
+            if (this.position >= size)
+            {
+                return -1;
+            }
+
+            int count = (int) Math.min(theLength, size - this.position);
+            int offset = theOffset;
+            int remaining = count;
+            while (remaining > 0)
+            {
+                int chunkOffset = (int) (this.position % CHUNK_SIZE);
+                int length = Math.min(remaining, CHUNK_SIZE - chunkOffset);
+                System.arraycopy(
+                    chunks.get((int) (this.position / CHUNK_SIZE)), 
+                    chunkOffset, theBytes, offset, length);
+                this.position += length;
+                offset += length;
+                remaining -= length;
+            }
+            return count;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see InputStream#available()
+         */
+        public int available()
+        {
+            return (int) Math.min(Integer.MAX_VALUE, size - this.position);
+        }
+    }
+
+    /**
+     * Stream reading a memory mapped temporary file.
+     */
+    private static class ByteBufferInputStream extends InputStream
+    {
+        /**
+         * The mapped content.
+         */
+        private ByteBuffer buffer;
+
+        /**
+         * @param theBuffer the mapped content
+         */
+        public ByteBufferInputStream(ByteBuffer theBuffer)
+        {
+            this.buffer = theBuffer;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see InputStream#read()
+         */
+        public int read()
+        {
+            if (!this.buffer.hasRemaining())
+            {
+                return -1;
+            }
+            return this.buffer.get() & 0xFF;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see InputStream#read(byte[], int, int)
+         */
+        public int read(byte[] theBytes, int theOffset, int theLength)
+        {
+            if (theLength == 0)
+            {
+                return 0;
+            }
+            if (!this.buffer.hasRemaining())
+            {
+                return -1;
+            }
+
+            int count = Math.min(theLength, this.buffer.remaining());
+            this.buffer.get(theBytes, theOffset, count);
+            return count;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see InputStream#available()
+         */
+        public int available()
+        {
+            return this.buffer.remaining();
+        }
+    }
+}
@@ -21,13 +21,17 @@
 package org.apache.cactus.internal.client.jms;
 
 import org.apache.cactus.JmsRequest;
+import org.apache.cactus.internal.WebTestResult;
+import org.apache.cactus.util.JmsConfiguration;
 
+import javax.jms.Message;
 import javax.jms.QueueSender;
+import java.util.concurrent.Future;
 
 /**
  * JMS class for performing the steps necessary to run a test. It involves
  * sending a first JMS message to a queue on which the Cactus MDB Redirector
- * is listening.
+ * is listening and then waiting for the test result to be sent back.
  *
  * @author <a href="mailto:vmassol@apache.org">Vincent Massol</a>
  *
@@ -39,23 +43,46 @@ public class JmsClient
 {
     /**
      * Calls the test method indirectly by calling the Redirector MDB (by
-     * sending a JMS Message on a queue it is listening to).
+     * sending a JMS Message on a queue it is listening to). The message
+     * asks for the test result to be sent back on the queue of the
+     * {@link JmsResultCollector}, with the given correlation id.
      *
      * @param theRequest the request containing data to be sent using JMS to
      *        the server side
-     * @exception Throwable if an error occured in the test method or in the
-     *                      redirector servlet.
+     * @param theCorrelationId the id with which the redirector tags the test
+     *        result
+     * @return the result of the test, available once the redirector has
+     *         sent it back
+     * @exception Throwable if an error occured sending the JMS message
      */
-    public void doTest(JmsRequest theRequest) throws Throwable
+    public Future<WebTestResult> doTest(JmsRequest theRequest, 
+        String theCorrelationId) throws Throwable
     {
-        // 1 - Create a sender
+        JmsResultCollector collector = JmsResultCollector.getInstance();
+
+        // 1 - Get the sender of the current thread
         QueueSender sender =
-            JmsClientHelper.createQueueSender(theRequest.getQueueName());
+            JmsClientHelper.getQueueSender(theRequest.getQueueName());
+
+        // 2 - Ask for the result to be sent back to us
+        Message message = theRequest.getMessage();
+        message.setJMSReplyTo(collector.getReplyQueue());
+        message.setJMSCorrelationID(theCorrelationId);
+
+        Future<WebTestResult> result = collector.expect(theCorrelationId, 
+            JmsConfiguration.getResultTimeout());
+
+        // 3 - Send the JMS Message
+        try
+        {
+            sender.send(message);
+        }
+        catch (Throwable t)
+        {
+            collector.cancel(theCorrelationId);
+            throw t;
+        }
 
-        this.getClass().getName();
-        
-        
-        // 2 - Send the JMS Message
-        sender.send(theRequest.getMessage());
+        return result;
     }
 }
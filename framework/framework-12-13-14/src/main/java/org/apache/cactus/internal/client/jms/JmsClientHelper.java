@@ -33,11 +33,23 @@ import javax.jms.Session;
 import javax.naming.Context;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Helper class to send a JMS message.
  *
+ * The JNDI context, the connection factory and the queues are looked up
+ * only once. As a JMS session must not be used by several threads, each
+ * thread gets its own session (and its own senders), all created from a
+ * single connection. The resources of all the threads are kept in a
+ * registry. Those of the threads that have finished are closed when another
+ * thread gets its resources, and all of them are closed when 
+ * {@link #close()} is called or when the JVM shuts down.
+ *
  * @author <a href="mailto:vmassol@apache.org">Vincent Massol</a>
  *
  * @since 1.4
@@ -47,9 +59,43 @@ import java.util.Hashtable;
 public class JmsClientHelper
 {
     /**
-     * The JMS queue session used to send messages to the server side.
+     * The JNDI initial context (created on first use).
+     */
+    private static InitialContext initialContext;
+
+    /**
+     * The JMS queue connection factory (looked up on first use).
+     */
+    private static QueueConnectionFactory queueConnectionFactory;
+
+    /**
+     * The queues already looked up, keyed by JNDI name.
+     */
+    private static Map<String, Queue> queues = 
+        new ConcurrentHashMap<String, Queue>();
+
+    /**
+     * The JMS queue connection from which all the sessions used to send 
+     * messages to the server side are created (created on first use).
+     */
+    private static QueueConnection queueConnection;
+
+    /**
+     * Whether the connection is closed when the JVM shuts down.
+     */
+    private static boolean isClosedOnShutdown;
+
+    /**
+     * The resources of the current thread.
+     */
+    private static ThreadLocal<ThreadResources> threadResources = 
+        new ThreadLocal<ThreadResources>();
+
+    /**
+     * The resources of all the threads, keyed by thread.
      */
-    private static QueueSession queueSession;
+    private static Map<Thread, ThreadResources> allThreadResources = 
+        new HashMap<Thread, ThreadResources>();
 
     /**
      * Create a JMS Queue Connection to be able to send messages later on.
@@ -66,106 +112,134 @@ public class JmsClientHelper
     }
 
     /**
-     * Return the Queue session that we will use to send all JMS messages
-     * (the Session is created if it is the first time this method is
-     * called).
-     *
-     * @return the created Queue Session
+     * @return the connection from which the sessions are created (the
+     *         connection is created if it is the first time this method is
+     *         called)
+     * @exception JMSException if the connection cannot be created
      */
-    public static synchronized QueueSession getQueueSession()
+    private static synchronized QueueConnection getQueueConnection()
+        throws JMSException
     {
-        if (queueSession == null) {
-            try 
-            {
-                queueSession =
-                    createQueueConnection().createQueueSession(false,
-                        Session.AUTO_ACKNOWLEDGE);
-            } 
-            catch (JMSException e) 
+        if (queueConnection == null)
+        {
+            queueConnection = createQueueConnection();
+
+            if (!isClosedOnShutdown)
             {
-                throw new ChainedRuntimeException(
-                    "Failed to create JMS Queue Session", e);
+                Runtime.getRuntime().addShutdownHook(new Thread()
+                {
+                    public void run()
+                    {
+                        close();
+                    }
+                });
+                isClosedOnShutdown = true;
             }
         }
-        return queueSession;
+        return queueConnection;
+    }
+
+    /**
+     * Return the Queue session of the current thread, to use to send JMS
+     * messages (the Session is created if it is the first time this method
+     * is called by the current thread).
+     *
+     * @return the Queue Session of the current thread
+     */
+    public static QueueSession getQueueSession()
+    {
+        return getThreadResources().getQueueSession();
     }
 
     /**
      * @return the JNDI Initial Context as defined in the Cactus configuration
-     *         file (used to retrieve the JMS Queue Connection Factory)
+     *         file (used to retrieve the JMS Queue Connection Factory). It is
+     *         created on first use.
      */
-    public static InitialContext getInitialContext()
+    public static synchronized InitialContext getInitialContext()
     {
-        InitialContext context = null;
-        try 
-        {
-            Hashtable env = new Hashtable();
-            env.put(Context.INITIAL_CONTEXT_FACTORY,
-                JmsConfiguration.getJndiInitialContextFactory());
-            env.put(Context.PROVIDER_URL,
-                JmsConfiguration.getJndiProviderURL());
-            env.put(Context.URL_PKG_PREFIXES,
-                    JmsConfiguration.getJndiUrlPkgPrefixes());
-            env.put("j2ee.clientName", "JmsClientHelper");
-            
-            context = new InitialContext(env);
-            System.out.println(context);
-        } 
-        catch (NamingException e) 
+        if (initialContext == null)
         {
-            throw new ChainedRuntimeException(
-                "Failed to create JNDI initial context", e);
+            try 
+            {
+                Hashtable env = new Hashtable();
+                env.put(Context.INITIAL_CONTEXT_FACTORY,
+                    JmsConfiguration.getJndiInitialContextFactory());
+                env.put(Context.PROVIDER_URL,
+                    JmsConfiguration.getJndiProviderURL());
+                env.put(Context.URL_PKG_PREFIXES,
+                        JmsConfiguration.getJndiUrlPkgPrefixes());
+                env.put("j2ee.clientName", "JmsClientHelper");
+                
+                initialContext = new InitialContext(env);
+            } 
+            catch (NamingException e) 
+            {
+                throw new ChainedRuntimeException(
+                    "Failed to create JNDI initial context", e);
+            }
         }
 
-        return context;
+        return initialContext;
     }
 
     /**
      * @return the JMS Queue Connection Factory from which to retrieve Queues
+     *         (looked up on first use)
      */
-    public static QueueConnectionFactory getQueueConnnectionFactory()
+    public static synchronized QueueConnectionFactory 
+        getQueueConnnectionFactory()
     {
-        QueueConnectionFactory queueConnectionFactory = null;
-        try 
+        if (queueConnectionFactory == null)
         {
-            queueConnectionFactory =
-                (QueueConnectionFactory) (getInitialContext().
-                    lookup(JmsConfiguration.getJmsConnectionFactoryJndiName()));
-        } 
-        catch (NamingException e) 
-        {
-            throw new ChainedRuntimeException(
-                "Failed to lookup [" +
-                JmsConfiguration.getJmsConnectionFactoryJndiName() +
-                "] Connection Factory in JNDI", e);
+            try 
+            {
+                queueConnectionFactory =
+                    (QueueConnectionFactory) (getInitialContext().lookup(
+                        JmsConfiguration.getJmsConnectionFactoryJndiName()));
+            } 
+            catch (NamingException e) 
+            {
+                throw new ChainedRuntimeException(
+                    "Failed to lookup [" +
+                    JmsConfiguration.getJmsConnectionFactoryJndiName() +
+                    "] Connection Factory in JNDI", e);
+            }
         }
 
         return queueConnectionFactory;
     }
 
     /**
-     * Lookup a queue in JNDI.
+     * Lookup a queue in JNDI (queues are looked up only once).
      *
      * @param theQueueName the JNDI name of the queue to look up
      * @return the queue object
      */
     public static Queue getQueue(String theQueueName)
     {
-        Queue queue = null;
-        try 
-        {
-            queue = (Queue) (getInitialContext().lookup(theQueueName));
-        } 
-        catch (NamingException e) 
+        Queue queue = queues.get(theQueueName);
+        if (queue == null)
         {
-            throw new ChainedRuntimeException(
-                "Failed to lookup [" + theQueueName + "] Queue in JNDI", e);
+            try 
+            {
+                queue = (Queue) (getInitialContext().lookup(theQueueName));
+            } 
+            catch (NamingException e) 
+            {
+                throw new ChainedRuntimeException(
+                    "Failed to lookup [" + theQueueName + "] Queue in JNDI", 
+                    e);
+            }
+            queues.put(theQueueName, queue);
         }
         return queue;
     }
 
     /**
-     * Creates a Queue Sender to send JMS messages.
+     * Creates a Queue Sender to send JMS messages. The sender is created
+     * from the session of the current thread and must be closed by the
+     * caller.
      *
      * @param theQueueName the JNDI name of the queue to use to send messages
      * @return the queue sender object
@@ -188,4 +262,206 @@ public class JmsClientHelper
 
         return queueSender;
     }
+
+    /**
+     * Returns the Queue Sender of the current thread for the given queue. 
+     * Senders are created on first use and must not be closed by the caller.
+     *
+     * @param theQueueName the JNDI name of the queue to use to send messages
+     * @return the queue sender object
+     */
+    public static QueueSender getQueueSender(String theQueueName)
+    {
+        return getThreadResources().getQueueSender(theQueueName);
+    }
+
+    /**
+     * Closes the connection used to send messages to the server side, along
+     * with all its sessions and senders, and the connection on which the
+     * test results are received. They are created again if needed.
+     */
+    public static void close()
+    {
+        // Not called with the lock of this class held, as the collector 
+        // takes its own lock before calling this class
+        JmsResultCollector.closeInstance();
+        closeQueueConnection();
+    }
+
+    /**
+     * Closes the connection used to send messages to the server side, along
+     * with all its sessions and senders.
+     */
+    private static synchronized void closeQueueConnection()
+    {
+        // Sessions are invalidated as a whole so that threads holding
+        // resources from the closed connection do not use them again
+        threadResources = new ThreadLocal<ThreadResources>();
+
+        for (ThreadResources resources : allThreadResources.values())
+        {
+            resources.close();
+        }
+        allThreadResources.clear();
+
+        if (queueConnection != null)
+        {
+            try
+            {
+                // Closing the connection closes its sessions and senders
+                queueConnection.close();
+            }
+            catch (JMSException e)
+            {
+                // Nothing we can do about it
+            }
+            queueConnection = null;
+        }
+    }
+
+    /**
+     * @return the resources of the current thread, created if needed
+     */
+    private static ThreadResources getThreadResources()
+    {
+        ThreadLocal<ThreadResources> local;
+        synchronized (JmsClientHelper.class)
+        {
+            local = threadResources;
+        }
+
+        ThreadResources resources = local.get();
+        if (resources == null)
+        {
+            resources = new ThreadResources(createThreadQueueSession());
+            local.set(resources);
+            synchronized (JmsClientHelper.class)
+            {
+                releaseFinishedThreadResources();
+                allThreadResources.put(Thread.currentThread(), resources);
+            }
+        }
+        return resources;
+    }
+
+    /**
+     * Closes the resources of the threads that have finished, so that 
+     * short-lived threads do not keep their session open for ever.
+     */
+    private static synchronized void releaseFinishedThreadResources()
+    {
+        Iterator<Map.Entry<Thread, ThreadResources>> entries = 
+            allThreadResources.entrySet().iterator();
+        while (entries.hasNext())
+        {
+            Map.Entry<Thread, ThreadResources> entry = entries.next();
+            if (!entry.getKey().isAlive())
+            {
+                entry.getValue().close();
+                entries.remove();
+            }
+        }
+    }
+
+    /**
+     * @return a new session created from the shared connection
+     */
+    private static synchronized QueueSession createThreadQueueSession()
+    {
+        try 
+        {
+            return getQueueConnection().createQueueSession(false, 
+                Session.AUTO_ACKNOWLEDGE);
+        } 
+        catch (JMSException e) 
+        {
+            throw new ChainedRuntimeException(
+                "Failed to create JMS Queue Session", e);
+        }
+    }
+
+    /**
+     * The JMS session of a thread and the senders created from it.
+     */
+    private static class ThreadResources
+    {
+        /**
+         * The session of the thread.
+         */
+        private QueueSession queueSession;
+
+        /**
+         * The senders created from the session, keyed by queue JNDI name 
+         * (concurrent as {@link #close()} may be called by another thread).
+         */
+        private Map<String, QueueSender> queueSenders = 
+            new ConcurrentHashMap<String, QueueSender>();
+
+        /**
+         * @param theQueueSession the session of the thread
+         */
+        public ThreadResources(QueueSession theQueueSession)
+        {
+            this.queueSession = theQueueSession;
+        }
+
+        /**
+         * @return the session of the thread
+         */
+        public QueueSession getQueueSession()
+        {
+            return this.queueSession;
+        }
+
+        /**
+         * @param theQueueName the JNDI name of the queue
+         * @return the sender for the queue, created on first use
+         */
+        public QueueSender getQueueSender(String theQueueName)
+        {
+            QueueSender sender = this.queueSenders.get(theQueueName);
+            if (sender == null)
+            {
+                Queue queue = getQueue(theQueueName);
+                try 
+                {
+                    sender = this.queueSession.createSender(queue);
+                } 
+                catch (JMSException e) 
+                {
+                    throw new ChainedRuntimeException("Failed to create "
+                        + "queue sender for queue [" + queue + "]", e);
+                }
+                this.queueSenders.put(theQueueName, sender);
+            }
+            return sender;
+        }
+
+        /**
+         * Closes the senders and the session of the thread.
+         */
+        public void close()
+        {
+            for (QueueSender sender : this.queueSenders.values())
+            {
+                try
+                {
+                    sender.close();
+                }
+                catch (JMSException e)
+                {
+                    // Nothing we can do about it
+                }
+            }
+
+            try
+            {
+                this.queueSession.close();
+            }
+            catch (JMSException e)
+            {
+                // Nothing we can do about it
+            }
+        }
+    }
 }
@@ -0,0 +1,395 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.client.jms;
+
+import org.apache.cactus.internal.WebTestResult;
+import org.apache.cactus.internal.client.WebTestResultParser;
+import org.apache.cactus.util.ChainedRuntimeException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.jms.Queue;
+import javax.jms.QueueConnection;
+import javax.jms.QueueSession;
+import javax.jms.Session;
+import javax.jms.TemporaryQueue;
+import javax.jms.TextMessage;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Collects the test results sent back by the Message Driven Bean redirector.
+ * All results are received on a single temporary queue and matched with the
+ * test waiting for them using the JMS correlation id, so that any number of
+ * tests can be in flight at the same time.
+ *
+ * @since 1.4
+ *
+ * @version $Id$
+ */
+public class JmsResultCollector implements MessageListener
+{
+    /**
+     * The logger.
+     */
+    private static final Log LOGGER = 
+        LogFactory.getLog(JmsResultCollector.class);
+
+    /**
+     * The collector shared by all JMS tests (created on first use).
+     */
+    private static JmsResultCollector instance;
+
+    /**
+     * The connection from which the results are received, or null if the
+     * collector does not own any connection.
+     */
+    private QueueConnection connection;
+
+    /**
+     * The queue on which the results are received.
+     */
+    private Queue replyQueue;
+
+    /**
+     * The results that are being waited for, keyed by correlation id.
+     */
+    private Map<String, PendingResult> pendingResults = 
+        new ConcurrentHashMap<String, PendingResult>();
+
+    /**
+     * @param theReplyQueue the queue on which the results are received
+     */
+    JmsResultCollector(Queue theReplyQueue)
+    {
+        this(null, theReplyQueue);
+    }
+
+    /**
+     * @param theConnection the connection from which the results are 
+     *        received, closed along with the collector
+     * @param theReplyQueue the queue on which the results are received
+     */
+    JmsResultCollector(QueueConnection theConnection, Queue theReplyQueue)
+    {
+        this.connection = theConnection;
+        this.replyQueue = theReplyQueue;
+    }
+
+    /**
+     * Return the collector shared by all JMS tests. It is created the first
+     * time this method is called, along with the JMS connection and the
+     * temporary queue on which results are received.
+     *
+     * @return the shared collector
+     */
+    public static synchronized JmsResultCollector getInstance()
+    {
+        if (instance == null)
+        {
+            try
+            {
+                // Results are delivered asynchronously and a JMS session
+                // must not be shared between threads, hence a dedicated
+                // connection and session.
+                QueueConnection connection = 
+                    JmsClientHelper.createQueueConnection();
+                QueueSession session = connection.createQueueSession(false, 
+                    Session.AUTO_ACKNOWLEDGE);
+                TemporaryQueue queue = session.createTemporaryQueue();
+
+                JmsResultCollector collector = 
+                    new JmsResultCollector(connection, queue);
+                session.createReceiver(queue).setMessageListener(collector);
+                connection.start();
+
+                instance = collector;
+            }
+            catch (JMSException e)
+            {
+                throw new ChainedRuntimeException(
+                    "Failed to create the JMS test result queue", e);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Closes the shared collector, if it has been created. It is created 
+     * again if needed.
+     */
+    public static synchronized void closeInstance()
+    {
+        if (instance != null)
+        {
+            instance.close();
+            instance = null;
+        }
+    }
+
+    /**
+     * Closes the connection from which the results are received, which also
+     * deletes the temporary queue. The tests still waiting for their result
+     * fail.
+     */
+    public void close()
+    {
+        if (this.connection != null)
+        {
+            try
+            {
+                this.connection.close();
+            }
+            catch (JMSException e)
+            {
+                LOGGER.warn("Failed to close the JMS test result connection",
+                    e);
+            }
+        }
+
+        for (String correlationId : this.pendingResults.keySet())
+        {
+            PendingResult result = this.pendingResults.remove(correlationId);
+            if (result != null)
+            {
+                result.fail(new IllegalStateException("The JMS test result "
+                    + "collector has been closed"));
+            }
+        }
+    }
+
+    /**
+     * @return the queue on which the results are received, to be set as the
+     *         reply-to destination of the messages sent to the redirector
+     */
+    public Queue getReplyQueue()
+    {
+        return this.replyQueue;
+    }
+
+    /**
+     * Registers a test that waits for its result. Must be called before the
+     * message asking for the test to run is sent.
+     *
+     * @param theCorrelationId the correlation id of the message asking for
+     *        the test to run
+     * @param theTimeout the time (in ms) during which to wait for the result
+     * @return the result of the test, available once it has been received
+     */
+    public Future<WebTestResult> expect(String theCorrelationId, 
+        long theTimeout)
+    {
+        PendingResult result = new PendingResult(theCorrelationId, theTimeout);
+        this.pendingResults.put(theCorrelationId, result);
+        return result;
+    }
+
+    /**
+     * Stops waiting for a result, for example because the message asking
+     * for the test to run could not be sent.
+     *
+     * @param theCorrelationId the correlation id of the test
+     */
+    public void cancel(String theCorrelationId)
+    {
+        this.pendingResults.remove(theCorrelationId);
+    }
+
+    /**
+     * @return the number of tests waiting for their result
+     */
+    public int getPendingCount()
+    {
+        return this.pendingResults.size();
+    }
+
+    /**
+     * Receives a test result and hands it over to the test waiting for it.
+     *
+     * @param theMessage the message holding the test result
+     */
+    public void onMessage(Message theMessage)
+    {
+        PendingResult result = null;
+        try
+        {
+            String correlationId = theMessage.getJMSCorrelationID();
+            if (correlationId != null)
+            {
+                result = this.pendingResults.remove(correlationId);
+            }
+            if (result == null)
+            {
+                LOGGER.warn("Ignoring test result for unknown test ["
+                    + correlationId + "]");
+                return;
+            }
+
+            result.complete(new WebTestResultParser().parse(
+                ((TextMessage) theMessage).getText()));
+        }
+        catch (Exception e)
+        {
+            if (result == null)
+            {
+                LOGGER.error("Failed to read test result", e);
+            }
+            else
+            {
+                result.fail(e);
+            }
+        }
+    }
+
+    /**
+     * The result of a test that has been sent to the redirector.
+     * <code>get()</code> waits for it at most for the time given when the
+     * test was registered.
+     */
+    private class PendingResult implements Future<WebTestResult>
+    {
+        /**
+         * The correlation id of the test.
+         */
+        private String correlationId;
+
+        /**
+         * The time (in ms) during which to wait for the result.
+         */
+        private long timeout;
+
+        /**
+         * Released once the result (or an error) has been received.
+         */
+        private CountDownLatch done = new CountDownLatch(1);
+
+        /**
+         * The test result, once received.
+         */
+        private volatile WebTestResult result;
+
+        /**
+         * The error that happened reading the result, if any.
+         */
+        private volatile Throwable error;
+
+        /**
+         * @param theCorrelationId the correlation id of the test
+         * @param theTimeout the time (in ms) during which to wait for the
+         *        result
+         */
+        public PendingResult(String theCorrelationId, long theTimeout)
+        {
+            this.correlationId = theCorrelationId;
+            this.timeout = theTimeout;
+        }
+
+        /**
+         * @param theResult the test result
+         */
+        public void complete(WebTestResult theResult)
+        {
+            this.result = theResult;
+            this.done.countDown();
+        }
+
+        /**
+         * @param theError the error that happened reading the result
+         */
+        public void fail(Throwable theError)
+        {
+            this.error = theError;
+            this.done.countDown();
+        }
+
+        /**
+         * @see Future#cancel(boolean)
+         */
+        public boolean cancel(boolean isInterruptible)
+        {
+            return false;
+        }
+
+        /**
+         * @see Future#isCancelled()
+         */
+        public boolean isCancelled()
+        {
+            return false;
+        }
+
+        /**
+         * @see Future#isDone()
+         */
+        public boolean isDone()
+        {
+            return this.done.getCount() == 0;
+        }
+
+        /**
+         * Waits for the result at most for the time given when the test was
+         * registered. A timeout is reported as an 
+         * <code>ExecutionException</code>.
+         *
+         * @see Future#get()
+         */
+        public WebTestResult get() 
+            throws InterruptedException, ExecutionException
+        {
+            try
+            {
+                return get(this.timeout, TimeUnit.MILLISECONDS);
+            }
+            catch (TimeoutException e)
+            {
+                throw new ExecutionException(e);
+            }
+        }
+
+        /**
+         * @see Future#get(long, TimeUnit)
+         */
+        public WebTestResult get(long theTimeout, TimeUnit theUnit) 
+            throws InterruptedException, ExecutionException, TimeoutException
+        {
+            if (!this.done.await(theTimeout, theUnit))
+            {
+                JmsResultCollector.this.cancel(this.correlationId);
+                throw new TimeoutException("No result received for test ["
+                    + this.correlationId + "] after " + theTimeout + " "
+                    + theUnit.toString().toLowerCase());
+            }
+            if (this.error != null)
+            {
+                throw new ExecutionException(this.error);
+            }
+            return this.result;
+        }
+    }
+}
@@ -31,13 +31,21 @@ import org.apache.cactus.WebRequest;
 public abstract class AbstractWebConfiguration extends BaseConfiguration 
     implements WebConfiguration
 {
+    /**
+     * Name of the Cactus property that asks the redirector to return the 
+     * test result in the response of the test itself.
+     */
+    public static final String CACTUS_INLINE_TEST_RESULT_PROPERTY = 
+        "cactus.inlineTestResult";
+
     /**
      * {@inheritDoc}
      * @see WebConfiguration#getDefaultRedirectorURL()
      */
     public String getDefaultRedirectorURL()
     {
-        return getContextURL() + "/" + getDefaultRedirectorName();
+        return ConfigurationInitializer.getSnapshot().getRedirectorURL(
+            getContextURL(), getDefaultRedirectorName());
     }
 
     /**
@@ -46,7 +54,8 @@ public abstract class AbstractWebConfiguration extends BaseConfiguration
      */
     public String getRedirectorURL(WebRequest theRequest)
     {
-        return getContextURL() + "/" + getRedirectorName(theRequest);
+        return ConfigurationInitializer.getSnapshot().getRedirectorURL(
+            getContextURL(), getRedirectorName(theRequest));
     }
 
     /**
@@ -69,4 +78,14 @@ public abstract class AbstractWebConfiguration extends BaseConfiguration
         return redirectorName;
     }
 
+    /**
+     * {@inheritDoc}
+     * @see WebConfiguration#isInlineTestResult()
+     */
+    public boolean isInlineTestResult()
+    {
+        return Boolean.valueOf(ConfigurationInitializer.getSnapshot()
+            .getProperty(CACTUS_INLINE_TEST_RESULT_PROPERTY)).booleanValue();
+    }
+
 }
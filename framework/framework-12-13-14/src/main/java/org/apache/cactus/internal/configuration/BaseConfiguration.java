@@ -25,7 +25,7 @@ import org.apache.cactus.util.ChainedRuntimeException;
 /**
  * Provides access to the Cactus configuration parameters that are independent
  * of any redirector. All Cactus configuration are defined as Java System
- * Properties.
+ * Properties, which are read from the {@link ConfigurationSnapshot}.
  *
  * @version $Id: BaseConfiguration.java 238991 2004-05-22 11:34:50Z vmassol $
  */
@@ -53,7 +53,15 @@ public class BaseConfiguration implements Configuration
     {
         // Try to read it from a System property first and then if it fails
         // from the Cactus configuration file.
-        String contextURL = System.getProperty(CACTUS_CONTEXT_URL_PROPERTY);
+        String contextURL =
+            ConfigurationInitializer.getSnapshot().getContextURL();
+
+        // The property may have been set since the snapshot was taken
+        if (contextURL == null)
+        {
+            contextURL =
+                ConfigurationInitializer.refreshSnapshot().getContextURL();
+        }
 
         if (contextURL == null)
         {
@@ -71,6 +79,7 @@ public class BaseConfiguration implements Configuration
      */
     public String getInitializer()
     {
-        return System.getProperty(CACTUS_INITIALIZER_PROPERTY);
+        return ConfigurationInitializer.getSnapshot().getProperty(
+            CACTUS_INITIALIZER_PROPERTY);
     }
 }
@@ -32,7 +32,8 @@ import java.util.ResourceBundle;
 
 /**
  * Read Cactus configuration files and set the properties found as
- * System properties.
+ * System properties. Also keeps the {@link ConfigurationSnapshot} of the
+ * Cactus properties used by the client side.
  *
  * @version $Id: ConfigurationInitializer.java 239016 2004-06-27 15:23:30Z vmassol $
  */
@@ -62,6 +63,12 @@ public class ConfigurationInitializer
      * Have the Cactus configuration files been initialized?
      */
     private static boolean isInitialized;
+
+    /**
+     * The snapshot of the Cactus properties, or null if it has not been
+     * taken yet.
+     */
+    private static volatile ConfigurationSnapshot snapshot;
     
     /**
      * Read Cactus configuration files.
@@ -76,6 +83,7 @@ public class ConfigurationInitializer
             initializeConfig(isReinitialization);
             initializeLoggingConfig(isReinitialization);
             isInitialized = true;
+            refreshSnapshot();
         }
     }
 
@@ -87,6 +95,33 @@ public class ConfigurationInitializer
         initialize(false);
     }
     
+    /**
+     * @return the snapshot of the Cactus properties, taken the first time
+     *         it is requested if the configuration has not been initialized
+     */
+    public static ConfigurationSnapshot getSnapshot()
+    {
+        ConfigurationSnapshot result = snapshot;
+        if (result == null)
+        {
+            result = refreshSnapshot();
+        }
+        return result;
+    }
+
+    /**
+     * Takes a new snapshot of the Cactus properties. Must be called after
+     * changing a Cactus System property that has already been read.
+     *
+     * @return the new snapshot
+     */
+    public static ConfigurationSnapshot refreshSnapshot()
+    {
+        ConfigurationSnapshot result = new ConfigurationSnapshot();
+        snapshot = result;
+        return result;
+    }
+
     /**
      * Initialize general cactus configuration. Read the cactus configuration 
      * file from the java property defined on the command line 
@@ -0,0 +1,220 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.configuration;
+
+import org.apache.cactus.util.ChainedRuntimeException;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable copy of the Cactus properties (the System properties whose
+ * name starts with "cactus."), taken by {@link ConfigurationInitializer}
+ * so that the client side does not read the synchronized System properties
+ * on every request. The redirector URLs and the parsed URLs derived from
+ * the snapshot are cached with it.
+ *
+ * @version $Id$
+ */
+public final class ConfigurationSnapshot
+{
+    /**
+     * Prefix of the names of the Cactus properties.
+     */
+    private static final String CACTUS_PROPERTY_PREFIX = "cactus.";
+
+    /**
+     * Maximum number of parsed URLs that are cached.
+     */
+    private static final int MAX_CACHED_URLS = 64;
+
+    /**
+     * The Cactus properties.
+     */
+    private final Map<String, String> properties;
+
+    /**
+     * The context URL or null if it is not defined.
+     */
+    private final String contextURL;
+
+    /**
+     * The redirector URLs under the context URL, keyed by redirector name.
+     */
+    private final ConcurrentMap<String, String> redirectorURLs =
+        new ConcurrentHashMap<String, String>();
+
+    /**
+     * The parsed URLs, keyed by URL.
+     */
+    private final ConcurrentMap<String, URL> urls =
+        new ConcurrentHashMap<String, URL>();
+
+    /**
+     * Takes a snapshot of the current Cactus System properties.
+     */
+    ConfigurationSnapshot()
+    {
+        this(System.getProperties());
+    }
+
+    /**
+     * @param theProperties the properties from which the Cactus properties
+     *        are copied
+     */
+    ConfigurationSnapshot(Properties theProperties)
+    {
+        Map<String, String> cactusProperties = new HashMap<String, String>();
+        for (String name : theProperties.stringPropertyNames())
+        {
+            if (name.startsWith(CACTUS_PROPERTY_PREFIX))
+            {
+                cactusProperties.put(name, theProperties.getProperty(name));
+            }
+        }
+        this.properties = Collections.unmodifiableMap(cactusProperties);
+        this.contextURL = cactusProperties.get(
+            BaseConfiguration.CACTUS_CONTEXT_URL_PROPERTY);
+    }
+
+    /**
+     * @param theName the name of the Cactus property
+     * @return the value of the property when the snapshot was taken or null
+     *         if it was not defined
+     */
+    public String getProperty(String theName)
+    {
+        return this.properties.get(theName);
+    }
+
+    /**
+     * @param theName the name of the Cactus property
+     * @param theDefault the value to return if the property is not defined
+     *        or is not a valid integer
+     * @return the value of the property as an integer
+     */
+    public int getIntProperty(String theName, int theDefault)
+    {
+        String value = getProperty(theName);
+        if (value != null)
+        {
+            try
+            {
+                return Integer.parseInt(value.trim());
+            }
+            catch (NumberFormatException e)
+            {
+                // Fall back to the default, as Integer.getInteger() does
+            }
+        }
+        return theDefault;
+    }
+
+    /**
+     * @param theName the name of the Cactus property
+     * @param theDefault the value to return if the property is not defined
+     *        or is not a valid long
+     * @return the value of the property as a long
+     */
+    public long getLongProperty(String theName, long theDefault)
+    {
+        String value = getProperty(theName);
+        if (value != null)
+        {
+            try
+            {
+                return Long.parseLong(value.trim());
+            }
+            catch (NumberFormatException e)
+            {
+                // Fall back to the default, as Long.getLong() does
+            }
+        }
+        return theDefault;
+    }
+
+    /**
+     * @return the context URL or null if it is not defined
+     */
+    public String getContextURL()
+    {
+        return this.contextURL;
+    }
+
+    /**
+     * @param theContextURL the context URL of the redirector
+     * @param theRedirectorName the name of the redirector
+     * @return the redirector URL, cached if the context URL is the one of
+     *         the snapshot
+     */
+    public String getRedirectorURL(String theContextURL,
+        String theRedirectorName)
+    {
+        if (!theContextURL.equals(this.contextURL))
+        {
+            return theContextURL + "/" + theRedirectorName;
+        }
+
+        String url = this.redirectorURLs.get(theRedirectorName);
+        if (url == null)
+        {
+            url = theContextURL + "/" + theRedirectorName;
+            this.redirectorURLs.putIfAbsent(theRedirectorName, url);
+        }
+        return url;
+    }
+
+    /**
+     * Parses a URL. The URLs are only parsed once, as they are mostly the
+     * few redirector URLs.
+     *
+     * @param theURL the URL to parse
+     * @return the parsed URL
+     */
+    public URL getURL(String theURL)
+    {
+        URL url = this.urls.get(theURL);
+        if (url == null)
+        {
+            try
+            {
+                url = new URL(theURL);
+            }
+            catch (MalformedURLException e)
+            {
+                throw new ChainedRuntimeException("Invalid URL [" + theURL
+                    + "]", e);
+            }
+
+            if (this.urls.size() < MAX_CACHED_URLS)
+            {
+                this.urls.putIfAbsent(theURL, url);
+            }
+        }
+        return url;
+    }
+}
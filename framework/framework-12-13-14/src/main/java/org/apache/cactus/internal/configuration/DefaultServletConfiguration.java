@@ -42,8 +42,8 @@ public class DefaultServletConfiguration
      */
     public String getDefaultRedirectorName()
     {
-        String redirectorName = 
-            System.getProperty(CACTUS_SERVLET_REDIRECTOR_NAME_PROPERTY);
+        String redirectorName = ConfigurationInitializer.getSnapshot()
+            .getProperty(CACTUS_SERVLET_REDIRECTOR_NAME_PROPERTY);
 
         if (redirectorName == null)
         {
@@ -56,4 +56,11 @@ public interface WebConfiguration extends Configuration
      *         Request if it has been overriden
      */
     String getRedirectorName(WebRequest theRequest);
+
+    /**
+     * @return true if the redirector should return the test result in the
+     *         response of the test itself, thus saving the second HTTP
+     *         request used to get the test result
+     */
+    boolean isInlineTestResult();
 }
@@ -68,9 +68,10 @@ public abstract class AbstractEJBTestCaller
 
     /**
      * The "main" method of the test-case.
+     * @return the result of the test, to be returned to the client side
      * @throws Exception in case an error occurs
      */
-    public void doTest() throws Exception 
+    public EJBTestResult doTest() throws Exception 
     {
         EJBTestResult result = null;
 
@@ -100,9 +101,9 @@ public abstract class AbstractEJBTestCaller
             // <code>WebTestResult</code> with an exception.
             result = new EJBTestResult(e);
         }
-        LOGGER.info("***********************************************");
-        LOGGER.info("Test result : [" + result + "]");
-        LOGGER.info("***********************************************");
+        LOGGER.debug("Test result : [" + result + "]");
+
+        return result;
     }
     
     /**
@@ -20,6 +20,7 @@ package org.apache.cactus.internal.server;
  * ========================================================================
  */
 
+import org.apache.cactus.internal.EJBTestResult;
 import org.apache.cactus.spi.server.ImplicitObjects;
 import org.apache.cactus.spi.server.TestController;
 
@@ -30,10 +31,25 @@ import org.apache.cactus.spi.server.TestController;
 public class AbstractEJBTestController implements TestController 
 {
 
+    /**
+     * @see TestController#handleRequest(ImplicitObjects)
+     */
     public void handleRequest(ImplicitObjects theObjects) throws Exception 
     {
-        EJBImplicitObjects ejbImplicitObjects = (EJBImplicitObjects) theObjects;
-        AbstractEJBTestCaller caller = new EJBTestCaller(ejbImplicitObjects);
-        caller.doTest();
+        handleTestRequest((EJBImplicitObjects) theObjects);
+    }
+
+    /**
+     * Calls the test method.
+     *
+     * @param theObjects the implicit objects of the EJB redirector
+     * @return the result of the test, to be returned to the client side
+     * @throws Exception in case an error occurs
+     */
+    public EJBTestResult handleTestRequest(EJBImplicitObjects theObjects)
+        throws Exception 
+    {
+        AbstractEJBTestCaller caller = new EJBTestCaller(theObjects);
+        return caller.doTest();
     }
 }
@@ -20,7 +20,23 @@
  */
 package org.apache.cactus.internal.server;
 
+import junit.framework.TestCase;
+import org.apache.cactus.internal.CactusTestCase;
+import org.apache.cactus.internal.HttpServiceDefinition;
+import org.apache.cactus.internal.WebTestResult;
+import org.apache.cactus.internal.util.ClassLoaderUtils;
 import org.apache.cactus.spi.server.MessageDrivenBeanImplicitObjects;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Queue;
+import javax.jms.QueueSender;
+import javax.jms.QueueSession;
+import javax.jms.TextMessage;
+import java.lang.reflect.Constructor;
 
 /**
  * Responsible for instanciating the <code>TestCase</code> class on the server
@@ -31,6 +47,12 @@ import org.apache.cactus.spi.server.MessageDrivenBeanImplicitObjects;
  */
 public abstract class AbstractJMSTestCaller 
 {
+    /**
+     * The logger.
+     */
+    private static final Log LOGGER = 
+        LogFactory.getLog(AbstractJMSTestCaller.class);
+
     /**
      * The implicit objects (which will be used to set the test case fields
      * in the <code>setTesCaseFields</code> method.
@@ -43,4 +65,114 @@ public abstract class AbstractJMSTestCaller
         this.mdbImplicitObjects = mdbObjects;
     }
 
+    /**
+     * Sets the test case fields using the implicit objects (using reflection).
+     *
+     * @param theTestInstance the test class instance
+     * @exception Exception if an error happens while setting the fields
+     */
+    protected abstract void setTestCaseFields(TestCase theTestInstance)
+        throws Exception;
+
+    /**
+     * Calls the test method and sends its result back to the client side,
+     * on the queue given as the reply-to destination of the JMS message.
+     * The result message carries the correlation id of the request so that
+     * the client side can match it with the test that is waiting for it.
+     *
+     * @exception JMSException if the result cannot be sent back
+     */
+    public void doTest() throws JMSException
+    {
+        Message message = this.mdbImplicitObjects.getMessage();
+        WebTestResult result = null;
+
+        try
+        {
+            // Create an instance of the test class
+            TestCase testInstance = getTestClassInstance(
+                message.getStringProperty(
+                    HttpServiceDefinition.CLASS_NAME_PARAM), 
+                message.getStringProperty(
+                    HttpServiceDefinition.METHOD_NAME_PARAM));
+
+            // Set its fields (implicit objects)
+            setTestCaseFields(testInstance);
+
+            // Call it's method corresponding to the current test case
+            if (testInstance instanceof CactusTestCase)
+            {
+                ((CactusTestCase) testInstance).runBareServer();
+            }
+            else
+            {
+                testInstance.runBare();
+            }
+
+            // Return an instance of <code>WebTestResult</code> with a
+            // positive result.
+            result = new WebTestResult();
+        }
+        catch (Throwable e)
+        {
+            // An error occurred, return an instance of
+            // <code>WebTestResult</code> with an exception.
+            result = new WebTestResult(e);
+        }
+
+        sendResult(message, result);
+    }
+
+    /**
+     * Sends a test result back to the client side.
+     *
+     * @param theRequest the JMS message that asked for the test to be run
+     * @param theResult the result of the test
+     * @exception JMSException if the result cannot be sent back
+     */
+    protected void sendResult(Message theRequest, WebTestResult theResult)
+        throws JMSException
+    {
+        Destination replyTo = theRequest.getJMSReplyTo();
+        if (replyTo == null)
+        {
+            // The client side is not waiting for the result
+            LOGGER.info("Test result : [" + theResult + "]");
+            return;
+        }
+
+        QueueSession session = this.mdbImplicitObjects.getQueueSession();
+        TextMessage reply = session.createTextMessage(theResult.toXml());
+        reply.setJMSCorrelationID(theRequest.getJMSCorrelationID());
+
+        QueueSender sender = session.createSender((Queue) replyTo);
+        try
+        {
+            sender.send(reply);
+        }
+        finally
+        {
+            sender.close();
+        }
+
+        LOGGER.debug("Test result sent : [" + theResult + "]");
+    }
+
+    /**
+     * @param theClassName the name of the test class
+     * @param theTestCaseName the name of the current test case
+     * @return an instance of the test class to call
+     * @exception Exception if the test class cannot be instantiated
+     */
+    protected TestCase getTestClassInstance(String theClassName, 
+        String theTestCaseName) throws Exception
+    {
+        Class testClass = 
+            ClassLoaderUtils.loadClass(theClassName, this.getClass());
+        Constructor constructor = 
+            testClass.getConstructor(new Class[] {String.class});
+
+        return (TestCase) constructor.newInstance(
+            new Object[] {theTestCaseName});
+    }
 }
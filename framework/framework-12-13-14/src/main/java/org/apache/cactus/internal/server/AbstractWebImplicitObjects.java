@@ -49,6 +49,11 @@ public abstract class AbstractWebImplicitObjects implements WebImplicitObjects
      */
     protected ServletContext context;
 
+    /**
+     * The parsed query string of the HTTP request, built on first use.
+     */
+    private QueryStringParameters queryStringParameters;
+
     /**
      * @return the <code>ServletContext</code> implicit object
      */
@@ -95,5 +100,20 @@ public abstract class AbstractWebImplicitObjects implements WebImplicitObjects
     public void setHttpServletRequest(HttpServletRequest theRequest)
     {
         this.request = theRequest;
+        this.queryStringParameters = null;
+    }
+
+    /**
+     * @return the parsed query string of the <code>HttpServletRequest</code>
+     *         implicit object, parsed only once per request
+     */
+    public QueryStringParameters getQueryStringParameters()
+    {
+        if (this.queryStringParameters == null)
+        {
+            this.queryStringParameters = 
+                QueryStringParameters.parse(this.request.getQueryString());
+        }
+        return this.queryStringParameters;
     }
 }
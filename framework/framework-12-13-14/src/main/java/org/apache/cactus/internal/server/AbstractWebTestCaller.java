@@ -20,21 +20,31 @@
  */
 package org.apache.cactus.internal.server;
 
-import junit.framework.Test;
 import junit.framework.TestCase;
 import org.apache.cactus.internal.CactusTestCase;
 import org.apache.cactus.internal.HttpServiceDefinition;
 import org.apache.cactus.internal.ServiceEnumeration;
 import org.apache.cactus.internal.WebTestResult;
+import org.apache.cactus.internal.WebTestResultCodec;
 import org.apache.cactus.internal.configuration.Version;
-import org.apache.cactus.internal.util.ClassLoaderUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.lang.reflect.Constructor;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Responsible for instanciating the <code>TestCase</code> class on the server
@@ -52,6 +62,28 @@ public abstract class AbstractWebTestCaller
     protected static final String TEST_RESULTS = 
         "ServletTestRedirector_TestResults";
 
+    /**
+     * Name of the attribute in the <code>application</code> scope that will
+     * hold the {@link WebTestResultStore} containing the results of the tests
+     * that have been given a unique id by the client side.
+     */
+    protected static final String TEST_RESULT_STORE = 
+        "ServletTestRedirector_TestResultStore";
+
+    /**
+     * Name of the attribute in the <code>application</code> scope that will
+     * hold the {@link TestClassCache} of the test classes called so far.
+     */
+    protected static final String TEST_CLASS_CACHE = 
+        "ServletTestRedirector_TestClassCache";
+
+    /**
+     * Maximum length of a test result returned in an HTTP response header.
+     * Containers commonly limit the total size of the response headers to
+     * 8K so bigger results are kept for the Get Test Result service.
+     */
+    private static final int MAX_INLINE_RESULT_LENGTH = 4096;
+
     /**
      * The logger.
      */
@@ -99,23 +131,87 @@ public abstract class AbstractWebTestCaller
      */
     protected abstract Writer getResponseWriter() throws IOException;
 
+    /**
+     * @return the output stream of the HTTP response, used to return test
+     *         results in their compact form, or null if the redirector cannot
+     *         use it
+     * @exception IOException if an error occurred getting the output stream
+     */
+    protected OutputStream getResponseOutputStream() throws IOException
+    {
+        return this.webImplicitObjects.getHttpServletResponse()
+            .getOutputStream();
+    }
+
     /**
      * Calls a test method. The parameters needed to call this method are found
      * in the HTTP request. Save the results in the <code>application</code>
-     * scope so that the Get Test Result service can find them.
+     * scope so that the Get Test Result service can find them, or return them
+     * in the test response if the client side has asked for it.
      *
      * @exception ServletException if an unexpected error occurred
      */
     public void doTest() throws ServletException
+    {
+        WebTestResult result;
+        try
+        {
+            result = runTest(getTestClassName(), getWrappedTestClassName(), 
+                getTestMethodName());
+        }
+        catch (ServletException e)
+        {
+            // A Cactus parameter is missing, return an instance of
+            // <code>WebTestResult</code> with an exception.
+            result = new WebTestResult(e);
+        }
+
+        LOGGER.debug("Test result : [" + result + "]");
+
+        // Return the test result with the test response if the client side
+        // asked for it and it is still possible
+        if (isInlineResult() && setResultHeader(result))
+        {
+            LOGGER.debug("Result returned in HTTP response header");
+            return;
+        }
+
+        // Set the test result. If the client side has given an id to the
+        // test, the result is kept under that id so that several tests can
+        // run concurrently. Otherwise we fall back to the single result slot.
+        String testId = getTestId();
+        if (testId != null)
+        {
+            getTestResultStore().put(testId, result);
+        }
+        else
+        {
+            this.webImplicitObjects.getServletContext()
+                .setAttribute(TEST_RESULTS, result);
+        }
+
+        LOGGER.debug("Result saved in context scope");
+    }
+
+    /**
+     * Instantiates a test class and calls one of its test methods.
+     *
+     * @param theClassName the name of the test class
+     * @param theWrappedClassName the name of the wrapped test class or null
+     *        if the test class is not wrapping a pure JUnit test
+     * @param theMethodName the name of the test method to call
+     * @return the result of the test
+     */
+    protected WebTestResult runTest(String theClassName, 
+        String theWrappedClassName, String theMethodName)
     {
         WebTestResult result = null;
         TestCase testInstance = null;
         try
         {
             // Create an instance of the test class
-            testInstance = getTestClassInstance(
-                getTestClassName(), getWrappedTestClassName(), 
-                getTestMethodName());
+            testInstance = getTestClassInstance(theClassName, 
+                theWrappedClassName, theMethodName);
 
             // Set its fields (implicit objects)
             setTestCaseFields(testInstance);
@@ -147,13 +243,149 @@ public abstract class AbstractWebTestCaller
             resetTestCaseFields(testInstance);
         }
 
-        LOGGER.debug("Test result : [" + result + "]");
+        return result;
+    }
 
-        // Set the test result.
-        this.webImplicitObjects.getServletContext()
-            .setAttribute(TEST_RESULTS, result);
+    /**
+     * Calls several test methods in a row. The tests to call are read from
+     * the HTTP request body, one test per line made of the test class name,
+     * the test method name and the optional wrapped test class name 
+     * separated by tabulations. The result of each test is written to the
+     * HTTP response as soon as the test is finished, all results being
+     * enclosed in a {@link WebTestResult#XML_BATCH_ROOT_ELEMENT} element.
+     * All the tests share the implicit objects of the HTTP request, thus 
+     * they must not write to the HTTP response.
+     *
+     * @exception ServletException if an unexpected error occurred
+     */
+    public void doBatchTest() throws ServletException
+    {
+        List<String[]> tests = new ArrayList<String[]>();
 
-        LOGGER.debug("Result saved in context scope");
+        try
+        {
+            // Read all the tests first so that the tests themselves can
+            // access the request
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                this.webImplicitObjects.getHttpServletRequest()
+                .getInputStream(), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                if (line.length() > 0)
+                {
+                    tests.add(line.split("\t", -1));
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            String message = "Error reading the tests to run";
+
+            LOGGER.error(message, e);
+            throw new ServletException(message, e);
+        }
+
+        LOGGER.debug("Batch of [" + tests.size() + "] tests");
+
+        try
+        {
+            DataOutputStream output = getEncodedResultStream();
+            Writer writer = null;
+            if (output == null)
+            {
+                // Use UTF-8 to transfer the results back
+                webImplicitObjects.getHttpServletResponse().setContentType(
+                    "text/xml; charset=UTF-8");
+
+                writer = getResponseWriter();
+                writer.write("<" + WebTestResult.XML_BATCH_ROOT_ELEMENT + ">");
+            }
+
+            for (String[] test : tests)
+            {
+                String wrappedClassName = 
+                    (test.length > 2 && test[2].length() > 0) ? test[2] : null;
+                WebTestResult result = runTest(test[0], wrappedClassName, 
+                    (test.length > 1) ? test[1] : null);
+
+                LOGGER.debug("Test result : [" + result + "]");
+
+                if (output != null)
+                {
+                    WebTestResultCodec.writeResult(output, result);
+                    output.flush();
+                }
+                else
+                {
+                    writer.write(result.toXml());
+                    writer.flush();
+                }
+            }
+
+            if (output != null)
+            {
+                WebTestResultCodec.writeEnd(output);
+                output.close();
+            }
+            else
+            {
+                writer.write("</" + WebTestResult.XML_BATCH_ROOT_ELEMENT 
+                    + ">");
+                writer.close();
+            }
+        }
+        catch (IOException e)
+        {
+            String message = "Error writing WebTestResult instances to "
+                + "output stream";
+
+            LOGGER.error(message, e);
+            throw new ServletException(message, e);
+        }
+    }
+
+    /**
+     * Returns the test result in an HTTP header of the test response. This is
+     * only possible if the test has not committed the response and if the
+     * result is small enough.
+     *
+     * @param theResult the test result to return
+     * @return true if the result has been set in the response
+     * @exception ServletException if the result cannot be encoded
+     */
+    private boolean setResultHeader(WebTestResult theResult)
+        throws ServletException
+    {
+        HttpServletResponse response = 
+            this.webImplicitObjects.getHttpServletResponse();
+
+        if (response.isCommitted())
+        {
+            return false;
+        }
+
+        String encodedResult;
+        try
+        {
+            encodedResult = URLEncoder.encode(theResult.toXml(), "UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            String message = "Error encoding WebTestResult instance";
+
+            LOGGER.error(message, e);
+            throw new ServletException(message, e);
+        }
+
+        if (encodedResult.length() > MAX_INLINE_RESULT_LENGTH)
+        {
+            return false;
+        }
+
+        response.setHeader(HttpServiceDefinition.RESULT_HEADER, 
+            encodedResult);
+        return true;
     }
 
     /**
@@ -170,9 +402,17 @@ public abstract class AbstractWebTestCaller
         // first request is done to execute the test, all the result is read
         // by the AutoReadHttpURLConnection class, thus ensuring that the
         // request is fully finished and the result has been committed ...
-        WebTestResult result = (WebTestResult) (this.webImplicitObjects
-            .getServletContext().getAttribute(TEST_RESULTS));
-
+        WebTestResult result;
+        String testId = getTestId();
+        if (testId != null)
+        {
+            result = getTestResultStore().remove(testId);
+        }
+        else
+        {
+            result = (WebTestResult) (this.webImplicitObjects
+                .getServletContext().getAttribute(TEST_RESULTS));
+        }
 
         // It can happen that the result has not been written in the Servlet
         // context. This could happen for example when using a load-balancer
@@ -180,9 +420,11 @@ public abstract class AbstractWebTestCaller
         // instance. In that case, we throw an error.
         if (result == null)
         {
-            String message = "Error getting test result. This could happen "
-                + "for example if you're using a load-balancer. Please disable "
-                + "it before running Cactus tests.";
+            String message = "Error getting test result"
+                + ((testId == null) ? "" : " [" + testId + "]")
+                + ". This could happen for example if you're using a "
+                + "load-balancer. Please disable it before running Cactus "
+                + "tests.";
 
             LOGGER.error(message);
             throw new ServletException(message);
@@ -190,18 +432,28 @@ public abstract class AbstractWebTestCaller
 
         LOGGER.debug("Test Result = [" + result + "]");
 
-        // Write back the results to the outgoing stream as an XML string.
-
-        // Use UTF-8 to transfer the result back
-        webImplicitObjects.getHttpServletResponse().setContentType(
-            "text/xml; charset=UTF-8");
-
         try
         {
-            Writer writer = getResponseWriter();
+            // Write back the result in its compact form if the client side
+            // understands it, as an XML string otherwise
+            DataOutputStream output = getEncodedResultStream();
+            if (output != null)
+            {
+                WebTestResultCodec.writeResult(output, result);
+                WebTestResultCodec.writeEnd(output);
+                output.close();
+            }
+            else
+            {
+                // Use UTF-8 to transfer the result back
+                webImplicitObjects.getHttpServletResponse().setContentType(
+                    "text/xml; charset=UTF-8");
 
-            writer.write(result.toXml());
-            writer.close();
+                Writer writer = getResponseWriter();
+
+                writer.write(result.toXml());
+                writer.close();
+            }
         }
         catch (IOException e)
         {
@@ -279,6 +531,17 @@ public abstract class AbstractWebTestCaller
         }
     }
 
+    /**
+     * @param theParameter the name of the Cactus parameter
+     * @return the value of the parameter in the query string of the HTTP
+     *         request or null if it is not defined
+     */
+    protected String getParameter(String theParameter)
+    {
+        return this.webImplicitObjects.getQueryStringParameters()
+            .getParameter(theParameter);
+    }
+
     /**
      * @return the class to test class name, extracted from the HTTP request
      * @exception ServletException if the class name of the test case is missing
@@ -286,10 +549,7 @@ public abstract class AbstractWebTestCaller
      */
     protected String getTestClassName() throws ServletException
     {
-        String queryString = this.webImplicitObjects.getHttpServletRequest()
-            .getQueryString();
-        String className = ServletUtil.getQueryStringParameter(queryString, 
-            HttpServiceDefinition.CLASS_NAME_PARAM);
+        String className = getParameter(HttpServiceDefinition.CLASS_NAME_PARAM);
 
         if (className == null)
         {
@@ -314,10 +574,8 @@ public abstract class AbstractWebTestCaller
      */
     protected String getWrappedTestClassName() throws ServletException
     {
-        String queryString = this.webImplicitObjects.getHttpServletRequest()
-            .getQueryString();
-        String className = ServletUtil.getQueryStringParameter(queryString, 
-            HttpServiceDefinition.WRAPPED_CLASS_NAME_PARAM);
+        String className = 
+            getParameter(HttpServiceDefinition.WRAPPED_CLASS_NAME_PARAM);
 
         if (className == null)
         {
@@ -339,10 +597,8 @@ public abstract class AbstractWebTestCaller
      */
     protected String getTestMethodName() throws ServletException
     {
-        String queryString = this.webImplicitObjects.getHttpServletRequest()
-            .getQueryString();
-        String methodName = ServletUtil.getQueryStringParameter(queryString, 
-            HttpServiceDefinition.METHOD_NAME_PARAM);
+        String methodName = 
+            getParameter(HttpServiceDefinition.METHOD_NAME_PARAM);
 
         if (methodName == null)
         {
@@ -359,16 +615,114 @@ public abstract class AbstractWebTestCaller
         return methodName;
     }
 
+    /**
+     * @return the unique id of the current test, extracted from the HTTP
+     *         request, or null if the client side has not sent any
+     */
+    protected String getTestId()
+    {
+        String testId = getParameter(HttpServiceDefinition.TEST_ID_PARAM);
+
+        LOGGER.debug("Test id = [" + testId + "]");
+
+        return testId;
+    }
+
+    /**
+     * @return the store holding the test results in the
+     *         <code>application</code> scope. It is created on first use.
+     */
+    protected WebTestResultStore getTestResultStore()
+    {
+        ServletContext context = this.webImplicitObjects.getServletContext();
+        synchronized (context)
+        {
+            WebTestResultStore store = 
+                (WebTestResultStore) context.getAttribute(TEST_RESULT_STORE);
+            if (store == null)
+            {
+                store = new WebTestResultStore();
+                context.setAttribute(TEST_RESULT_STORE, store);
+            }
+            return store;
+        }
+    }
+
+    /**
+     * @return the cache of the test classes called in this webapp, created
+     *         if it does not exist yet
+     */
+    protected TestClassCache getTestClassCache()
+    {
+        ServletContext context = this.webImplicitObjects.getServletContext();
+        synchronized (context)
+        {
+            TestClassCache cache = 
+                (TestClassCache) context.getAttribute(TEST_CLASS_CACHE);
+            if (cache == null)
+            {
+                cache = new TestClassCache();
+                context.setAttribute(TEST_CLASS_CACHE, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * @return true if the client side has asked for the test result to be
+     *         returned in the test response
+     */
+    protected boolean isInlineResult()
+    {
+        String inlineResult = 
+            getParameter(HttpServiceDefinition.INLINE_RESULT_PARAM);
+
+        return Boolean.valueOf(inlineResult).booleanValue();
+    }
+
+    /**
+     * Prepares the HTTP response for test results in their compact form, if
+     * the client side has asked for a version of the format that we support
+     * and if the redirector can write binary data.
+     *
+     * @return the stream to which to write the test results (the header has
+     *         already been written) or null if the results must be returned
+     *         as XML
+     * @exception IOException if an error occurred writing the header
+     */
+    private DataOutputStream getEncodedResultStream() throws IOException
+    {
+        String version = 
+            getParameter(HttpServiceDefinition.RESULT_FORMAT_PARAM);
+
+        if (!String.valueOf(WebTestResultCodec.VERSION).equals(version))
+        {
+            return null;
+        }
+
+        OutputStream stream = getResponseOutputStream();
+        if (stream == null)
+        {
+            return null;
+        }
+
+        this.webImplicitObjects.getHttpServletResponse().setContentType(
+            WebTestResultCodec.CONTENT_TYPE);
+
+        DataOutputStream output = 
+            new DataOutputStream(new BufferedOutputStream(stream));
+        WebTestResultCodec.writeHeader(output);
+        return output;
+    }
+
     /**
      * @return true if the auto session flag for the Session can be found in
      *         the HTTP request
      */
     protected boolean isAutoSession()
     {
-        String queryString = this.webImplicitObjects.getHttpServletRequest()
-            .getQueryString();
-        String autoSession = ServletUtil.getQueryStringParameter(queryString, 
-            HttpServiceDefinition.AUTOSESSION_NAME_PARAM);
+        String autoSession = 
+            getParameter(HttpServiceDefinition.AUTOSESSION_NAME_PARAM);
 
         boolean isAutomaticSession = 
             Boolean.valueOf(autoSession).booleanValue();
@@ -437,8 +791,8 @@ public abstract class AbstractWebTestCaller
                         new Object[] {theTestCaseName});
                 }
 
-                constructor = testClass.getConstructor(
-                    new Class[] {String.class, Test.class});
+                constructor = 
+                    getTestClassCache().getWrapperConstructor(testClass);
 
                 testInstance = 
                     (TestCase) constructor.newInstance(
@@ -466,17 +820,7 @@ public abstract class AbstractWebTestCaller
     private Constructor getTestClassConstructor(Class theTestClass)
         throws NoSuchMethodException
     {
-        Constructor constructor;
-        try 
-        {
-            constructor = theTestClass.getConstructor(
-                new Class[] {String.class});         
-        }
-        catch (NoSuchMethodException e)
-        {
-            constructor = theTestClass.getConstructor(new Class[0]);
-        }
-        return constructor;        
+        return getTestClassCache().getTestConstructor(theTestClass);
     }
 
     /**
@@ -494,7 +838,7 @@ public abstract class AbstractWebTestCaller
 
         try
         {
-            testClass = ClassLoaderUtils.loadClass(theClassName, 
+            testClass = getTestClassCache().loadClass(theClassName, 
                 this.getClass());
         }
         catch (Exception e)
@@ -28,7 +28,6 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import javax.servlet.ServletException;
-import javax.servlet.http.HttpServletRequest;
 
 /**
  * Controller that extracts the requested service from the HTTP request and
@@ -79,7 +78,7 @@ public abstract class AbstractWebTestController implements TestController
         try
         {
             String serviceName = 
-                getServiceName(webImplicitObjects.getHttpServletRequest());
+                getServiceName(webImplicitObjects.getQueryStringParameters());
 
             AbstractWebTestCaller caller = getTestCaller(webImplicitObjects);
 
@@ -93,6 +92,11 @@ public abstract class AbstractWebTestController implements TestController
             {
                 caller.doTest();
             }
+            // Is it the batch test service ?
+            else if (service == ServiceEnumeration.BATCH_TEST_SERVICE)
+            {
+                caller.doBatchTest();
+            }
             // Is it the get test results service ?
             else if (service == ServiceEnumeration.GET_RESULTS_SERVICE)
             {
@@ -147,18 +151,17 @@ public abstract class AbstractWebTestController implements TestController
     }
 
     /**
-     * @param theRequest the HTTP request
+     * @param theParameters the parsed query string of the HTTP request
      * @return the service name of the service to call (there are 2 services
      *         "do test" and "get results"), extracted from the HTTP request
      * @exception ServletException if the service to execute is missing from
      *            the HTTP request
      */
-    private String getServiceName(HttpServletRequest theRequest)
+    private String getServiceName(QueryStringParameters theParameters)
         throws ServletException
     {
         // Call the correct Service method
-        String queryString = theRequest.getQueryString();
-        String serviceName = ServletUtil.getQueryStringParameter(queryString, 
+        String serviceName = theParameters.getParameter(
             HttpServiceDefinition.SERVICE_NAME_PARAM);
 
         if (serviceName == null)
@@ -166,7 +169,7 @@ public abstract class AbstractWebTestController implements TestController
             String message = "Missing service name parameter ["
                 + HttpServiceDefinition.SERVICE_NAME_PARAM
                 + "] in HTTP request. Received query string is ["
-                + queryString + "].";
+                + theParameters.getQueryString() + "].";
 
             LOGGER.debug(message);
             throw new ServletException(message);
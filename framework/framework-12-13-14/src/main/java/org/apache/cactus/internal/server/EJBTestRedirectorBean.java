@@ -21,6 +21,7 @@ package org.apache.cactus.internal.server;
  */
 
 import org.apache.cactus.EJBRequest;
+import org.apache.cactus.internal.EJBTestResult;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -50,9 +51,10 @@ public class EJBTestRedirectorBean implements SessionBean
 
     /**
      * The "main" method of the redirector object.
-     * @param theRequest
+     * @param theRequest the request holding the test to call
+     * @return the result of the test
      */
-    public void test(EJBRequest theRequest) 
+    public EJBTestResult test(EJBRequest theRequest) 
     {
         try 
         {
@@ -62,11 +64,12 @@ public class EJBTestRedirectorBean implements SessionBean
             object.setEJBRequest(theRequest);
 
             EJBTestController controller = new EJBTestController();
-            controller.handleRequest(object);
+            return controller.handleTestRequest(object);
         } 
         catch (Exception e) 
         {
-            e.printStackTrace();
+            LOGGER.error("Failed to call the test", e);
+            return new EJBTestResult(e);
         }
     }
 
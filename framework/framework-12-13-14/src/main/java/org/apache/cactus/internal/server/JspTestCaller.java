@@ -25,8 +25,8 @@ import org.apache.cactus.JspTestCase;
 import org.apache.cactus.ServletURL;
 import org.apache.cactus.server.AbstractPageContextWrapper;
 
-import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.lang.reflect.Field;
 
@@ -69,9 +69,8 @@ public class JspTestCaller extends ServletTestCaller
         // Set the page context field of the test case class
         // -------------------------------------------------
         // Extract from the HTTP request the URL to simulate (if any)
-        HttpServletRequest request = jspImplicitObjects.getHttpServletRequest();
-
-        ServletURL url = ServletURL.loadFromRequest(request);
+        ServletURL url = ServletURL.loadFromRequest(
+            this.webImplicitObjects.getQueryStringParameters());
 
         Field pageContextField = jspInstance.getClass().getField("pageContext");
 
@@ -97,4 +96,16 @@ public class JspTestCaller extends ServletTestCaller
 
         return jspImplicitObjects.getJspWriter();
     }
+
+    /**
+     * The JSP page has already obtained the response writer, so the response
+     * output stream cannot be used.
+     *
+     * {@inheritDoc}
+     * @see AbstractWebTestCaller#getResponseOutputStream()
+     */
+    protected OutputStream getResponseOutputStream() throws IOException
+    {
+        return null;
+    }
 }
@@ -21,14 +21,10 @@
 package org.apache.cactus.internal.server;
 
 import junit.framework.TestCase;
-import org.apache.cactus.JmsRequest;
 import org.apache.cactus.JmsTestCase;
 import org.apache.cactus.spi.server.MessageDrivenBeanImplicitObjects;
 
-import javax.jms.QueueConnectionFactory;
-import javax.naming.InitialContext;
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 
 /**
  * Responsible for instanciating the <code>TestCase</code> class on the server
@@ -38,13 +34,6 @@ import java.lang.reflect.Method;
  */
 public class MessageDrivenBeanTestCaller extends AbstractJMSTestCaller 
 {
-    /**
-     * The implicit objects (which will be used to set the test case fields
-     * in the <code>setTesCaseFields</code> method.
-     */
-    protected MessageDrivenBeanImplicitObjects mdbImplicitObjects;
-    
-
     /**
      * @param theObjects the implicit objects coming from the redirector
      */
@@ -55,7 +44,7 @@ public class MessageDrivenBeanTestCaller extends AbstractJMSTestCaller
     
     /**
      * {@inheritDoc}
-     * @see AbstractWebTestCaller#setTestCaseFields(TestCase)
+     * @see AbstractJMSTestCaller#setTestCaseFields(TestCase)
      */
     protected void setTestCaseFields(TestCase theTestInstance)
         throws Exception
@@ -67,60 +56,20 @@ public class MessageDrivenBeanTestCaller extends AbstractJMSTestCaller
         
         JmsTestCase jmsInstance = (JmsTestCase) theTestInstance;
 
-        // Sets the request field of the test case class
-        // ---------------------------------------------
-        // Extract from the JMS request the queue to simulate (if any)
-        JmsRequest request = 
-            mdbImplicitObjects.getRequest();
-
-        String nameOfQueue = request.getQueueName();
-        
-        QueueConnectionFactory qcf = ((QueueConnectionFactory) 
-        ((InitialContext) mdbImplicitObjects.getMessageDrivenBeanContext()).lookup(nameOfQueue)); 
-        
-        Method respondMethod = jmsInstance.getClass().getMethod("getJMSReplyTo", new Class[]{});
-        
-        Field requestField = jmsInstance.getClass().getField("request");  //TODO find the appropriate field names here.
-
-        //requestField.set(jmsInstance, 
-        //    AbstractHttpServletRequestWrapper.newInstance(request, url));
-
-        // Set the response queue field of the test case class
-        // ---------------------------------------------
-        //TODO find the appropriate field names here.
-        Field responseQueueField = jmsInstance.getClass().getField("jMSReplyTo"); 
-
-        //responseQueueField.set(jmsInstance, 
-        //    mdbImplicitObjects.getHttpServletResponse());
-
-        // Set the config field of the test case class
-        // -------------------------------------------
-        Field configField = jmsInstance.getClass().getField("config");
+        // Set the message field of the test case class
+        // --------------------------------------------
+        Field messageField = jmsInstance.getClass().getField("message");
 
-        //configField.set(jmsInstance, AbstractServletConfigWrapper.
-        //    newInstance(mdbImplicitObjects.getServletConfig()));
+        messageField.set(jmsInstance, mdbImplicitObjects.getMessage());
 
-        // Set the session field of the test case class
+        // Set the context field of the test case class
         // --------------------------------------------
-        // Create a Session object if the auto session flag is on
-//        if (isAutoSession())
-//        {
-//            HttpSession session = mdbImplicitObjects.getRequest()
-//                .getSession(true);
-//
-//            Field sessionField = jmsInstance.getClass().getField("session");
-//
-//            sessionField.set(jmsInstance, session);
-//        }
-    }
-    /**
-     * Empty implementation.
-     */
-    public void doTest()
-    {
-        
+        Field contextField = jmsInstance.getClass().getField("context");
+
+        contextField.set(jmsInstance, 
+            mdbImplicitObjects.getMessageDrivenBeanContext());
     }
-    
+
     /**
      * Empty implementation.
      */
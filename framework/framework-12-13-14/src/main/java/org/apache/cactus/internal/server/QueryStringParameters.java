@@ -0,0 +1,167 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.server;
+
+import org.apache.cactus.util.ChainedRuntimeException;
+
+import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable view of the parameters of a query string, parsed and URL decoded
+ * in a single pass. The redirector reads all the directives sent by the
+ * client side (service name, test class, simulated URL, etc) from the query
+ * string rather than through <code>getParameter()</code> (see
+ * {@link ServletUtil#getQueryStringParameter(String, String)} for the
+ * reason) and building this view once per request avoids rescanning and
+ * decoding the query string for each of them.
+ *
+ * Parameter names are matched exactly. When a parameter is repeated, the
+ * first value wins.
+ *
+ * @version $Id$
+ */
+public final class QueryStringParameters
+{
+    /**
+     * View of an empty or missing query string.
+     */
+    private static final QueryStringParameters EMPTY = 
+        new QueryStringParameters(null, 
+            Collections.<String, String>emptyMap());
+
+    /**
+     * The raw query string, as received.
+     */
+    private String queryString;
+
+    /**
+     * The decoded parameter values, keyed by decoded parameter name.
+     */
+    private Map<String, String> parameters;
+
+    /**
+     * @param theQueryString the raw query string
+     * @param theParameters the decoded parameter values
+     */
+    private QueryStringParameters(String theQueryString, 
+        Map<String, String> theParameters)
+    {
+        this.queryString = theQueryString;
+        this.parameters = theParameters;
+    }
+
+    /**
+     * Parses a query string.
+     *
+     * @param theQueryString the query string to parse (can be null)
+     * @return the parsed parameters
+     */
+    public static QueryStringParameters parse(String theQueryString)
+    {
+        if ((theQueryString == null) || (theQueryString.length() == 0))
+        {
+            return EMPTY;
+        }
+
+        Map<String, String> parameters = new HashMap<String, String>();
+        int length = theQueryString.length();
+        int start = 0;
+
+        while (start <= length)
+        {
+            int end = theQueryString.indexOf('&', start);
+            if (end < 0)
+            {
+                end = length;
+            }
+
+            // Parameters without a '=' have no value we could return
+            int equals = theQueryString.indexOf('=', start);
+            if ((equals >= 0) && (equals < end))
+            {
+                String name = decode(theQueryString.substring(start, equals));
+                if (!parameters.containsKey(name))
+                {
+                    parameters.put(name, 
+                        decode(theQueryString.substring(equals + 1, end)));
+                }
+            }
+
+            start = end + 1;
+        }
+
+        return new QueryStringParameters(theQueryString, 
+            Collections.unmodifiableMap(parameters));
+    }
+
+    /**
+     * @param theParameter the name of the parameter
+     * @return the value of the parameter, null if it does not exist and ""
+     *         if the parameter exists but has no value
+     */
+    public String getParameter(String theParameter)
+    {
+        return this.parameters.get(theParameter);
+    }
+
+    /**
+     * @return the decoded parameters, keyed by name (read only)
+     */
+    public Map<String, String> getParameters()
+    {
+        return this.parameters;
+    }
+
+    /**
+     * @return the raw query string this view was built from (can be null)
+     */
+    public String getQueryString()
+    {
+        return this.queryString;
+    }
+
+    /**
+     * @param theValue the URL encoded string
+     * @return the decoded string
+     */
+    private static String decode(String theValue)
+    {
+        if (theValue.length() == 0)
+        {
+            return theValue;
+        }
+
+        // In JDK 1.2 URLDecoder.decode throws an Exception. This is not
+        // needed for JDK 1.3+ but needed to keep JDK 1.2.2 compatibility
+        try
+        {
+            return URLDecoder.decode(theValue);
+        }
+        catch (Exception e)
+        {
+            throw new ChainedRuntimeException("Error URL decoding ["
+                + theValue + "]", e);
+        }
+    }
+}
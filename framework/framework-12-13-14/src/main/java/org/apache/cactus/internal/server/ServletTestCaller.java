@@ -70,7 +70,8 @@ public class ServletTestCaller extends AbstractWebTestCaller
         HttpServletRequest request = 
             servletImplicitObjects.getHttpServletRequest();
 
-        ServletURL url = ServletURL.loadFromRequest(request);
+        ServletURL url = ServletURL.loadFromRequest(
+            this.webImplicitObjects.getQueryStringParameters());
 
         Field requestField = servletInstance.getClass().getField("request");
 
@@ -20,10 +20,6 @@
  */
 package org.apache.cactus.internal.server;
 
-import org.apache.cactus.util.ChainedRuntimeException;
-
-import java.net.URLDecoder;
-
 /**
  * All prupose utility methods for manipulating the Servlet API.
  *
@@ -43,6 +39,9 @@ public class ServletUtil
      * want to allow for testing code that uses these 2 methods (and we do !)
      * we need to use this method to get the internal Cactus parameters.
      *
+     * Note: The whole query string is parsed on each call. When several
+     * parameters are needed, use {@link QueryStringParameters} instead.
+     *
      * @param theQueryString the query string to parse
      * @param theParameter the name of the parameter to locate
      * @return the value for theParameter in theQueryString, null if
@@ -52,48 +51,7 @@ public class ServletUtil
     public static String getQueryStringParameter(String theQueryString, 
         String theParameter)
     {
-        if (theQueryString == null)
-        {
-            return null;
-        }
-
-        String value = null;
-
-        int startIndex = theQueryString.indexOf(theParameter + "=");
-
-        if (startIndex >= 0)
-        {
-            // add 1 for '='
-            startIndex += (theParameter.length() + 1);
-
-            int endIndex = theQueryString.indexOf('&', startIndex);
-
-            if (endIndex > startIndex)
-            {
-                value = theQueryString.substring(startIndex, endIndex);
-            }
-            else if (endIndex == startIndex)
-            {
-                value = "";
-            }
-            else
-            {
-                value = theQueryString.substring(startIndex);
-            }
-
-            // In JDK 1.2 URLDecoder.decode throws an Exception. This is not
-            // needed for JDK 1.3+ but needed to keep JDK 1.2.2 compatibility
-            try
-            {
-                value = URLDecoder.decode(value);
-            }
-            catch (Exception e)
-            {
-                throw new ChainedRuntimeException("Error URL decoding ["
-                    + value + "]", e);
-            }
-        }
-
-        return value;
+        return QueryStringParameters.parse(theQueryString).getParameter(
+            theParameter);
     }
 }
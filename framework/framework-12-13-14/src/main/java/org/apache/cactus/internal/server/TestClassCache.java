@@ -0,0 +1,180 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.server;
+
+import junit.framework.Test;
+import org.apache.cactus.internal.util.ClassLoaderUtils;
+
+import java.lang.reflect.Constructor;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the test classes loaded by the redirector along with the 
+ * constructors used to instantiate them, so that the class loading and
+ * constructor lookups (which rely on exceptions to find their way) are only
+ * done once per test class instead of once per test. The cache is kept in
+ * the <code>application</code> scope and thus goes away with the webapp
+ * when it is redeployed.
+ *
+ * @version $Id$
+ */
+public class TestClassCache
+{
+    /**
+     * The loaded classes, keyed by class name.
+     */
+    private Map<String, LoadedClass> classes = 
+        new ConcurrentHashMap<String, LoadedClass>();
+
+    /**
+     * The constructors used to instantiate the test classes, keyed by class.
+     */
+    private Map<Class, Constructor> testConstructors = 
+        new ConcurrentHashMap<Class, Constructor>();
+
+    /**
+     * The constructors used to instantiate the Cactus test classes wrapping
+     * pure JUnit tests, keyed by class.
+     */
+    private Map<Class, Constructor> wrapperConstructors = 
+        new ConcurrentHashMap<Class, Constructor>();
+
+    /**
+     * Loads a class as {@link ClassLoaderUtils#loadClass(String, Class)} 
+     * does, unless it has already been loaded with the current context 
+     * class loader.
+     *
+     * @param theClassName the name of the class to load
+     * @param theReferrer the class will be loaded using the classloader which
+     *        has loaded this referrer class
+     * @return the class object
+     * @exception ClassNotFoundException if the class cannot be loaded
+     */
+    public Class loadClass(String theClassName, Class theReferrer)
+        throws ClassNotFoundException
+    {
+        ClassLoader contextLoader = 
+            Thread.currentThread().getContextClassLoader();
+
+        LoadedClass loadedClass = this.classes.get(theClassName);
+        if ((loadedClass == null) 
+            || (loadedClass.getContextLoader() != contextLoader))
+        {
+            loadedClass = new LoadedClass(
+                ClassLoaderUtils.loadClass(theClassName, theReferrer), 
+                contextLoader);
+            this.classes.put(theClassName, loadedClass);
+        }
+        return loadedClass.getLoadedClass();
+    }
+
+    /**
+     * @param theTestClass the test class for which we want to find the
+     *        constructor
+     * @return the constructor taking the test name as parameter if there is
+     *         one, the no-arg constructor otherwise
+     * @exception NoSuchMethodException if no suitable constructor is found
+     */
+    public Constructor getTestConstructor(Class theTestClass)
+        throws NoSuchMethodException
+    {
+        Constructor constructor = this.testConstructors.get(theTestClass);
+        if (constructor == null)
+        {
+            try 
+            {
+                constructor = theTestClass.getConstructor(
+                    new Class[] {String.class});         
+            }
+            catch (NoSuchMethodException e)
+            {
+                constructor = theTestClass.getConstructor(new Class[0]);
+            }
+            this.testConstructors.put(theTestClass, constructor);
+        }
+        return constructor;
+    }
+
+    /**
+     * @param theTestClass the Cactus test class for which we want to find
+     *        the constructor used to wrap a pure JUnit test
+     * @return the constructor taking the test name and the wrapped test as
+     *         parameters
+     * @exception NoSuchMethodException if the class has no such constructor
+     */
+    public Constructor getWrapperConstructor(Class theTestClass)
+        throws NoSuchMethodException
+    {
+        Constructor constructor = this.wrapperConstructors.get(theTestClass);
+        if (constructor == null)
+        {
+            constructor = theTestClass.getConstructor(
+                new Class[] {String.class, Test.class});
+            this.wrapperConstructors.put(theTestClass, constructor);
+        }
+        return constructor;
+    }
+
+    /**
+     * A loaded class along with the context class loader that was current
+     * when it was loaded.
+     */
+    private static class LoadedClass
+    {
+        /**
+         * The loaded class.
+         */
+        private Class loadedClass;
+
+        /**
+         * The context class loader at the time the class was loaded.
+         */
+        private ClassLoader contextLoader;
+
+        /**
+         * @param theLoadedClass the loaded class
+         * @param theContextLoader the context class loader at the time the
+         *        class was loaded
+         */
+        public LoadedClass(Class theLoadedClass, ClassLoader theContextLoader)
+        {
+            this.loadedClass = theLoadedClass;
+            this.contextLoader = theContextLoader;
+        }
+
+        /**
+         * @return the loaded class
+         */
+        public Class getLoadedClass()
+        {
+            return this.loadedClass;
+        }
+
+        /**
+         * @return the context class loader at the time the class was loaded
+         */
+        public ClassLoader getContextLoader()
+        {
+            return this.contextLoader;
+        }
+    }
+}
@@ -64,4 +64,11 @@ public interface WebImplicitObjects extends ImplicitObjects
      * @param theRequest the <code>HttpServletRequest</code> implicit object
      */
     void setHttpServletRequest(HttpServletRequest theRequest);
+
+    /**
+     * @return the parsed query string of the <code>HttpServletRequest</code>
+     *         implicit object, from which the redirector reads the
+     *         directives sent by the client side
+     */
+    QueryStringParameters getQueryStringParameters();
 }
@@ -0,0 +1,169 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.server;
+
+import org.apache.cactus.internal.WebTestResult;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the results of the tests executed by the redirector until the
+ * client side claims them with the Get Test Result service. Results are
+ * keyed by the unique id generated by the client side for each test so that
+ * several tests can be executed concurrently against the same webapp.
+ * Results that are never claimed (for example because the client side died
+ * in between the two requests) are evicted once their time to live is over.
+ *
+ * @version $Id$
+ */
+public class WebTestResultStore
+{
+    /**
+     * Default time (in ms) during which an unclaimed test result is kept.
+     */
+    public static final long DEFAULT_TIME_TO_LIVE = 5 * 60 * 1000L;
+
+    /**
+     * The stored results, keyed by test unique id.
+     */
+    private Map<String, Entry> results =
+        new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * Time (in ms) during which an unclaimed test result is kept.
+     */
+    private long timeToLive;
+
+    /**
+     * Creates a store using the default time to live.
+     */
+    public WebTestResultStore()
+    {
+        this(DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * @param theTimeToLive the time (in ms) during which an unclaimed test
+     *        result is kept
+     */
+    public WebTestResultStore(long theTimeToLive)
+    {
+        this.timeToLive = theTimeToLive;
+    }
+
+    /**
+     * Stores a test result. Expired results are evicted at the same time.
+     *
+     * @param theTestId the unique id of the test
+     * @param theResult the result of the test
+     */
+    public void put(String theTestId, WebTestResult theResult)
+    {
+        long now = System.currentTimeMillis();
+        evictExpired(now);
+        this.results.put(theTestId, new Entry(theResult, now));
+    }
+
+    /**
+     * Returns and removes the result of a test. A result can only be claimed
+     * once.
+     *
+     * @param theTestId the unique id of the test
+     * @return the result of the test or null if there is no result (or no
+     *         longer any result) for this test
+     */
+    public WebTestResult remove(String theTestId)
+    {
+        Entry entry = this.results.remove(theTestId);
+        return (entry == null) ? null : entry.getResult();
+    }
+
+    /**
+     * @return the number of results currently held by the store
+     */
+    public int size()
+    {
+        return this.results.size();
+    }
+
+    /**
+     * Removes all results that have been stored for longer than the time to
+     * live.
+     *
+     * @param theNow the current time (in ms)
+     */
+    void evictExpired(long theNow)
+    {
+        Iterator<Entry> entries = this.results.values().iterator();
+        while (entries.hasNext())
+        {
+            if (theNow - entries.next().getCreationTime() > this.timeToLive)
+            {
+                entries.remove();
+            }
+        }
+    }
+
+    /**
+     * A stored test result along with the time it was stored at.
+     */
+    private static class Entry
+    {
+        /**
+         * The test result.
+         */
+        private WebTestResult result;
+
+        /**
+         * The time (in ms) at which the result was stored.
+         */
+        private long creationTime;
+
+        /**
+         * @param theResult the test result
+         * @param theCreationTime the time (in ms) at which the result was
+         *        stored
+         */
+        public Entry(WebTestResult theResult, long theCreationTime)
+        {
+            this.result = theResult;
+            this.creationTime = theCreationTime;
+        }
+
+        /**
+         * @return the test result
+         */
+        public WebTestResult getResult()
+        {
+            return this.result;
+        }
+
+        /**
+         * @return the time (in ms) at which the result was stored
+         */
+        public long getCreationTime()
+        {
+            return this.creationTime;
+        }
+    }
+}
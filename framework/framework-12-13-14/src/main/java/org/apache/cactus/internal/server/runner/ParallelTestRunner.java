@@ -0,0 +1,145 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.server.runner;
+
+import junit.framework.Test;
+import junit.framework.TestResult;
+import junit.framework.TestSuite;
+import org.apache.cactus.util.ChainedRuntimeException;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the tests of a suite concurrently, on a bounded number of threads.
+ * The suite is split into its leaf tests, that is the tests that are not
+ * plain {@link TestSuite}s. Test decorators such as test setups are not
+ * split, so that their set up and tear down still wrap all their tests.
+ *
+ * <p>
+ *   The listeners of the <code>TestResult</code> are notified from several
+ *   threads, but each test is run from start to end by a single thread.
+ * </p>
+ *
+ * @version $Id$
+ */
+public class ParallelTestRunner
+{
+    /**
+     * The maximum number of tests run at the same time.
+     */
+    private int threadCount;
+
+    /**
+     * @param theThreadCount the maximum number of tests run at the same time
+     */
+    public ParallelTestRunner(int theThreadCount)
+    {
+        if (theThreadCount < 1)
+        {
+            throw new IllegalArgumentException(
+                "The number of threads must be at least 1");
+        }
+        this.threadCount = theThreadCount;
+    }
+
+    /**
+     * Runs the tests of a suite and waits for all of them to complete.
+     * Tests that have not been started yet are skipped once the result has
+     * been asked to stop.
+     *
+     * @param theSuite the suite to run
+     * @param theResult the result to collect the test outcomes into
+     */
+    public void run(Test theSuite, final TestResult theResult)
+    {
+        List<Test> tests = new ArrayList<Test>();
+        addLeafTests(theSuite, tests);
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(this.threadCount, tests.size())));
+        try
+        {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (final Test test : tests)
+            {
+                futures.add(executor.submit(new Runnable()
+                {
+                    public void run()
+                    {
+                        if (!theResult.shouldStop())
+                        {
+                            test.run(theResult);
+                        }
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures)
+            {
+                future.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            theResult.stop();
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e)
+        {
+            throw new ChainedRuntimeException("Failed to run test",
+                e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Collects the leaf tests of a test, in order. Only plain 
+     * <code>TestSuite</code> instances are split: subclasses may override
+     * <code>run()</code> and are run as a whole, as decorators are.
+     *
+     * @param theTest the test to split
+     * @param theTests the list to add the leaf tests to
+     */
+    static void addLeafTests(Test theTest, List<Test> theTests)
+    {
+        if (theTest.getClass() == TestSuite.class)
+        {
+            Enumeration tests = ((TestSuite) theTest).tests();
+            while (tests.hasMoreElements())
+            {
+                addLeafTests((Test) tests.nextElement(), theTests);
+            }
+        }
+        else
+        {
+            theTests.add(theTest);
+        }
+    }
+}
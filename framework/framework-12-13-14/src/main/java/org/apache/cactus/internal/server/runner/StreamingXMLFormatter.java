@@ -0,0 +1,295 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.server.runner;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.Test;
+import junit.framework.TestListener;
+import junit.framework.TestResult;
+import org.apache.cactus.internal.util.JUnitVersionHelper;
+import org.apache.cactus.util.ChainedRuntimeException;
+
+import java.io.Writer;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Format the test results in XML, writing each test case as soon as it has
+ * been executed instead of building the whole report in memory.
+ *
+ * <p>
+ *   As the totals of the suite are only known once all the tests have been
+ *   executed, they are not set on the <code>testsuite</code> element as
+ *   {@link XMLFormatter} does but on a <code>summary</code> element written
+ *   after the last test case. The tests may be run concurrently.
+ * </p>
+ *
+ * @version $Id$
+ */
+public class StreamingXMLFormatter implements XMLConstants, TestListener
+{
+    /**
+     * The writer the XML report is streamed to.
+     */
+    private Writer out;
+
+    /**
+     * The StAX writer wrapping {@link #out}.
+     */
+    private XMLStreamWriter xml;
+
+    /**
+     * (optional) Name of the XSL stylesheet to put in the returned XML.
+     */
+    private String xslFileName;
+
+    /**
+     * The name of the test suite class.
+     */
+    private String suiteClassName;
+
+    /**
+     * Encoding declared in the returned XML. Defaults to "UTF-8".
+     */
+    private String encoding = "UTF-8";
+
+    /**
+     * Time the suite was started.
+     */
+    private long startTime;
+
+    /**
+     * Time current test was started. Tests may be run concurrently, each
+     * test being run from start to end by a single thread.
+     */
+    private ThreadLocal<Long> currentTestStartTime = new ThreadLocal<Long>();
+
+    /**
+     * Exception thrown by the current test, if any.
+     */
+    private ThreadLocal<Throwable> currentTestFailure =
+        new ThreadLocal<Throwable>();
+
+    /**
+     * Name of the element reporting the exception thrown by the current
+     * test: {@link #ERROR} or {@link #FAILURE}.
+     */
+    private ThreadLocal<String> currentTestFailureElement =
+        new ThreadLocal<String>();
+
+    /**
+     * The number format used to convert durations into strings, in dotted
+     * decimal notation.
+     */
+    private NumberFormat durationFormat = NumberFormat.getInstance(Locale.US);
+
+    /**
+     * @param theWriter the writer to stream the XML report to. It is
+     *        flushed after each test case.
+     */
+    public StreamingXMLFormatter(Writer theWriter)
+    {
+        this.out = theWriter;
+    }
+
+    /**
+     * @param theXslFileName the file name of the XSL stylesheet to put in
+     *        the returned XML (relative to the webapp root)
+     */
+    public void setXslFileName(String theXslFileName)
+    {
+        this.xslFileName = theXslFileName;
+    }
+
+    /**
+     * @param theEncoding the encoding declared in the returned XML
+     */
+    public void setEncoding(String theEncoding)
+    {
+        this.encoding = theEncoding;
+    }
+
+    /**
+     * @param theSuiteClassName the suite class name
+     */
+    public void setSuiteClassName(String theSuiteClassName)
+    {
+        this.suiteClassName = theSuiteClassName;
+    }
+
+    /**
+     * Writes the beginning of the report, up to the opening of the
+     * <code>testsuite</code> element. Must be called before the tests are
+     * run.
+     */
+    public synchronized void startDocument()
+    {
+        this.startTime = System.currentTimeMillis();
+        try
+        {
+            this.xml = XMLOutputFactory.newInstance().createXMLStreamWriter(
+                this.out);
+            this.xml.writeStartDocument(this.encoding, "1.0");
+            if (this.xslFileName != null)
+            {
+                this.xml.writeProcessingInstruction("xml-stylesheet",
+                    "type=\"text/xsl\" href=\"" + this.xslFileName + "\"");
+            }
+            this.xml.writeStartElement(TESTSUITES);
+            this.xml.writeStartElement(TESTSUITE);
+            this.xml.writeAttribute(ATTR_NAME,
+                String.valueOf(this.suiteClassName));
+            this.xml.flush();
+        }
+        catch (XMLStreamException e)
+        {
+            throw new ChainedRuntimeException(
+                "Failed to write the test report", e);
+        }
+    }
+
+    /**
+     * Writes the summary of the suite and the end of the report. Must be
+     * called once the tests have been run.
+     *
+     * @param theResult the test result object
+     */
+    public synchronized void endDocument(TestResult theResult)
+    {
+        try
+        {
+            this.xml.writeEmptyElement(SUMMARY);
+            this.xml.writeAttribute(ATTR_TESTS,
+                String.valueOf(theResult.runCount()));
+            this.xml.writeAttribute(ATTR_FAILURES,
+                String.valueOf(theResult.failureCount()));
+            this.xml.writeAttribute(ATTR_ERRORS,
+                String.valueOf(theResult.errorCount()));
+            this.xml.writeAttribute(ATTR_TIME, getDurationAsString(
+                System.currentTimeMillis() - this.startTime));
+            this.xml.writeEndDocument();
+            this.xml.flush();
+        }
+        catch (XMLStreamException e)
+        {
+            throw new ChainedRuntimeException(
+                "Failed to write the test report", e);
+        }
+    }
+
+    /**
+     * Event called by the base test runner when the test starts.
+     *
+     * @param theTest the test object being executed
+     */
+    public void startTest(Test theTest)
+    {
+        this.currentTestStartTime.set(
+            Long.valueOf(System.currentTimeMillis()));
+        this.currentTestFailure.remove();
+    }
+
+    /**
+     * Event called by the base test runner when the test fails with an error.
+     *
+     * @param theTest the test object that failed
+     * @param theThrowable the exception that was thrown
+     */
+    public void addError(Test theTest, Throwable theThrowable)
+    {
+        this.currentTestFailure.set(theThrowable);
+        this.currentTestFailureElement.set(ERROR);
+    }
+
+    /**
+     * Event called by the base test runner when the test fails with a failure.
+     *
+     * @param theTest the test object that failed
+     * @param theError the exception that was thrown
+     */
+    public void addFailure(Test theTest, AssertionFailedError theError)
+    {
+        this.currentTestFailure.set(theError);
+        this.currentTestFailureElement.set(FAILURE);
+    }
+
+    /**
+     * Event called by the base test runner when the test ends. Writes the
+     * test case and flushes it to the underlying writer.
+     *
+     * @param theTest the test object being executed
+     */
+    public void endTest(Test theTest)
+    {
+        String duration = getDurationAsString(System.currentTimeMillis()
+            - this.currentTestStartTime.get().longValue());
+        Throwable failure = this.currentTestFailure.get();
+        try
+        {
+            synchronized (this)
+            {
+                this.xml.writeStartElement(TESTCASE);
+                this.xml.writeAttribute(ATTR_NAME,
+                    JUnitVersionHelper.getTestCaseName(theTest));
+                this.xml.writeAttribute(ATTR_TIME, duration);
+
+                if (failure != null)
+                {
+                    this.xml.writeStartElement(
+                        this.currentTestFailureElement.get());
+                    this.xml.writeAttribute(ATTR_MESSAGE,
+                        String.valueOf(failure.getMessage()));
+                    this.xml.writeAttribute(ATTR_TYPE,
+                        failure.getClass().getName());
+                    this.xml.writeCharacters(
+                        XMLFormatter.getStackTrace(failure));
+                    this.xml.writeEndElement();
+                }
+
+                this.xml.writeEndElement();
+                this.xml.flush();
+            }
+        }
+        catch (XMLStreamException e)
+        {
+            throw new ChainedRuntimeException(
+                "Failed to write the test report", e);
+        }
+    }
+
+    /**
+     * Converts a duration into a string, in seconds.
+     *
+     * @param theDuration the duration to convert to string, in ms
+     * @return the duration as a string
+     */
+    private String getDurationAsString(long theDuration)
+    {
+        synchronized (this.durationFormat)
+        {
+            return this.durationFormat.format((double) theDuration / 1000);
+        }
+    }
+}
@@ -57,28 +57,34 @@ public interface XMLConstants
      */
     String FAILURE = "failure";
 
+    /**
+     * The summary element (for a streamed test suite).
+     */
+    String SUMMARY = "summary";
+
     /**
      * Name attribute for property, testcase and testsuite elements.
      */
     String ATTR_NAME = "name";
 
     /**
-     * Time attribute for testcase and testsuite elements.
+     * Time attribute for testcase, testsuite and summary elements.
      */
     String ATTR_TIME = "time";
 
     /**
-     * Errors attribute for testsuite elements.
+     * Errors attribute for testsuite and summary elements.
      */
     String ATTR_ERRORS = "errors";
 
     /**
-     * Failures attribute for testsuite elements.
+     * Failures attribute for testsuite and summary elements.
      */
     String ATTR_FAILURES = "failures";
 
     /**
-     * Tests attribute for testsuite elements (number of tests executed).
+     * Tests attribute for testsuite and summary elements (number of tests
+     * executed).
      */
     String ATTR_TESTS = "tests";
 
@@ -22,17 +22,21 @@ package org.apache.cactus.internal.server.runner;
 
 import junit.framework.AssertionFailedError;
 import junit.framework.Test;
-import junit.framework.TestFailure;
 import junit.framework.TestListener;
 import junit.framework.TestResult;
 import org.apache.cactus.internal.util.JUnitVersionHelper;
 import org.apache.cactus.internal.util.StringUtil;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
 
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 
 /**
- * Format the test results in XML.
+ * Format the test results in XML. The tests may be run concurrently.
  *
  * @version $Id: XMLFormatter.java 239169 2005-05-05 09:21:54Z vmassol $
  */
@@ -78,9 +82,10 @@ public class XMLFormatter implements XMLConstants, TestListener
     private String encoding = "UTF-8";
     
     /**
-     * Time current test was started.
+     * Time current test was started. Tests may be run concurrently, each
+     * test being run from start to end by a single thread.
      */
-    private long currentTestStartTime;
+    private ThreadLocal<Long> currentTestStartTime = new ThreadLocal<Long>();
 
     /**
      * The number format used to convert durations into strings. Don't use the
@@ -90,14 +95,16 @@ public class XMLFormatter implements XMLConstants, TestListener
     private NumberFormat durationFormat = NumberFormat.getInstance(Locale.US);
 
     /**
-     * XML string containing executed test case results.
+     * Executed test case results.
      */
-    private StringBuilder currentTestCaseResults = new StringBuilder();
+    private List<TestCaseResult> testCaseResults =
+        new ArrayList<TestCaseResult>();
 
     /**
-     * Current test failure (XML string) : failure or error.
+     * Current test failure : failure or error.
      */
-    private String currentTestFailure;
+    private ThreadLocal<TestCaseFailure> currentTestFailure =
+        new ThreadLocal<TestCaseFailure>();
 
     /**
      * Sets the XSL stylesheet file name to put in the returned XML string
@@ -161,7 +168,10 @@ public class XMLFormatter implements XMLConstants, TestListener
      */
     private String getDurationAsString(long theDuration)
     {
-        return durationFormat.format((double) theDuration / 1000);
+        synchronized (this.durationFormat)
+        {
+            return this.durationFormat.format((double) theDuration / 1000);
+        }
     }
 
     /**
@@ -209,7 +219,13 @@ public class XMLFormatter implements XMLConstants, TestListener
                 .append(ATTR_TIME).append("=\"")
                 .append(getTotalDurationAsString()).append("\">");
 
-        xml.append(this.currentTestCaseResults);
+        synchronized (this.testCaseResults)
+        {
+            for (TestCaseResult testCase : this.testCaseResults)
+            {
+                appendTestCase(xml, testCase);
+            }
+        }
 
         xml.append("</").append(TESTSUITE).append(">");
         xml.append("</").append(TESTSUITES).append(">");
@@ -224,8 +240,67 @@ public class XMLFormatter implements XMLConstants, TestListener
      */
     public void startTest(Test theTest)
     {
-        this.currentTestStartTime = System.currentTimeMillis();
-        this.currentTestFailure = null;
+        this.currentTestStartTime.set(
+            Long.valueOf(System.currentTimeMillis()));
+        this.currentTestFailure.remove();
+    }
+
+    /**
+     * Formats the test result as SAX events, in the same layout as
+     * {@link #toXML(TestResult)}.
+     *
+     * @param theResult the test result object
+     * @param theHandler the handler receiving the SAX events
+     * @exception SAXException if the handler fails
+     */
+    public void toSAX(TestResult theResult, ContentHandler theHandler)
+        throws SAXException
+    {
+        theHandler.startDocument();
+        theHandler.startElement("", TESTSUITES, TESTSUITES,
+            new AttributesImpl());
+
+        AttributesImpl attributes = new AttributesImpl();
+        addAttribute(attributes, ATTR_NAME, getSuiteClassName());
+        addAttribute(attributes, ATTR_TESTS,
+            String.valueOf(theResult.runCount()));
+        addAttribute(attributes, ATTR_FAILURES,
+            String.valueOf(theResult.failureCount()));
+        addAttribute(attributes, ATTR_ERRORS,
+            String.valueOf(theResult.errorCount()));
+        addAttribute(attributes, ATTR_TIME, getTotalDurationAsString());
+        theHandler.startElement("", TESTSUITE, TESTSUITE, attributes);
+
+        synchronized (this.testCaseResults)
+        {
+            for (TestCaseResult testCase : this.testCaseResults)
+            {
+                attributes.clear();
+                addAttribute(attributes, ATTR_NAME, testCase.name);
+                addAttribute(attributes, ATTR_TIME, testCase.duration);
+                theHandler.startElement("", TESTCASE, TESTCASE, attributes);
+
+                TestCaseFailure failure = testCase.failure;
+                if (failure != null)
+                {
+                    attributes.clear();
+                    addAttribute(attributes, ATTR_MESSAGE, failure.message);
+                    addAttribute(attributes, ATTR_TYPE, failure.type);
+                    theHandler.startElement("", failure.element,
+                        failure.element, attributes);
+                    char[] stackTrace = failure.stackTrace.toCharArray();
+                    theHandler.characters(stackTrace, 0, stackTrace.length);
+                    theHandler.endElement("", failure.element,
+                        failure.element);
+                }
+
+                theHandler.endElement("", TESTCASE, TESTCASE);
+            }
+        }
+
+        theHandler.endElement("", TESTSUITE, TESTSUITE);
+        theHandler.endElement("", TESTSUITES, TESTSUITES);
+        theHandler.endDocument();
     }
 
     /**
@@ -236,22 +311,7 @@ public class XMLFormatter implements XMLConstants, TestListener
      */
     public void addError(Test theTest, Throwable theThrowable)
     {
-        TestFailure failure = new TestFailure(theTest, theThrowable);
-        StringBuilder xml = new StringBuilder();
-
-        xml.append("<").append(ERROR).append(" ")
-                .append(ATTR_MESSAGE).append("=\"")
-                .append(xmlEncode(failure.thrownException().getMessage()))
-                .append("\" ")
-                .append(ATTR_TYPE).append("=\"")
-                .append(failure.thrownException().getClass().getName())
-                .append("\">");
-        // stacktrace serialization
-        xml.append(xmlEncode(StringUtil.exceptionToString(
-            failure.thrownException(), DEFAULT_STACK_FILTER_PATTERNS)));
-        xml.append("</").append(ERROR).append(">");
-
-        this.currentTestFailure = xml.toString();
+        this.currentTestFailure.set(new TestCaseFailure(ERROR, theThrowable));
     }
 
     /**
@@ -262,22 +322,7 @@ public class XMLFormatter implements XMLConstants, TestListener
      */
     public void addFailure(Test theTest, AssertionFailedError theError)
     {
-        TestFailure failure = new TestFailure(theTest, theError);
-        StringBuilder xml = new StringBuilder();
-
-        xml.append("<").append(FAILURE).append(" ")
-                .append(ATTR_MESSAGE).append("=\"")
-                .append(xmlEncode(failure.thrownException().getMessage()))
-                .append("\" ")
-                .append(ATTR_TYPE).append("=\"")
-                .append(failure.thrownException().getClass().getName())
-                .append("\">");
-        // stacktrace
-        xml.append(xmlEncode(StringUtil.exceptionToString(
-            failure.thrownException(), DEFAULT_STACK_FILTER_PATTERNS)));
-        xml.append("</").append(FAILURE).append(">");
-
-        this.currentTestFailure = xml.toString();
+        this.currentTestFailure.set(new TestCaseFailure(FAILURE, theError));
     }
 
     /**
@@ -287,23 +332,76 @@ public class XMLFormatter implements XMLConstants, TestListener
      */
     public void endTest(Test theTest)
     {
-        StringBuilder xml = new StringBuilder();
         String duration = getDurationAsString(System.currentTimeMillis()
-            - this.currentTestStartTime);
+            - this.currentTestStartTime.get().longValue());
+        TestCaseResult testCase = new TestCaseResult(
+            JUnitVersionHelper.getTestCaseName(theTest), duration,
+            this.currentTestFailure.get());
 
-        xml.append("<").append(TESTCASE).append(" ")
+        synchronized (this.testCaseResults)
+        {
+            this.testCaseResults.add(testCase);
+        }
+    }
+
+    /**
+     * Appends the XML representation of a test case.
+     *
+     * @param theXml the XML string being built
+     * @param theTestCase the test case result
+     */
+    private void appendTestCase(StringBuilder theXml,
+        TestCaseResult theTestCase)
+    {
+        theXml.append("<").append(TESTCASE).append(" ")
                 .append(ATTR_NAME).append("=\"")
-                .append(JUnitVersionHelper.getTestCaseName(theTest)).append("\" ")
-                .append(ATTR_TIME).append("=\"").append(duration).append("\">");
+                .append(theTestCase.name).append("\" ")
+                .append(ATTR_TIME).append("=\"")
+                .append(theTestCase.duration).append("\">");
 
-        if (this.currentTestFailure != null)
+        TestCaseFailure failure = theTestCase.failure;
+        if (failure != null)
         {
-            xml.append(this.currentTestFailure);
+            theXml.append("<").append(failure.element).append(" ")
+                    .append(ATTR_MESSAGE).append("=\"")
+                    .append(xmlEncode(failure.message))
+                    .append("\" ")
+                    .append(ATTR_TYPE).append("=\"")
+                    .append(failure.type)
+                    .append("\">");
+            // stacktrace serialization
+            theXml.append(xmlEncode(failure.stackTrace));
+            theXml.append("</").append(failure.element).append(">");
         }
 
-        xml.append("</").append(TESTCASE).append(">");
+        theXml.append("</").append(TESTCASE).append(">");
+    }
 
-        this.currentTestCaseResults.append(xml.toString());
+    /**
+     * Adds a CDATA attribute.
+     *
+     * @param theAttributes the attributes to add to
+     * @param theName the attribute name
+     * @param theValue the attribute value
+     */
+    private static void addAttribute(AttributesImpl theAttributes,
+        String theName, String theValue)
+    {
+        theAttributes.addAttribute("", theName, theName, "CDATA",
+            String.valueOf(theValue));
+    }
+
+    /**
+     * Returns the stack trace of a test failure, without the frames of the
+     * JUnit and Cactus classes running the test.
+     *
+     * @param theThrowable the exception that was thrown by the test
+     * @return the filtered stack trace
+     */
+    static String getStackTrace(Throwable theThrowable)
+    {
+        return StringUtil.exceptionToString(theThrowable,
+            DEFAULT_STACK_FILTER_PATTERNS);
     }
 
     /**
@@ -326,4 +424,78 @@ public class XMLFormatter implements XMLConstants, TestListener
 
         return newString;
     }
+
+    /**
+     * The result of an executed test case.
+     */
+    private static class TestCaseResult
+    {
+        /**
+         * The name of the test case.
+         */
+        private String name;
+
+        /**
+         * The duration of the test case, as a string.
+         */
+        private String duration;
+
+        /**
+         * The failure or error of the test case, or null if it passed.
+         */
+        private TestCaseFailure failure;
+
+        /**
+         * @param theName the name of the test case
+         * @param theDuration the duration of the test case, as a string
+         * @param theFailure the failure or error of the test case, or null if
+         *        it passed
+         */
+        public TestCaseResult(String theName, String theDuration,
+            TestCaseFailure theFailure)
+        {
+            this.name = theName;
+            this.duration = theDuration;
+            this.failure = theFailure;
+        }
+    }
+
+    /**
+     * The failure or error of a test case.
+     */
+    private static class TestCaseFailure
+    {
+        /**
+         * The element reporting the exception: {@link #ERROR} or
+         * {@link #FAILURE}.
+         */
+        private String element;
+
+        /**
+         * The exception message.
+         */
+        private String message;
+
+        /**
+         * The exception class name.
+         */
+        private String type;
+
+        /**
+         * The filtered stack trace.
+         */
+        private String stackTrace;
+
+        /**
+         * @param theElement the element reporting the exception
+         * @param theThrowable the exception thrown by the test
+         */
+        public TestCaseFailure(String theElement, Throwable theThrowable)
+        {
+            this.element = theElement;
+            this.message = theThrowable.getMessage();
+            this.type = theThrowable.getClass().getName();
+            this.stackTrace = getStackTrace(theThrowable);
+        }
+    }
 }
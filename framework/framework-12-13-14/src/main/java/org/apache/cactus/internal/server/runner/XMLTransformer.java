@@ -20,17 +20,30 @@
  */
 package org.apache.cactus.internal.server.runner;
 
+import junit.framework.TestResult;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
 import javax.xml.transform.Source;
 import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import java.io.InputStream;
 import java.io.Reader;
+import java.io.StringReader;
 import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Helper class that handles the transformation of the XML test results to
@@ -81,6 +94,12 @@ public class XMLTransformer
      */
     private Templates templates = null;
 
+    /**
+     * Whether the templates can transform SAX sources, which are then used
+     * to transform test results without serializing them.
+     */
+    private boolean isSAXSourceSupported;
+
     /**
      * The MIME type of the content we'll be sending to the client. This
      * defaults to "text/xml", but depends on the provided XSLT stylesheet.
@@ -101,14 +120,18 @@ public class XMLTransformer
         throws TransformerConfigurationException
     {
         // Setup the transformation templates
-        // NOTE: Because this is done at initialization time for 
-        // better performance and simplicity, changes to the
-        // stylesheet will only go live after the web-app is
-        // restarted
+        // NOTE: The stylesheet is compiled once, when this transformer is
+        // created, and the compiled templates are reused for all the
+        // transformations. Changes to the stylesheet are only picked up by
+        // a new transformer (see ServletTestRunner for when it creates them)
+        // Only the templates are shared between requests, the factory is
+        // not thread safe
         TransformerFactory transformerFactory =
             TransformerFactory.newInstance();
         Source source = new StreamSource(theStylesheet);
         this.templates = transformerFactory.newTemplates(source);
+        this.isSAXSourceSupported =
+            transformerFactory.getFeature(SAXSource.FEATURE);
         
         // Find out which content type is produced by the
         // stylesheet (valid values per XSLT 1.0 are 'xml', 'html'
@@ -149,6 +172,34 @@ public class XMLTransformer
             new StreamResult(theWriter));
     }
 
+    /**
+     * Performs the transformation of test results, feeding the stylesheet
+     * with the SAX events of the formatter rather than with a serialized
+     * XML report.
+     * 
+     * @param theFormatter The formatter that collected the test results
+     * @param theResult The test result object
+     * @param theWriter The writer to which the transformation result should be 
+     *        written.
+     * @exception TransformerException if an error occurs when applying the
+     *            XSL template to the test results
+     */
+    public void transform(XMLFormatter theFormatter, TestResult theResult,
+        Writer theWriter) throws TransformerException
+    {
+        if (!this.isSAXSourceSupported)
+        {
+            transform(new StringReader(theFormatter.toXML(theResult)),
+                theWriter);
+            return;
+        }
+
+        Transformer transformer = this.templates.newTransformer();
+        transformer.transform(new SAXSource(
+            new ResultXMLReader(theFormatter, theResult), new InputSource()),
+            new StreamResult(theWriter));
+    }
+
     // Private Methods --------------------------------------------------------
 
     /**
@@ -175,4 +226,190 @@ public class XMLTransformer
         return contentType;
     }
 
+    // Inner Classes -----------------------------------------------------------
+
+    /**
+     * Reader "parsing" test results by replaying the SAX events of the
+     * formatter that collected them.
+     */
+    private static class ResultXMLReader implements XMLReader
+    {
+        /**
+         * The formatter that collected the test results.
+         */
+        private XMLFormatter formatter;
+
+        /**
+         * The test result object.
+         */
+        private TestResult result;
+
+        /**
+         * The features set by the transformer.
+         */
+        private Map<String, Boolean> features = new HashMap<String, Boolean>();
+
+        /**
+         * The properties set by the transformer.
+         */
+        private Map<String, Object> properties = new HashMap<String, Object>();
+
+        /**
+         * The handler receiving the SAX events.
+         */
+        private ContentHandler contentHandler;
+
+        /**
+         * The DTD handler (not used as there is no DTD).
+         */
+        private DTDHandler dtdHandler;
+
+        /**
+         * The entity resolver (not used as there are no entities).
+         */
+        private EntityResolver entityResolver;
+
+        /**
+         * The error handler (not used as replaying cannot fail).
+         */
+        private ErrorHandler errorHandler;
+
+        /**
+         * @param theFormatter the formatter that collected the test results
+         * @param theResult the test result object
+         */
+        public ResultXMLReader(XMLFormatter theFormatter, TestResult theResult)
+        {
+            this.formatter = theFormatter;
+            this.result = theResult;
+            this.features.put("http://xml.org/sax/features/namespaces",
+                Boolean.TRUE);
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see XMLReader#parse(InputSource)
+         */
+        public void parse(InputSource theInput) throws SAXException
+        {
+            this.formatter.toSAX(this.result, this.contentHandler);
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see XMLReader#parse(String)
+         */
+        public void parse(String theSystemId) throws SAXException
+        {
+            parse(new InputSource(theSystemId));
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see XMLReader#getFeature(String)
+         */
+        public boolean getFeature(String theName)
+        {
+            return Boolean.TRUE.equals(this.features.get(theName));
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see XMLReader#setFeature(String, boolean)
+         */
+        public void setFeature(String theName, boolean theValue)
+        {
+            this.features.put(theName, Boolean.valueOf(theValue));
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see XMLReader#getProperty(String)
+         */
+        public Object getProperty(String theName)
+        {
+            return this.properties.get(theName);
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see XMLReader#setProperty(String, Object)
+         */
+        public void setProperty(String theName, Object theValue)
+        {
+            this.properties.put(theName, theValue);
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see XMLReader#getContentHandler()
+         */
+        public ContentHandler getContentHandler()
+        {
+            return this.contentHandler;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see XMLReader#setContentHandler(ContentHandler)
+         */
+        public void setContentHandler(ContentHandler theHandler)
+        {
+            this.contentHandler = theHandler;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see XMLReader#getDTDHandler()
+         */
+        public DTDHandler getDTDHandler()
+        {
+            return this.dtdHandler;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see XMLReader#setDTDHandler(DTDHandler)
+         */
+        public void setDTDHandler(DTDHandler theHandler)
+        {
+            this.dtdHandler = theHandler;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see XMLReader#getEntityResolver()
+         */
+        public EntityResolver getEntityResolver()
+        {
+            return this.entityResolver;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see XMLReader#setEntityResolver(EntityResolver)
+         */
+        public void setEntityResolver(EntityResolver theResolver)
+        {
+            this.entityResolver = theResolver;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see XMLReader#getErrorHandler()
+         */
+        public ErrorHandler getErrorHandler()
+        {
+            return this.errorHandler;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see XMLReader#setErrorHandler(ErrorHandler)
+         */
+        public void setErrorHandler(ErrorHandler theHandler)
+        {
+            this.errorHandler = theHandler;
+        }
+    }
 }
@@ -0,0 +1,97 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.server.runner;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of the transformers compiled for the stylesheets requested
+ * by the clients, keyed by stylesheet path. When the cache is full, the
+ * least recently used transformer is evicted.
+ *
+ * @version $Id$
+ */
+public class XMLTransformerCache
+{
+    /**
+     * Default maximum number of cached transformers.
+     */
+    public static final int DEFAULT_MAX_SIZE = 16;
+
+    /**
+     * The cached transformers, in access order.
+     */
+    private Map<String, XMLTransformer> transformers;
+
+    /**
+     * Creates a cache holding up to the default number of transformers.
+     */
+    public XMLTransformerCache()
+    {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param theMaxSize the maximum number of cached transformers
+     */
+    public XMLTransformerCache(final int theMaxSize)
+    {
+        this.transformers = new LinkedHashMap<String, XMLTransformer>(
+            16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(
+                Map.Entry<String, XMLTransformer> theEldest)
+            {
+                return size() > theMaxSize;
+            }
+        };
+    }
+
+    /**
+     * @param thePath the path of the stylesheet
+     * @return the transformer compiled for the stylesheet or null if it is
+     *         not cached
+     */
+    public synchronized XMLTransformer get(String thePath)
+    {
+        return this.transformers.get(thePath);
+    }
+
+    /**
+     * Caches the transformer compiled for a stylesheet.
+     *
+     * @param thePath the path of the stylesheet
+     * @param theTransformer the transformer compiled for the stylesheet
+     */
+    public synchronized void put(String thePath, XMLTransformer theTransformer)
+    {
+        this.transformers.put(thePath, theTransformer);
+    }
+
+    /**
+     * @return the number of cached transformers
+     */
+    public synchronized int size()
+    {
+        return this.transformers.size();
+    }
+}
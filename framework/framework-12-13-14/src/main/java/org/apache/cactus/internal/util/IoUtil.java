@@ -53,7 +53,11 @@ public class IoUtil
     public static String getText(InputStream theStream, String theCharsetName) 
         throws IOException
     {
-        StringBuffer sb = new StringBuffer();
+        // Size the buffer from the number of bytes available, which is an
+        // upper bound of the number of characters for buffered responses, so
+        // that it does not have to grow while reading
+        StringBuffer sb = new StringBuffer(Math.max(theStream.available(), 
+            16));
 
         BufferedReader input;
         if (theCharsetName == null)
@@ -21,7 +21,6 @@
 package org.apache.cactus.server;
 
 import org.apache.cactus.ServletURL;
-import org.apache.cactus.util.ChainedRuntimeException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -33,7 +32,6 @@ import javax.servlet.http.HttpSession;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Constructor;
 import java.security.Principal;
 import java.util.Enumeration;
 import java.util.Locale;
@@ -62,6 +60,13 @@ public abstract class AbstractHttpServletRequestWrapper
     private static final Log LOGGER = 
         LogFactory.getLog(AbstractHttpServletRequestWrapper.class);
 
+    /**
+     * The factory of the HTTP request wrappers.
+     */
+    private static final WrapperFactory FACTORY = new WrapperFactory(
+        "org.apache.cactus.server.HttpServletRequestWrapper",
+        new Class[] {HttpServletRequest.class, ServletURL.class});
+
     /**
      * The real HTTP request.
      */
@@ -114,23 +119,8 @@ public abstract class AbstractHttpServletRequestWrapper
     public static AbstractHttpServletRequestWrapper newInstance(
         HttpServletRequest theOriginalRequest, ServletURL theURL)
     {
-        try
-        {
-            Class clazz = Class.forName(
-                "org.apache.cactus.server.HttpServletRequestWrapper");
-            Object[] args = new Object[] {theOriginalRequest, theURL};
-
-            Constructor constructor = clazz.getConstructor(new Class[] {
-                HttpServletRequest.class, ServletURL.class });
-
-            return (AbstractHttpServletRequestWrapper) constructor.
-               newInstance(args);
-        }
-        catch (Throwable t)
-        {
-            throw new ChainedRuntimeException(
-                "Failed to create HttpServletRequestWrapper", t);
-        }
+        return (AbstractHttpServletRequestWrapper) FACTORY.newInstance(
+            new Object[] {theOriginalRequest, theURL});
     }
 
 
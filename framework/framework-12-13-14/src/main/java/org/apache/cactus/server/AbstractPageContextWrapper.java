@@ -21,7 +21,6 @@
 package org.apache.cactus.server;
 
 import org.apache.cactus.ServletURL;
-import org.apache.cactus.util.ChainedRuntimeException;
 
 import javax.servlet.Servlet;
 import javax.servlet.ServletConfig;
@@ -35,7 +34,6 @@ import javax.servlet.jsp.JspWriter;
 import javax.servlet.jsp.PageContext;
 import javax.servlet.jsp.tagext.BodyContent;
 import java.io.IOException;
-import java.lang.reflect.Constructor;
 import java.util.Enumeration;
 
 
@@ -57,6 +55,28 @@ public abstract class AbstractPageContextWrapper extends PageContext
      */
     protected ServletURL url;
 
+    /**
+     * The factory of the page context wrappers.
+     */
+    private static final WrapperFactory FACTORY = new WrapperFactory(
+        "org.apache.cactus.server.PageContextWrapper",
+        new Class[] {PageContext.class, ServletURL.class});
+
+    /**
+     * The wrapped request, or null if it has not been requested yet.
+     */
+    private AbstractHttpServletRequestWrapper request;
+
+    /**
+     * The wrapped servlet config, or null if it has not been requested yet.
+     */
+    private AbstractServletConfigWrapper servletConfig;
+
+    /**
+     * The wrapped servlet context, or null if it has not been requested yet.
+     */
+    private AbstractServletContextWrapper servletContext;
+
     /**
      * Construct an <code>PageContext</code> instance that delegates
      * it's method calls to the page context object passed as parameter and
@@ -79,23 +99,8 @@ public abstract class AbstractPageContextWrapper extends PageContext
     public static AbstractPageContextWrapper newInstance(PageContext
         theOriginalPageContext, ServletURL theServletURL)
     {
-        try
-        {
-            Class clazz = Class.forName(
-                "org.apache.cactus.server.PageContextWrapper");
-            Object[] args = new Object[] {theOriginalPageContext, 
-                theServletURL};
-
-            Constructor constructor = clazz.getConstructor(new Class[] {
-                PageContext.class, ServletURL.class });
-
-            return (AbstractPageContextWrapper) constructor.newInstance(args);
-        }
-        catch (Throwable t)
-        {
-            throw new ChainedRuntimeException(
-                "Failed to create PageContextWrapper", t);
-        }
+        return (AbstractPageContextWrapper) FACTORY.newInstance(
+            new Object[] {theOriginalPageContext, theServletURL});
     }
 
     // New methods ---------------------------------------------------------
@@ -118,9 +123,15 @@ public abstract class AbstractPageContextWrapper extends PageContext
     public ServletRequest getRequest()
     {
         // Note: we only manage HttpServletRequest here
-        return AbstractHttpServletRequestWrapper.newInstance(
-            (HttpServletRequest) this.originalPageContext.getRequest(), 
-            this.url);
+        HttpServletRequest original =
+            (HttpServletRequest) this.originalPageContext.getRequest();
+        if ((this.request == null)
+            || (this.request.getOriginalRequest() != original))
+        {
+            this.request = AbstractHttpServletRequestWrapper.newInstance(
+                original, this.url);
+        }
+        return this.request;
     }
 
     /**
@@ -128,8 +139,14 @@ public abstract class AbstractPageContextWrapper extends PageContext
      */
     public ServletConfig getServletConfig()
     {
-        return AbstractServletConfigWrapper.newInstance(
-            this.originalPageContext.getServletConfig());
+        ServletConfig original = this.originalPageContext.getServletConfig();
+        if ((this.servletConfig == null)
+            || (this.servletConfig.getOriginalConfig() != original))
+        {
+            this.servletConfig =
+                AbstractServletConfigWrapper.newInstance(original);
+        }
+        return this.servletConfig;
     }
 
     /**
@@ -138,8 +155,14 @@ public abstract class AbstractPageContextWrapper extends PageContext
      */
     public ServletContext getServletContext()
     {
-        return AbstractServletContextWrapper.newInstance(
-            originalPageContext.getServletContext());
+        ServletContext original = this.originalPageContext.getServletContext();
+        if ((this.servletContext == null)
+            || (this.servletContext.getOriginalContext() != original))
+        {
+            this.servletContext =
+                AbstractServletContextWrapper.newInstance(original);
+        }
+        return this.servletContext;
     }
 
     // Unmodified overridden methods -----------------------------------------
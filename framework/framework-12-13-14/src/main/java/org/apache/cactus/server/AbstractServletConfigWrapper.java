@@ -20,11 +20,9 @@
  */
 package org.apache.cactus.server;
 
-import org.apache.cactus.util.ChainedRuntimeException;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
-import java.lang.reflect.Constructor;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Vector;
@@ -55,6 +53,13 @@ public abstract class AbstractServletConfigWrapper
      */
     protected String servletName;
 
+    /**
+     * The factory of the servlet config wrappers.
+     */
+    private static final WrapperFactory FACTORY = new WrapperFactory(
+        "org.apache.cactus.server.ServletConfigWrapper",
+        new Class[] {ServletConfig.class});
+
     /**
      * @param theOriginalConfig the original servlet config object
      */
@@ -71,22 +76,8 @@ public abstract class AbstractServletConfigWrapper
     public static AbstractServletConfigWrapper newInstance(
         ServletConfig theOriginalConfig)
     {
-        try
-        {
-            Class clazz = Class.forName(
-                "org.apache.cactus.server.ServletConfigWrapper");
-            Object[] args = new Object[] {theOriginalConfig};
-
-            Constructor constructor = clazz.getConstructor(new Class[] {
-                ServletConfig.class });
-
-            return (AbstractServletConfigWrapper) constructor.newInstance(args);
-        }
-        catch (Throwable t)
-        {
-            throw new ChainedRuntimeException(
-                "Failed to create ServletConfigWrapper", t);
-        }
+        return (AbstractServletConfigWrapper) FACTORY.newInstance(
+            new Object[] {theOriginalConfig});
     }
 
     /**
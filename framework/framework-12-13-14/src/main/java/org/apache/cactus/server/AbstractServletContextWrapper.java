@@ -20,14 +20,12 @@
  */
 package org.apache.cactus.server;
 
-import org.apache.cactus.util.ChainedRuntimeException;
 
 import javax.servlet.RequestDispatcher;
 import javax.servlet.Servlet;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import java.io.InputStream;
-import java.lang.reflect.Constructor;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Enumeration;
@@ -63,6 +61,13 @@ public abstract class AbstractServletContextWrapper implements ServletContext
      */
     private Vector logs = new Vector();
 
+    /**
+     * The factory of the servlet context wrappers.
+     */
+    private static final WrapperFactory FACTORY = new WrapperFactory(
+        "org.apache.cactus.server.ServletContextWrapper",
+        new Class[] {ServletContext.class});
+
     // Constructors  -------------------------------------------------------
 
     /**
@@ -80,23 +85,8 @@ public abstract class AbstractServletContextWrapper implements ServletContext
     public static AbstractServletContextWrapper newInstance(ServletContext
         theOriginalContext)
     {
-        try
-        {
-            Class clazz = Class.forName(
-                "org.apache.cactus.server.ServletContextWrapper");
-            Object[] args = new Object[] {theOriginalContext};
-
-            Constructor constructor = clazz.getConstructor(new Class[] {
-                ServletContext.class });
-
-            return (AbstractServletContextWrapper) 
-                constructor.newInstance(args);
-        }
-        catch (Throwable t)
-        {
-            throw new ChainedRuntimeException(
-                "Failed to create ServletContextWrapper", t);
-        }
+        return (AbstractServletContextWrapper) FACTORY.newInstance(
+            new Object[] {theOriginalContext});
     }
 
     // New methods ---------------------------------------------------------
@@ -0,0 +1,96 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.server;
+
+import org.apache.cactus.util.ChainedRuntimeException;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * Creates the wrappers of a given type, using the implementation of the
+ * servlet API specific wrapper module found on the classpath. The
+ * implementation class and its constructor are only looked up once.
+ *
+ * @version $Id$
+ */
+final class WrapperFactory
+{
+    /**
+     * The name of the wrapper implementation class.
+     */
+    private String className;
+
+    /**
+     * The parameter types of the wrapper constructor.
+     */
+    private Class[] parameterTypes;
+
+    /**
+     * The wrapper constructor, or null if it has not been looked up yet.
+     */
+    private volatile Constructor constructor;
+
+    /**
+     * @param theClassName the name of the wrapper implementation class
+     * @param theParameterTypes the parameter types of the wrapper
+     *        constructor
+     */
+    WrapperFactory(String theClassName, Class[] theParameterTypes)
+    {
+        this.className = theClassName;
+        this.parameterTypes = theParameterTypes;
+    }
+
+    /**
+     * @param theArguments the wrapper constructor arguments
+     * @return the new wrapper
+     */
+    Object newInstance(Object[] theArguments)
+    {
+        try
+        {
+            return getConstructor().newInstance(theArguments);
+        }
+        catch (Throwable t)
+        {
+            throw new ChainedRuntimeException("Failed to create "
+                + this.className.substring(this.className.lastIndexOf('.')
+                + 1), t);
+        }
+    }
+
+    /**
+     * @return the wrapper constructor
+     * @exception Exception if the wrapper implementation cannot be found
+     */
+    private Constructor getConstructor() throws Exception
+    {
+        // Lookups are idempotent, so concurrent first calls need no lock
+        Constructor result = this.constructor;
+        if (result == null)
+        {
+            result = Class.forName(this.className).getConstructor(
+                this.parameterTypes);
+            this.constructor = result;
+        }
+        return result;
+    }
+}
@@ -24,31 +24,31 @@ import junit.framework.Test;
 import junit.framework.TestResult;
 import org.apache.cactus.internal.configuration.BaseConfiguration;
 import org.apache.cactus.internal.configuration.ConfigurationInitializer;
+import org.apache.cactus.internal.server.runner.ParallelTestRunner;
+import org.apache.cactus.internal.server.runner.StreamingXMLFormatter;
 import org.apache.cactus.internal.server.runner.WebappTestRunner;
 import org.apache.cactus.internal.server.runner.XMLFormatter;
+import org.apache.cactus.internal.server.runner.XMLTransformer;
+import org.apache.cactus.internal.server.runner.XMLTransformerCache;
 
 import javax.servlet.ServletException;
 import javax.servlet.UnavailableException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.xml.transform.TransformerException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
-import java.io.Reader;
-import java.io.StringReader;
-import java.io.Writer;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Method;
 
 /**
  * Helper servlet to start a JUnit Test Runner in a webapp.
  * 
  * <p>
- *   This class currently does a couple of reflection tricks to avoid a direct 
- *   dependancy on the TraX API (<code>javax.xml.transform.*</code>),
- *   encapsulated in the 
+ *   The server-side XSLT transformations are encapsulated in the 
  *   {@link org.apache.cactus.internal.server.runner.XMLTransformer} class.
+ *   The stylesheets requested by the clients are compiled once and kept in
+ *   a bounded cache.
  * </p>
  * 
  * @version $Id: ServletTestRunner.java 239016 2004-06-27 15:23:30Z vmassol $
@@ -63,10 +63,23 @@ public class ServletTestRunner extends HttpServlet
     /**
      * HTTP parameter that determines whether the XML test results should be 
      * transformed using the XSLT stylesheet specified as initialization 
-     * parameter.
+     * parameter (or by the stylesheet parameter).
      */
     private static final String HTTP_TRANSFORM_PARAM = "transform";
 
+    /**
+     * HTTP parameter that determines whether each test result is sent as
+     * soon as the test has been executed instead of sending the whole XML
+     * report at the end of the suite.
+     */
+    private static final String HTTP_STREAM_PARAM = "stream";
+
+    /**
+     * HTTP parameter containing the number of tests to run at the same time.
+     * Overrides the default set as initialization parameter.
+     */
+    private static final String HTTP_PARALLEL_PARAM = "parallel";
+
     /**
      * HTTP parameter containing name of the XSL stylesheet to put in the
      * returned XML test result. It will only work if the browser supports
@@ -74,6 +87,14 @@ public class ServletTestRunner extends HttpServlet
      */
     private static final String HTTP_XSL_PARAM = "xsl";
 
+    /**
+     * HTTP parameter containing the path, in the webapp, of the XSLT 
+     * stylesheet to transform the XML report with server side when the
+     * transform parameter is set. Overrides the stylesheet set as 
+     * initialization parameter.
+     */
+    private static final String HTTP_STYLESHEET_PARAM = "stylesheet";
+
     /**
      * Name of the servlet initialization parameter that contains the path to
      * the XSLT stylesheet for transforming the XML report into HTML.
@@ -84,11 +105,35 @@ public class ServletTestRunner extends HttpServlet
      * Encoding to use for the returned XML.
      */
     private static final String ENCODING_PARAM = "encoding";
+
+    /**
+     * Name of the servlet initialization parameter that contains the number
+     * of tests to run at the same time when the request does not specify it.
+     */
+    private static final String PARALLEL_PARAM = "parallel";
+
+    /**
+     * Name of the servlet initialization parameter that contains the 
+     * maximum number of tests that a request may ask to run at the same 
+     * time.
+     */
+    private static final String MAX_PARALLEL_PARAM = "max-parallel";
+
+    /**
+     * Default maximum number of tests that a request may ask to run at the
+     * same time.
+     */
+    private static final int DEFAULT_MAX_THREAD_COUNT = 16;
     
     /**
-     * The XML transformer. Avoid direct dependancy by using reflection.
+     * The XML transformer for the stylesheet set as initialization parameter.
      */
-    private Object transformer = null;
+    private XMLTransformer transformer = null;
+
+    /**
+     * The XML transformers for the stylesheets requested by the clients.
+     */
+    private XMLTransformerCache transformers = new XMLTransformerCache();
 
     /**
      * Indicates whether the servlet has sufficient permissions to set a
@@ -98,6 +143,18 @@ public class ServletTestRunner extends HttpServlet
      */
     private boolean canSetSystemProperty = true;
 
+    /**
+     * The number of tests to run at the same time when the request does not
+     * specify it.
+     */
+    private int defaultThreadCount = 1;
+
+    /**
+     * The maximum number of tests that a request may ask to run at the same
+     * time.
+     */
+    private int maxThreadCount = DEFAULT_MAX_THREAD_COUNT;
+
     /**
      * Called by the container when the servlet is initialized.
      * 
@@ -111,6 +168,35 @@ public class ServletTestRunner extends HttpServlet
         // initialization is JVM-wide, the config is not read again.
         ConfigurationInitializer.initialize(true);
 
+        String parallelParam = getInitParameter(PARALLEL_PARAM);
+        if (parallelParam != null)
+        {
+            this.defaultThreadCount = parseThreadCount(parallelParam);
+            if (this.defaultThreadCount < 1)
+            {
+                throw new UnavailableException("The initialization parameter "
+                    + "'parallel' must be a positive number");
+            }
+        }
+
+        String maxParallelParam = getInitParameter(MAX_PARALLEL_PARAM);
+        if (maxParallelParam != null)
+        {
+            this.maxThreadCount = parseThreadCount(maxParallelParam);
+            if (this.maxThreadCount < 1)
+            {
+                throw new UnavailableException("The initialization parameter "
+                    + "'max-parallel' must be a positive number");
+            }
+            this.defaultThreadCount = Math.min(this.defaultThreadCount, 
+                this.maxThreadCount);
+        }
+        else
+        {
+            this.maxThreadCount = Math.max(DEFAULT_MAX_THREAD_COUNT, 
+                this.defaultThreadCount);
+        }
+
         // Check whether XSLT transformations should be done server-side and
         // build the templates if an XSLT processor is available
         String xslStylesheetParam = getInitParameter(XSL_STYLESHEET_PARAM);
@@ -122,13 +208,7 @@ public class ServletTestRunner extends HttpServlet
             {
                 try
                 {
-                    Class transformerClass = Class.forName("org.apache.cactus."
-                        + "internal.server.runner.XMLTransformer");
-                    Constructor transformerCtor = 
-                        transformerClass.getConstructor(
-                        new Class[] {InputStream.class});
-                    transformer = transformerCtor.newInstance(
-                        new Object[] {xslStylesheet});
+                    transformer = new XMLTransformer(xslStylesheet);
                 }
                 catch (Throwable t)
                 {
@@ -180,29 +260,57 @@ public class ServletTestRunner extends HttpServlet
 
         // Get the enconding parameter, if any
         String encoding = theRequest.getParameter(ENCODING_PARAM);
-        
-        // Run the tests
-        String xml = run(suiteClassName, xslParam, encoding);
 
+        // Get the number of tests to run at the same time
+        int threadCount = this.defaultThreadCount;
+        String parallelParam = theRequest.getParameter(HTTP_PARALLEL_PARAM);
+        if (parallelParam != null)
+        {
+            threadCount = parseThreadCount(parallelParam);
+            if (threadCount < 1)
+            {
+                throw new ServletException("HTTP parameter ["
+                    + HTTP_PARALLEL_PARAM + "] must be a positive number");
+            }
+
+            // The request is not trusted to size the thread pool
+            threadCount = Math.min(threadCount, this.maxThreadCount);
+        }
+
+        // Get the stylesheet to transform the results with server side, if
+        // any. The xsl parameter is only ever put in the XML report for the
+        // client to transform it
+        XMLTransformer requestTransformer = null;
+        if (transformParam != null)
+        {
+            requestTransformer = getTransformer(
+                theRequest.getParameter(HTTP_STYLESHEET_PARAM));
+        }
+
+        // Stream the results unless they have to be transformed server side,
+        // which requires the whole report
+        if ((theRequest.getParameter(HTTP_STREAM_PARAM) != null)
+            && (requestTransformer == null))
+        {
+            runStreaming(suiteClassName, xslParam, encoding, threadCount,
+                theResponse);
+            return;
+        }
+        
         // Check if we should do the transformation server side
-        if ((transformParam != null) && (transformer != null))
+        if (requestTransformer != null)
         {
-            // Transform server side
+            // Transform server side, straight from the collected results
+            TestResult result = new TestResult();
+            XMLFormatter formatter = runFormatted(suiteClassName, null,
+                encoding, threadCount, result);
+            theResponse.setContentType(requestTransformer.getContentType());
             try
             {
-                Method getContentTypeMethod =
-                    transformer.getClass().getMethod(
-                        "getContentType", new Class[0]);
-                theResponse.setContentType((String)
-                    getContentTypeMethod.invoke(transformer, new Object[0]));
-                PrintWriter out = theResponse.getWriter();
-                Method transformMethod =
-                    transformer.getClass().getMethod(
-                        "transform", new Class[] {Reader.class, Writer.class});
-                transformMethod.invoke(transformer,
-                    new Object[] {new StringReader(xml), out});
+                requestTransformer.transform(formatter, result,
+                    theResponse.getWriter());
             }
-            catch (Exception e)
+            catch (TransformerException e)
             {
                 throw new ServletException(
                     "Problem applying the XSLT transformation", e);
@@ -211,12 +319,70 @@ public class ServletTestRunner extends HttpServlet
         else
         {
             // Transform client side (or not at all)
+            String xml = run(suiteClassName, xslParam, encoding, threadCount);
             theResponse.setContentType("text/xml");
             PrintWriter pw = theResponse.getWriter();
             pw.println(xml);
         }
     }
 
+    /**
+     * Returns the transformer for a stylesheet requested by the client,
+     * compiling it if it is not cached yet.
+     *
+     * @param theStylesheet the path of the stylesheet in the webapp, or null
+     *        for the stylesheet set as initialization parameter
+     * @return the transformer or null if no stylesheet is available
+     * @exception ServletException if the stylesheet does not exist or
+     *            cannot be compiled
+     */
+    private XMLTransformer getTransformer(String theStylesheet)
+        throws ServletException
+    {
+        if (theStylesheet == null)
+        {
+            return this.transformer;
+        }
+
+        String path = theStylesheet.startsWith("/")
+            ? theStylesheet : "/" + theStylesheet;
+        XMLTransformer requestTransformer = this.transformers.get(path);
+        if (requestTransformer == null)
+        {
+            InputStream xslStylesheet = 
+                getServletContext().getResourceAsStream(path);
+            if (xslStylesheet == null)
+            {
+                throw new ServletException("HTTP parameter ["
+                    + HTTP_STYLESHEET_PARAM + "] does not refer to an "
+                    + "existing resource");
+            }
+            try
+            {
+                requestTransformer = new XMLTransformer(xslStylesheet);
+            }
+            catch (TransformerException e)
+            {
+                throw new ServletException("Failed to compile the XSLT "
+                    + "stylesheet [" + path + "]", e);
+            }
+            finally
+            {
+                try
+                {
+                    xslStylesheet.close();
+                }
+                catch (IOException e)
+                {
+                    log("Failed to close the XSLT stylesheet [" + path + "]",
+                        e);
+                }
+            }
+            this.transformers.put(path, requestTransformer);
+        }
+        return requestTransformer;
+    }
+
     /**
      * Set up default Cactus System properties so that there is no need
      * to have a <code>cactus.properties</code> file in WEB-INF/classes. 
@@ -250,6 +416,7 @@ public class ServletTestRunner extends HttpServlet
                         "http://" + theRequest.getServerName() + ":"
                         + theRequest.getServerPort()
                         + theRequest.getContextPath());
+                    ConfigurationInitializer.refreshSnapshot();
                 }
                 catch (SecurityException se)
                 {
@@ -276,9 +443,50 @@ public class ServletTestRunner extends HttpServlet
      */
     protected String run(String theSuiteClassName, String theXslFileName,
         String theEncoding) throws ServletException
+    {
+        return run(theSuiteClassName, theXslFileName, theEncoding,
+            this.defaultThreadCount);
+    }
+
+    /**
+     * Run the suite tests, several at the same time, and return the result.
+     *
+     * @param theSuiteClassName the suite containing the tests to run
+     * @param theXslFileName the name of the XSL stylesheet or null if we don't
+     *        want to apply a stylesheet to the returned XML data
+     * @param theEncoding the encoding to use for the returned XML or null if
+     *        default encoding is to be used
+     * @param theThreadCount the number of tests to run at the same time
+     * @return the result object
+     * @exception ServletException if the suite failed to be loaded
+     */
+    protected String run(String theSuiteClassName, String theXslFileName,
+        String theEncoding, int theThreadCount) throws ServletException
     {
         TestResult result = new TestResult();
+        XMLFormatter formatter = runFormatted(theSuiteClassName,
+            theXslFileName, theEncoding, theThreadCount, result);
+        return formatter.toXML(result);
+    }
 
+    /**
+     * Run the suite tests, several at the same time, collecting the results
+     * in a formatter.
+     *
+     * @param theSuiteClassName the suite containing the tests to run
+     * @param theXslFileName the name of the XSL stylesheet or null if we don't
+     *        want to apply a stylesheet to the returned XML data
+     * @param theEncoding the encoding to use for the returned XML or null if
+     *        default encoding is to be used
+     * @param theThreadCount the number of tests to run at the same time
+     * @param theResult the result to collect the test outcomes into
+     * @return the formatter holding the results
+     * @exception ServletException if the suite failed to be loaded
+     */
+    private XMLFormatter runFormatted(String theSuiteClassName,
+        String theXslFileName, String theEncoding, int theThreadCount,
+        TestResult theResult) throws ServletException
+    {
         XMLFormatter formatter = new XMLFormatter();
         formatter.setXslFileName(theXslFileName);
         formatter.setSuiteClassName(theSuiteClassName);
@@ -288,10 +496,112 @@ public class ServletTestRunner extends HttpServlet
             formatter.setEncoding(theEncoding);
         }
         
-        result.addListener(formatter);
+        theResult.addListener(formatter);
 
         long startTime = System.currentTimeMillis();
 
+        Test suite = getSuite(theSuiteClassName);
+
+        // Run the tests
+        runTests(suite, theResult, theThreadCount);
+
+        long endTime = System.currentTimeMillis();
+
+        formatter.setTotalDuration(endTime - startTime);
+
+        return formatter;
+    }
+
+    /**
+     * Run the suite tests and write each test result to the response as
+     * soon as the test has been executed. The response is flushed after
+     * each test so that the client can consume the results progressively.
+     *
+     * @param theSuiteClassName the suite containing the tests to run
+     * @param theXslFileName the name of the XSL stylesheet or null if we don't
+     *        want to apply a stylesheet to the returned XML data
+     * @param theEncoding the encoding to use for the returned XML or null if
+     *        default encoding is to be used
+     * @param theThreadCount the number of tests to run at the same time
+     * @param theResponse the response to write the results to
+     * @exception ServletException if the suite failed to be loaded
+     * @exception IOException if the response cannot be written
+     */
+    protected void runStreaming(String theSuiteClassName,
+        String theXslFileName, String theEncoding, int theThreadCount,
+        HttpServletResponse theResponse) throws ServletException, IOException
+    {
+        // Load the suite before anything is sent, so that a failure can
+        // still be reported as an error
+        Test suite = getSuite(theSuiteClassName);
+
+        theResponse.setContentType("text/xml");
+        StreamingXMLFormatter formatter = 
+            new StreamingXMLFormatter(theResponse.getWriter());
+        formatter.setXslFileName(theXslFileName);
+        formatter.setSuiteClassName(theSuiteClassName);
+
+        if (theEncoding != null)
+        {
+            formatter.setEncoding(theEncoding);
+        }
+
+        TestResult result = new TestResult();
+        result.addListener(formatter);
+
+        formatter.startDocument();
+        runTests(suite, result, theThreadCount);
+        formatter.endDocument(result);
+    }
+
+    /**
+     * Runs the tests of a suite, either in the current thread or several at
+     * the same time.
+     *
+     * @param theSuite the suite to run
+     * @param theResult the result to collect the test outcomes into
+     * @param theThreadCount the number of tests to run at the same time
+     */
+    private void runTests(Test theSuite, TestResult theResult,
+        int theThreadCount)
+    {
+        if (theThreadCount > 1)
+        {
+            new ParallelTestRunner(theThreadCount).run(theSuite, theResult);
+        }
+        else
+        {
+            theSuite.run(theResult);
+        }
+    }
+
+    /**
+     * @param theValue the number of tests to run at the same time, as a
+     *        string
+     * @return the number of tests to run at the same time, or -1 if the
+     *         value is not a number
+     */
+    private int parseThreadCount(String theValue)
+    {
+        try
+        {
+            return Integer.parseInt(theValue.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Loads a test suite.
+     *
+     * @param theSuiteClassName the suite containing the tests to run
+     * @return the suite
+     * @exception ServletException if the suite failed to be loaded
+     */
+    private Test getSuite(String theSuiteClassName) throws ServletException
+    {
         WebappTestRunner testRunner = new WebappTestRunner();
 
         Test suite = testRunner.getTest(theSuiteClassName);
@@ -302,14 +612,6 @@ public class ServletTestRunner extends HttpServlet
                 + theSuiteClassName + "], Reason is ["
                 + testRunner.getErrorMessage() + "]");
         }
-
-        // Run the tests
-        suite.run(result);
-
-        long endTime = System.currentTimeMillis();
-
-        formatter.setTotalDuration(endTime - startTime);
-
-        return formatter.toXML(result);
+        return suite;
     }
 }
@@ -0,0 +1,56 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.spi.client;
+
+import org.apache.cactus.Request;
+import org.apache.cactus.internal.client.ClientException;
+
+import java.net.HttpURLConnection;
+
+/**
+ * Creates the response objects of a given type from the HTTP connection
+ * used to run a test, so that <code>endXXX()</code> methods can take that
+ * type as parameter. Implementations are registered by listing them in a
+ * <code>META-INF/services/org.apache.cactus.spi.client.ResponseAdapter</code>
+ * file, and replace the Cactus adapter of the same type if any. They must
+ * have a public no-argument constructor and be thread safe.
+ *
+ * @version $Id$
+ */
+public interface ResponseAdapter
+{
+    /**
+     * @return the fully qualified name of the class of the response objects
+     *         created by this adapter
+     */
+    String getResponseClassName();
+
+    /**
+     * @param theConnection the HTTP connection used to run the test, which
+     *        contains the response returned by the server side
+     * @param theRequest the request that was sent by Cactus to the server
+     *        side
+     * @return the response object
+     * @throws ClientException if it fails to create the response object
+     */
+    Object createResponse(HttpURLConnection theConnection, Request theRequest)
+        throws ClientException;
+}
@@ -0,0 +1,59 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.spi.client.connector;
+
+import junit.framework.Test;
+import org.apache.cactus.Request;
+
+import java.util.concurrent.Future;
+
+/**
+ * Protocol handler that can execute a test on the server side without 
+ * blocking the caller. Cactus core uses it to run the <code>begin()</code>
+ * and <code>beginXXX()</code> methods of the next tests while the current
+ * test executes on the server side. The lifecycle is otherwise the same as
+ * the one described in {@link ProtocolHandler}. This interface is part of
+ * the connector SPI.
+ * 
+ * @version $Id$
+ */
+public interface AsyncProtocolHandler extends ProtocolHandler
+{
+    /**
+     * Starts the execution of a test on the server side, as 
+     * {@link ProtocolHandler#runTest} does, and returns immediately.
+     *
+     * @param theDelegatedTest the Cactus test to execute
+     * @param theWrappedTest optionally specify a pure JUnit test case that is
+     *        being wrapped and will be executed on the server side
+     * @param theRequest the request containing data to connect to the 
+     *        redirector proxy
+     * @return the pending state information that will be passed to 
+     *         {@link #createResponseObjectFactory} and {@link #afterTest}. 
+     *         Any error that occurred when connecting to the server side, 
+     *         when executing the test or when gathering the test result is
+     *         reported as the cause of the 
+     *         <code>ExecutionException</code> thrown by 
+     *         <code>Future.get()</code>.
+     */
+    Future<ProtocolState> runTestAsync(Test theDelegatedTest, 
+        Test theWrappedTest, Request theRequest);
+}
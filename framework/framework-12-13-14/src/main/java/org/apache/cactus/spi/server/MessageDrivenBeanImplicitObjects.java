@@ -25,6 +25,7 @@ import org.apache.cactus.JmsRequest;
 import javax.ejb.MessageDrivenContext;
 import javax.jms.Message;
 import javax.jms.Queue;
+import javax.jms.QueueSession;
 
 /**
  * Implicit objects for the Message Driven Bean redirector.
@@ -54,6 +55,12 @@ public class MessageDrivenBeanImplicitObjects implements ImplicitObjects
      */
     private Queue requestQueue;
 
+    /**
+     * The JMS session of the redirector, used to send the test results back
+     * to the client side.
+     */
+    private QueueSession queueSession;
+
     /**
      * @return the queue that we are supposed to post our request to.
      */
@@ -125,4 +132,22 @@ public class MessageDrivenBeanImplicitObjects implements ImplicitObjects
     {
         this.request = theRequest;
     }
+
+    /**
+     * @return the JMS session of the redirector, used to send the test
+     *         results back to the client side
+     */
+    public QueueSession getQueueSession()
+    {
+        return this.queueSession;
+    }
+
+    /**
+     * @param theQueueSession the JMS session of the redirector, used to send
+     *        the test results back to the client side
+     */
+    public void setQueueSession(QueueSession theQueueSession)
+    {
+        this.queueSession = theQueueSession;
+    }
 }
@@ -130,6 +130,7 @@ public class MessageDrivenBeanRedirector
             new MessageDrivenBeanImplicitObjects();
         implicitObjects.setMessage(theMessage);
         implicitObjects.setMessageDrivenBeanContext(this.context);
+        implicitObjects.setQueueSession(this.session);
 
         // Call the controller to handle the message
         MessageDrivenBeanTestController controller = new MessageDrivenBeanTestController();
@@ -140,9 +141,8 @@ public class MessageDrivenBeanRedirector
         } 
         catch (JMSException e) 
         {
-            e.printStackTrace();
+            LOGGER.error("Failed to handle the JMS message", e);
         }
-        
     }
 
 }
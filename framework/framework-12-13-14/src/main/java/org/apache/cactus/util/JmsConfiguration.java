@@ -33,6 +33,20 @@ import org.apache.cactus.internal.configuration.ConfigurationInitializer;
  */
 public class JmsConfiguration extends ConfigurationInitializer
 {
+    /**
+     * Name of the Cactus property for specifying the time (in ms) during
+     * which the client side waits for the result of a test sent to the
+     * Message Driven Bean redirector.
+     */
+    public static final String CACTUS_JMS_RESULT_TIMEOUT_PROPERTY =
+        "cactus.jms.resultTimeout";
+
+    /**
+     * Default time (in ms) during which the client side waits for the
+     * result of a test.
+     */
+    public static final long DEFAULT_RESULT_TIMEOUT = 60 * 1000L;
+
     /**
      * @return the JNDI Server Initial Context Factory class (from which the
      *         Queue connection factory will be retrieved)
@@ -141,4 +155,15 @@ public class JmsConfiguration extends ConfigurationInitializer
         return property;
     }
 
+    /**
+     * @return the time (in ms) during which the client side waits for the
+     *         result of a test sent to the Message Driven Bean redirector
+     */
+    public static long getResultTimeout()
+    {
+        initialize();
+
+        return Long.getLong(CACTUS_JMS_RESULT_TIMEOUT_PROPERTY,
+            DEFAULT_RESULT_TIMEOUT).longValue();
+    }
 }
@@ -0,0 +1,428 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestResult;
+import org.apache.cactus.internal.AbstractCactusTestCase;
+import org.apache.cactus.spi.client.ResponseObjectFactory;
+import org.apache.cactus.spi.client.connector.AsyncProtocolHandler;
+import org.apache.cactus.spi.client.connector.ProtocolHandler;
+import org.apache.cactus.spi.client.connector.ProtocolState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Unit tests of the parallel and pipelined execution of the 
+ * {@link ServletTestSuite} class.
+ *
+ * @version $Id$
+ */
+public class TestServletTestSuite extends TestCase
+{
+    /**
+     * Number of tests currently running.
+     */
+    private static int running;
+
+    /**
+     * Highest number of tests seen running at the same time.
+     */
+    private static int maxRunning;
+
+    /**
+     * Number of tests seen running at the same time as an isolated test.
+     */
+    private static int runningWithIsolated;
+
+    /**
+     * Sample test that records how many tests run concurrently.
+     */
+    public static class SampleTest extends TestCase
+    {
+        /**
+         * @param theName the test name
+         */
+        public SampleTest(String theName)
+        {
+            super(theName);
+        }
+
+        /**
+         * Sample test that can run concurrently with other tests.
+         * 
+         * @exception Exception on failure
+         */
+        public void testConcurrent() throws Exception
+        {
+            enter();
+            Thread.sleep(100);
+            leave();
+        }
+
+        /**
+         * Sample test that must run alone.
+         * 
+         * @exception Exception on failure
+         */
+        @Isolated
+        public void testIsolated() throws Exception
+        {
+            synchronized (TestServletTestSuite.class)
+            {
+                runningWithIsolated = Math.max(runningWithIsolated, running);
+            }
+            fail("isolated failure");
+        }
+    }
+
+    /**
+     * Client side events recorded by the pipelined sample tests.
+     */
+    private static List<String> events = 
+        Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * Protocol handler that runs the tests immediately, without any server,
+     * and fails the tests named <code>testFailing</code>.
+     */
+    public static class SampleAsyncProtocolHandler 
+        implements AsyncProtocolHandler
+    {
+        /**
+         * {@inheritDoc}
+         * @see ProtocolHandler#createRequest()
+         */
+        public Request createRequest()
+        {
+            return new Request()
+            {
+            };
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see ProtocolHandler#runTest(Test, Test, Request)
+         */
+        public ProtocolState runTest(Test theDelegatedTest, 
+            Test theWrappedTest, Request theRequest)
+        {
+            if ("testFailing".equals(((TestCase) theDelegatedTest).getName()))
+            {
+                throw new AssertionFailedError("server failure");
+            }
+            return new ProtocolState()
+            {
+            };
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see AsyncProtocolHandler#runTestAsync(Test, Test, Request)
+         */
+        public Future<ProtocolState> runTestAsync(final Test theDelegatedTest,
+            final Test theWrappedTest, final Request theRequest)
+        {
+            FutureTask<ProtocolState> task = new FutureTask<ProtocolState>(
+                new Callable<ProtocolState>()
+                {
+                    public ProtocolState call()
+                    {
+                        return runTest(theDelegatedTest, theWrappedTest, 
+                            theRequest);
+                    }
+                });
+            task.run();
+            return task;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see ProtocolHandler#createResponseObjectFactory(ProtocolState)
+         */
+        public ResponseObjectFactory createResponseObjectFactory(
+            ProtocolState theState)
+        {
+            return new ResponseObjectFactory()
+            {
+                public Object getResponseObject(String theClassName, 
+                    Request theRequest)
+                {
+                    return "response";
+                }
+            };
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see ProtocolHandler#afterTest(ProtocolState)
+         */
+        public void afterTest(ProtocolState theState)
+        {
+        }
+    }
+
+    /**
+     * Sample Cactus test that records the calls to its client side methods.
+     */
+    public static class PipelinedSampleTest extends AbstractCactusTestCase
+    {
+        /**
+         * @param theName the test name
+         */
+        public PipelinedSampleTest(String theName)
+        {
+            super(theName);
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see AbstractCactusTestCase#createProtocolHandler()
+         */
+        protected ProtocolHandler createProtocolHandler()
+        {
+            return new SampleAsyncProtocolHandler();
+        }
+
+        /**
+         * @param theRequest the request
+         */
+        public void beginFirst(Request theRequest)
+        {
+            events.add("beginFirst");
+        }
+
+        /**
+         * First sample test.
+         */
+        public void testFirst()
+        {
+        }
+
+        /**
+         * @param theResponse the response
+         */
+        public void endFirst(Object theResponse)
+        {
+            events.add("endFirst");
+        }
+
+        /**
+         * @param theRequest the request
+         */
+        public void beginSecond(Request theRequest)
+        {
+            events.add("beginSecond");
+        }
+
+        /**
+         * Second sample test.
+         */
+        public void testSecond()
+        {
+        }
+
+        /**
+         * @param theResponse the response
+         */
+        public void endSecond(Object theResponse)
+        {
+            events.add("endSecond");
+        }
+
+        /**
+         * @param theRequest the request
+         */
+        public void beginMiddle(Request theRequest)
+        {
+            events.add("beginMiddle");
+        }
+
+        /**
+         * Sample test that must run on its own.
+         */
+        @Isolated
+        public void testMiddle()
+        {
+        }
+
+        /**
+         * @param theResponse the response
+         */
+        public void endMiddle(Object theResponse)
+        {
+            events.add("endMiddle");
+        }
+
+        /**
+         * Sample test failing on the server side.
+         */
+        public void testFailing()
+        {
+        }
+    }
+
+    /**
+     * Records that a test has started.
+     */
+    private static synchronized void enter()
+    {
+        running++;
+        maxRunning = Math.max(maxRunning, running);
+    }
+
+    /**
+     * Records that a test has finished.
+     */
+    private static synchronized void leave()
+    {
+        running--;
+    }
+
+    /**
+     * @see TestCase#setUp()
+     */
+    protected void setUp()
+    {
+        running = 0;
+        maxRunning = 0;
+        runningWithIsolated = 0;
+        events.clear();
+    }
+
+    /**
+     * Verify that tests run concurrently when a thread count is set and that
+     * all the results are reported.
+     */
+    public void testRunInParallel()
+    {
+        ServletTestSuite suite = new ServletTestSuite();
+        suite.setThreadCount(4);
+        for (int i = 0; i < 8; i++)
+        {
+            suite.addTest(new SampleTest("testConcurrent"));
+        }
+        suite.addTest(new SampleTest("testIsolated"));
+
+        TestResult result = new TestResult();
+        suite.run(result);
+
+        assertEquals(9, result.runCount());
+        assertEquals(1, result.failureCount());
+        assertTrue("Tests did not run concurrently", maxRunning > 1);
+        assertEquals(0, runningWithIsolated);
+    }
+
+    /**
+     * Verify that tests run one after the other by default.
+     */
+    public void testRunSequentiallyByDefault()
+    {
+        ServletTestSuite suite = new ServletTestSuite();
+        for (int i = 0; i < 3; i++)
+        {
+            suite.addTest(new SampleTest("testConcurrent"));
+        }
+
+        TestResult result = new TestResult();
+        suite.run(result);
+
+        assertEquals(3, result.runCount());
+        assertEquals(1, maxRunning);
+    }
+
+    /**
+     * Verify that the begin methods of the next tests run before the end 
+     * methods of the current test when a pipeline depth is set, and that the
+     * results are reported in order.
+     */
+    public void testRunPipelined()
+    {
+        ServletTestSuite suite = new ServletTestSuite();
+        suite.setPipelineDepth(2);
+        suite.addTest(new PipelinedSampleTest("testFirst"));
+        suite.addTest(new PipelinedSampleTest("testFailing"));
+        suite.addTest(new PipelinedSampleTest("testSecond"));
+
+        TestResult result = new TestResult();
+        suite.run(result);
+
+        assertEquals(3, result.runCount());
+        assertEquals(1, result.failureCount());
+        assertEquals(0, result.errorCount());
+        assertEquals(Arrays.asList(new String[] {"beginFirst", "endFirst", 
+            "beginSecond", "endSecond"}), events);
+
+        events.clear();
+        suite.setPipelineDepth(3);
+        suite.run(new TestResult());
+        assertEquals(Arrays.asList(new String[] {"beginFirst", 
+            "beginSecond", "endFirst", "endSecond"}), events);
+    }
+
+    /**
+     * Verify that an isolated test in the middle of a pipelined suite keeps
+     * its place and that no other test is in flight while it runs.
+     */
+    public void testRunPipelinedWithIsolatedTest()
+    {
+        ServletTestSuite suite = new ServletTestSuite();
+        suite.setPipelineDepth(3);
+        suite.addTest(new PipelinedSampleTest("testFirst"));
+        suite.addTest(new PipelinedSampleTest("testMiddle"));
+        suite.addTest(new PipelinedSampleTest("testSecond"));
+
+        TestResult result = new TestResult();
+        suite.run(result);
+
+        assertEquals(3, result.runCount());
+        assertTrue(result.wasSuccessful());
+        assertEquals(Arrays.asList(new String[] {"beginFirst", "endFirst", 
+            "beginMiddle", "endMiddle", "beginSecond", "endSecond"}), events);
+    }
+
+    /**
+     * Verify that the client side methods of a test run one after the other
+     * by default.
+     */
+    public void testRunNotPipelinedByDefault()
+    {
+        ServletTestSuite suite = new ServletTestSuite();
+        suite.addTest(new PipelinedSampleTest("testFirst"));
+        suite.addTest(new PipelinedSampleTest("testSecond"));
+
+        TestResult result = new TestResult();
+        suite.run(result);
+
+        assertEquals(2, result.runCount());
+        assertTrue(result.wasSuccessful());
+        assertEquals(Arrays.asList(new String[] {"beginFirst", "endFirst", 
+            "beginSecond", "endSecond"}), events);
+    }
+}
@@ -22,17 +22,34 @@ package org.apache.cactus;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
+import org.apache.cactus.client.authentication.TestFormAuthentication;
 import org.apache.cactus.internal.TestAbstractCactusTestCase;
+import org.apache.cactus.internal.TestBatchTest;
 import org.apache.cactus.internal.TestWebTestResult;
+import org.apache.cactus.internal.TestWebTestResultCodec;
+import org.apache.cactus.internal.client.TestClientTestMethods;
+import org.apache.cactus.internal.client.TestResponseAdapterRegistry;
 import org.apache.cactus.internal.client.TestWebTestResultParser;
+import org.apache.cactus.internal.client.connector.http.TestAutoReadHttpURLConnection;
+import org.apache.cactus.internal.client.connector.http.TestHttpProtocolHandler;
+import org.apache.cactus.internal.client.connector.http.TestResponseBuffer;
+import org.apache.cactus.internal.client.jms.TestJmsResultCollector;
 import org.apache.cactus.internal.configuration.ConfigurationInitializer;
+import org.apache.cactus.internal.configuration.TestConfigurationSnapshot;
+import org.apache.cactus.internal.server.TestQueryStringParameters;
 import org.apache.cactus.internal.server.TestServletUtil;
+import org.apache.cactus.internal.server.TestTestClassCache;
+import org.apache.cactus.internal.server.TestWebTestResultStore;
+import org.apache.cactus.internal.server.runner.TestParallelTestRunner;
+import org.apache.cactus.internal.server.runner.TestStreamingXMLFormatter;
 import org.apache.cactus.internal.server.runner.TestXMLFormatter;
+import org.apache.cactus.internal.server.runner.TestXMLTransformer;
 import org.apache.cactus.internal.util.TestCookieUtil;
 import org.apache.cactus.internal.util.TestIoUtil;
 import org.apache.cactus.internal.util.TestStringUtil;
 import org.apache.cactus.internal.util.TestTestCaseImplementChecker;
 import org.apache.cactus.internal.util.TestUniqueGenerator;
+import org.apache.cactus.server.TestWrapperFactory;
 import org.apache.cactus.server.runner.TestServletTestRunner;
 
 /**
@@ -61,16 +78,36 @@ public class TestShareAll
         
         suite.addTestSuite(TestNoNameTestCase.class);
         suite.addTestSuite(TestServletURL.class);
+        suite.addTestSuite(TestServletTestSuite.class);
         suite.addTestSuite(TestWebRequest.class);
+        suite.addTestSuite(TestWebResponse.class);
+
+        suite.addTestSuite(TestFormAuthentication.class);
 
         suite.addTestSuite(TestAbstractCactusTestCase.class);
+        suite.addTestSuite(TestBatchTest.class);
         suite.addTestSuite(TestWebTestResult.class);
+        suite.addTestSuite(TestWebTestResultCodec.class);
 
+        suite.addTestSuite(TestClientTestMethods.class);
+        suite.addTestSuite(TestResponseAdapterRegistry.class);
         suite.addTestSuite(TestWebTestResultParser.class);
+        suite.addTestSuite(TestHttpProtocolHandler.class);
+        suite.addTestSuite(TestAutoReadHttpURLConnection.class);
+        suite.addTestSuite(TestResponseBuffer.class);
+        suite.addTestSuite(TestJmsResultCollector.class);
+
+        suite.addTestSuite(TestConfigurationSnapshot.class);
                 
+        suite.addTestSuite(TestQueryStringParameters.class);
         suite.addTestSuite(TestServletUtil.class);
+        suite.addTestSuite(TestTestClassCache.class);
+        suite.addTestSuite(TestWebTestResultStore.class);
 
         suite.addTestSuite(TestXMLFormatter.class);
+        suite.addTestSuite(TestXMLTransformer.class);
+        suite.addTestSuite(TestParallelTestRunner.class);
+        suite.addTestSuite(TestStreamingXMLFormatter.class);
 
         suite.addTestSuite(TestCookieUtil.class);
         suite.addTestSuite(TestIoUtil.class);
@@ -79,6 +116,7 @@ public class TestShareAll
         suite.addTestSuite(TestUniqueGenerator.class);
 
         suite.addTestSuite(TestServletTestRunner.class);
+        suite.addTestSuite(TestWrapperFactory.class);
 
         return suite;
     }
@@ -0,0 +1,218 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus;
+
+import junit.framework.TestCase;
+import org.apache.cactus.internal.WebRequestImpl;
+import org.apache.cactus.internal.configuration.DefaultServletConfiguration;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Unit tests of the <code>WebResponse</code> class.
+ *
+ * @version $Id$
+ */
+public class TestWebResponse extends TestCase
+{
+    /**
+     * The connection returning the response.
+     */
+    private ResponseConnection connection;
+
+    /**
+     * Object to unit test.
+     */
+    private WebResponse response;
+
+    /**
+     * @see TestCase#setUp()
+     * @exception Exception on error
+     */
+    protected void setUp() throws Exception
+    {
+        this.connection = new ResponseConnection(
+            new String[] {
+                null, "HTTP/1.1 200 OK",
+                "Content-Type", "text/plain",
+                "Set-Cookie", "first=1; path=/test",
+                "X-Value", "a",
+                "set-cookie", "Second=2; path=/test",
+                "x-value", "b",
+                "Set-Cookie", "first=3; path=/other"},
+            "line1\nline2\r\nline3");
+        this.response = new WebResponse(
+            new WebRequestImpl(new DefaultServletConfiguration()),
+            this.connection);
+    }
+
+    /**
+     * Verify that the cookies are found by name.
+     */
+    public void testGetCookie()
+    {
+        assertEquals(3, this.response.getCookies().length);
+        assertEquals("1", this.response.getCookie("first").getValue());
+        assertEquals("2", this.response.getCookie("Second").getValue());
+        assertNull(this.response.getCookie("second"));
+        assertEquals("2",
+            this.response.getCookieIgnoreCase("second").getValue());
+        assertNull(this.response.getCookie("third"));
+    }
+
+    /**
+     * Verify that the headers are found by case-insensitive name.
+     */
+    public void testGetHeaders()
+    {
+        assertEquals("text/plain", this.response.getHeader("content-type"));
+        assertEquals("a", this.response.getHeader("X-VALUE"));
+        String[] values = this.response.getHeaders("X-Value");
+        assertEquals(2, values.length);
+        assertEquals("a", values[0]);
+        assertEquals("b", values[1]);
+        assertNull(this.response.getHeader("X-Missing"));
+        assertEquals(0, this.response.getHeaders("X-Missing").length);
+    }
+
+    /**
+     * Verify that the headers are only read once.
+     */
+    public void testHeadersAreReadOnce()
+    {
+        this.response.getCookies();
+        int reads = this.connection.headerReads;
+
+        this.response.getCookie("first");
+        this.response.getHeaders("X-Value");
+
+        assertEquals(reads, this.connection.headerReads);
+    }
+
+    /**
+     * Verify that the content is split into lines and that callers cannot
+     * modify the lines returned to the others.
+     */
+    public void testGetTextAsArray()
+    {
+        String[] lines = this.response.getTextAsArray();
+        assertEquals(3, lines.length);
+        assertEquals("line1", lines[0]);
+        assertEquals("line2", lines[1]);
+        assertEquals("line3", lines[2]);
+
+        lines[0] = "modified";
+        assertEquals("line1", this.response.getTextAsArray()[0]);
+    }
+
+    /**
+     * Connection returning given headers and content.
+     */
+    private static class ResponseConnection extends HttpURLConnection
+    {
+        /**
+         * The header names and values, alternately.
+         */
+        private String[] headers;
+
+        /**
+         * The response content.
+         */
+        private String content;
+
+        /**
+         * The number of calls reading a header.
+         */
+        private int headerReads;
+
+        /**
+         * @param theHeaders the header names and values, alternately
+         * @param theContent the response content
+         * @exception Exception on error
+         */
+        public ResponseConnection(String[] theHeaders, String theContent)
+            throws Exception
+        {
+            super(new URL("http://localhost:8080/test/ServletRedirector"));
+            this.headers = theHeaders;
+            this.content = theContent;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see HttpURLConnection#getHeaderFieldKey(int)
+         */
+        public String getHeaderFieldKey(int theIndex)
+        {
+            this.headerReads++;
+            return (2 * theIndex < this.headers.length)
+                ? this.headers[2 * theIndex] : null;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see HttpURLConnection#getHeaderField(int)
+         */
+        public String getHeaderField(int theIndex)
+        {
+            this.headerReads++;
+            return (2 * theIndex < this.headers.length)
+                ? this.headers[2 * theIndex + 1] : null;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see HttpURLConnection#getInputStream()
+         */
+        public InputStream getInputStream()
+        {
+            return new ByteArrayInputStream(this.content.getBytes());
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see HttpURLConnection#connect()
+         */
+        public void connect()
+        {
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see HttpURLConnection#disconnect()
+         */
+        public void disconnect()
+        {
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see HttpURLConnection#usingProxy()
+         */
+        public boolean usingProxy()
+        {
+            return false;
+        }
+    }
+}
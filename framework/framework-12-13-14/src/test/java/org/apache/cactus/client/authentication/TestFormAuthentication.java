@@ -0,0 +1,435 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.client.authentication;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import org.apache.cactus.Cookie;
+import org.apache.cactus.WebRequest;
+import org.apache.cactus.internal.WebRequestImpl;
+import org.apache.cactus.internal.client.connector.http.HttpClientConnectionHelper;
+import org.apache.cactus.internal.configuration.BaseConfiguration;
+import org.apache.cactus.internal.configuration.ConfigurationInitializer;
+import org.apache.cactus.internal.configuration.DefaultServletConfiguration;
+import org.apache.cactus.internal.configuration.WebConfiguration;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+
+/**
+ * Unit tests for the sharing of sessions by the {@link FormAuthentication}
+ * class.
+ *
+ * @version $Id$
+ */
+public class TestFormAuthentication extends TestCase
+{
+    /**
+     * The security check URL used by the tests.
+     */
+    private URL securityCheckURL;
+
+    /**
+     * {@inheritDoc}
+     * @see TestCase#setUp()
+     */
+    protected void setUp() throws Exception
+    {
+        FormSessionCache.clear();
+        this.securityCheckURL =
+            new URL("http://localhost:8080/test/j_security_check");
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see TestCase#tearDown()
+     */
+    protected void tearDown()
+    {
+        FormSessionCache.clear();
+    }
+
+    /**
+     * Verify that session keys depend on the credentials and do not
+     * contain the password.
+     */
+    public void testSessionKeyDependsOnCredentials()
+    {
+        String key = FormSessionCache.getKey(this.securityCheckURL,
+            "user", "secret");
+
+        assertEquals(key, FormSessionCache.getKey(this.securityCheckURL,
+            "user", "secret"));
+        assertFalse(key.equals(FormSessionCache.getKey(
+            this.securityCheckURL, "user", "other")));
+        assertFalse(key.equals(FormSessionCache.getKey(
+            this.securityCheckURL, "other", "secret")));
+        assertEquals(-1, key.indexOf("secret"));
+    }
+
+    /**
+     * Verify that a session shared by another instance is used without
+     * logging in.
+     */
+    public void testConfigureReusesSharedSession()
+    {
+        Cookie cookie = share("user", "secret", "ABC");
+        WebRequest request = new WebRequestImpl();
+
+        createAuthentication("user", "secret").configure(null, null, request,
+            null);
+
+        assertEquals(1, request.getCookies().size());
+        assertSame(cookie, request.getCookies().get(0));
+    }
+
+    /**
+     * Verify that a 401 response rejects the session.
+     *
+     * @exception Exception on error
+     */
+    public void testSessionRejectedWhenUnauthorized() throws Exception
+    {
+        FormAuthentication authentication = createConfigured("ABC");
+
+        assertTrue(authentication.isSessionRejected(
+            new ResponseConnection(401, null)));
+    }
+
+    /**
+     * Verify that a redirect starting a new session rejects the session
+     * whereas other responses do not.
+     *
+     * @exception Exception on error
+     */
+    public void testSessionRejectedWhenRedirectedToNewSession()
+        throws Exception
+    {
+        FormAuthentication authentication = createConfigured("ABC");
+
+        assertTrue(authentication.isSessionRejected(new ResponseConnection(
+            302, "JSESSIONID=DEF; path=/test")));
+        assertFalse(authentication.isSessionRejected(new ResponseConnection(
+            302, "JSESSIONID=ABC; path=/test")));
+        assertFalse(authentication.isSessionRejected(new ResponseConnection(
+            302, null)));
+        assertFalse(authentication.isSessionRejected(new ResponseConnection(
+            200, "JSESSIONID=DEF; path=/test")));
+    }
+
+    /**
+     * Verify that a shared session rejected by the server is forgotten so
+     * that the request can be sent again.
+     *
+     * @exception Exception on error
+     */
+    public void testCheckReusedSessionForgetsRejectedSession()
+        throws Exception
+    {
+        share("user", "secret", "ABC");
+        FormAuthentication authentication =
+            createAuthentication("user", "secret");
+        WebRequest request = new WebRequestImpl();
+        authentication.configure(null, null, request, null);
+
+        assertTrue(authentication.isSessionReused());
+        assertTrue(authentication.checkReusedSession(request,
+            new ResponseConnection(401, null)));
+        assertEquals(0, request.getCookies().size());
+        assertFalse(authentication.isSessionReused());
+    }
+
+    /**
+     * Verify that only the first response to a shared session is checked,
+     * so that later tests expecting a 401 are not run twice.
+     *
+     * @exception Exception on error
+     */
+    public void testCheckReusedSessionOnlyChecksFirstResponse()
+        throws Exception
+    {
+        FormAuthentication authentication = createConfigured("ABC");
+        WebRequest request = new WebRequestImpl();
+
+        assertFalse(authentication.checkReusedSession(request,
+            new ResponseConnection(200, null)));
+        assertFalse(authentication.isSessionReused());
+        assertFalse(authentication.checkReusedSession(request,
+            new ResponseConnection(401, null)));
+    }
+
+    /**
+     * Verify that a request sent with a session just obtained by a login
+     * is not sent again when the server answers with a 401.
+     *
+     * @exception Throwable on error
+     */
+    public void testFreshLoginIsNotRetriedOnUnauthorized() throws Throwable
+    {
+        final int[] redirectorCalls = new int[1];
+        HttpServer server = HttpServer.create(
+            new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/test/ServletRedirector", new HttpHandler()
+        {
+            public void handle(HttpExchange theExchange) throws IOException
+            {
+                redirectorCalls[0]++;
+                int status = 200;
+                if (redirectorCalls[0] == 1)
+                {
+                    // Login page, starting the session
+                    theExchange.getResponseHeaders().add("Set-Cookie",
+                        "JSESSIONID=ABC; path=/test");
+                }
+                else if (redirectorCalls[0] > 2)
+                {
+                    // The test itself expects a 401
+                    status = 401;
+                }
+                theExchange.sendResponseHeaders(status, -1);
+                theExchange.close();
+            }
+        });
+        server.createContext("/test/j_security_check", new HttpHandler()
+        {
+            public void handle(HttpExchange theExchange) throws IOException
+            {
+                theExchange.getResponseHeaders().add("Location",
+                    "/test/ServletRedirector");
+                theExchange.sendResponseHeaders(302, -1);
+                theExchange.close();
+            }
+        });
+        server.start();
+
+        String contextURL = "http://localhost:"
+            + server.getAddress().getPort() + "/test";
+        String previousContextURL = System.getProperty(
+            BaseConfiguration.CACTUS_CONTEXT_URL_PROPERTY);
+        System.setProperty(BaseConfiguration.CACTUS_CONTEXT_URL_PROPERTY,
+            contextURL);
+        ConfigurationInitializer.refreshSnapshot();
+        try
+        {
+            WebConfiguration configuration =
+                new DefaultServletConfiguration();
+            FormAuthentication authentication =
+                new FormAuthentication("user", "secret");
+            authentication.setSecurityCheckURL(
+                new URL(contextURL + "/j_security_check"));
+            WebRequestImpl request = new WebRequestImpl(configuration);
+            request.setAuthentication(authentication);
+
+            HttpClientConnectionHelper helper =
+                new HttpClientConnectionHelper(
+                configuration.getRedirectorURL(request));
+            HttpURLConnection connection =
+                helper.connect(request, configuration);
+            helper.release();
+
+            assertEquals(401, connection.getResponseCode());
+            assertFalse(authentication.isSessionReused());
+            assertEquals(3, redirectorCalls[0]);
+        }
+        finally
+        {
+            server.stop(0);
+            if (previousContextURL == null)
+            {
+                System.getProperties().remove(
+                    BaseConfiguration.CACTUS_CONTEXT_URL_PROPERTY);
+            }
+            else
+            {
+                System.setProperty(
+                    BaseConfiguration.CACTUS_CONTEXT_URL_PROPERTY,
+                    previousContextURL);
+            }
+            ConfigurationInitializer.refreshSnapshot();
+        }
+    }
+
+    /**
+     * Verify that resetting a rejected session removes it from the request
+     * and from the shared sessions.
+     */
+    public void testResetSessionForgetsSharedSession()
+    {
+        share("user", "secret", "ABC");
+        FormAuthentication authentication =
+            createAuthentication("user", "secret");
+        WebRequest request = new WebRequestImpl();
+        authentication.configure(null, null, request, null);
+
+        authentication.resetSession(request);
+
+        assertEquals(0, request.getCookies().size());
+        assertNull(FormSessionCache.get(FormSessionCache.getKey(
+            this.securityCheckURL, "user", "secret")));
+    }
+
+    /**
+     * Verify that resetting a rejected session keeps a session that has
+     * since been shared by another login.
+     */
+    public void testResetSessionKeepsNewerSharedSession()
+    {
+        share("user", "secret", "ABC");
+        FormAuthentication authentication =
+            createAuthentication("user", "secret");
+        WebRequest request = new WebRequestImpl();
+        authentication.configure(null, null, request, null);
+        Cookie newer = share("user", "secret", "DEF");
+
+        authentication.resetSession(request);
+
+        assertSame(newer, FormSessionCache.get(FormSessionCache.getKey(
+            this.securityCheckURL, "user", "secret")));
+    }
+
+    /**
+     * @param theName the user name
+     * @param thePassword the user password
+     * @return a form authentication using the test security check URL
+     */
+    private FormAuthentication createAuthentication(String theName,
+        String thePassword)
+    {
+        FormAuthentication authentication =
+            new FormAuthentication(theName, thePassword);
+        authentication.setSecurityCheckURL(this.securityCheckURL);
+        return authentication;
+    }
+
+    /**
+     * @param theSessionId the session id shared before the configuration
+     * @return a form authentication configured with the given session id
+     */
+    private FormAuthentication createConfigured(String theSessionId)
+    {
+        share("user", "secret", theSessionId);
+        FormAuthentication authentication =
+            createAuthentication("user", "secret");
+        authentication.configure(null, null, new WebRequestImpl(), null);
+        return authentication;
+    }
+
+    /**
+     * @param theName the user name
+     * @param thePassword the user password
+     * @param theSessionId the session id to share
+     * @return the shared session cookie
+     */
+    private Cookie share(String theName, String thePassword,
+        String theSessionId)
+    {
+        Cookie cookie = new Cookie("localhost", "JSESSIONID", theSessionId);
+        FormSessionCache.put(FormSessionCache.getKey(this.securityCheckURL,
+            theName, thePassword), cookie);
+        return cookie;
+    }
+
+    /**
+     * Connection returning a given response status and cookie.
+     */
+    private static class ResponseConnection extends HttpURLConnection
+    {
+        /**
+         * The response status code.
+         */
+        private int status;
+
+        /**
+         * The Set-Cookie header value or null if there is none.
+         */
+        private String setCookie;
+
+        /**
+         * @param theStatus the response status code
+         * @param theSetCookie the Set-Cookie header value or null
+         * @exception Exception on error
+         */
+        public ResponseConnection(int theStatus, String theSetCookie)
+            throws Exception
+        {
+            super(new URL("http://localhost:8080/test/ServletRedirector"));
+            this.status = theStatus;
+            this.setCookie = theSetCookie;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see HttpURLConnection#getResponseCode()
+         */
+        public int getResponseCode()
+        {
+            return this.status;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see HttpURLConnection#getHeaderFieldKey(int)
+         */
+        public String getHeaderFieldKey(int theIndex)
+        {
+            return ((theIndex == 1) && (this.setCookie != null))
+                ? "Set-Cookie" : null;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see HttpURLConnection#getHeaderField(int)
+         */
+        public String getHeaderField(int theIndex)
+        {
+            return (theIndex == 1) ? this.setCookie : null;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see HttpURLConnection#connect()
+         */
+        public void connect()
+        {
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see HttpURLConnection#disconnect()
+         */
+        public void disconnect()
+        {
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see HttpURLConnection#usingProxy()
+         */
+        public boolean usingProxy()
+        {
+            return false;
+        }
+    }
+}
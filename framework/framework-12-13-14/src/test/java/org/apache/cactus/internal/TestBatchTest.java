@@ -0,0 +1,209 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import org.apache.cactus.Request;
+import org.apache.cactus.internal.client.connector.http.HttpProtocolHandler;
+import org.apache.cactus.internal.configuration.BaseConfiguration;
+import org.apache.cactus.internal.configuration.ConfigurationInitializer;
+import org.apache.cactus.internal.configuration.DefaultServletConfiguration;
+import org.apache.cactus.spi.client.connector.ProtocolHandler;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * Unit tests of the <code>BatchTest</code> class.
+ *
+ * @version $Id$
+ */
+public class TestBatchTest extends TestCase
+{
+    /**
+     * The context URL before the test.
+     */
+    private String previousContextURL;
+
+    /**
+     * {@inheritDoc}
+     * @see TestCase#setUp()
+     */
+    protected void setUp()
+    {
+        this.previousContextURL = System.getProperty(
+            BaseConfiguration.CACTUS_CONTEXT_URL_PROPERTY);
+        System.setProperty(BaseConfiguration.CACTUS_CONTEXT_URL_PROPERTY,
+            "http://localhost:8080/test");
+        ConfigurationInitializer.refreshSnapshot();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see TestCase#tearDown()
+     */
+    protected void tearDown()
+    {
+        if (this.previousContextURL == null)
+        {
+            System.getProperties().remove(
+                BaseConfiguration.CACTUS_CONTEXT_URL_PROPERTY);
+        }
+        else
+        {
+            System.setProperty(BaseConfiguration.CACTUS_CONTEXT_URL_PROPERTY,
+                this.previousContextURL);
+        }
+        ConfigurationInitializer.refreshSnapshot();
+    }
+
+    /**
+     * Verify that the tests that cannot be batched cut the batches so that
+     * all the tests keep their order.
+     */
+    public void testCreateBatchesKeepsOrder()
+    {
+        Test first = new BatchSampleTest("testFirst");
+        Test second = new BatchSampleTest("testSecond");
+        Test third = new BatchSampleTest("testThird");
+        Test plain = new TestBatchTest();
+        Test fourth = new BatchSampleTest("testFirst");
+
+        Vector tests = new Vector();
+        tests.addElement(first);
+        tests.addElement(second);
+        tests.addElement(third);
+        tests.addElement(fourth);
+        tests.addElement(plain);
+
+        Vector result = BatchTest.createBatches(tests, 10, 
+            new HashSet<Test>());
+
+        assertEquals(4, result.size());
+        assertTrue(result.elementAt(0) instanceof BatchTest);
+        assertEquals(2, ((Test) result.elementAt(0)).countTestCases());
+        assertSame(third, result.elementAt(1));
+        assertTrue(result.elementAt(2) instanceof BatchTest);
+        assertEquals(1, ((Test) result.elementAt(2)).countTestCases());
+        assertSame(plain, result.elementAt(3));
+    }
+
+    /**
+     * Verify that an isolated test in the middle of the tests cuts the
+     * batch and keeps its place.
+     */
+    public void testCreateBatchesKeepsIsolatedTestsInPlace()
+    {
+        Test first = new BatchSampleTest("testFirst");
+        Test isolated = new BatchSampleTest("testSecond");
+        Test last = new BatchSampleTest("testFirst");
+
+        Vector tests = new Vector();
+        tests.addElement(first);
+        tests.addElement(isolated);
+        tests.addElement(last);
+
+        Set<Test> isolatedTests = new HashSet<Test>();
+        isolatedTests.add(isolated);
+        Vector result = BatchTest.createBatches(tests, 10, isolatedTests);
+
+        assertEquals(3, result.size());
+        assertTrue(result.elementAt(0) instanceof BatchTest);
+        assertEquals(1, ((Test) result.elementAt(0)).countTestCases());
+        assertSame(isolated, result.elementAt(1));
+        assertTrue(result.elementAt(2) instanceof BatchTest);
+        assertEquals(1, ((Test) result.elementAt(2)).countTestCases());
+    }
+
+    /**
+     * Verify that the batches do not exceed the given size.
+     */
+    public void testCreateBatchesSplitsFullBatches()
+    {
+        Vector tests = new Vector();
+        for (int i = 0; i < 5; i++)
+        {
+            tests.addElement(new BatchSampleTest("testFirst"));
+        }
+
+        Vector result = BatchTest.createBatches(tests, 2, 
+            new HashSet<Test>());
+
+        assertEquals(3, result.size());
+        assertEquals(2, ((Test) result.elementAt(0)).countTestCases());
+        assertEquals(2, ((Test) result.elementAt(1)).countTestCases());
+        assertEquals(1, ((Test) result.elementAt(2)).countTestCases());
+    }
+
+    /**
+     * Sample Cactus test, whose <code>testThird</code> test cannot be 
+     * batched as it has a <code>begin</code> method.
+     */
+    public static class BatchSampleTest extends AbstractCactusTestCase
+    {
+        /**
+         * @param theName the test name
+         */
+        public BatchSampleTest(String theName)
+        {
+            super(theName);
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see AbstractCactusTestCase#createProtocolHandler()
+         */
+        protected ProtocolHandler createProtocolHandler()
+        {
+            return new HttpProtocolHandler(new DefaultServletConfiguration());
+        }
+
+        /**
+         * First sample test.
+         */
+        public void testFirst()
+        {
+        }
+
+        /**
+         * Second sample test.
+         */
+        public void testSecond()
+        {
+        }
+
+        /**
+         * @param theRequest the request
+         */
+        public void beginThird(Request theRequest)
+        {
+        }
+
+        /**
+         * Third sample test.
+         */
+        public void testThird()
+        {
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Unit tests of the {@link WebTestResultCodec} class.
+ *
+ * @version $Id$
+ */
+public class TestWebTestResultCodec extends TestCase
+{
+    /**
+     * Verify that results with and without exception are read back as they
+     * were written, in the same order.
+     *
+     * @exception IOException on test failure
+     */
+    public void testWriteReadResults() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        WebTestResultCodec.writeHeader(output);
+        WebTestResultCodec.writeResult(output, new WebTestResult());
+        WebTestResultCodec.writeResult(output, 
+            new WebTestResult(new Exception("caf\u00e9 <failed>")));
+        WebTestResultCodec.writeResult(output, 
+            new WebTestResult(new NullPointerException()));
+        WebTestResultCodec.writeEnd(output);
+        output.close();
+
+        DataInputStream input = new DataInputStream(
+            new ByteArrayInputStream(bytes.toByteArray()));
+        WebTestResultCodec.readHeader(input);
+
+        WebTestResult result = WebTestResultCodec.readResult(input);
+        assertTrue(!result.hasException());
+
+        result = WebTestResultCodec.readResult(input);
+        assertEquals("java.lang.Exception", result.getExceptionClassName());
+        assertEquals("caf\u00e9 <failed>", result.getExceptionMessage());
+        assertTrue(result.getExceptionStackTrace().startsWith(
+            "java.lang.Exception: caf\u00e9 <failed>"));
+
+        result = WebTestResultCodec.readResult(input);
+        assertEquals("java.lang.NullPointerException", 
+            result.getExceptionClassName());
+        assertNull(result.getExceptionMessage());
+
+        assertNull(WebTestResultCodec.readResult(input));
+    }
+
+    /**
+     * Verify that a stream which does not start with the codec header is
+     * rejected.
+     */
+    public void testReadHeaderInvalid()
+    {
+        byte[] xml = new WebTestResult().toXml().getBytes();
+        try
+        {
+            WebTestResultCodec.readHeader(
+                new DataInputStream(new ByteArrayInputStream(xml)));
+            fail("Should have thrown an IOException");
+        }
+        catch (IOException expected)
+        {
+            // Expected
+        }
+    }
+
+    /**
+     * Verify the detection of the content type of encoded results.
+     */
+    public void testIsEncoded()
+    {
+        assertTrue(WebTestResultCodec.isEncoded(
+            WebTestResultCodec.CONTENT_TYPE));
+        assertTrue(!WebTestResultCodec.isEncoded("text/xml; charset=UTF-8"));
+        assertTrue(!WebTestResultCodec.isEncoded(null));
+    }
+}
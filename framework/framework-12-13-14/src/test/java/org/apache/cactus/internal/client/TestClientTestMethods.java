@@ -0,0 +1,124 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.client;
+
+import junit.framework.TestCase;
+import org.apache.cactus.WebRequest;
+import org.apache.cactus.WebResponse;
+import org.apache.cactus.internal.util.TestCaseImplementError;
+
+import java.lang.reflect.Method;
+
+/**
+ * Unit tests of the {@link ClientTestMethods} class.
+ *
+ * @version $Id$
+ */
+public class TestClientTestMethods extends TestCase
+{
+    /**
+     * Sample test class with client side methods.
+     */
+    public static class SampleTest extends TestCase
+    {
+        /**
+         * @param theRequest the request
+         */
+        public void beginSomething(WebRequest theRequest)
+        {
+        }
+
+        /**
+         * Sample test.
+         */
+        public void testSomething()
+        {
+        }
+
+        /**
+         * @param theResponse the response
+         */
+        public void endSomething(WebResponse theResponse)
+        {
+        }
+
+        /**
+         * Begin method with a bad signature.
+         */
+        public void beginBad()
+        {
+        }
+    }
+
+    /**
+     * Verify that the descriptor of a class is only built once.
+     */
+    public void testGetInstanceIsCached()
+    {
+        assertSame(ClientTestMethods.getInstance(SampleTest.class), 
+            ClientTestMethods.getInstance(SampleTest.class));
+    }
+
+    /**
+     * Verify the lookup of begin methods.
+     */
+    public void testGetBeginMethod()
+    {
+        ClientTestMethods methods = 
+            ClientTestMethods.getInstance(SampleTest.class);
+        Method method = methods.getBeginMethod("beginSomething");
+
+        assertEquals("beginSomething", method.getName());
+        assertSame(method, methods.getBeginMethod("beginSomething"));
+        assertNull(methods.getBeginMethod("beginNothing"));
+    }
+
+    /**
+     * Verify that a begin method with a bad signature is rejected.
+     */
+    public void testGetBeginMethodBadSignature()
+    {
+        try
+        {
+            ClientTestMethods.getInstance(SampleTest.class)
+                .getBeginMethod("beginBad");
+            fail("Should have thrown a TestCaseImplementError");
+        }
+        catch (TestCaseImplementError expected)
+        {
+            // Expected
+        }
+    }
+
+    /**
+     * Verify the lookup of end methods.
+     */
+    public void testGetEndMethods()
+    {
+        ClientTestMethods methods = 
+            ClientTestMethods.getInstance(SampleTest.class);
+
+        assertEquals(1, methods.getEndMethods("endSomething").length);
+        assertEquals(0, methods.getEndMethods("endNothing").length);
+        assertTrue(methods.hasMethod("testSomething"));
+        assertTrue(!methods.hasMethod("testNothing"));
+    }
+}
@@ -0,0 +1,117 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.client;
+
+import junit.framework.TestCase;
+import org.apache.cactus.Request;
+import org.apache.cactus.WebResponse;
+import org.apache.cactus.internal.WebRequestImpl;
+import org.apache.cactus.spi.client.ResponseAdapter;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Unit tests for the {@link ResponseAdapterRegistry} class.
+ *
+ * @version $Id$
+ */
+public class TestResponseAdapterRegistry extends TestCase
+{
+    /**
+     * Verify that the Cactus response types are supported.
+     *
+     * @exception Exception on error
+     */
+    public void testCactusResponseTypes() throws Exception
+    {
+        HttpURLConnection connection = (HttpURLConnection)
+            new URL("http://localhost/test").openConnection();
+        WebResponseObjectFactory factory =
+            new WebResponseObjectFactory(connection);
+
+        assertTrue(factory.getResponseObject(WebResponse.class.getName(),
+            new WebRequestImpl()) instanceof WebResponse);
+        assertSame(connection, factory.getResponseObject(
+            HttpURLConnection.class.getName(), new WebRequestImpl()));
+        assertNotNull(ResponseAdapterRegistry.getAdapter(
+            "com.meterware.httpunit.WebResponse"));
+        assertNotNull(ResponseAdapterRegistry.getAdapter(
+            "com.gargoylesoftware.htmlunit.WebResponse"));
+    }
+
+    /**
+     * Verify that the adapters registered as services are supported.
+     *
+     * @exception Exception on error
+     */
+    public void testRegisteredResponseType() throws Exception
+    {
+        WebResponseObjectFactory factory =
+            new WebResponseObjectFactory(null);
+
+        assertEquals("registered", factory.getResponseObject(
+            TestResponseAdapter.class.getName(), new WebRequestImpl()));
+    }
+
+    /**
+     * Verify that an unsupported response type is reported.
+     */
+    public void testUnsupportedResponseType()
+    {
+        try
+        {
+            new WebResponseObjectFactory(null).getResponseObject(
+                "java.lang.Object", new WebRequestImpl());
+            fail("Should have thrown a ClientException");
+        }
+        catch (ClientException expected)
+        {
+            assertEquals("Invalid parameter type [java.lang.Object]",
+                expected.getMessage());
+        }
+    }
+
+    /**
+     * Adapter registered in the test <code>META-INF/services</code>.
+     */
+    public static class TestResponseAdapter implements ResponseAdapter
+    {
+        /**
+         * {@inheritDoc}
+         * @see ResponseAdapter#getResponseClassName()
+         */
+        public String getResponseClassName()
+        {
+            return TestResponseAdapter.class.getName();
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see ResponseAdapter#createResponse(HttpURLConnection, Request)
+         */
+        public Object createResponse(HttpURLConnection theConnection,
+            Request theRequest)
+        {
+            return "registered";
+        }
+    }
+}
@@ -158,4 +158,42 @@ public class TestWebTestResultParser extends TestCase
         assertTrue("Should have ended with [" + expectedEnd + "]", 
             buffer.endsWith(expectedEnd));
     }
+
+    /**
+     * Verify parsing of the results of a batch of tests, including an
+     * exception message that looks like the end of a result.
+     *
+     * @throws ParsingException if error
+     */
+    public void testParseBatch() throws ParsingException
+    {
+        String data = "<" + WebTestResult.XML_BATCH_ROOT_ELEMENT + ">"
+            + new WebTestResult().toXml()
+            + new WebTestResult(new Exception("</webresult>")).toXml()
+            + new WebTestResult().toXml()
+            + "</" + WebTestResult.XML_BATCH_ROOT_ELEMENT + ">";
+        WebTestResultParser parser = new WebTestResultParser();
+        WebTestResult[] results = parser.parseBatch(data);
+
+        assertEquals(3, results.length);
+        assertTrue(!results[0].hasException());
+        assertTrue(results[1].hasException());
+        assertEquals("</webresult>", results[1].getExceptionMessage());
+        assertTrue(!results[2].hasException());
+    }
+
+    /**
+     * Verify parsing of the results of an empty batch of tests.
+     *
+     * @throws ParsingException if error
+     */
+    public void testParseBatchEmpty() throws ParsingException
+    {
+        WebTestResultParser parser = new WebTestResultParser();
+        WebTestResult[] results = parser.parseBatch("<"
+            + WebTestResult.XML_BATCH_ROOT_ELEMENT + "></"
+            + WebTestResult.XML_BATCH_ROOT_ELEMENT + ">");
+
+        assertEquals(0, results.length);
+    }
 }
@@ -0,0 +1,189 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.client.connector.http;
+
+import junit.framework.TestCase;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Unit tests of the {@link AutoReadHttpURLConnection} class.
+ *
+ * @version $Id$
+ */
+public class TestAutoReadHttpURLConnection extends TestCase
+{
+    /**
+     * Connection returning a fixed set of headers, preceded by the status
+     * line at position 0.
+     */
+    private static class FakeHttpURLConnection extends HttpURLConnection
+    {
+        /**
+         * The header names, null for the status line.
+         */
+        private String[] keys;
+
+        /**
+         * The header values.
+         */
+        private String[] values;
+
+        /**
+         * @param theKeys the header names, null for the status line
+         * @param theValues the header values
+         * @exception Exception on failure
+         */
+        FakeHttpURLConnection(String[] theKeys, String[] theValues)
+            throws Exception
+        {
+            super(new URL("http://localhost/test"));
+            this.keys = theKeys;
+            this.values = theValues;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see java.net.HttpURLConnection#getHeaderFieldKey(int)
+         */
+        public String getHeaderFieldKey(int thePosition)
+        {
+            return (thePosition < 0) || (thePosition >= this.keys.length) 
+                ? null : this.keys[thePosition];
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see java.net.HttpURLConnection#getHeaderField(int)
+         */
+        public String getHeaderField(int thePosition)
+        {
+            return (thePosition < 0) || (thePosition >= this.values.length) 
+                ? null : this.values[thePosition];
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see java.net.HttpURLConnection#getHeaderField(String)
+         */
+        public String getHeaderField(String theName)
+        {
+            for (int i = this.keys.length - 1; i > 0; i--)
+            {
+                if (this.keys[i].equalsIgnoreCase(theName))
+                {
+                    return this.values[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see java.net.HttpURLConnection#connect()
+         */
+        public void connect()
+        {
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see java.net.HttpURLConnection#disconnect()
+         */
+        public void disconnect()
+        {
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see java.net.HttpURLConnection#usingProxy()
+         */
+        public boolean usingProxy()
+        {
+            return false;
+        }
+    }
+
+    /**
+     * The connection under test.
+     */
+    private AutoReadHttpURLConnection connection;
+
+    /**
+     * @see TestCase#setUp()
+     */
+    protected void setUp() throws Exception
+    {
+        this.connection = new AutoReadHttpURLConnection(
+            new FakeHttpURLConnection(
+                new String[] {null, "Content-Type", "X-Cactus-Result", 
+                    "X-Test"}, 
+                new String[] {"HTTP/1.1 200 OK", "text/plain", "result",
+                    "value"}), null);
+    }
+
+    /**
+     * Verify that all headers are visible until one is removed.
+     */
+    public void testHeadersBeforeRemove()
+    {
+        assertEquals("result", 
+            this.connection.getHeaderField("X-Cactus-Result"));
+        assertEquals("X-Cactus-Result", 
+            this.connection.getHeaderFieldKey(2));
+        assertEquals("X-Test", this.connection.getHeaderFieldKey(3));
+    }
+
+    /**
+     * Verify that a removed header is returned once and then hidden from
+     * both named and indexed access.
+     */
+    public void testRemoveHeaderField()
+    {
+        assertEquals("result", 
+            this.connection.removeHeaderField("X-Cactus-Result"));
+
+        assertNull(this.connection.getHeaderField("x-cactus-result"));
+        assertEquals(-1, 
+            this.connection.getHeaderFieldInt("X-Cactus-Result", -1));
+
+        assertNull(this.connection.getHeaderFieldKey(0));
+        assertEquals("HTTP/1.1 200 OK", this.connection.getHeaderField(0));
+        assertEquals("Content-Type", this.connection.getHeaderFieldKey(1));
+        assertEquals("text/plain", this.connection.getHeaderField(1));
+        assertEquals("X-Test", this.connection.getHeaderFieldKey(2));
+        assertEquals("value", this.connection.getHeaderField(2));
+        assertNull(this.connection.getHeaderFieldKey(3));
+        assertNull(this.connection.getHeaderField(3));
+    }
+
+    /**
+     * Verify that removing a header missing from the response hides nothing.
+     */
+    public void testRemoveMissingHeaderField()
+    {
+        assertNull(this.connection.removeHeaderField("X-Other"));
+        assertEquals("X-Cactus-Result", 
+            this.connection.getHeaderFieldKey(2));
+        assertEquals("value", this.connection.getHeaderField("X-Test"));
+    }
+}
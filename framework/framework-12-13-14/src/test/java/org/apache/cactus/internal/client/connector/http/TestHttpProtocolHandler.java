@@ -0,0 +1,87 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.client.connector.http;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import org.apache.cactus.Request;
+import org.apache.cactus.internal.configuration.DefaultServletConfiguration;
+import org.apache.cactus.spi.client.connector.ProtocolState;
+import org.apache.cactus.util.ChainedRuntimeException;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Unit tests of the {@link HttpProtocolHandler} class.
+ *
+ * @version $Id$
+ */
+public class TestHttpProtocolHandler extends TestCase
+{
+    /**
+     * Verify that the errors of a test run asynchronously are reported as
+     * is as the cause of the <code>ExecutionException</code>.
+     *
+     * @exception Exception on error
+     */
+    public void testRunTestAsyncReportsErrorsAsIs() throws Exception
+    {
+        Throwable failure = new AssertionFailedError("failure");
+        assertSame(failure, runFailingTestAsync(failure));
+
+        Throwable connectorError = new ChainedRuntimeException(
+            "connector failure", new Exception("cause"));
+        assertSame(connectorError, runFailingTestAsync(connectorError));
+    }
+
+    /**
+     * @param theError the error thrown by the test
+     * @return the cause of the exception thrown by the future of the test
+     * @exception Exception on error
+     */
+    private Throwable runFailingTestAsync(final Throwable theError) 
+        throws Exception
+    {
+        HttpProtocolHandler handler = 
+            new HttpProtocolHandler(new DefaultServletConfiguration())
+        {
+            public ProtocolState runTest(Test theDelegatedTest, 
+                Test theWrappedTest, Request theRequest) throws Throwable
+            {
+                throw theError;
+            }
+        };
+
+        Future<ProtocolState> state = handler.runTestAsync(this, null, null);
+        try
+        {
+            state.get();
+            fail("Should have thrown an ExecutionException");
+        }
+        catch (ExecutionException expected)
+        {
+            return expected.getCause();
+        }
+        return null;
+    }
+}
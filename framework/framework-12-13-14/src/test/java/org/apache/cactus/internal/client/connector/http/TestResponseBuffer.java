@@ -0,0 +1,181 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.client.connector.http;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests of the {@link ResponseBuffer} class.
+ *
+ * @version $Id$
+ */
+public class TestResponseBuffer extends TestCase
+{
+    /**
+     * @param theSize the number of bytes to generate
+     * @return sample content spanning several chunks
+     */
+    private byte[] createContent(int theSize)
+    {
+        byte[] content = new byte[theSize];
+        for (int i = 0; i < content.length; i++)
+        {
+            content[i] = (byte) (i % 251);
+        }
+        return content;
+    }
+
+    /**
+     * @param theBuffer the buffer to fill
+     * @param theContent the content to write, in uneven pieces
+     * @return the content read back from the buffer
+     * @exception IOException on failure
+     */
+    private byte[] writeAndRead(ResponseBuffer theBuffer, byte[] theContent)
+        throws IOException
+    {
+        int offset = 0;
+        int piece = 1;
+        while (offset < theContent.length)
+        {
+            int length = Math.min(piece, theContent.length - offset);
+            theBuffer.write(theContent, offset, length);
+            offset += length;
+            piece = piece * 3 + 1;
+        }
+        theBuffer.close();
+
+        InputStream input = theBuffer.getInputStream();
+        assertEquals(theContent.length, input.available());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] bytes = new byte[1000];
+        int count;
+        while ((count = input.read(bytes)) != -1)
+        {
+            output.write(bytes, 0, count);
+        }
+        assertEquals(-1, input.read());
+        return output.toByteArray();
+    }
+
+    /**
+     * Verify that content spanning several chunks is read back unchanged.
+     *
+     * @exception IOException on test failure
+     */
+    public void testInMemory() throws IOException
+    {
+        byte[] content = createContent(100000);
+        ResponseBuffer buffer = new ResponseBuffer(0);
+        byte[] read = writeAndRead(buffer, content);
+
+        assertTrue(!buffer.isSpilled());
+        assertEquals(content.length, buffer.size());
+        assertTrue(Arrays.equals(content, read));
+    }
+
+    /**
+     * Verify that content over the threshold is spilled to a temporary file
+     * and read back unchanged.
+     *
+     * @exception IOException on test failure
+     */
+    public void testSpilled() throws IOException
+    {
+        byte[] content = createContent(100000);
+        ResponseBuffer buffer = new ResponseBuffer(50000);
+        byte[] read = writeAndRead(buffer, content);
+
+        assertTrue(buffer.isSpilled());
+        assertTrue(Arrays.equals(content, read));
+    }
+
+    /**
+     * Verify that content written one byte at a time, across chunks and
+     * over the threshold, is read back unchanged.
+     *
+     * @exception IOException on test failure
+     */
+    public void testSingleBytes() throws IOException
+    {
+        byte[] content = createContent(40000);
+        ResponseBuffer buffer = new ResponseBuffer(30000);
+        for (int i = 0; i < content.length; i++)
+        {
+            buffer.write(content[i]);
+        }
+        buffer.close();
+
+        assertTrue(buffer.isSpilled());
+        assertEquals(content.length, buffer.size());
+        InputStream input = buffer.getInputStream();
+        for (int i = 0; i < content.length; i++)
+        {
+            assertEquals(content[i] & 0xFF, input.read());
+        }
+        assertEquals(-1, input.read());
+    }
+
+    /**
+     * Verify that discarding a spilled content deletes the temporary file.
+     *
+     * @exception IOException on test failure
+     */
+    public void testDiscard() throws IOException
+    {
+        File tempDir = new File(System.getProperty("java.io.tmpdir"));
+        List<String> before = Arrays.asList(tempDir.list());
+
+        ResponseBuffer buffer = new ResponseBuffer(1000);
+        buffer.write(createContent(5000), 0, 5000);
+        assertTrue(buffer.isSpilled());
+        buffer.discard();
+
+        String[] after = tempDir.list();
+        for (int i = 0; i < after.length; i++)
+        {
+            assertTrue("Temporary file left: " + after[i], 
+                !after[i].startsWith("cactus-response") 
+                || before.contains(after[i]));
+        }
+    }
+
+    /**
+     * Verify reading an empty content.
+     *
+     * @exception IOException on test failure
+     */
+    public void testEmpty() throws IOException
+    {
+        ResponseBuffer buffer = new ResponseBuffer();
+        buffer.close();
+
+        assertEquals(-1, buffer.getInputStream().read());
+    }
+}
@@ -0,0 +1,222 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.client.jms;
+
+import junit.framework.TestCase;
+import org.apache.cactus.internal.WebTestResult;
+
+import javax.jms.QueueConnection;
+import javax.jms.TextMessage;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Unit tests of the {@link JmsResultCollector} class.
+ *
+ * @version $Id$
+ */
+public class TestJmsResultCollector extends TestCase
+{
+    /**
+     * The collector being tested.
+     */
+    private JmsResultCollector collector;
+
+    /**
+     * @see TestCase#setUp()
+     */
+    protected void setUp()
+    {
+        this.collector = new JmsResultCollector(null);
+    }
+
+    /**
+     * Verify that results received in a different order than the tests were
+     * sent are handed over to the right tests.
+     *
+     * @exception Exception on error
+     */
+    public void testResultsMatchedByCorrelationId() throws Exception
+    {
+        Future<WebTestResult> first = this.collector.expect("id1", 1000);
+        Future<WebTestResult> second = this.collector.expect("id2", 1000);
+
+        this.collector.onMessage(createResultMessage("id2", 
+            new WebTestResult(new Exception("failure"))));
+        assertFalse(first.isDone());
+        assertTrue(second.isDone());
+
+        this.collector.onMessage(createResultMessage("id1", 
+            new WebTestResult()));
+
+        assertFalse(first.get().hasException());
+        assertEquals("failure", second.get().getExceptionMessage());
+        assertEquals(0, this.collector.getPendingCount());
+    }
+
+    /**
+     * Verify that a result for a test nobody waits for is ignored.
+     *
+     * @exception Exception on error
+     */
+    public void testUnknownResultIgnored() throws Exception
+    {
+        Future<WebTestResult> result = this.collector.expect("id1", 1000);
+
+        this.collector.onMessage(createResultMessage("id2", 
+            new WebTestResult()));
+
+        assertFalse(result.isDone());
+        assertEquals(1, this.collector.getPendingCount());
+    }
+
+    /**
+     * Verify that waiting for a result that never comes times out and stops
+     * waiting for it.
+     *
+     * @exception Exception on error
+     */
+    public void testTimeout() throws Exception
+    {
+        Future<WebTestResult> result = this.collector.expect("id1", 10);
+
+        try
+        {
+            result.get();
+            fail("Should have thrown an ExecutionException");
+        }
+        catch (ExecutionException expected)
+        {
+            assertTrue(expected.getCause() instanceof TimeoutException);
+        }
+        assertEquals(0, this.collector.getPendingCount());
+    }
+
+    /**
+     * Verify that closing the collector closes its connection and fails the
+     * tests still waiting for their result.
+     *
+     * @exception Exception on error
+     */
+    public void testClose() throws Exception
+    {
+        final List<String> calls = new ArrayList<String>();
+        QueueConnection connection = (QueueConnection) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class[] {QueueConnection.class}, 
+            new InvocationHandler()
+            {
+                public Object invoke(Object theProxy, Method theMethod, 
+                    Object[] theArgs)
+                {
+                    calls.add(theMethod.getName());
+                    return null;
+                }
+            });
+        JmsResultCollector collector = 
+            new JmsResultCollector(connection, null);
+        Future<WebTestResult> result = collector.expect("id1", 1000);
+
+        collector.close();
+
+        assertEquals(Arrays.asList(new String[] {"close"}), calls);
+        assertEquals(0, collector.getPendingCount());
+        try
+        {
+            result.get();
+            fail("Should have thrown an ExecutionException");
+        }
+        catch (ExecutionException expected)
+        {
+            assertTrue(expected.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    /**
+     * Verify that a result that cannot be read is reported to the test
+     * waiting for it.
+     *
+     * @exception Exception on error
+     */
+    public void testUnreadableResult() throws Exception
+    {
+        Future<WebTestResult> result = this.collector.expect("id1", 1000);
+
+        this.collector.onMessage(createMessage("id1", "not a result"));
+
+        try
+        {
+            result.get();
+            fail("Should have thrown an ExecutionException");
+        }
+        catch (ExecutionException expected)
+        {
+            assertNotNull(expected.getCause());
+        }
+    }
+
+    /**
+     * @param theCorrelationId the correlation id of the message
+     * @param theResult the test result to send
+     * @return a message holding the test result, as sent by the redirector
+     */
+    private TextMessage createResultMessage(String theCorrelationId, 
+        WebTestResult theResult)
+    {
+        return createMessage(theCorrelationId, theResult.toXml());
+    }
+
+    /**
+     * @param theCorrelationId the correlation id of the message
+     * @param theText the text of the message
+     * @return a text message only supporting the methods used by the
+     *         collector
+     */
+    private TextMessage createMessage(final String theCorrelationId, 
+        final String theText)
+    {
+        return (TextMessage) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class[] {TextMessage.class}, 
+            new InvocationHandler()
+            {
+                public Object invoke(Object theProxy, Method theMethod, 
+                    Object[] theArgs)
+                {
+                    if ("getJMSCorrelationID".equals(theMethod.getName()))
+                    {
+                        return theCorrelationId;
+                    }
+                    if ("getText".equals(theMethod.getName()))
+                    {
+                        return theText;
+                    }
+                    throw new UnsupportedOperationException(
+                        theMethod.getName());
+                }
+            });
+    }
+}
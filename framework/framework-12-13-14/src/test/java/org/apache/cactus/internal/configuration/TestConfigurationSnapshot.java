@@ -0,0 +1,151 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.configuration;
+
+import junit.framework.TestCase;
+import org.apache.cactus.util.ChainedRuntimeException;
+
+import java.util.Properties;
+
+/**
+ * Unit tests for the {@link ConfigurationSnapshot} class.
+ *
+ * @version $Id$
+ */
+public class TestConfigurationSnapshot extends TestCase
+{
+    /**
+     * Object to unit test.
+     */
+    private ConfigurationSnapshot snapshot;
+
+    /**
+     * @see TestCase#setUp()
+     */
+    protected void setUp()
+    {
+        Properties properties = new Properties();
+        properties.setProperty(BaseConfiguration.CACTUS_CONTEXT_URL_PROPERTY,
+            "http://localhost:8080/test");
+        properties.setProperty("cactus.servletRedirectorName", "Redirector");
+        properties.setProperty("other.property", "value");
+        properties.setProperty("cactus.http.maxTotalConnections", "50");
+        properties.setProperty("cactus.http.idleConnectionTimeout", "none");
+        this.snapshot = new ConfigurationSnapshot(properties);
+    }
+
+    /**
+     * Verify that only the Cactus properties are kept.
+     */
+    public void testGetProperty()
+    {
+        assertEquals("http://localhost:8080/test",
+            this.snapshot.getContextURL());
+        assertEquals("Redirector",
+            this.snapshot.getProperty("cactus.servletRedirectorName"));
+        assertNull(this.snapshot.getProperty("other.property"));
+    }
+
+    /**
+     * Verify that numeric properties are parsed and that missing or invalid
+     * values fall back to the default.
+     */
+    public void testGetNumericProperty()
+    {
+        assertEquals(50, this.snapshot.getIntProperty(
+            "cactus.http.maxTotalConnections", 100));
+        assertEquals(20, this.snapshot.getIntProperty(
+            "cactus.http.maxConnectionsPerHost", 20));
+        assertEquals(50L, this.snapshot.getLongProperty(
+            "cactus.http.maxTotalConnections", 100L));
+        assertEquals(30000L, this.snapshot.getLongProperty(
+            "cactus.http.idleConnectionTimeout", 30000L));
+    }
+
+    /**
+     * Verify that the redirector URLs under the snapshot context URL are
+     * only built once.
+     */
+    public void testGetRedirectorURL()
+    {
+        String url = this.snapshot.getRedirectorURL(
+            "http://localhost:8080/test", "Redirector");
+
+        assertEquals("http://localhost:8080/test/Redirector", url);
+        assertSame(url, this.snapshot.getRedirectorURL(
+            "http://localhost:8080/test", "Redirector"));
+        assertEquals("http://localhost:8080/other/Redirector",
+            this.snapshot.getRedirectorURL("http://localhost:8080/other",
+            "Redirector"));
+    }
+
+    /**
+     * Verify that URLs are only parsed once.
+     */
+    public void testGetURL()
+    {
+        assertSame(this.snapshot.getURL("http://localhost:8080/test/a"),
+            this.snapshot.getURL("http://localhost:8080/test/a"));
+        assertEquals(8080,
+            this.snapshot.getURL("http://localhost:8080/test/a").getPort());
+    }
+
+    /**
+     * Verify that an invalid URL is reported.
+     */
+    public void testGetURLWhenInvalid()
+    {
+        try
+        {
+            this.snapshot.getURL("invalid");
+            fail("Should have thrown a ChainedRuntimeException");
+        }
+        catch (ChainedRuntimeException expected)
+        {
+            assertEquals("Invalid URL [invalid]", expected.getMessage());
+        }
+    }
+
+    /**
+     * Verify that a refreshed snapshot sees the changed System properties.
+     */
+    public void testRefreshSnapshot()
+    {
+        String name = "cactus.test.snapshot";
+        System.setProperty(name, "before");
+        try
+        {
+            ConfigurationInitializer.refreshSnapshot();
+            System.setProperty(name, "after");
+            assertEquals("before",
+                ConfigurationInitializer.getSnapshot().getProperty(name));
+
+            ConfigurationInitializer.refreshSnapshot();
+            assertEquals("after",
+                ConfigurationInitializer.getSnapshot().getProperty(name));
+        }
+        finally
+        {
+            System.getProperties().remove(name);
+            ConfigurationInitializer.refreshSnapshot();
+        }
+    }
+}
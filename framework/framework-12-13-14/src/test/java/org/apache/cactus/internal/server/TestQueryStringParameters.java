@@ -0,0 +1,113 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.server;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests of the {@link QueryStringParameters} class.
+ *
+ * @version $Id$
+ */
+public class TestQueryStringParameters extends TestCase
+{
+    /**
+     * Verify that a null query string has no parameters.
+     */
+    public void testParseNull()
+    {
+        QueryStringParameters parameters = QueryStringParameters.parse(null);
+
+        assertNull(parameters.getParameter("param1"));
+        assertTrue(parameters.getParameters().isEmpty());
+    }
+
+    /**
+     * Verify that all the parameters are decoded in a single parse.
+     */
+    public void testParseSeveralParameters()
+    {
+        QueryStringParameters parameters = QueryStringParameters.parse(
+            "param1=value1&param2=a%20b+c&param3=%2Fpath%3F");
+
+        assertEquals("value1", parameters.getParameter("param1"));
+        assertEquals("a b c", parameters.getParameter("param2"));
+        assertEquals("/path?", parameters.getParameter("param3"));
+        assertEquals(3, parameters.getParameters().size());
+    }
+
+    /**
+     * Verify that an empty value is returned as an empty string and that
+     * a parameter without '=' is ignored.
+     */
+    public void testParseEmptyValues()
+    {
+        QueryStringParameters parameters = 
+            QueryStringParameters.parse("param1=&param2&param3=");
+
+        assertEquals("", parameters.getParameter("param1"));
+        assertNull(parameters.getParameter("param2"));
+        assertEquals("", parameters.getParameter("param3"));
+    }
+
+    /**
+     * Verify that parameter names are matched exactly, even when one is the
+     * suffix of another.
+     */
+    public void testParseSuffixName()
+    {
+        QueryStringParameters parameters = 
+            QueryStringParameters.parse("Cactus_Param=value1&Param=value2");
+
+        assertEquals("value2", parameters.getParameter("Param"));
+        assertEquals("value1", parameters.getParameter("Cactus_Param"));
+    }
+
+    /**
+     * Verify that the first value of a repeated parameter wins.
+     */
+    public void testParseRepeatedParameter()
+    {
+        QueryStringParameters parameters = 
+            QueryStringParameters.parse("param1=value1&param1=value2");
+
+        assertEquals("value1", parameters.getParameter("param1"));
+    }
+
+    /**
+     * Verify that the parsed parameters cannot be modified.
+     */
+    public void testParametersAreReadOnly()
+    {
+        QueryStringParameters parameters = 
+            QueryStringParameters.parse("param1=value1");
+
+        try
+        {
+            parameters.getParameters().put("param2", "value2");
+            fail("Should have thrown an UnsupportedOperationException");
+        }
+        catch (UnsupportedOperationException expected)
+        {
+            // Expected
+        }
+    }
+}
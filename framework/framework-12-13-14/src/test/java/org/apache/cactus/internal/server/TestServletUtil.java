@@ -41,4 +41,17 @@ public class TestServletUtil extends TestCase
 
         assertEquals("", result);
     }
+
+    /**
+     * Verify that <code>getQueryStringParameter()</code> does not match a
+     * parameter whose name ends with the name of the parameter looked for.
+     */
+    public void testGetQueryStringParameterSuffixName()
+    {
+        String queryString = "Cactus_Param=value1&Param=value2";
+        String result = ServletUtil.getQueryStringParameter(queryString, 
+            "Param");
+
+        assertEquals("value2", result);
+    }
 }
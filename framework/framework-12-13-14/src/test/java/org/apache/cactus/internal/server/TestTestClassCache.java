@@ -0,0 +1,128 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.server;
+
+import junit.framework.TestCase;
+import org.apache.cactus.ServletTestCase;
+
+import java.lang.reflect.Constructor;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * Unit tests of the {@link TestClassCache} class.
+ *
+ * @version $Id$
+ */
+public class TestTestClassCache extends TestCase
+{
+    /**
+     * Verify that a class is only looked up once for a given context class
+     * loader.
+     *
+     * @exception Exception on test failure
+     */
+    public void testLoadClassIsCached() throws Exception
+    {
+        TestClassCache cache = new TestClassCache();
+        Class first = cache.loadClass(getClass().getName(), getClass());
+
+        assertSame(getClass(), first);
+        assertSame(first, cache.loadClass(getClass().getName(), getClass()));
+    }
+
+    /**
+     * Verify that a class is looked up again when the context class loader
+     * has changed.
+     *
+     * @exception Exception on test failure
+     */
+    public void testLoadClassWithOtherContextLoader() throws Exception
+    {
+        TestClassCache cache = new TestClassCache();
+        cache.loadClass(getClass().getName(), getClass());
+
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(
+            new URLClassLoader(new URL[0], original));
+        try
+        {
+            assertSame(getClass(), 
+                cache.loadClass(getClass().getName(), getClass()));
+        }
+        finally
+        {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
+
+    /**
+     * Verify that a missing class is reported.
+     */
+    public void testLoadClassNotFound()
+    {
+        TestClassCache cache = new TestClassCache();
+        try
+        {
+            cache.loadClass("org.apache.cactus.DoesNotExist", getClass());
+            fail("Should have thrown a ClassNotFoundException");
+        }
+        catch (ClassNotFoundException expected)
+        {
+            // Expected
+        }
+    }
+
+    /**
+     * Verify that the constructor taking the test name is preferred and
+     * that the constructors are cached.
+     *
+     * @exception Exception on test failure
+     */
+    public void testGetTestConstructor() throws Exception
+    {
+        TestClassCache cache = new TestClassCache();
+        Constructor constructor = cache.getTestConstructor(getClass());
+
+        assertEquals(0, constructor.getParameterTypes().length);
+        assertSame(constructor, cache.getTestConstructor(getClass()));
+
+        constructor = cache.getTestConstructor(ServletTestCase.class);
+        assertEquals(1, constructor.getParameterTypes().length);
+        assertEquals(String.class, constructor.getParameterTypes()[0]);
+    }
+
+    /**
+     * Verify the lookup of the constructor wrapping a pure JUnit test.
+     *
+     * @exception Exception on test failure
+     */
+    public void testGetWrapperConstructor() throws Exception
+    {
+        TestClassCache cache = new TestClassCache();
+        Constructor constructor = 
+            cache.getWrapperConstructor(ServletTestCase.class);
+
+        assertEquals(2, constructor.getParameterTypes().length);
+        assertSame(constructor, 
+            cache.getWrapperConstructor(ServletTestCase.class));
+    }
+}
@@ -0,0 +1,78 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.server;
+
+import junit.framework.TestCase;
+import org.apache.cactus.internal.WebTestResult;
+
+/**
+ * Unit tests of the {@link WebTestResultStore} class.
+ *
+ * @version $Id$
+ */
+public class TestWebTestResultStore extends TestCase
+{
+    /**
+     * Verify that results stored under different ids are returned to the
+     * matching claimer only.
+     */
+    public void testResultsAreKeyedById()
+    {
+        WebTestResultStore store = new WebTestResultStore();
+        WebTestResult first = new WebTestResult();
+        WebTestResult second = new WebTestResult(new Exception("failure"));
+
+        store.put("first", first);
+        store.put("second", second);
+
+        assertSame(second, store.remove("second"));
+        assertSame(first, store.remove("first"));
+    }
+
+    /**
+     * Verify that a result can only be claimed once.
+     */
+    public void testResultIsRemovedWhenClaimed()
+    {
+        WebTestResultStore store = new WebTestResultStore();
+        store.put("id", new WebTestResult());
+
+        assertNotNull(store.remove("id"));
+        assertNull(store.remove("id"));
+        assertEquals(0, store.size());
+    }
+
+    /**
+     * Verify that unclaimed results are evicted once their time to live is
+     * over.
+     */
+    public void testExpiredResultsAreEvicted()
+    {
+        WebTestResultStore store = new WebTestResultStore(1000);
+        store.put("id", new WebTestResult());
+
+        store.evictExpired(System.currentTimeMillis());
+        assertEquals(1, store.size());
+
+        store.evictExpired(System.currentTimeMillis() + 2000);
+        assertEquals(0, store.size());
+    }
+}
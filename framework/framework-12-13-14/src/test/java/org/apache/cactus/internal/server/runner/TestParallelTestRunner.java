@@ -0,0 +1,154 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.server.runner;
+
+import junit.extensions.TestSetup;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestResult;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for {@link ParallelTestRunner}.
+ *
+ * @version $Id$
+ */
+public final class TestParallelTestRunner extends TestCase
+{
+    /**
+     * Sample tests run by the runner.
+     */
+    public static final class SampleTest extends TestCase
+    {
+        /**
+         * A passing test.
+         */
+        public void testPass()
+        {
+        }
+
+        /**
+         * Another passing test.
+         */
+        public void testPassAgain()
+        {
+        }
+
+        /**
+         * A failing test.
+         */
+        public void testFail()
+        {
+            fail("expected");
+        }
+
+        /**
+         * A test in error.
+         */
+        public void testError()
+        {
+            throw new IllegalStateException("expected");
+        }
+    }
+
+    /**
+     * Verify that all the tests of a suite are run and their outcomes
+     * collected.
+     */
+    public void testRunCollectsAllOutcomes()
+    {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(SampleTest.class);
+        suite.addTestSuite(SampleTest.class);
+        TestResult result = new TestResult();
+
+        new ParallelTestRunner(3).run(suite, result);
+
+        assertEquals(8, result.runCount());
+        assertEquals(2, result.failureCount());
+        assertEquals(2, result.errorCount());
+    }
+
+    /**
+     * Verify that the formatter reports every test run concurrently.
+     */
+    public void testRunWithFormatter()
+    {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(SampleTest.class);
+        suite.addTestSuite(SampleTest.class);
+        TestResult result = new TestResult();
+        XMLFormatter formatter = new XMLFormatter();
+        result.addListener(formatter);
+
+        new ParallelTestRunner(4).run(suite, result);
+
+        String xml = formatter.toXML(result);
+        assertEquals(8, xml.split("<testcase ").length - 1);
+        assertEquals(2, xml.split("<failure ").length - 1);
+        assertEquals(2, xml.split("<error ").length - 1);
+    }
+
+    /**
+     * Verify that suites are split into their tests but that decorators are
+     * kept whole.
+     */
+    public void testAddLeafTestsKeepsDecorators()
+    {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(SampleTest.class);
+        Test setup = new TestSetup(new TestSuite(SampleTest.class));
+        suite.addTest(setup);
+        List<Test> tests = new ArrayList<Test>();
+
+        ParallelTestRunner.addLeafTests(suite, tests);
+
+        assertEquals(5, tests.size());
+        assertSame(setup, tests.get(4));
+    }
+
+    /**
+     * Verify that subclasses of <code>TestSuite</code>, which may override
+     * <code>run()</code>, are kept whole.
+     */
+    public void testAddLeafTestsKeepsSuiteSubclasses()
+    {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(SampleTest.class);
+        Test custom = new TestSuite(SampleTest.class)
+        {
+            public void run(TestResult theResult)
+            {
+                super.run(theResult);
+            }
+        };
+        suite.addTest(custom);
+        List<Test> tests = new ArrayList<Test>();
+
+        ParallelTestRunner.addLeafTests(suite, tests);
+
+        assertEquals(5, tests.size());
+        assertSame(custom, tests.get(4));
+    }
+}
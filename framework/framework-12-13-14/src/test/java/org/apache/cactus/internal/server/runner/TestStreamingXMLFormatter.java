@@ -0,0 +1,97 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.server.runner;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.TestCase;
+import junit.framework.TestResult;
+
+import java.io.StringWriter;
+
+/**
+ * Unit tests for {@link StreamingXMLFormatter}.
+ *
+ * @version $Id$
+ */
+public final class TestStreamingXMLFormatter extends TestCase
+{
+    /**
+     * Writer the report is streamed to.
+     */
+    private StringWriter writer;
+
+    /**
+     * Instance to unit test.
+     */
+    private StreamingXMLFormatter formatter;
+
+    /**
+     * TestResult object used for testing.
+     */
+    private TestResult testResult;
+
+    /**
+     * Set up common objects.
+     */
+    public void setUp()
+    {
+        writer = new StringWriter();
+        formatter = new StreamingXMLFormatter(writer);
+        testResult = new TestResult();
+    }
+
+    /**
+     * Verify that an empty suite yields a report whose totals are written
+     * on the summary element.
+     */
+    public void testEmptySuite()
+    {
+        formatter.setSuiteClassName("Suite");
+        formatter.startDocument();
+        formatter.endDocument(testResult);
+
+        String xml = writer.toString();
+        assertTrue(xml, xml.startsWith("<?xml version=\"1.0\" "
+            + "encoding=\"UTF-8\"?><testsuites><testsuite name=\"Suite\">"
+            + "<summary tests=\"0\" failures=\"0\" errors=\"0\" time=\""));
+        assertTrue(xml, xml.endsWith("\"></summary></testsuite></testsuites>")
+            || xml.endsWith("\"/></testsuite></testsuites>"));
+    }
+
+    /**
+     * Verify that a test case is written as soon as it ends, with its
+     * failure encoded.
+     */
+    public void testTestCaseIsWrittenWhenItEnds()
+    {
+        formatter.startDocument();
+        formatter.startTest(this);
+        formatter.addFailure(this, new AssertionFailedError("a < b"));
+        formatter.endTest(this);
+
+        String xml = writer.toString();
+        assertTrue(xml, xml.indexOf("<testcase name=\""
+            + "testTestCaseIsWrittenWhenItEnds\" time=\"") > 0);
+        assertTrue(xml, xml.indexOf("<failure message=\"a &lt; b\" "
+            + "type=\"junit.framework.AssertionFailedError\">") > 0);
+        assertTrue(xml, xml.endsWith("</failure></testcase>"));
+    }
+}
@@ -0,0 +1,155 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.internal.server.runner;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.TestCase;
+import junit.framework.TestResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Unit tests for {@link XMLTransformer} and {@link XMLTransformerCache}.
+ *
+ * @version $Id$
+ */
+public final class TestXMLTransformer extends TestCase
+{
+    /**
+     * Stylesheet summarizing the report as text.
+     */
+    private static final String STYLESHEET = "<xsl:stylesheet xmlns:xsl="
+        + "\"http://www.w3.org/1999/XSL/Transform\" version=\"1.0\">"
+        + "<xsl:output method=\"text\"/>"
+        + "<xsl:template match=\"/\">"
+        + "<xsl:value-of select=\"testsuites/testsuite/@tests\"/>:"
+        + "<xsl:value-of select=\"count(//testcase)\"/>:"
+        + "<xsl:value-of select=\"//failure/@message\"/>"
+        + "</xsl:template></xsl:stylesheet>";
+
+    /**
+     * @return a transformer for the test stylesheet
+     * @throws Exception if the stylesheet cannot be compiled
+     */
+    private XMLTransformer createTransformer() throws Exception
+    {
+        InputStream stylesheet = new ByteArrayInputStream(
+            STYLESHEET.getBytes("UTF-8"));
+        return new XMLTransformer(stylesheet);
+    }
+
+    /**
+     * Verify that transforming the SAX events of the formatter yields the
+     * same result as transforming its XML report.
+     * 
+     * @throws Exception in case of error
+     */
+    public void testTransformFromFormatter() throws Exception
+    {
+        XMLFormatter formatter = new XMLFormatter();
+        TestResult result = new TestResult();
+        result.addListener(formatter);
+        result.startTest(this);
+        result.addFailure(this, new AssertionFailedError("a < b"));
+        result.endTest(this);
+
+        XMLTransformer transformer = createTransformer();
+        StringWriter fromSax = new StringWriter();
+        transformer.transform(formatter, result, fromSax);
+        StringWriter fromString = new StringWriter();
+        transformer.transform(new StringReader(formatter.toXML(result)),
+            fromString);
+
+        assertEquals("text/plain", transformer.getContentType());
+        assertEquals("1:1:a < b", fromSax.toString());
+        assertEquals(fromString.toString(), fromSax.toString());
+    }
+
+    /**
+     * Verify that a transformer can be shared by concurrent requests.
+     * 
+     * @throws Exception in case of error
+     */
+    public void testConcurrentTransforms() throws Exception
+    {
+        final XMLFormatter formatter = new XMLFormatter();
+        final TestResult result = new TestResult();
+        result.addListener(formatter);
+        result.startTest(this);
+        result.endTest(this);
+
+        final XMLTransformer transformer = createTransformer();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try
+        {
+            List<Future<String>> outputs = new ArrayList<Future<String>>();
+            for (int i = 0; i < 64; i++)
+            {
+                outputs.add(executor.submit(new Callable<String>()
+                {
+                    public String call() throws Exception
+                    {
+                        StringWriter writer = new StringWriter();
+                        transformer.transform(formatter, result, writer);
+                        return writer.toString();
+                    }
+                }));
+            }
+            for (Future<String> output : outputs)
+            {
+                assertEquals("1:1:", output.get());
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Verify that the cache evicts the least recently used transformer.
+     * 
+     * @throws Exception in case of error
+     */
+    public void testCacheEvictsLeastRecentlyUsed() throws Exception
+    {
+        XMLTransformerCache cache = new XMLTransformerCache(2);
+        XMLTransformer transformer = createTransformer();
+        cache.put("/a.xsl", transformer);
+        cache.put("/b.xsl", transformer);
+        cache.get("/a.xsl");
+        cache.put("/c.xsl", transformer);
+
+        assertEquals(2, cache.size());
+        assertSame(transformer, cache.get("/a.xsl"));
+        assertNull(cache.get("/b.xsl"));
+        assertSame(transformer, cache.get("/c.xsl"));
+    }
+}
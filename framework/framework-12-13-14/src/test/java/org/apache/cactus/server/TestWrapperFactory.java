@@ -0,0 +1,69 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.server;
+
+import junit.framework.TestCase;
+import org.apache.cactus.util.ChainedRuntimeException;
+
+/**
+ * Unit tests for the {@link WrapperFactory} class.
+ *
+ * @version $Id$
+ */
+public class TestWrapperFactory extends TestCase
+{
+    /**
+     * Verify that the factory creates a new instance on each call.
+     */
+    public void testNewInstance()
+    {
+        WrapperFactory factory = new WrapperFactory("java.lang.StringBuffer",
+            new Class[] {String.class});
+
+        Object first = factory.newInstance(new Object[] {"first"});
+        Object second = factory.newInstance(new Object[] {"second"});
+
+        assertEquals("first", first.toString());
+        assertEquals("second", second.toString());
+    }
+
+    /**
+     * Verify that a missing wrapper implementation is reported with the
+     * wrapper name.
+     */
+    public void testNewInstanceWhenClassIsMissing()
+    {
+        WrapperFactory factory = new WrapperFactory(
+            "org.apache.cactus.server.MissingWrapper",
+            new Class[] {String.class});
+
+        try
+        {
+            factory.newInstance(new Object[] {"value"});
+            fail("Should have thrown a ChainedRuntimeException");
+        }
+        catch (ChainedRuntimeException expected)
+        {
+            assertEquals("Failed to create MissingWrapper",
+                expected.getMessage());
+        }
+    }
+}
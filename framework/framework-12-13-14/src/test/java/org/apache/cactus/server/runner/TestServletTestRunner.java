@@ -81,6 +81,9 @@ public final class TestServletTestRunner extends MockObjectTestCase
         mockServletConfig.expects( once() ).method( "getServletName" ).will( returnValue("TestServlet") );
         
         mockServletContext.expects( once() ).method("log").withAnyArguments();
+
+        mockServletConfig.stubs().method("getInitParameter").with(eq("parallel")).will(returnValue(null));
+        mockServletConfig.stubs().method("getInitParameter").with(eq("max-parallel")).will(returnValue(null));
         
         runner = new ServletTestRunner();
     }
@@ -159,4 +162,50 @@ public final class TestServletTestRunner extends MockObjectTestCase
         runner.init(servletConfig);        
     }
 
+    /**
+     * Verify that the {@link ServletTestRunner#init()} method fails when
+     * the default number of tests to run at the same time is not a positive
+     * number.
+     * 
+     * @throws ServletException in case of error
+     */
+    public void testInitWhenParallelIsInvalid() throws ServletException
+    {
+        mockServletConfig.expects( once() ).method("getInitParameter").with(eq("parallel")).will(returnValue("none"));
+
+        try
+        {
+            runner.init(servletConfig);
+            fail("Should have thrown an UnavailableException exception");
+        }
+        catch (UnavailableException expected)
+        {
+            assertEquals("The initialization parameter 'parallel' must be a "
+                + "positive number", expected.getMessage());
+        }
+    }
+
+    /**
+     * Verify that the {@link ServletTestRunner#init()} method fails when
+     * the maximum number of tests to run at the same time is not a positive
+     * number.
+     * 
+     * @throws ServletException in case of error
+     */
+    public void testInitWhenMaxParallelIsInvalid() throws ServletException
+    {
+        mockServletConfig.expects( once() ).method("getInitParameter").with(eq("max-parallel")).will(returnValue("0"));
+
+        try
+        {
+            runner.init(servletConfig);
+            fail("Should have thrown an UnavailableException exception");
+        }
+        catch (UnavailableException expected)
+        {
+            assertEquals("The initialization parameter 'max-parallel' must "
+                + "be a positive number", expected.getMessage());
+        }
+    }
+
 }
@@ -42,8 +42,8 @@ public class DefaultFilterConfiguration
      */
     public String getDefaultRedirectorName()
     {
-        String redirectorName = 
-            System.getProperty(CACTUS_FILTER_REDIRECTOR_NAME_PROPERTY);
+        String redirectorName = ConfigurationInitializer.getSnapshot()
+            .getProperty(CACTUS_FILTER_REDIRECTOR_NAME_PROPERTY);
 
         if (redirectorName == null)
         {
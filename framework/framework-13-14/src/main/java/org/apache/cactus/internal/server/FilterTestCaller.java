@@ -69,7 +69,8 @@ public class FilterTestCaller extends AbstractWebTestCaller
         HttpServletRequest request = 
             filterImplicitObjects.getHttpServletRequest();
 
-        ServletURL url = ServletURL.loadFromRequest(request);
+        ServletURL url = ServletURL.loadFromRequest(
+            this.webImplicitObjects.getQueryStringParameters());
 
         Field requestField = filterInstance.getClass().getField("request");
 
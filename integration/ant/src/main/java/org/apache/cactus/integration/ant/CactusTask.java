@@ -23,6 +23,7 @@ package org.apache.cactus.integration.ant;
 
 import org.apache.cactus.container.ContainerRunner;
 import org.apache.cactus.container.ContainerWrapper;
+import org.apache.cactus.container.WarmContainerState;
 import org.apache.cactus.integration.ant.util.PropertySet;
 import org.apache.cactus.integration.api.deployable.DeployableFile;
 import org.apache.cactus.integration.api.deployable.EarParser;
@@ -38,12 +39,19 @@ import org.codehaus.cargo.container.Container;
 import org.codehaus.cargo.util.log.AntLogger;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * An Ant task that extends the optional JUnit task to provide support for
@@ -82,6 +90,12 @@ public class CactusTask extends JUnitTask
      * start the containers.
      */
     private Path containerClasspath;
+
+    /**
+     * The number of forked JVMs the tests are split across, each running
+     * its share of the tests against the container concurrently.
+     */
+    private int shards = 1;
     
     // Constructors ------------------------------------------------------------
     
@@ -153,11 +167,14 @@ public class CactusTask extends JUnitTask
         else
         {
             CargoElement[] cargoElements = this.containerSet.getCargos();
-            Variable contextUrl = new Variable();
+            ContextUrlVariable contextUrl = new ContextUrlVariable();
             contextUrl.setKey("cactus.contextURL");
 
             addSysproperty(contextUrl);
+            super.init();
 
+            List wrappers = new ArrayList();
+            List deployables = new ArrayList();
             for (int i = 0; i < cargoElements.length; i++)
             {
                 CargoElement element = (CargoElement) cargoElements[i];
@@ -193,17 +210,21 @@ public class CactusTask extends JUnitTask
                 
                 if (wrapper.isEnabled())
                 {
-                    wrapper.init();
-                    log("--------------------------------------------------"
-                        + "---------------", Project.MSG_INFO);
-                    log("Running tests against " + wrapper.getName()
-                        + " @ " + wrapper.getBaseURL(),
-                        Project.MSG_INFO);
-                    log("--------------------------------------------------"
-                        + "---------------", Project.MSG_INFO);
-                    contextUrl.setValue(wrapper.getBaseURL() + "/"
-                        + thisDeployable.getTestContext());
-                    executeInContainer(wrapper, thisDeployable); 
+                    wrappers.add(wrapper);
+                    deployables.add(thisDeployable);
+                }
+            }
+
+            if (this.containerSet.isParallel() && (wrappers.size() > 1))
+            {
+                executeInParallel(wrappers, deployables, contextUrl);
+            }
+            else
+            {
+                for (int i = 0; i < wrappers.size(); i++)
+                {
+                    runTests((ContainerWrapper) wrappers.get(i), 
+                        (DeployableFile) deployables.get(i), contextUrl);
                 }
             }
         }
@@ -241,6 +262,25 @@ public class CactusTask extends JUnitTask
         this.earFile = theEarFile;
     }
 
+    /**
+     * Sets the number of forked JVMs the tests are split across when run
+     * against a container. The JVMs run concurrently, each running its
+     * share of the tests one after the other. The tests are balanced across
+     * the JVMs on their durations as recorded in the XML reports of the
+     * previous run.
+     * 
+     * @param theShards The number of forked JVMs
+     */
+    public final void setShards(int theShards)
+    {
+        if (theShards < 1)
+        {
+            throw new BuildException("The [shards] attribute must be at "
+                + "least 1");
+        }
+        this.shards = theShards;
+    }
+
     /**
      * Sets the web application archive that will be tested. It must already 
      * contain the test-cases and the required libraries.
@@ -435,16 +475,193 @@ public class CactusTask extends JUnitTask
         }
     }
 
+    /**
+     * Initializes the given container and runs the unit tests against it.
+     * 
+     * @param theWrapper The containerWrapper to run the tests against
+     * @param theFile the file to deploy in the container
+     * @param theContextUrl the system property holding the URL of the test
+     *        context, set for the current thread
+     */
+    private void runTests(ContainerWrapper theWrapper, DeployableFile theFile,
+        ContextUrlVariable theContextUrl)
+    {
+        theWrapper.init();
+        log("--------------------------------------------------"
+            + "---------------", Project.MSG_INFO);
+        log("Running tests against " + theWrapper.getName()
+            + " @ " + theWrapper.getBaseURL(),
+            Project.MSG_INFO);
+        log("--------------------------------------------------"
+            + "---------------", Project.MSG_INFO);
+        theContextUrl.setValue(theWrapper.getBaseURL() + "/"
+            + theFile.getTestContext());
+        executeInContainer(theWrapper, theFile, theContextUrl);
+    }
+
+    /**
+     * Runs the unit tests against several containers concurrently. All the
+     * containers are tested even if some of them fail, the build then fails
+     * with the list of the failed containers.
+     * 
+     * @param theWrappers The containerWrappers to run the tests against
+     * @param theFiles the files to deploy in each container
+     * @param theContextUrl the system property holding the URL of the test
+     *        context
+     */
+    private void executeInParallel(List theWrappers, List theFiles,
+        final ContextUrlVariable theContextUrl)
+    {
+        int threadCount = theWrappers.size();
+        if ((this.containerSet.getThreadCount() > 0)
+            && (this.containerSet.getThreadCount() < threadCount))
+        {
+            threadCount = this.containerSet.getThreadCount();
+        }
+
+        log("Running tests against " + theWrappers.size() + " containers "
+            + "using " + threadCount + " threads", Project.MSG_VERBOSE);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try
+        {
+            List results = new ArrayList();
+            List names = new ArrayList();
+            for (int i = 0; i < theWrappers.size(); i++)
+            {
+                final ContainerWrapper wrapper = 
+                    (ContainerWrapper) theWrappers.get(i);
+                final DeployableFile file = (DeployableFile) theFiles.get(i);
+                results.add(executor.submit(new Runnable()
+                {
+                    public void run()
+                    {
+                        runTests(wrapper, file, theContextUrl);
+                    }
+                }));
+                names.add(wrapper.getName());
+            }
+            waitForAll(results, names, "Tests failed against");
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the given tests split across several forked JVMs running
+     * concurrently. The tests are balanced across the JVMs on their
+     * durations in the previous run.
+     * 
+     * @param theTests the tests to run, as <code>JUnitTest</code> objects
+     * @param theContextUrl the system property holding the URL of the test
+     *        context, set for the current thread
+     */
+    private void executeInShards(List theTests,
+        final ContextUrlVariable theContextUrl)
+    {
+        ShardPartitioner partitioner = new ShardPartitioner(this.shards);
+        for (int i = 0; i < theTests.size(); i++)
+        {
+            JUnitTest test = (JUnitTest) theTests.get(i);
+            partitioner.readDuration(test, (test.getTodir() == null)
+                ? null : getProject().resolveFile(test.getTodir()));
+        }
+        List shardList = partitioner.partition(theTests);
+
+        log("Running " + theTests.size() + " tests in " + shardList.size()
+            + " forked JVMs", Project.MSG_VERBOSE);
+
+        // The shards run on other threads, which need their own copy of the
+        // test context URL
+        final String contextUrl = theContextUrl.getValue();
+        ExecutorService executor = 
+            Executors.newFixedThreadPool(shardList.size());
+        try
+        {
+            List results = new ArrayList();
+            List names = new ArrayList();
+            for (int i = 0; i < shardList.size(); i++)
+            {
+                final List shard = (List) shardList.get(i);
+                results.add(executor.submit(new Runnable()
+                {
+                    public void run()
+                    {
+                        theContextUrl.setValue(contextUrl);
+                        execute(shard);
+                    }
+                }));
+                names.add("shard " + (i + 1));
+            }
+            waitForAll(results, names, "Tests failed in");
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for concurrent test runs to complete. All the runs are waited
+     * for even if some of them fail, the build then fails with the list of
+     * the failed runs.
+     * 
+     * @param theResults the <code>Future</code> of each run
+     * @param theNames the name of each run
+     * @param theMessage the message reporting failed runs
+     */
+    private void waitForAll(List theResults, List theNames, String theMessage)
+    {
+        StringBuffer failedRuns = new StringBuffer();
+        Throwable firstFailure = null;
+        for (int i = 0; i < theResults.size(); i++)
+        {
+            String name = (String) theNames.get(i);
+            try
+            {
+                ((Future) theResults.get(i)).get();
+            }
+            catch (ExecutionException e)
+            {
+                log(theMessage + " " + name + ": "
+                    + e.getCause().getMessage(), Project.MSG_ERR);
+                if (firstFailure == null)
+                {
+                    firstFailure = e.getCause();
+                }
+                else
+                {
+                    failedRuns.append(", ");
+                }
+                failedRuns.append(name);
+            }
+            catch (InterruptedException e)
+            {
+                throw new BuildException(
+                    "Interrupted while running the tests", e);
+            }
+        }
+
+        if (firstFailure != null)
+        {
+            throw new BuildException(theMessage + " [" + failedRuns + "]",
+                firstFailure);
+        }
+    }
+
     /**
      * Executes the unit tests in the given container.
      * 
      * @param theWrapper The containerWrapper to run the tests against
      * @param theFile the file to deploy in the container
+     * @param theContextUrl the system property holding the URL of the test
+     *        context, set for the current thread
      */
     private void executeInContainer(ContainerWrapper theWrapper, 
-        DeployableFile theFile)
+        DeployableFile theFile, ContextUrlVariable theContextUrl)
     {
-        super.init();
         log("Starting up container", Project.MSG_VERBOSE);
         ContainerRunner runner = new ContainerRunner(theWrapper);
         runner.setLogger(new AntLogger(getProject()));
@@ -453,18 +670,28 @@ public class CactusTask extends JUnitTask
             URL url = new URL(theWrapper.getBaseURL() + "/"
                 + theFile.getTestContext() 
                 + theFile.getServletRedirectorMapping()
-                + "?Cactus_Service=RUN_TEST");
+                + "?Cactus_Service=GET_VERSION");
             runner.setURL(url);
+            if (this.containerSet.isWarm())
+            {
+                runner.setWarmStateFile(WarmContainerState.getDefaultFile(url));
+                runner.setDeployableChecksum(
+                    WarmContainerState.checksum(theFile.getFile()));
+            }
          
             runner.startUpContainer();
             log("Server name retrieved from 'Server' HTTP header: ["
                 + runner.getServerName() + "]", Project.MSG_VERBOSE);
             try
             {
+                List testList = new ArrayList();
                 Enumeration tests = getIndividualTests();
                 while (tests.hasMoreElements())
                 {
-                    JUnitTest test = (JUnitTest) tests.nextElement();
+                    // The tests are shared by all containers, which can be
+                    // tested concurrently
+                    JUnitTest test = 
+                        (JUnitTest) ((JUnitTest) tests.nextElement()).clone();
                     if (test.shouldRun(getProject())
                      && !theWrapper.isExcluded(test.getName()))
                     {
@@ -473,7 +700,19 @@ public class CactusTask extends JUnitTask
                         {
                             test.setTodir(theWrapper.getToDir());
                         }
-                        execute(test);
+                        testList.add(test);
+                    }
+                }
+
+                if ((this.shards > 1) && (testList.size() > 1))
+                {
+                    executeInShards(testList, theContextUrl);
+                }
+                else
+                {
+                    for (int i = 0; i < testList.size(); i++)
+                    {
+                        execute((JUnitTest) testList.get(i));
                     }
                 }
             }
@@ -488,5 +727,59 @@ public class CactusTask extends JUnitTask
         {
             throw new BuildException("Malformed test URL", mue);
         }
+        catch (IOException ioe)
+        {
+            throw new BuildException("Failed to compute the checksum of ["
+                + theFile.getFile() + "]", ioe);
+        }
+    }
+
+    // Inner Classes -----------------------------------------------------------
+
+    /**
+     * System property whose value is set for the current thread only, so
+     * that containers tested concurrently each get their own test context
+     * URL. The value is read when the command line of the forked JUnit JVM
+     * is built, on the thread that runs the test.
+     */
+    private static class ContextUrlVariable extends Variable
+    {
+        /**
+         * The value of the property for each thread.
+         */
+        private ThreadLocal values = new ThreadLocal();
+
+        /**
+         * {@inheritDoc}
+         * @see Variable#setValue(String)
+         */
+        public void setValue(String theValue)
+        {
+            this.values.set(theValue);
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see Variable#getValue()
+         */
+        public String getValue()
+        {
+            return (String) this.values.get();
+        }
+
+        /**
+         * {@inheritDoc}
+         * @see Variable#getContent()
+         */
+        public String getContent()
+        {
+            if ((getKey() == null) || (getValue() == null))
+            {
+                throw new BuildException(
+                    "key and value must be specified for environment "
+                    + "variables.");
+            }
+            return getKey().trim() + "=" + getValue().trim();
+        }
     }
 }
@@ -20,7 +20,7 @@
  */
 package org.apache.cactus.integration.ant;
 
-import org.apache.cactus.integration.ant.util.HttpProbe;
+import org.apache.cactus.container.ReadinessProbe;
 import org.apache.cactus.integration.api.deployable.DeployableFile;
 import org.apache.cactus.integration.api.deployable.EarParser;
 import org.apache.cactus.integration.api.deployable.WarParser;
@@ -291,13 +291,13 @@ public class CactusTestTask extends JUnitTask
                         + this.servletPort + "/"
                         + deployableFile.getTestContext()
                         + deployableFile.getServletRedirectorMapping()
-                        + "?Cactus_Service=RUN_TEST");
+                        + "?Cactus_Service=GET_VERSION");
             }
             else
             {
                 testURL = new URL(this.contextURL
                         + deployableFile.getServletRedirectorMapping()
-                        + "?Cactus_Service=RUN_TEST");
+                        + "?Cactus_Service=GET_VERSION");
             }
 
 
@@ -311,8 +311,10 @@ public class CactusTestTask extends JUnitTask
         // until a timeout is reached (we then throw a build exception).
         try
         {
-            HttpProbe httpProbe = new HttpProbe(testURL);
-            if (httpProbe.timeout(this.timeout, this.checkInterval))
+            ReadinessProbe probe = new ReadinessProbe(testURL);
+            probe.setMaxInterval(this.checkInterval);
+            long latency = probe.waitUntilAvailable(this.timeout);
+            if (latency < 0)
             {
                 throw new BuildException("Failed to start the container after "
                     + "more than [" + this.timeout + "] ms. Trying to connect "
@@ -320,15 +322,13 @@ public class CactusTestTask extends JUnitTask
                     + "error code. Please run in debug mode for more details  "
                     + "about the error.");
             }
+            log("Container ready after [" + latency + "] ms", 
+                Project.MSG_VERBOSE);
         }
         catch (InterruptedException ie)
         {
             throw new BuildException("Unexpected thread interruption");
         }
-        catch (IOException io)
-        {
-            throw new BuildException("Http reading exception");
-        }
 
         log("Starting up tests", Project.MSG_VERBOSE);
         try
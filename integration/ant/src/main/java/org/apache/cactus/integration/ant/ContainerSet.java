@@ -50,6 +50,21 @@ public class ContainerSet
      */
     private int proxyPort = -1;
 
+    /**
+     * Whether the containers are started and tested concurrently.
+     */
+    private boolean parallel;
+
+    /**
+     * The maximum number of containers tested concurrently. 
+     */
+    private int threadCount = -1;
+
+    /**
+     * Whether the containers are kept running across builds.
+     */
+    private boolean warm;
+
     // Public Methods ----------------------------------------------------------
 
     /**
@@ -131,4 +146,71 @@ public class ContainerSet
         this.proxyPort = theProxyPort;
     }
 
+    /**
+     * Returns whether the containers are started and tested concurrently.
+     * 
+     * @return <code>true</code> if the containers are tested concurrently
+     */
+    public final boolean isParallel()
+    {
+        return this.parallel;
+    }
+
+    /**
+     * Sets whether the containers are started and tested concurrently. The
+     * containers must then listen on distinct ports.
+     * 
+     * @param isParallel <code>true</code> to test the containers 
+     *        concurrently
+     */
+    public final void setParallel(boolean isParallel)
+    {
+        this.parallel = isParallel;
+    }
+
+    /**
+     * Returns the maximum number of containers tested concurrently, or 
+     * <code>-1</code> if all the containers are tested at the same time.
+     * 
+     * @return The maximum number of containers tested concurrently
+     */
+    public final int getThreadCount()
+    {
+        return this.threadCount;
+    }
+
+    /**
+     * Sets the maximum number of containers tested concurrently when 
+     * <code>parallel</code> is set.
+     * 
+     * @param theThreadCount The maximum number of containers tested 
+     *        concurrently
+     */
+    public final void setThreadCount(int theThreadCount)
+    {
+        this.threadCount = theThreadCount;
+    }
+
+    /**
+     * Returns whether the containers are kept running across builds.
+     * 
+     * @return <code>true</code> if the containers are kept running
+     */
+    public final boolean isWarm()
+    {
+        return this.warm;
+    }
+
+    /**
+     * Sets whether the containers are kept running across builds. A warm
+     * container is left running at the end of the tests and reused by the
+     * next build, unless the deployable has changed in between.
+     * 
+     * @param isWarm <code>true</code> to keep the containers running
+     */
+    public final void setWarm(boolean isWarm)
+    {
+        this.warm = isWarm;
+    }
+
 }
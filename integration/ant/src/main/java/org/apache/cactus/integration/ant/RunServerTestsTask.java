@@ -21,12 +21,15 @@
 package org.apache.cactus.integration.ant;
 
 import org.apache.cactus.container.ContainerRunner;
+import org.apache.cactus.container.WarmContainerState;
 import org.apache.cactus.integration.ant.container.GenericContainer;
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Task;
 import org.codehaus.cargo.util.DefaultAntTaskFactory;
 import org.codehaus.cargo.util.log.AntLogger;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 
 /**
@@ -51,6 +54,10 @@ import java.net.URL;
  *  Note: The stop target is called only if the server was not already running
  *  when this task was executed.</li>
  * </ul>
+ * When the <code>warm</code> attribute is set, the server is not stopped at
+ * the end of the tests but left running for the next build, which reuses it
+ * unless the archive given in the <code>warfile</code> attribute has changed
+ * in between.
  *
  * @since Cactus 1.5
  * @version $Id: RunServerTestsTask.java 239003 2004-05-31 20:05:27Z vmassol $
@@ -79,6 +86,17 @@ public class RunServerTestsTask extends Task
      * Timeout after which we stop trying to connect to the test URL (in ms).
      */
     private long timeout = 180000;
+
+    /**
+     * Whether the server is kept running across builds.
+     */
+    private boolean warm;
+
+    /**
+     * The archive run in a warm server, used to detect that the server must
+     * be restarted.
+     */
+    private File warFile;
     
     // Task Implementation -----------------------------------------------------
 
@@ -120,6 +138,24 @@ public class RunServerTestsTask extends Task
         runner.setLogger(new AntLogger(getProject()));
         runner.setURL(this.testURL);
         runner.setTimeout(this.timeout);
+        if (this.warm)
+        {
+            runner.setWarmStateFile(
+                WarmContainerState.getDefaultFile(this.testURL));
+            if (this.warFile != null)
+            {
+                try
+                {
+                    runner.setDeployableChecksum(
+                        WarmContainerState.checksum(this.warFile));
+                }
+                catch (IOException e)
+                {
+                    throw new BuildException("Failed to compute the checksum "
+                        + "of [" + this.warFile + "]", e);
+                }
+            }
+        }
         runner.startUpContainer();
         try
         {
@@ -244,4 +280,26 @@ public class RunServerTestsTask extends Task
         this.timeout = theTimeout;
     }
 
+    /**
+     * Sets whether the server is kept running across builds instead of
+     * being stopped at the end of the tests.
+     * 
+     * @param isWarm <code>true</code> to keep the server running
+     */
+    public void setWarm(boolean isWarm)
+    {
+        this.warm = isWarm;
+    }
+
+    /**
+     * Sets the archive run in a warm server. A warm server started with a
+     * different version of this archive is restarted.
+     * 
+     * @param theWarFile the archive deployed in the server
+     */
+    public void setWarFile(File theWarFile)
+    {
+        this.warFile = theWarFile;
+    }
+
 }
@@ -0,0 +1,245 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.integration.ant;
+
+import org.apache.tools.ant.taskdefs.optional.junit.JUnitTest;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * Splits a list of tests into shards that are run concurrently, each in its
+ * own forked JVM. The shards are balanced on the durations of the tests, as
+ * recorded in the XML reports of the previous run. Tests that have no report
+ * are given the average duration of the other tests.
+ *
+ * @version $Id$
+ */
+public class ShardPartitioner
+{
+    /**
+     * The number of shards to create.
+     */
+    private int shardCount;
+
+    /**
+     * The known test durations in milliseconds, keyed by test name.
+     */
+    private Map durations = new HashMap();
+
+    /**
+     * @param theShardCount the number of shards to create
+     */
+    public ShardPartitioner(int theShardCount)
+    {
+        if (theShardCount < 1)
+        {
+            throw new IllegalArgumentException(
+                "The number of shards must be at least 1");
+        }
+        this.shardCount = theShardCount;
+    }
+
+    /**
+     * Records the duration of a test.
+     *
+     * @param theTestName the name of the test
+     * @param theDuration the duration of the test in milliseconds
+     */
+    public void setDuration(String theTestName, long theDuration)
+    {
+        this.durations.put(theTestName, new Long(theDuration));
+    }
+
+    /**
+     * Records the duration of a test as read from the XML report of its
+     * previous run, if any.
+     *
+     * @param theTest the test
+     * @param theReportDir the directory holding the reports, or null for
+     *        the current directory
+     */
+    public void readDuration(JUnitTest theTest, File theReportDir)
+    {
+        String outfile = theTest.getOutfile();
+        if (outfile == null)
+        {
+            outfile = "TEST-" + theTest.getName();
+        }
+        long duration = readDuration(new File(theReportDir, outfile + ".xml"));
+        if (duration >= 0)
+        {
+            setDuration(theTest.getName(), duration);
+        }
+    }
+
+    /**
+     * Splits tests into shards, assigning the longest tests first, each to
+     * the shard that has the shortest total duration so far. Tests keep
+     * their relative order within a shard. Shards that would be empty are
+     * not returned.
+     *
+     * @param theTests the tests to split, as <code>JUnitTest</code> objects
+     * @return the shards, as lists of <code>JUnitTest</code> objects
+     */
+    public List partition(List theTests)
+    {
+        final Map estimates = new HashMap();
+        Long average = new Long(getAverageDuration());
+        for (int i = 0; i < theTests.size(); i++)
+        {
+            JUnitTest test = (JUnitTest) theTests.get(i);
+            Long duration = (Long) this.durations.get(test.getName());
+            estimates.put(test, (duration == null) ? average : duration);
+        }
+
+        List sorted = new ArrayList(theTests);
+        Collections.sort(sorted, new Comparator()
+        {
+            public int compare(Object theFirst, Object theSecond)
+            {
+                long first = ((Long) estimates.get(theFirst)).longValue();
+                long second = ((Long) estimates.get(theSecond)).longValue();
+                return (first > second) ? -1 : ((first == second) ? 0 : 1);
+            }
+        });
+
+        int count = Math.min(this.shardCount, theTests.size());
+        long[] loads = new long[count];
+        Map assignments = new HashMap();
+        for (int i = 0; i < sorted.size(); i++)
+        {
+            int lightest = 0;
+            for (int j = 1; j < count; j++)
+            {
+                if (loads[j] < loads[lightest])
+                {
+                    lightest = j;
+                }
+            }
+            Object test = sorted.get(i);
+            loads[lightest] += ((Long) estimates.get(test)).longValue();
+            assignments.put(test, new Integer(lightest));
+        }
+
+        List shards = new ArrayList();
+        for (int i = 0; i < count; i++)
+        {
+            shards.add(new ArrayList());
+        }
+        for (int i = 0; i < theTests.size(); i++)
+        {
+            Object test = theTests.get(i);
+            int shard = ((Integer) assignments.get(test)).intValue();
+            ((List) shards.get(shard)).add(test);
+        }
+        return shards;
+    }
+
+    /**
+     * @return the average of the known test durations, or 1 if no duration
+     *         is known
+     */
+    private long getAverageDuration()
+    {
+        if (this.durations.isEmpty())
+        {
+            return 1;
+        }
+        long total = 0;
+        Iterator values = this.durations.values().iterator();
+        while (values.hasNext())
+        {
+            total += ((Long) values.next()).longValue();
+        }
+        return Math.max(1, total / this.durations.size());
+    }
+
+    /**
+     * Reads the duration of a test from the <code>time</code> attribute of
+     * the root element of its XML report. Only the root element is parsed.
+     *
+     * @param theReport the XML report
+     * @return the duration in milliseconds or -1 if the report does not
+     *         exist or cannot be read
+     */
+    static long readDuration(File theReport)
+    {
+        if (!theReport.isFile())
+        {
+            return -1;
+        }
+
+        final String[] time = new String[1];
+        try
+        {
+            SAXParserFactory.newInstance().newSAXParser().parse(theReport,
+                new DefaultHandler()
+                {
+                    public void startElement(String theUri,
+                        String theLocalName, String theQName,
+                        Attributes theAttributes) throws SAXException
+                    {
+                        time[0] = theAttributes.getValue("time");
+                        throw new SAXException("Root element read");
+                    }
+                });
+        }
+        catch (SAXException e)
+        {
+            // Expected as parsing stops at the root element
+        }
+        catch (ParserConfigurationException e)
+        {
+            return -1;
+        }
+        catch (IOException e)
+        {
+            return -1;
+        }
+
+        if (time[0] == null)
+        {
+            return -1;
+        }
+        try
+        {
+            return (long) (Double.parseDouble(time[0]) * 1000);
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+}
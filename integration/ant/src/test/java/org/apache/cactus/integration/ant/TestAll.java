@@ -43,6 +43,7 @@ public final class TestAll
 
         suite.addTestSuite(TestCactifyWarTask.class);
         suite.addTestSuite(TestCactusTestTask.class);
+        suite.addTestSuite(TestShardPartitioner.class);
         //suite.addTestSuite(TestRunServerTestsTask.class);
 
         return suite;
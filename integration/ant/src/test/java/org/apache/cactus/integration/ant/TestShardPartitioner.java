@@ -0,0 +1,152 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.integration.ant;
+
+import junit.framework.TestCase;
+
+import org.apache.tools.ant.taskdefs.optional.junit.JUnitTest;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for {@link ShardPartitioner}.
+ *
+ * @version $Id$
+ */
+public final class TestShardPartitioner extends TestCase
+{
+    /**
+     * Verifies that the tests are balanced on their durations.
+     */
+    public void testPartitionBalancesDurations()
+    {
+        ShardPartitioner partitioner = new ShardPartitioner(2);
+        partitioner.setDuration("A", 100);
+        partitioner.setDuration("B", 60);
+        partitioner.setDuration("C", 40);
+        partitioner.setDuration("D", 10);
+
+        List shards = partitioner.partition(createTests("A,B,C,D"));
+
+        assertEquals(2, shards.size());
+        assertEquals("A,D", getNames((List) shards.get(0)));
+        assertEquals("B,C", getNames((List) shards.get(1)));
+    }
+
+    /**
+     * Verifies that tests without a known duration are spread across the
+     * shards and keep their order within each shard.
+     */
+    public void testPartitionWithoutDurations()
+    {
+        ShardPartitioner partitioner = new ShardPartitioner(2);
+
+        List shards = partitioner.partition(createTests("A,B,C,D"));
+
+        assertEquals(2, shards.size());
+        assertEquals(2, ((List) shards.get(0)).size());
+        assertEquals(2, ((List) shards.get(1)).size());
+    }
+
+    /**
+     * Verifies that no empty shard is created when there are fewer tests
+     * than shards.
+     */
+    public void testPartitionWithFewerTestsThanShards()
+    {
+        ShardPartitioner partitioner = new ShardPartitioner(4);
+
+        List shards = partitioner.partition(createTests("A,B"));
+
+        assertEquals(2, shards.size());
+    }
+
+    /**
+     * Verifies that the duration of a test is read from its XML report.
+     * 
+     * @throws IOException if the report cannot be written
+     */
+    public void testReadDurationFromReport() throws IOException
+    {
+        File report = File.createTempFile("TEST-", ".xml");
+        try
+        {
+            Writer writer = new FileWriter(report);
+            writer.write("<?xml version=\"1.0\"?><testsuite name=\"A\" "
+                + "tests=\"1\" time=\"1.25\"><testcase name=\"testA\"/>"
+                + "</testsuite>");
+            writer.close();
+
+            assertEquals(1250, ShardPartitioner.readDuration(report));
+        }
+        finally
+        {
+            report.delete();
+        }
+    }
+
+    /**
+     * Verifies that a missing report yields no duration.
+     */
+    public void testReadDurationWithoutReport()
+    {
+        assertEquals(-1, ShardPartitioner.readDuration(
+            new File("does-not-exist.xml")));
+    }
+
+    /**
+     * @param theNames comma separated test names
+     * @return the tests
+     */
+    private List createTests(String theNames)
+    {
+        List tests = new ArrayList();
+        String[] names = theNames.split(",");
+        for (int i = 0; i < names.length; i++)
+        {
+            tests.add(new JUnitTest(names[i]));
+        }
+        return tests;
+    }
+
+    /**
+     * @param theTests the tests
+     * @return the comma separated test names
+     */
+    private String getNames(List theTests)
+    {
+        StringBuffer names = new StringBuffer();
+        for (int i = 0; i < theTests.size(); i++)
+        {
+            if (i > 0)
+            {
+                names.append(",");
+            }
+            names.append(((JUnitTest) theTests.get(i)).getName());
+        }
+        return names.toString();
+    }
+}
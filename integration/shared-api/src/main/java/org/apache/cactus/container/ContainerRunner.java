@@ -23,6 +23,7 @@ package org.apache.cactus.container;
 import org.apache.cactus.integration.api.exceptions.CactusRuntimeException;
 import org.codehaus.cargo.util.log.Logger;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
@@ -57,20 +58,33 @@ public final class ContainerRunner
     private long timeout = 180000;
 
     /**
-     * The time interval in milliseconds to sleep between polling the container.
+     * The maximum time interval in milliseconds to sleep between polling the
+     * container.
      */
-    private long checkInterval = 500;
+    private long checkInterval = ReadinessProbe.DEFAULT_MAX_INTERVAL;
 
     /**
      * The time to sleep after the container has shut down. 
      */
-    private long shutDownWait = 2000;
+    private long shutDownWait = 0;
 
     /**
      * Whether the container had already been running before.
      */
     private boolean alreadyRunning;
 
+    /**
+     * The lock file recording the state of a container kept running across
+     * builds, or null if the container is stopped at the end of the run.
+     */
+    private File warmStateFile;
+
+    /**
+     * The checksum of the deployable to run in a warm container, or null if
+     * unknown.
+     */
+    private String deployableChecksum;
+
     /**
      * The server name as returned in the 'Server' header of the server's
      * HTTP response.
@@ -126,13 +140,20 @@ public final class ContainerRunner
 
         // Try connecting in case the server is already running. If so, does
         // nothing
-        this.alreadyRunning = isAvailable(testConnectivity(this.testURL));
+        ReadinessProbe probe = createProbe();
+        this.alreadyRunning = ReadinessProbe.isAvailable(probe.probe());
+        if (this.warmStateFile != null)
+        {
+            this.alreadyRunning = reuseWarmContainer(probe, 
+                this.alreadyRunning);
+        }
         if (this.alreadyRunning)
         {
             // Server is already running. Record this information so that we
             // don't stop it afterwards.
             this.logger.debug("Server is already running",
                 getClass().toString());
+            this.serverName = probe.getServerName();
             return;
         }
 
@@ -146,32 +167,45 @@ public final class ContainerRunner
         });
         thread.start();
 
-        // Continuously try calling the test URL until it succeeds or
+        // Call the test URL, more and more rarely, until it succeeds or
         // until a timeout is reached (we then throw a build exception).
-        long startTime = System.currentTimeMillis();
-        int responseCode = -1;
-        do
+        long latency;
+        try
         {
-            if ((System.currentTimeMillis() - startTime) > this.timeout)
-            {
-                throw new CactusRuntimeException("Failed to start the container after "
-                    + "more than [" + this.timeout + "] ms. Trying to connect "
-                    + "to the [" + this.testURL + "] test URL yielded a ["
-                    + responseCode + "] error code. Please run in debug mode "
-                    + "for more details about the error.");
-            }
-            sleep(this.checkInterval);
-            this.logger.debug("Checking if server is up ...",
-                getClass().toString());
-            responseCode = testConnectivity(this.testURL);
-        } while (!isAvailable(responseCode));
+            latency = probe.waitUntilAvailable(this.timeout);
+        }
+        catch (InterruptedException e)
+        {
+            throw new CactusRuntimeException("Interruption during sleep", e);
+        }
+        if (latency < 0)
+        {
+            int responseCode = probe.probe();
+            throw new CactusRuntimeException("Failed to start the container "
+                + "after more than [" + this.timeout + "] ms. Trying to connect "
+                + "to the [" + this.testURL + "] test URL yielded a ["
+                + responseCode + "] error code. Please run in debug mode "
+                + "for more details about the error.");
+        }
 
-        // Wait a few ms more (just to be sure !)
-        sleep(this.containerWrapper.getStartUpWait());
+        // Wait a few ms more if the container asks for it
+        if (this.containerWrapper.getStartUpWait() > 0)
+        {
+            sleep(this.containerWrapper.getStartUpWait());
+        }
 
-        this.serverName = retrieveServerName(this.testURL);
-        this.logger.info("Server [" + this.serverName + "] started",
-            getClass().toString());
+        this.serverName = probe.getServerName();
+        this.logger.info("Server [" + this.serverName + "] started in ["
+            + latency + "] ms", getClass().toString());
+        if (this.warmStateFile != null)
+        {
+            writeWarmState();
+        }
+        if ((probe.getContent() != null) && (probe.getContent().length() > 0))
+        {
+            this.logger.debug("Test URL returned [" + probe.getContent() 
+                + "]", getClass().toString());
+        }
     }
 
     /**
@@ -195,7 +229,26 @@ public final class ContainerRunner
             return;
         }
         
-        if (!isAvailable(testConnectivity(this.testURL)))
+        // Keep a warm container running for the next build
+        if (this.warmStateFile != null)
+        {
+            this.logger.info("Leaving warm container running on port ["
+                + getTestPort() + "]", getClass().toString());
+            return;
+        }
+
+        stopContainer(createProbe());
+    }
+
+    /**
+     * Stops the container, in another thread, and waits until it stops
+     * listening.
+     * 
+     * @param theProbe the probe of the test URL
+     */
+    private void stopContainer(ReadinessProbe theProbe)
+    {
+        if (!ReadinessProbe.isAvailable(theProbe.probe()))
         {
             this.logger.debug("Server isn't running!", getClass().toString());
             return;
@@ -212,20 +265,36 @@ public final class ContainerRunner
         });
         thread.start();
 
-        // Continuously try calling the test URL until it fails
-        do 
+        // Wait, more and more rarely, until the container stops listening
+        long latency;
+        try
+        {
+            latency = theProbe.waitUntilClosed(this.timeout);
+        }
+        catch (InterruptedException e)
+        {
+            throw new CactusRuntimeException("Interruption during sleep", e);
+        }
+        if (latency < 0)
         {
-            sleep(this.checkInterval);
-        } while (isAvailable(testConnectivity(this.testURL)));
+            this.logger.warn("Server still listening after more than ["
+                + this.timeout + "] ms", getClass().toString());
+        }
 
-        // sleep a bit longer to be sure the container has terminated
-        sleep(this.shutDownWait);
+        // sleep a bit longer if asked to be sure the container has terminated
+        if (this.shutDownWait > 0)
+        {
+            sleep(this.shutDownWait);
+        }
         
-        this.logger.debug("Server stopped!", getClass().toString());
+        this.logger.debug("Server stopped in [" + latency + "] ms", 
+            getClass().toString());
     }
 
     /**
-     * Sets the time interval to sleep between polling the container. 
+     * Sets the maximum time interval to sleep between polling the container.
+     * The container is first polled after a few milliseconds, then the 
+     * interval is doubled after each poll until it reaches this maximum.
      * 
      * The default interval is 500 milliseconds.
      * 
@@ -236,6 +305,34 @@ public final class ContainerRunner
         this.checkInterval = theCheckInterval;
     }
 
+    /**
+     * Keeps the container running across builds. The state of the started
+     * container is recorded in the given lock file so that a later run
+     * reuses the running container instead of starting a new one, unless
+     * the deployable has changed in between.
+     * 
+     * @param theWarmStateFile The lock file, or null to stop the container
+     *        at the end of the run
+     */
+    public void setWarmStateFile(File theWarmStateFile)
+    {
+        this.warmStateFile = theWarmStateFile;
+    }
+
+    /**
+     * Sets the checksum of the deployable run in a warm container. A warm
+     * container that has been started with a different deployable is
+     * restarted.
+     * 
+     * @param theDeployableChecksum The checksum, or null if there is no
+     *        deployable to compare
+     * @see WarmContainerState#checksum(File)
+     */
+    public void setDeployableChecksum(String theDeployableChecksum)
+    {
+        this.deployableChecksum = theDeployableChecksum;
+    }
+
     /**
      * Sets the log to write to.
      *  
@@ -247,9 +344,10 @@ public final class ContainerRunner
     }
 
     /**
-     * Sets the time to wait after the container has been shut down.
+     * Sets the time to wait after the container has stopped listening on its
+     * port.
      * 
-     * The default time is 2 seconds.
+     * The default is not to wait.
      * 
      * @param theShutDownWait The time to wait in milliseconds
      */
@@ -289,84 +387,121 @@ public final class ContainerRunner
     // Private Methods ---------------------------------------------------------
 
     /**
-     * Tests whether we are able to connect to the HTTP server identified by the
-     * specified URL.
+     * Decides whether the running container can be reused as a warm
+     * container. A container started with the same deployable is reused; 
+     * one started by this build process with another deployable is stopped
+     * so that it gets started again with the new one. A container that is
+     * not recorded in the lock file has not been started by us and is left
+     * alone. A container recorded in the lock file with another deployable
+     * but started by another build is never stopped, as we cannot tell that
+     * it is still the container we started.
      * 
-     * @param theUrl The URL to check
-     * @return the HTTP response code or -1 if no connection could be 
-     *         established
+     * @param theProbe the probe of the test URL
+     * @param isRunning whether the test URL is available
+     * @return true if the running container is to be reused, false if a
+     *         container is to be started
+     * @throws CactusRuntimeException if a container that may not have been
+     *         started by us runs another deployable
      */
-    public int testConnectivity(URL theUrl)
+    private boolean reuseWarmContainer(ReadinessProbe theProbe, 
+        boolean isRunning)
     {
-        int code;
-        try
+        int decision = WarmContainerState.decide(this.warmStateFile, 
+            isRunning, getTestPort(), this.deployableChecksum);
+        if (decision == WarmContainerState.START)
         {
-            HttpURLConnection connection = 
-                (HttpURLConnection) theUrl.openConnection();
-            connection.setRequestProperty("Connection", "close");
-            connection.connect();
-            readFully(connection);
-            connection.disconnect();
-            code = connection.getResponseCode();
+            return false;
         }
-        catch (IOException e)
+        if (decision == WarmContainerState.REUSE)
         {
-            this.logger.debug("Failed to connect to [" + theUrl + "]",
-                 e.getMessage());
-            code = -1;
+            this.logger.info("Reusing running container on port [" 
+                + getTestPort() + "]", getClass().toString());
+            return true;
+        }
+        if (decision == WarmContainerState.RESTART)
+        {
+            this.logger.info("Deployable has changed, restarting warm "
+                + "container on port [" + getTestPort() + "]", 
+                getClass().toString());
+            stopContainer(theProbe);
+            return false;
         }
-        return code;
-    }
 
+        throw new CactusRuntimeException("The deployable has changed since "
+            + "the container running on port [" + getTestPort() + "] was "
+            + "started by another build. Stop this container and run the "
+            + "build again.");
+    }
 
     /**
-     * Tests whether an HTTP return code corresponds to a valid connection
-     * to the test URL or not. Success is 200 up to but excluding 300.
-     * 
-     * @param theCode the HTTP response code to verify
-     * @return <code>true</code> if the test URL could be called without error,
-     *         <code>false</code> otherwise
+     * Records the state of the started container in the lock file.
      */
-    private boolean isAvailable(int theCode)
+    private void writeWarmState()
     {
-        boolean result;
-        if ((theCode != -1) && (theCode < 300)) 
+        WarmContainerState state = new WarmContainerState(getTestPort(),
+            this.deployableChecksum);
+        try
         {
-            result = true;            
+            state.write(this.warmStateFile);
         }
-        else
+        catch (IOException e)
         {
-            result = false;
+            this.logger.warn("Failed to write warm container state to ["
+                + this.warmStateFile + "]: " + e.getMessage(),
+                getClass().toString());
         }
-        return result;
     }
 
     /**
-     * Retrieves the server name of the container.
+     * @return the port of the test URL
+     */
+    private int getTestPort()
+    {
+        return (this.testURL.getPort() == -1)
+            ? this.testURL.getDefaultPort() : this.testURL.getPort();
+    }
+
+    /**
+     * @return a probe of the test URL
+     */
+    private ReadinessProbe createProbe()
+    {
+        ReadinessProbe probe = new ReadinessProbe(this.testURL);
+        probe.setMaxInterval(this.checkInterval);
+        return probe;
+    }
+
+    /**
+     * Tests whether we are able to connect to the HTTP server identified by the
+     * specified URL.
      * 
-     * @param theUrl The URL to retrieve
-     * @return The server name, or <code>null</code> if the server name could 
-     *         not be retrieved
+     * @param theUrl The URL to check
+     * @return the HTTP response code or -1 if no connection could be 
+     *         established
      */
-    private String retrieveServerName(URL theUrl)
+    public int testConnectivity(URL theUrl)
     {
-        String retVal = null;
+        int code;
         try
         {
             HttpURLConnection connection = 
                 (HttpURLConnection) theUrl.openConnection();
+            connection.setRequestProperty("Connection", "close");
             connection.connect();
-            retVal = connection.getHeaderField("Server");
+            readFully(connection);
             connection.disconnect();
+            code = connection.getResponseCode();
         }
         catch (IOException e)
         {
-            this.logger.debug("Could not get server name from [" 
-                + theUrl + "]", e.getMessage());
+            this.logger.debug("Failed to connect to [" + theUrl + "]",
+                 e.getMessage());
+            code = -1;
         }
-        return retVal;
+        return code;
     }
 
+
     /**
      * Fully reads the input stream from the passed HTTP URL connection to
      * prevent (harmless) server-side exception.
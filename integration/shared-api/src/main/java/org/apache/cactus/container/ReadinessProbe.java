@@ -0,0 +1,328 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.container;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+
+/**
+ * Probes a URL to find out when a container has finished starting up or
+ * shutting down. Probes are retried with an exponential backoff, starting
+ * with a few milliseconds, so that a container that is quick to start is
+ * detected as soon as it is ready. Before sending an HTTP request, a cheap
+ * TCP connection is attempted to check whether the container is listening
+ * at all.
+ * 
+ * @version $Id$
+ */
+public final class ReadinessProbe
+{
+    // Constants ---------------------------------------------------------------
+
+    /**
+     * The default time in milliseconds to wait before the second probe.
+     */
+    public static final long DEFAULT_INITIAL_INTERVAL = 10;
+
+    /**
+     * The default maximum time in milliseconds to wait between two probes.
+     */
+    public static final long DEFAULT_MAX_INTERVAL = 500;
+
+    /**
+     * The timeout in milliseconds of the TCP connection pre-check.
+     */
+    private static final int CONNECT_TIMEOUT = 1000;
+
+    // Instance Variables ------------------------------------------------------
+
+    /**
+     * The URL to probe.
+     */
+    private URL url;
+
+    /**
+     * The time in milliseconds to wait before the second probe.
+     */
+    private long initialInterval = DEFAULT_INITIAL_INTERVAL;
+
+    /**
+     * The maximum time in milliseconds to wait between two probes.
+     */
+    private long maxInterval = DEFAULT_MAX_INTERVAL;
+
+    /**
+     * The server name as returned in the 'Server' header of the last 
+     * successful HTTP response.
+     */
+    private String serverName;
+
+    /**
+     * The body of the last successful HTTP response.
+     */
+    private String content;
+
+    // Constructors ------------------------------------------------------------
+
+    /**
+     * Constructor.
+     * 
+     * @param theUrl The HTTP/HTTPS URL to probe
+     */
+    public ReadinessProbe(URL theUrl)
+    {
+        this.url = theUrl;
+    }
+
+    // Public Methods ----------------------------------------------------------
+
+    /**
+     * Sets the time to wait before the second probe. The wait is then 
+     * doubled after each probe.
+     * 
+     * @param theInitialInterval The interval in milliseconds
+     */
+    public void setInitialInterval(long theInitialInterval)
+    {
+        this.initialInterval = theInitialInterval;
+    }
+
+    /**
+     * Sets the maximum time to wait between two probes.
+     * 
+     * @param theMaxInterval The interval in milliseconds
+     */
+    public void setMaxInterval(long theMaxInterval)
+    {
+        this.maxInterval = theMaxInterval;
+    }
+
+    /**
+     * @return The server name as returned in the 'Server' header of the last
+     *         successful HTTP response, or <code>null</code> if there is none
+     */
+    public String getServerName()
+    {
+        return this.serverName;
+    }
+
+    /**
+     * @return The body of the last successful HTTP response, or 
+     *         <code>null</code> if there is none
+     */
+    public String getContent()
+    {
+        return this.content;
+    }
+
+    /**
+     * Waits until the URL can be called without error.
+     * 
+     * @param theTimeout The time in milliseconds after which to give up
+     * @return The time in milliseconds it took for the URL to become 
+     *         available, or <code>-1</code> if the timeout was reached
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    public long waitUntilAvailable(long theTimeout) 
+        throws InterruptedException
+    {
+        long startTime = System.currentTimeMillis();
+        long interval = this.initialInterval;
+        while (!isAvailable(probe()))
+        {
+            interval = pause(startTime, theTimeout, interval);
+            if (interval < 0)
+            {
+                return -1;
+            }
+        }
+        return System.currentTimeMillis() - startTime;
+    }
+
+    /**
+     * Waits until nothing listens on the host and port of the URL anymore.
+     * 
+     * @param theTimeout The time in milliseconds after which to give up
+     * @return The time in milliseconds it took for the port to be closed, or
+     *         <code>-1</code> if the timeout was reached
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    public long waitUntilClosed(long theTimeout) throws InterruptedException
+    {
+        long startTime = System.currentTimeMillis();
+        long interval = this.initialInterval;
+        while (isListening())
+        {
+            interval = pause(startTime, theTimeout, interval);
+            if (interval < 0)
+            {
+                return -1;
+            }
+        }
+        return System.currentTimeMillis() - startTime;
+    }
+
+    /**
+     * Calls the URL once. The HTTP request is only sent if something
+     * listens on the host and port of the URL.
+     * 
+     * @return The HTTP response code or <code>-1</code> if no connection 
+     *         could be established
+     */
+    public int probe()
+    {
+        if (!isListening())
+        {
+            return -1;
+        }
+
+        int code;
+        try
+        {
+            HttpURLConnection connection = 
+                (HttpURLConnection) this.url.openConnection();
+            connection.setRequestProperty("Connection", "close");
+            connection.connect();
+            code = connection.getResponseCode();
+            if (isAvailable(code))
+            {
+                this.serverName = connection.getHeaderField("Server");
+                this.content = readFully(connection);
+            }
+            connection.disconnect();
+        }
+        catch (IOException e)
+        {
+            code = -1;
+        }
+        return code;
+    }
+
+    /**
+     * Tests whether something listens on the host and port of the URL.
+     * 
+     * @return <code>true</code> if a TCP connection could be established
+     */
+    public boolean isListening()
+    {
+        int port = this.url.getPort();
+        if (port == -1)
+        {
+            port = this.url.getDefaultPort();
+        }
+
+        Socket socket = new Socket();
+        try
+        {
+            socket.connect(new InetSocketAddress(this.url.getHost(), port),
+                CONNECT_TIMEOUT);
+            return true;
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+        finally
+        {
+            try
+            {
+                socket.close();
+            }
+            catch (IOException e)
+            {
+                // Nothing we can do about it
+            }
+        }
+    }
+
+    /**
+     * Tests whether an HTTP return code corresponds to a valid connection
+     * to the test URL or not. Success is 200 up to but excluding 300.
+     * 
+     * @param theCode the HTTP response code to verify
+     * @return <code>true</code> if the test URL could be called without error,
+     *         <code>false</code> otherwise
+     */
+    public static boolean isAvailable(int theCode)
+    {
+        return (theCode != -1) && (theCode < 300);
+    }
+
+    // Private Methods ---------------------------------------------------------
+
+    /**
+     * Waits before the next probe, without going past the timeout.
+     * 
+     * @param theStartTime The time at which the wait started
+     * @param theTimeout The time in milliseconds after which to give up
+     * @param theInterval The time in milliseconds to wait
+     * @return The time to wait before the probe after the next one, or 
+     *         <code>-1</code> if the timeout has been reached
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    private long pause(long theStartTime, long theTimeout, long theInterval)
+        throws InterruptedException
+    {
+        long remaining = 
+            theTimeout - (System.currentTimeMillis() - theStartTime);
+        if (remaining <= 0)
+        {
+            return -1;
+        }
+        Thread.sleep(Math.min(theInterval, remaining));
+        return Math.min(theInterval * 2, this.maxInterval);
+    }
+
+    /**
+     * Fully reads the input stream from the passed HTTP URL connection to
+     * prevent (harmless) server-side exception.
+     *
+     * @param theConnection the HTTP URL connection to read from
+     * @return the body of the response
+     * @exception IOException if an error happens during the read
+     */
+    private static String readFully(HttpURLConnection theConnection)
+        throws IOException
+    {
+        // Only read if there is data to read ... The problem is that not
+        // all servers return a content-length header. If there is no header
+        // getContentLength() returns -1. It seems to work and it seems
+        // that all servers that return no content-length header also do
+        // not block on read() operations!
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (theConnection.getContentLength() != 0)
+        {
+            byte[] buf = new byte[256];
+            InputStream in = theConnection.getInputStream();
+            int length;
+            while ((length = in.read(buf)) != -1)
+            {
+                body.write(buf, 0, length);
+            }
+        }
+        return body.toString("UTF-8");
+    }
+}
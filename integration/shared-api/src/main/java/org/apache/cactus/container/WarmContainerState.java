@@ -0,0 +1,409 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.container;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * State of a container that is kept running across builds. The state is
+ * persisted in a lock file holding the identity of the build process that
+ * started the container, the port it listens on and the checksum of the
+ * deployable that was deployed in it, so that a later run can decide whether
+ * the running container can be reused as is or needs to be restarted with a
+ * new deployable.
+ *
+ * Nothing tells for sure that the container listening on the port is the
+ * one recorded in the lock file: it may have died and another server may
+ * have been started on the same port since. A container is therefore only
+ * stopped when it has been started by the current build process, which is
+ * identified by its process id and its start time.
+ *
+ * @version $Id$
+ */
+public class WarmContainerState
+{
+    /**
+     * Decision to start a new container, as nothing is running.
+     */
+    public static final int START = 0;
+
+    /**
+     * Decision to reuse the running container as is.
+     */
+    public static final int REUSE = 1;
+
+    /**
+     * Decision to stop the running container, started by the current build
+     * process with another deployable, and to start it again.
+     */
+    public static final int RESTART = 2;
+
+    /**
+     * Decision not to touch the running container, which runs another
+     * deployable but has not been started by the current build process.
+     */
+    public static final int CONFLICT = 3;
+
+    /**
+     * Name of the property holding the id of the process that started the
+     * container.
+     */
+    private static final String PID = "pid";
+
+    /**
+     * Name of the property holding the start time of the process that
+     * started the container.
+     */
+    private static final String PROCESS_STARTED = "processStarted";
+
+    /**
+     * Name of the property holding the port the container listens on.
+     */
+    private static final String PORT = "port";
+
+    /**
+     * Name of the property holding the checksum of the deployed archive.
+     */
+    private static final String CHECKSUM = "checksum";
+
+    /**
+     * Name of the property holding the container start time.
+     */
+    private static final String STARTED = "started";
+
+    /**
+     * Id of the process that started the container.
+     */
+    private String pid;
+
+    /**
+     * Time (in ms) at which the process that started the container was
+     * started.
+     */
+    private long processStartTime;
+
+    /**
+     * Port the container listens on.
+     */
+    private int port;
+
+    /**
+     * Checksum of the deployed archive, or null if unknown.
+     */
+    private String checksum;
+
+    /**
+     * Time (in ms) at which the container was started.
+     */
+    private long startTime;
+
+    /**
+     * @param thePort the port the container listens on
+     * @param theChecksum the checksum of the deployed archive, may be null
+     */
+    public WarmContainerState(int thePort, String theChecksum)
+    {
+        this(getCurrentPid(), getCurrentProcessStartTime(), thePort,
+            theChecksum, System.currentTimeMillis());
+    }
+
+    /**
+     * @param thePid the id of the process that started the container
+     * @param theProcessStartTime the time (in ms) at which the process that
+     *        started the container was started
+     * @param thePort the port the container listens on
+     * @param theChecksum the checksum of the deployed archive, may be null
+     * @param theStartTime the time (in ms) at which the container was
+     *        started
+     */
+    private WarmContainerState(String thePid, long theProcessStartTime,
+        int thePort, String theChecksum, long theStartTime)
+    {
+        this.pid = thePid;
+        this.processStartTime = theProcessStartTime;
+        this.port = thePort;
+        this.checksum = theChecksum;
+        this.startTime = theStartTime;
+    }
+
+    /**
+     * @return the id of the process that started the container
+     */
+    public String getPid()
+    {
+        return this.pid;
+    }
+
+    /**
+     * @return the port the container listens on
+     */
+    public int getPort()
+    {
+        return this.port;
+    }
+
+    /**
+     * @return the checksum of the deployed archive, or null if unknown
+     */
+    public String getChecksum()
+    {
+        return this.checksum;
+    }
+
+    /**
+     * @return the time (in ms) at which the container was started
+     */
+    public long getStartTime()
+    {
+        return this.startTime;
+    }
+
+    /**
+     * @return true if the container has been started by the current
+     *         process, false if it has been started by another build
+     */
+    public boolean isStartedByCurrentProcess()
+    {
+        return getCurrentPid().equals(this.pid)
+            && (getCurrentProcessStartTime() == this.processStartTime);
+    }
+
+    /**
+     * Tells whether the running container described by this state can be
+     * reused for a deployable of the given checksum.
+     *
+     * @param thePort the port the container is expected to listen on
+     * @param theChecksum the checksum of the archive to deploy, or null if
+     *        there is no archive to compare
+     * @return true if the container can be reused as is
+     */
+    public boolean matches(int thePort, String theChecksum)
+    {
+        if (this.port != thePort)
+        {
+            return false;
+        }
+        if (theChecksum == null)
+        {
+            return true;
+        }
+        return theChecksum.equals(this.checksum);
+    }
+
+    /**
+     * Writes this state to a lock file.
+     *
+     * @param theFile the lock file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(File theFile) throws IOException
+    {
+        Properties properties = new Properties();
+        properties.setProperty(PID, this.pid);
+        properties.setProperty(PROCESS_STARTED,
+            String.valueOf(this.processStartTime));
+        properties.setProperty(PORT, String.valueOf(this.port));
+        if (this.checksum != null)
+        {
+            properties.setProperty(CHECKSUM, this.checksum);
+        }
+        properties.setProperty(STARTED, String.valueOf(this.startTime));
+
+        OutputStream out = new FileOutputStream(theFile);
+        try
+        {
+            properties.store(out, "Cactus warm container");
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads a state from a lock file.
+     *
+     * @param theFile the lock file
+     * @return the state or null if the file does not exist or cannot be
+     *         understood
+     */
+    public static WarmContainerState read(File theFile)
+    {
+        if (!theFile.isFile())
+        {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try
+        {
+            InputStream in = new FileInputStream(theFile);
+            try
+            {
+                properties.load(in);
+            }
+            finally
+            {
+                in.close();
+            }
+            return new WarmContainerState(properties.getProperty(PID),
+                Long.parseLong(properties.getProperty(PROCESS_STARTED, "0")),
+                Integer.parseInt(properties.getProperty(PORT)),
+                properties.getProperty(CHECKSUM),
+                Long.parseLong(properties.getProperty(STARTED, "0")));
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Decides what to do with the container recorded in a lock file. The
+     * lock file is deleted when nothing is running on the port any more
+     * and when the container is to be restarted.
+     *
+     * @param theFile the lock file
+     * @param isRunning whether a server answers on the port of the container
+     * @param thePort the port the container is expected to listen on
+     * @param theChecksum the checksum of the archive to deploy, or null if
+     *        there is no archive to compare
+     * @return {@link #START}, {@link #REUSE}, {@link #RESTART} or
+     *         {@link #CONFLICT}
+     */
+    public static int decide(File theFile, boolean isRunning, int thePort,
+        String theChecksum)
+    {
+        if (!isRunning)
+        {
+            // Whatever the lock file says, its container is gone
+            theFile.delete();
+            return START;
+        }
+
+        WarmContainerState state = read(theFile);
+        if ((state == null) || state.matches(thePort, theChecksum))
+        {
+            // A server not recorded in the lock file has not been started 
+            // by us and is used as is, as when it is not a warm container
+            return REUSE;
+        }
+        if (state.isStartedByCurrentProcess())
+        {
+            theFile.delete();
+            return RESTART;
+        }
+        return CONFLICT;
+    }
+
+    /**
+     * Returns the default lock file for a container reached through the
+     * given URL. There is one lock file per host and port, stored in the
+     * temporary directory.
+     *
+     * @param theUrl the URL used to reach the container
+     * @return the lock file
+     */
+    public static File getDefaultFile(URL theUrl)
+    {
+        int port = (theUrl.getPort() == -1)
+            ? theUrl.getDefaultPort() : theUrl.getPort();
+        return new File(System.getProperty("java.io.tmpdir"),
+            "cactus-" + theUrl.getHost() + "-" + port + ".lock");
+    }
+
+    /**
+     * Computes the checksum of a file, reading it by chunks.
+     *
+     * @param theFile the file to compute the checksum of
+     * @return the hexadecimal SHA-1 checksum of the file content
+     * @throws IOException if the file cannot be read
+     */
+    public static String checksum(File theFile) throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException("SHA-1 is not supported: "
+                + e.getMessage());
+        }
+
+        byte[] buffer = new byte[8192];
+        InputStream in = new FileInputStream(theFile);
+        try
+        {
+            int length;
+            while ((length = in.read(buffer)) != -1)
+            {
+                digest.update(buffer, 0, length);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+
+        StringBuffer hex = new StringBuffer();
+        byte[] bytes = digest.digest();
+        for (int i = 0; i < bytes.length; i++)
+        {
+            hex.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(bytes[i] & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * @return the id of the current process, as far as the JVM tells it
+     */
+    private static String getCurrentPid()
+    {
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        int index = name.indexOf('@');
+        return (index > 0) ? name.substring(0, index) : name;
+    }
+
+    /**
+     * @return the time (in ms) at which the current process was started
+     */
+    private static long getCurrentProcessStartTime()
+    {
+        return ManagementFactory.getRuntimeMXBean().getStartTime();
+    }
+}
@@ -0,0 +1,227 @@
+/* 
+ * ========================================================================
+ * 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ========================================================================
+ */
+package org.apache.cactus.container;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.Properties;
+
+/**
+ * Unit tests for {@link WarmContainerState}.
+ *
+ * @version $Id$
+ */
+public final class TestWarmContainerState extends TestCase
+{
+    /**
+     * The lock file used by the tests.
+     */
+    private File lockFile;
+
+    /**
+     * The socket standing for a running container.
+     */
+    private ServerSocket serverSocket;
+
+    /**
+     * The port the container listens on.
+     */
+    private int port;
+
+    /**
+     * {@inheritDoc}
+     * @see TestCase#setUp()
+     */
+    protected void setUp() throws IOException
+    {
+        this.lockFile = File.createTempFile("cactus-test", ".lock");
+        this.serverSocket = new ServerSocket(0);
+        this.port = this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see TestCase#tearDown()
+     */
+    protected void tearDown() throws IOException
+    {
+        this.serverSocket.close();
+        this.lockFile.delete();
+    }
+
+    /**
+     * Verifies that a state written to a lock file is read back as is.
+     * 
+     * @throws IOException if the lock file cannot be written
+     */
+    public void testWriteAndRead() throws IOException
+    {
+        new WarmContainerState(this.port, "abc").write(this.lockFile);
+
+        WarmContainerState state = WarmContainerState.read(this.lockFile);
+
+        assertEquals(this.port, state.getPort());
+        assertEquals("abc", state.getChecksum());
+        assertTrue(state.isStartedByCurrentProcess());
+        assertTrue(state.matches(this.port, "abc"));
+        assertTrue(state.matches(this.port, null));
+        assertFalse(state.matches(this.port, "def"));
+        assertFalse(state.matches(this.port + 1, "abc"));
+    }
+
+    /**
+     * Verifies that an unreadable lock file is ignored.
+     * 
+     * @throws IOException if the lock file cannot be written
+     */
+    public void testReadInvalidFile() throws IOException
+    {
+        writeLockFile("1", "1", "not a port", "abc");
+
+        assertNull(WarmContainerState.read(this.lockFile));
+    }
+
+    /**
+     * Verifies that the lock file is deleted when nothing listens on the
+     * port of the container any more.
+     * 
+     * @throws IOException if the lock file cannot be written
+     */
+    public void testDecideWhenNothingListens() throws IOException
+    {
+        new WarmContainerState(this.port, "abc").write(this.lockFile);
+        this.serverSocket.close();
+
+        assertEquals(WarmContainerState.START, WarmContainerState.decide(
+            this.lockFile, isListening(), this.port, "abc"));
+        assertFalse(this.lockFile.exists());
+    }
+
+    /**
+     * Verifies that a running container started with the same deployable
+     * is reused.
+     * 
+     * @throws IOException if the lock file cannot be written
+     */
+    public void testDecideReusesContainerWithSameDeployable() 
+        throws IOException
+    {
+        writeLockFile("1", "1", String.valueOf(this.port), "abc");
+
+        assertEquals(WarmContainerState.REUSE, WarmContainerState.decide(
+            this.lockFile, isListening(), this.port, "abc"));
+        assertTrue(this.lockFile.exists());
+    }
+
+    /**
+     * Verifies that a running server that is not recorded in the lock file
+     * is used as is.
+     */
+    public void testDecideReusesUnrecordedServer()
+    {
+        this.lockFile.delete();
+
+        assertEquals(WarmContainerState.REUSE, WarmContainerState.decide(
+            this.lockFile, isListening(), this.port, "abc"));
+    }
+
+    /**
+     * Verifies that a container started by the current process with another
+     * deployable is restarted.
+     * 
+     * @throws IOException if the lock file cannot be written
+     */
+    public void testDecideRestartsOwnContainer() throws IOException
+    {
+        new WarmContainerState(this.port, "abc").write(this.lockFile);
+
+        assertEquals(WarmContainerState.RESTART, WarmContainerState.decide(
+            this.lockFile, isListening(), this.port, "def"));
+        assertFalse(this.lockFile.exists());
+    }
+
+    /**
+     * Verifies that a container recorded by another build with another
+     * deployable is never stopped, as the server listening on the port may
+     * not be the recorded container.
+     * 
+     * @throws IOException if the lock file cannot be written
+     */
+    public void testDecideDoesNotStopContainerOfAnotherBuild() 
+        throws IOException
+    {
+        writeLockFile("1", "1", String.valueOf(this.port), "abc");
+
+        assertEquals(WarmContainerState.CONFLICT, WarmContainerState.decide(
+            this.lockFile, isListening(), this.port, "def"));
+        assertTrue(this.lockFile.exists());
+    }
+
+    /**
+     * @return whether something listens on the port of the container
+     */
+    private boolean isListening()
+    {
+        try
+        {
+            return new ReadinessProbe(new URL("http://localhost:" 
+                + this.port + "/test")).isListening();
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a lock file as another build process would.
+     * 
+     * @param thePid the id of the process that started the container
+     * @param theProcessStartTime the start time of that process
+     * @param thePort the port the container listens on
+     * @param theChecksum the checksum of the deployed archive
+     * @throws IOException if the lock file cannot be written
+     */
+    private void writeLockFile(String thePid, String theProcessStartTime,
+        String thePort, String theChecksum) throws IOException
+    {
+        Properties properties = new Properties();
+        properties.setProperty("pid", thePid);
+        properties.setProperty("processStarted", theProcessStartTime);
+        properties.setProperty("port", thePort);
+        properties.setProperty("checksum", theChecksum);
+        OutputStream out = new FileOutputStream(this.lockFile);
+        try
+        {
+            properties.store(out, null);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+}